@@ -0,0 +1,19 @@
+package com.example.accountservice.config;
+
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
+
+/**
+ * RestClient gọi service khác theo tên đăng ký trên Eureka (http://transaction-service/...)
+ */
+@Configuration
+public class RestClientConfig {
+
+    @Bean
+    @LoadBalanced
+    public RestClient.Builder loadBalancedRestClientBuilder() {
+        return RestClient.builder();
+    }
+}
@@ -1,12 +1,20 @@
 package com.example.accountservice.controller;
 
 import com.example.accountservice.dto.*;
+import com.example.accountservice.service.AccountExportService;
 import com.example.accountservice.service.BankAccountService;
+import com.example.accountservice.service.IdempotencyService;
+import com.example.accountservice.service.TransactionApplyService;
 import com.example.accountservice.util.ResponseUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -15,6 +23,9 @@ import java.util.List;
 public class BankAccountController {
 
     private final BankAccountService bankAccountService;
+    private final IdempotencyService idempotencyService;
+    private final AccountExportService accountExportService;
+    private final TransactionApplyService transactionApplyService;
 
     /**
      * Tạo tài khoản ngân hàng (gọi sau khi đăng ký)
@@ -22,26 +33,32 @@ public class BankAccountController {
     @PostMapping
     public ResponseEntity<?> createBankAccount(
             @RequestHeader(name = "uid", defaultValue = "") String uid,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestParam(required = false) String accountType) {
-        try {
-            Long uidLong = Long.parseLong(uid);
-            BankAccountDTO account = bankAccountService.createBankAccount(uidLong, accountType);
-            return ResponseUtils.handlerCreated(account);
-        } catch (Exception e) {
-            return ResponseUtils.handlerException(e);
-        }
+        return idempotencyService.execute(idempotencyKey, uid, "create:" + accountType, () -> {
+            try {
+                Long uidLong = Long.parseLong(uid);
+                BankAccountDTO account = bankAccountService.createBankAccount(uidLong, accountType);
+                return ResponseUtils.handlerCreated(account);
+            } catch (Exception e) {
+                return ResponseUtils.handlerException(e);
+            }
+        });
     }
 
     /**
-     * Xem số dư tài khoản
+     * Xem số dư tài khoản (asOf: số dư tại thời điểm trong quá khứ, tính từ sổ cái)
      */
     @GetMapping("/{accountId}/balance")
     public ResponseEntity<?> getAccountBalance(
             @RequestHeader(name = "uid", defaultValue = "") String uid,
-            @PathVariable Long accountId) {
+            @PathVariable Long accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
         try {
             Long uidLong = Long.parseLong(uid);
-            BankAccountDTO account = bankAccountService.getAccountBalance(uidLong, accountId);
+            BankAccountDTO account = asOf != null
+                    ? bankAccountService.getAccountBalanceAsOf(uidLong, accountId, asOf)
+                    : bankAccountService.getAccountBalance(uidLong, accountId);
             return ResponseUtils.handlerSuccess(account);
         } catch (Exception e) {
             return ResponseUtils.handlerException(e);
@@ -69,17 +86,42 @@ public class BankAccountController {
     @PostMapping("/transfer-between-accounts")
     public ResponseEntity<?> transferBetweenAccounts(
             @RequestHeader(name = "uid", defaultValue = "") String uid,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestParam Long fromAccountId,
             @RequestParam Long toAccountId,
             @RequestParam java.math.BigDecimal amount,
             @RequestParam(required = false) String description) {
-        try {
-            Long uidLong = Long.parseLong(uid);
-            BankAccountDTO account = bankAccountService.transferBetweenAccounts(uidLong, fromAccountId, toAccountId, amount, description);
-            return ResponseUtils.handlerSuccess(account);
-        } catch (Exception e) {
-            return ResponseUtils.handlerException(e);
-        }
+        return idempotencyService.execute(idempotencyKey, uid, "transfer:" + fromAccountId + ":" + toAccountId + ":" + amount + ":" + description, completion -> {
+            try {
+                Long uidLong = Long.parseLong(uid);
+                // Kết quả được ghi vào khóa idempotency trong cùng transaction chuyển tiền
+                BankAccountDTO account = bankAccountService.transferBetweenAccounts(uidLong, fromAccountId, toAccountId, amount, description,
+                        done -> completion.complete(ResponseUtils.handlerSuccess(done)));
+                return ResponseUtils.handlerSuccess(account);
+            } catch (Exception e) {
+                return ResponseUtils.handlerException(e);
+            }
+        });
+    }
+
+    /**
+     * Chuyển tiền hàng loạt (trả lương) từ một tài khoản
+     */
+    @PostMapping("/bulk-transfer")
+    public ResponseEntity<?> bulkTransfer(
+            @RequestHeader(name = "uid", defaultValue = "") String uid,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody BulkTransferRequestDTO request) {
+        return idempotencyService.execute(idempotencyKey, uid, "bulk-transfer:" + request, completion -> {
+            try {
+                Long uidLong = Long.parseLong(uid);
+                // Khóa idempotency thành APPLIED cùng transaction trừ tiền nguồn, response được lưu khi xong
+                BulkTransferResultDTO result = bankAccountService.bulkTransfer(uidLong, request, completion::applied);
+                return ResponseUtils.handlerSuccess(result);
+            } catch (Exception e) {
+                return ResponseUtils.handlerException(e);
+            }
+        });
     }
 
     /**
@@ -88,11 +130,27 @@ public class BankAccountController {
     @PostMapping("/deposit-withdraw")
     public ResponseEntity<?> depositOrWithdraw(
             @RequestHeader(name = "uid", defaultValue = "") String uid,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody DepositWithdrawDTO dto) {
+        return idempotencyService.execute(idempotencyKey, uid, "deposit-withdraw:" + dto, completion -> {
+            try {
+                Long uidLong = Long.parseLong(uid);
+                BankAccountDTO account = bankAccountService.depositOrWithdraw(uidLong, dto,
+                        done -> completion.complete(ResponseUtils.handlerSuccess(done)));
+                return ResponseUtils.handlerSuccess(account);
+            } catch (Exception e) {
+                return ResponseUtils.handlerException(e);
+            }
+        });
+    }
+
+    /**
+     * Áp dụng lô giao dịch PENDING của transaction-service (nội bộ, idempotent theo transaction id)
+     */
+    @PostMapping("/internal/transactions/apply")
+    public ResponseEntity<?> applyTransactions(@RequestBody List<ApplyTransactionDTO> items) {
         try {
-            Long uidLong = Long.parseLong(uid);
-            BankAccountDTO account = bankAccountService.depositOrWithdraw(uidLong, dto);
-            return ResponseUtils.handlerSuccess(account);
+            return ResponseUtils.handlerSuccess(transactionApplyService.apply(items));
         } catch (Exception e) {
             return ResponseUtils.handlerException(e);
         }
@@ -104,15 +162,18 @@ public class BankAccountController {
     @PutMapping("/{accountId}")
     public ResponseEntity<?> updateAccount(
             @RequestHeader(name = "uid", defaultValue = "") String uid,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @PathVariable Long accountId,
             @RequestParam(required = false) String accountType) {
-        try {
-            Long uidLong = Long.parseLong(uid);
-            BankAccountDTO account = bankAccountService.updateAccount(uidLong, accountId, accountType);
-            return ResponseUtils.handlerSuccess(account);
-        } catch (Exception e) {
-            return ResponseUtils.handlerException(e);
-        }
+        return idempotencyService.execute(idempotencyKey, uid, "update:" + accountId + ":" + accountType, () -> {
+            try {
+                Long uidLong = Long.parseLong(uid);
+                BankAccountDTO account = bankAccountService.updateAccount(uidLong, accountId, accountType);
+                return ResponseUtils.handlerSuccess(account);
+            } catch (Exception e) {
+                return ResponseUtils.handlerException(e);
+            }
+        });
     }
 
     /**
@@ -121,12 +182,56 @@ public class BankAccountController {
     @PutMapping("/{accountId}/status")
     public ResponseEntity<?> updateAccountStatus(
             @RequestHeader(name = "uid", defaultValue = "") String uid,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @PathVariable Long accountId,
             @RequestParam String status) {
+        return idempotencyService.execute(idempotencyKey, uid, "status:" + accountId + ":" + status, () -> {
+            try {
+                Long uidLong = Long.parseLong(uid);
+                BankAccountDTO account = bankAccountService.updateAccountStatus(uidLong, accountId, status);
+                return ResponseUtils.handlerSuccess(account);
+            } catch (Exception e) {
+                return ResponseUtils.handlerException(e);
+            }
+        });
+    }
+
+    /**
+     * Export tài khoản theo trạng thái dạng NDJSON/CSV (stream, tiếp tục được bằng afterId hoặc exportId).
+     * Trả về tài khoản của mọi user nên chỉ mở cho service/job nội bộ (cần X-Internal-Token)
+     */
+    @GetMapping("/internal/export")
+    public ResponseEntity<?> exportAccounts(
+            @RequestParam(defaultValue = "ACTIVE") String status,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) String exportId) {
         try {
-            Long uidLong = Long.parseLong(uid);
-            BankAccountDTO account = bankAccountService.updateAccountStatus(uidLong, accountId, status);
-            return ResponseUtils.handlerSuccess(account);
+            if (!AccountExportService.FORMATS.contains(format)) {
+                throw new IllegalArgumentException("Unsupported export format: " + format);
+            }
+            long start = accountExportService.resolveStart(status, afterId, exportId);
+            StreamingResponseBody body = out -> accountExportService.export(status, start, format, exportId, out);
+            return ResponseEntity.ok()
+                    .contentType("csv".equals(format)
+                            ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                            : MediaType.APPLICATION_NDJSON)
+                    .header("X-Export-After-Id", Long.toString(start))
+                    .body(body);
+        } catch (Exception e) {
+            return ResponseUtils.handlerException(e);
+        }
+    }
+
+    /**
+     * Chủ sở hữu của mọi tài khoản theo id tăng dần, đọc tiếp bằng afterId (nội bộ, cần X-Internal-Token)
+     */
+    @GetMapping("/internal/owners")
+    public ResponseEntity<?> getAccountOwners(
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            return ResponseUtils.handlerSuccess(bankAccountService.getAccountOwners(afterId, limit));
         } catch (Exception e) {
             return ResponseUtils.handlerException(e);
         }
@@ -0,0 +1,17 @@
+package com.example.accountservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Quan hệ tài khoản -> user cho service khác dựng bản sao (account_owners của transaction-service)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountOwnerDTO {
+    private Long accountId;
+    private Long userId;
+    private String accountType;
+}
@@ -0,0 +1,22 @@
+package com.example.accountservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+
+/**
+ * Giao dịch PENDING từ transaction-service cần áp dụng lên số dư: chuyển tiền giữa hai tài khoản.
+ * userId là user đã tạo giao dịch, phải là chủ tài khoản gửi.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApplyTransactionDTO {
+    private Long transactionId;
+    private Long fromAccountId;
+    private Long toAccountId;
+    private BigDecimal amount;
+    private String currency;
+    private Long userId;
+}
@@ -0,0 +1,14 @@
+package com.example.accountservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApplyTransactionResultDTO {
+    private Long transactionId;
+    private String status; // APPLIED, REJECTED
+    private String message;
+}
@@ -0,0 +1,25 @@
+package com.example.accountservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransferRequestDTO {
+    private Long fromAccountId;
+    private String description;
+    private List<Item> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long toAccountId;
+        private BigDecimal amount;
+        private String description;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.accountservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransferResultDTO {
+    private Long fromAccountId;
+    private int requested;
+    private int succeeded;
+    private int failed;
+    private BigDecimal totalCredited;
+    private BigDecimal fromBalance;
+    private List<ItemResult> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private Long toAccountId;
+        private BigDecimal amount;
+        private String status; // SUCCESS, FAILED
+        private String message;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.accountservice.event;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.common.money.Money;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Event biến động số dư (schema v1), key Kafka là account id.
+ * Chỉ mang id, biến động, số dư sau biến động và seq (tăng dần theo tài khoản);
+ * consumer bỏ qua event có seq nhỏ hơn hoặc bằng seq đã xử lý.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(value = "type", allowGetters = true)
+public record AccountBalanceChanged(
+        int v,
+        Long accountId,
+        Long userId,
+        Long seq,
+        Money delta,
+        Money balance,
+        String reason,
+        Long counterpartyAccountId,
+        long ts
+) {
+    public static final int VERSION = 1;
+
+    public static AccountBalanceChanged of(BankAccount account, Money delta, String reason, Long counterpartyAccountId) {
+        return of(account.getId(), account.getUserId(), account.getEventSeq(), delta, account.getBalance(),
+                reason, counterpartyAccountId);
+    }
+
+    /**
+     * Cho các đường cộng tiền theo batch (JDBC) không có entity, chỉ có số dư/seq đọc lại sau UPDATE
+     */
+    public static AccountBalanceChanged of(Long accountId, Long userId, Long seq, Money delta, Money balance,
+                                           String reason, Long counterpartyAccountId) {
+        return new AccountBalanceChanged(VERSION, accountId, userId, seq, delta, balance, reason,
+                counterpartyAccountId, System.currentTimeMillis());
+    }
+
+    @JsonProperty("type")
+    public String type() {
+        return "AccountBalanceChanged";
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.accountservice.event;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.service.AccountCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccountCacheInvalidationListener {
+
+    private final AccountCache accountCache;
+
+    /**
+     * Lắng nghe account-events để xóa cache trên mọi node.
+     * Mỗi instance dùng group id riêng nên đều nhận được toàn bộ event.
+     */
+    @KafkaListener(topics = "account-events", groupId = "${spring.application.name}-cache-${random.uuid}")
+    public void handleAccountEvent(ConsumerRecord<String, Object> record) {
+        try {
+            Object value = record.value();
+            if (value instanceof AccountBalanceChanged event) {
+                accountCache.evictAccount(event.accountId());
+            } else if (value instanceof AccountStatusChanged event) {
+                accountCache.evictAccount(event.accountId());
+                accountCache.evictUser(event.userId());
+            } else if (value instanceof BankAccount account) {
+                // Snapshot đầy đủ chỉ gửi khi tạo tài khoản
+                accountCache.evictAccount(account.getId());
+                accountCache.evictUser(account.getUserId());
+            } else if (value instanceof Map<?, ?> event) {
+                evictFromMap(record.key(), event);
+            }
+        } catch (Exception e) {
+            log.error("Failed to invalidate account cache for event {}", record.key(), e);
+        }
+    }
+
+    private void evictFromMap(String key, Map<?, ?> event) {
+        accountCache.evictAccount(toLong(event.get("id")));
+        accountCache.evictAccount(toLong(event.get("accountId")));
+        accountCache.evictAccount(toLong(event.get("fromAccountId")));
+        accountCache.evictUser(toLong(event.get("userId")));
+        if (event.get("credits") instanceof Collection<?> credits) {
+            for (Object credit : credits) {
+                if (credit instanceof Map<?, ?> item) {
+                    accountCache.evictAccount(toLong(item.get("accountId")));
+                }
+            }
+        }
+    }
+
+    private Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
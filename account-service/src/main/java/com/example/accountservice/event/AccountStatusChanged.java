@@ -0,0 +1,40 @@
+package com.example.accountservice.event;
+
+import com.example.accountservice.model.BankAccount;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Event thay đổi thuộc tính tài khoản (schema v1), key Kafka là account id.
+ * Chỉ các trường thực sự thay đổi được gửi (status / accountType), seq dùng chung với AccountBalanceChanged.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(value = "type", allowGetters = true)
+public record AccountStatusChanged(
+        int v,
+        Long accountId,
+        Long userId,
+        Long seq,
+        String status,
+        String previousStatus,
+        String accountType,
+        long ts
+) {
+    public static final int VERSION = 1;
+
+    public static AccountStatusChanged of(BankAccount account, Long seq, String previousStatus, String previousType) {
+        boolean statusChanged = previousStatus != null && !previousStatus.equals(account.getStatus());
+        boolean typeChanged = previousType != null && !previousType.equals(account.getAccountType());
+        return new AccountStatusChanged(VERSION, account.getId(), account.getUserId(), seq,
+                statusChanged ? account.getStatus() : null,
+                statusChanged ? previousStatus : null,
+                typeChanged ? account.getAccountType() : null,
+                System.currentTimeMillis());
+    }
+
+    @JsonProperty("type")
+    public String type() {
+        return "AccountStatusChanged";
+    }
+}
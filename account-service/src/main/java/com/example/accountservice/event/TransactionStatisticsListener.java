@@ -0,0 +1,67 @@
+package com.example.accountservice.event;
+
+import com.example.accountservice.service.UserAccountSummaryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionStatisticsListener {
+
+    private final UserAccountSummaryService userAccountSummaryService;
+
+    /**
+     * Đếm giao dịch theo user từ transaction-events (một group chung cho mọi node).
+     * Payload đọc dạng Map vì account-service không có lớp Transaction.
+     */
+    @KafkaListener(topics = "transaction-events", groupId = "${spring.application.name}-statistics",
+            properties = {
+                    "spring.json.use.type.headers=false",
+                    "spring.json.value.default.type=java.util.LinkedHashMap"
+            })
+    public void handleTransactionEvent(ConsumerRecord<String, Object> record) {
+        if (!(record.value() instanceof Map<?, ?> event)) {
+            return;
+        }
+        try {
+            if ("transaction_created".equals(record.key())) {
+                List<Long> accountIds = participants(event);
+                if (!accountIds.isEmpty()) {
+                    userAccountSummaryService.transactionRecorded(accountIds);
+                }
+            } else if ("transactions_created".equals(record.key()) && event.get("transactions") instanceof List<?> items) {
+                // Một event cho cả chunk của bulk ingestion bên transaction-service
+                List<List<Long>> participants = new ArrayList<>(items.size());
+                for (Object item : items) {
+                    if (item instanceof Map<?, ?> transaction) {
+                        participants.add(participants(transaction));
+                    }
+                }
+                userAccountSummaryService.transactionsRecorded(participants);
+            }
+        } catch (Exception e) {
+            log.error("Failed to update transaction statistics for event {}", record.key(), e);
+        }
+    }
+
+    private List<Long> participants(Map<?, ?> transaction) {
+        List<Long> accountIds = new ArrayList<>(2);
+        addIfPresent(accountIds, transaction.get("fromAccountId"));
+        addIfPresent(accountIds, transaction.get("toAccountId"));
+        return accountIds;
+    }
+
+    private void addIfPresent(List<Long> accountIds, Object value) {
+        if (value instanceof Number number) {
+            accountIds.add(number.longValue());
+        }
+    }
+}
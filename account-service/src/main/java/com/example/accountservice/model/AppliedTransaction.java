@@ -0,0 +1,31 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả áp dụng một giao dịch của transaction-service, khóa theo transaction id:
+ * gửi lại cùng giao dịch (retry sau timeout/crash) trả về kết quả cũ thay vì trừ/cộng tiền lần nữa
+ */
+@Entity
+@Table(name = "applied_transactions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppliedTransaction {
+    @Id
+    @Column(name = "transaction_id")
+    private Long transactionId;
+
+    @Column(name = "status", nullable = false)
+    private String status; // APPLIED, REJECTED
+
+    @Column(name = "message")
+    private String message;
+
+    @Column(name = "applied_at", nullable = false)
+    private LocalDateTime appliedAt;
+}
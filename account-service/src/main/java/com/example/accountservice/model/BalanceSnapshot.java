@@ -0,0 +1,37 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Mốc số dư: balance đã bao gồm mọi bút toán của tài khoản có id <= lastPostingId.
+ */
+@Entity
+@Table(name = "balance_snapshots", indexes = {
+        @Index(name = "idx_snapshot_account", columnList = "account_id, last_posting_id"),
+        @Index(name = "idx_snapshot_account_time", columnList = "account_id, created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "balance", nullable = false)
+    private BigDecimal balance;
+
+    @Column(name = "last_posting_id", nullable = false)
+    private Long lastPostingId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,10 +1,12 @@
 package com.example.accountservice.model;
 
 import jakarta.persistence.*;
+import com.example.common.money.Money;
+import com.example.common.money.MoneyConverter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.math.BigDecimal;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 
 @Entity
@@ -13,8 +15,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class BankAccount {
+    // Id cấp theo khối từ number_sequences (pooled-lo), không dùng AUTO_INCREMENT để Hibernate gom INSERT thành batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "bank_accounts_id")
+    @TableGenerator(name = "bank_accounts_id", table = "number_sequences", pkColumnName = "name",
+            valueColumnName = "next_value", pkColumnValue = "bank_accounts", allocationSize = 100)
     private Long id;
 
     @Column(name = "user_id")
@@ -29,8 +34,16 @@ public class BankAccount {
     @Column(name = "currency", nullable = false)
     private String currency = "USD";
 
-    @Column(name = "balance", nullable = false)
-    private BigDecimal balance;
+    // Số dư chỉ được thay đổi qua các câu UPDATE có điều kiện trong BankAccountRepository,
+    // save() entity không bao giờ ghi đè số dư
+    @Column(name = "balance", nullable = false, updatable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Money balance;
+
+    // Số thứ tự event theo tài khoản, tăng cùng câu UPDATE sinh ra event
+    @Column(name = "event_seq", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private Long eventSeq;
 
     @Column(name = "status", nullable = false)
     private String status; // ACTIVE, INACTIVE, CLOSED
@@ -41,11 +54,21 @@ public class BankAccount {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    /**
+     * Số dư gắn loại tiền của tài khoản (cột balance chỉ lưu số tiền)
+     */
+    public Money getBalance() {
+        return balance != null ? balance.withCurrency(currency) : null;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         if (balance == null) {
-            balance = BigDecimal.ZERO;
+            balance = Money.ZERO;
+        }
+        if (eventSeq == null) {
+            eventSeq = 0L;
         }
         if (status == null) {
             status = "ACTIVE";
@@ -0,0 +1,50 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Một lần chuyển tiền hàng loạt, ghi cùng transaction trừ tiền tài khoản nguồn.
+ * Còn RUNNING nghĩa là tiền đã trừ nhưng chưa cộng/hoàn hết; node chết giữa chừng thì
+ * lần khác nhận lại sau claim-timeout và chạy tiếp từ các dòng bulk_transfer_items còn PENDING.
+ */
+@Entity
+@Table(name = "bulk_transfers", indexes = {
+        @Index(name = "idx_bulk_transfers_status", columnList = "status, claimed_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransfer {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "from_account_id", nullable = false)
+    private Long fromAccountId;
+
+    @Column(name = "description")
+    private String description;
+
+    @Column(name = "total_amount", nullable = false)
+    private BigDecimal totalAmount;
+
+    @Column(name = "refunded_amount")
+    private BigDecimal refundedAmount;
+
+    @Column(name = "status", nullable = false)
+    private String status; // RUNNING, COMPLETED
+
+    @Column(name = "claimed_at", nullable = false)
+    private LocalDateTime claimedAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,42 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+
+/**
+ * Một khoản cộng của lần chuyển hàng loạt. Chỉ rời PENDING cùng transaction cộng tiền (SUCCESS)
+ * hoặc khi chunk lỗi (FAILED, được hoàn lúc kết thúc), nên mỗi khoản được cộng hoặc hoàn đúng một lần.
+ */
+@Entity
+@Table(name = "bulk_transfer_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_bulk_transfer_item", columnNames = {"bulk_transfer_id", "item_index"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransferItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bulk_transfer_id", nullable = false)
+    private Long bulkTransferId;
+
+    @Column(name = "item_index", nullable = false)
+    private Integer itemIndex;
+
+    @Column(name = "to_account_id", nullable = false)
+    private Long toAccountId;
+
+    @Column(name = "amount", nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "status", nullable = false)
+    private String status; // PENDING, SUCCESS, FAILED
+
+    @Column(name = "message")
+    private String message;
+}
@@ -0,0 +1,36 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Mốc tiếp tục của một lần export: lastId là id lớn nhất đã ghi ra (keyset)
+ */
+@Entity
+@Table(name = "export_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportCheckpoint {
+    @Id
+    @Column(name = "export_id", length = 64)
+    private String exportId;
+
+    @Column(name = "status_filter", nullable = false)
+    private String statusFilter;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(name = "rows_exported", nullable = false)
+    private Long rowsExported;
+
+    @Column(name = "completed", nullable = false)
+    private Boolean completed;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,50 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả đã lưu của một request có Idempotency-Key (khóa đã gắn uid)
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_expires_at", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    @Id
+    @Column(name = "idempotency_key", length = 191)
+    private String idempotencyKey;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "status", nullable = false)
+    private String status; // IN_PROGRESS, APPLIED, COMPLETED
+
+    // Định danh lần giữ khóa hiện tại; đổi khi khóa bị nhận lại sau lease
+    @Column(name = "lease_token", length = 36)
+    private String leaseToken;
+
+    // Hạn giữ khóa IN_PROGRESS: node xử lý chết thì request sau được nhận lại khóa khi quá hạn
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "status_code")
+    private Integer statusCode;
+
+    @Lob
+    @Column(name = "response_body", columnDefinition = "LONGTEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
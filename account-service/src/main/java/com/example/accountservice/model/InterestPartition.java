@@ -0,0 +1,52 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Một khoảng id (fromId, toId] của lần tính lãi; lastId là mốc đã commit để chạy tiếp khi bị gián đoạn
+ */
+@Entity
+@Table(name = "interest_partitions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_interest_partition", columnNames = {"run_date", "partition_no"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InterestPartition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+
+    @Column(name = "partition_no", nullable = false)
+    private Integer partitionNo;
+
+    @Column(name = "from_id", nullable = false)
+    private Long fromId;
+
+    @Column(name = "to_id", nullable = false)
+    private Long toId;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(name = "status", nullable = false)
+    private String status; // PENDING, RUNNING, COMPLETED
+
+    @Column(name = "accounts_processed", nullable = false)
+    private Long accountsProcessed;
+
+    @Column(name = "interest_total", nullable = false)
+    private BigDecimal interestTotal;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+}
@@ -0,0 +1,34 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Một lần chạy tính lãi cuối ngày cho ngày nghiệp vụ runDate
+ */
+@Entity
+@Table(name = "interest_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InterestRun {
+    @Id
+    @Column(name = "run_date")
+    private LocalDate runDate;
+
+    @Column(name = "status", nullable = false)
+    private String status; // RUNNING, COMPLETED
+
+    @Column(name = "partitions", nullable = false)
+    private Integer partitions;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
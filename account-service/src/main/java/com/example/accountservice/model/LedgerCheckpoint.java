@@ -0,0 +1,28 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Mốc của tác vụ nền trên sổ cái, dùng chung giữa các node và giữ qua restart:
+ * lastRunStartedAt là thời điểm bắt đầu lần chạy hoàn tất gần nhất, claimedAt khác null khi có node đang chạy
+ */
+@Entity
+@Table(name = "ledger_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCheckpoint {
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "last_run_started_at", nullable = false)
+    private LocalDateTime lastRunStartedAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+}
@@ -0,0 +1,41 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bút toán trong sổ cái: chỉ INSERT, không bao giờ UPDATE/DELETE.
+ * amount có dấu: dương là ghi có, âm là ghi nợ.
+ */
+@Entity
+@Table(name = "ledger_postings", indexes = {
+        @Index(name = "idx_ledger_account_id", columnList = "account_id, id"),
+        @Index(name = "idx_ledger_created_at", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerPosting {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "amount", nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "entry_type", nullable = false)
+    private String entryType; // DEPOSIT, WITHDRAW, TRANSFER_IN, TRANSFER_OUT, BULK_CREDIT
+
+    @Column(name = "counterparty_account_id")
+    private Long counterpartyAccountId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,23 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Dòng sequence trên DB: nextValue là giá trị đầu tiên chưa được node nào thuê
+ */
+@Entity
+@Table(name = "number_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NumberSequence {
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
@@ -0,0 +1,34 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp theo user, được cập nhật tăng dần mỗi khi số dư / số tài khoản / số giao dịch thay đổi
+ */
+@Entity
+@Table(name = "user_account_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserAccountSummary {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "total_balance", nullable = false)
+    private BigDecimal totalBalance;
+
+    @Column(name = "account_count", nullable = false)
+    private Long accountCount;
+
+    @Column(name = "transaction_count", nullable = false)
+    private Long transactionCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
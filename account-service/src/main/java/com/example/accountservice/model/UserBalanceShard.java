@@ -0,0 +1,40 @@
+package com.example.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Phần biến động số dư của user chia thành nhiều dòng (shard) để các giao dịch đồng thời
+ * của cùng một user không tranh nhau một dòng tổng hợp.
+ * Tổng số dư của user = user_account_summaries.total_balance + SUM(balance_delta).
+ */
+@Entity
+@Table(name = "user_balance_shards")
+@IdClass(UserBalanceShard.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBalanceShard {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "shard")
+    private Integer shard;
+
+    @Column(name = "balance_delta", nullable = false)
+    private BigDecimal balanceDelta;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private Integer shard;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.AppliedTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AppliedTransactionRepository extends JpaRepository<AppliedTransaction, Long> {
+}
@@ -0,0 +1,19 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+    Optional<BalanceSnapshot> findFirstByAccountIdOrderByLastPostingIdDesc(Long accountId);
+    Optional<BalanceSnapshot> findFirstByAccountIdAndCreatedAtLessThanEqualOrderByCreatedAtDesc(Long accountId, LocalDateTime asOf);
+    Optional<BalanceSnapshot> findFirstByAccountIdOrderByCreatedAtAsc(Long accountId);
+
+    @Query("SELECT MAX(s.createdAt) FROM BalanceSnapshot s")
+    Optional<LocalDateTime> findLatestCreatedAt();
+}
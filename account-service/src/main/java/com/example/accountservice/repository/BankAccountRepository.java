@@ -1,9 +1,20 @@
 package com.example.accountservice.repository;
 
+import com.example.accountservice.dto.AccountOwnerDTO;
 import com.example.accountservice.model.BankAccount;
+import com.example.common.money.Money;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +24,85 @@ public interface BankAccountRepository extends JpaRepository<BankAccount, Long>
     List<BankAccount> findAllByUserId(Long userId);
     Optional<BankAccount> findByAccountNumber(String accountNumber);
     List<BankAccount> findByStatus(String status);
+
+    /**
+     * Tổng hợp số tài khoản và tổng số dư của user ngay trên DB
+     */
+    @Query(value = "SELECT COUNT(*) AS accountCount, COALESCE(SUM(balance), 0) AS totalBalance " +
+                   "FROM bank_accounts WHERE user_id = :userId", nativeQuery = true)
+    AccountTotals aggregateByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT a.id FROM BankAccount a WHERE a.userId = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT a.id AS id, a.userId AS userId FROM BankAccount a WHERE a.id IN :ids")
+    List<AccountOwner> findOwners(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Chủ sở hữu của mọi tài khoản theo id tăng dần, đọc tiếp bằng afterId (mọi trạng thái)
+     */
+    @Query("SELECT new com.example.accountservice.dto.AccountOwnerDTO(a.id, a.userId, a.accountType) " +
+           "FROM BankAccount a WHERE a.id > :afterId ORDER BY a.id")
+    List<AccountOwnerDTO> findOwnersAfter(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Khóa nhiều tài khoản (FOR UPDATE) theo thứ tự id tăng dần
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM BankAccount a WHERE a.id IN :ids ORDER BY a.id")
+    List<BankAccount> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT a.id FROM BankAccount a WHERE a.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Trừ tiền có điều kiện: chỉ cập nhật khi số dư đủ, trả về số dòng bị ảnh hưởng
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BankAccount a SET a.balance = a.balance - :amount, a.eventSeq = a.eventSeq + 1, a.updatedAt = :now " +
+           "WHERE a.id = :id AND a.balance >= :amount")
+    int debitIfSufficient(@Param("id") Long id, @Param("amount") Money amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Cộng tiền trực tiếp trên DB, không đọc-sửa-ghi trong bộ nhớ
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BankAccount a SET a.balance = a.balance + :amount, a.eventSeq = a.eventSeq + 1, a.updatedAt = :now " +
+           "WHERE a.id = :id")
+    int credit(@Param("id") Long id, @Param("amount") Money amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Tăng số thứ tự event của tài khoản (khóa dòng đến hết transaction)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BankAccount a SET a.eventSeq = a.eventSeq + 1 WHERE a.id = :id")
+    int incrementEventSeq(@Param("id") Long id);
+
+    @Query("SELECT a.eventSeq FROM BankAccount a WHERE a.id = :id")
+    Long findEventSeq(@Param("id") Long id);
+
+    /**
+     * Số dư và seq hiện tại (đọc lại sau câu UPDATE cộng tiền theo batch để dựng event từng tài khoản)
+     */
+    @Query("SELECT a.id AS id, a.userId AS userId, a.currency AS currency, a.balance AS balance, " +
+           "a.eventSeq AS eventSeq FROM BankAccount a WHERE a.id IN :ids")
+    List<AccountState> findStates(@Param("ids") Collection<Long> ids);
+
+    interface AccountTotals {
+        Long getAccountCount();
+        BigDecimal getTotalBalance();
+    }
+
+    interface AccountOwner {
+        Long getId();
+        Long getUserId();
+    }
+
+    interface AccountState {
+        Long getId();
+        Long getUserId();
+        String getCurrency();
+        Money getBalance();
+        Long getEventSeq();
+    }
 }
@@ -0,0 +1,42 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.LedgerPosting;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface LedgerPostingRepository extends JpaRepository<LedgerPosting, Long> {
+
+    /**
+     * Tổng và id lớn nhất của các bút toán sau afterId, đọc trong cùng một câu lệnh
+     */
+    @Query("SELECT COALESCE(SUM(p.amount), 0), MAX(p.id) FROM LedgerPosting p " +
+           "WHERE p.accountId = :accountId AND p.id > :afterId")
+    List<Object[]> sumAndMaxIdAfter(@Param("accountId") Long accountId, @Param("afterId") Long afterId);
+
+    /**
+     * Số dư hiện tại trên bank_accounts và id bút toán cuối, đọc nhất quán trong một câu lệnh
+     */
+    @Query("SELECT a.balance, (SELECT COALESCE(MAX(p.id), 0) FROM LedgerPosting p WHERE p.accountId = a.id) " +
+           "FROM BankAccount a WHERE a.id = :accountId")
+    List<Object[]> findBalanceAndLastPostingId(@Param("accountId") Long accountId);
+
+    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM LedgerPosting p " +
+           "WHERE p.accountId = :accountId AND p.id > :afterId AND p.createdAt <= :asOf")
+    BigDecimal sumAfterIdUntil(@Param("accountId") Long accountId, @Param("afterId") Long afterId,
+                               @Param("asOf") LocalDateTime asOf);
+
+    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM LedgerPosting p " +
+           "WHERE p.accountId = :accountId AND p.id <= :upToId AND p.createdAt > :asOf")
+    BigDecimal sumUpToIdAfter(@Param("accountId") Long accountId, @Param("upToId") Long upToId,
+                              @Param("asOf") LocalDateTime asOf);
+
+    @Query("SELECT DISTINCT p.accountId FROM LedgerPosting p WHERE p.createdAt >= :since")
+    List<Long> findAccountIdsWithPostingsSince(@Param("since") LocalDateTime since);
+}
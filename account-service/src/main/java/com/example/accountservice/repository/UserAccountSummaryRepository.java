@@ -0,0 +1,41 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.UserAccountSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface UserAccountSummaryRepository extends JpaRepository<UserAccountSummary, Long> {
+
+    @Modifying
+    @Query(value = "UPDATE user_account_summaries SET account_count = account_count + 1, updated_at = NOW() " +
+                   "WHERE user_id = :userId", nativeQuery = true)
+    int incrementAccountCount(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE user_account_summaries SET transaction_count = transaction_count + 1, updated_at = NOW() " +
+                   "WHERE user_id = :userId", nativeQuery = true)
+    int incrementTransactionCount(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE user_account_summaries SET transaction_count = transaction_count + :count, updated_at = NOW() " +
+                   "WHERE user_id = :userId", nativeQuery = true)
+    int addTransactionCount(@Param("userId") Long userId, @Param("count") long count);
+
+    /**
+     * Dựng bản tổng hợp từ bank_accounts trong một câu lệnh (đọc và ghi nhất quán).
+     * Phần đã nằm trong user_balance_shards được trừ ra để tổng base + shard đúng bằng số dư hiện tại.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO user_account_summaries (user_id, total_balance, account_count, transaction_count, updated_at) " +
+                   "SELECT :userId, COALESCE(SUM(balance), 0) - " +
+                   "(SELECT COALESCE(SUM(balance_delta), 0) FROM user_balance_shards WHERE user_id = :userId), " +
+                   "COUNT(*), :transactionCount, NOW() FROM bank_accounts WHERE user_id = :userId",
+           nativeQuery = true)
+    int insertFromAccounts(@Param("userId") Long userId, @Param("transactionCount") long transactionCount);
+}
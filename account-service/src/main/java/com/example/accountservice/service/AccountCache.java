@@ -0,0 +1,156 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.dto.BankAccountDTO;
+import com.example.common.replica.ReadWriteRoutingDataSource;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Cache đọc-xuyên (read-through) trong tiến trình cho số dư tài khoản.
+ * - accounts: BankAccountDTO theo account id
+ * - userAccountIds: danh sách account id theo user id (chỉ đổi khi tạo tài khoản)
+ * Biến động số dư chỉ cần xóa entry theo account id. Giới hạn theo kích thước và TTL,
+ * số liệu hit/miss/eviction được đăng ký vào MeterRegistry (cache.* trên actuator).
+ * Cache dùng chung cho mọi user nên luôn nạp từ primary, không từ replica có thể đang trễ.
+ * Mỗi lần xóa tăng bộ đếm (phân dải theo id) trước khi xóa; giá trị nạp ngoài Cache.get chỉ được ghi vào
+ * nếu bộ đếm không đổi trong lúc nạp, nên lần nạp chạy song song với lần xóa không đưa số dư cũ trở lại cache.
+ */
+@Component
+public class AccountCache {
+
+    private static final int STAMP_STRIPES = 1024;
+
+    private final Cache<Long, BankAccountDTO> accounts;
+    private final Cache<Long, List<Long>> userAccountIds;
+    private final AtomicLongArray accountStamps = new AtomicLongArray(STAMP_STRIPES);
+    private final AtomicLongArray userStamps = new AtomicLongArray(STAMP_STRIPES);
+
+    public AccountCache(MeterRegistry meterRegistry,
+                        @Value("${account.cache.max-size:100000}") long maxSize,
+                        @Value("${account.cache.ttl:30s}") Duration ttl) {
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.userAccountIds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, accounts, "account.balance");
+        CaffeineCacheMetrics.monitor(meterRegistry, userAccountIds, "account.user-accounts");
+    }
+
+    /**
+     * Lấy tài khoản theo id, loader trả về null nếu không tồn tại (không cache kết quả rỗng)
+     */
+    public BankAccountDTO getAccount(Long accountId, Function<Long, BankAccountDTO> loader) {
+        // Cache.get nạp trong compute của entry: lần xóa đồng thời chờ nạp xong rồi mới xóa
+        return accounts.get(accountId, id -> ReadWriteRoutingDataSource.onPrimary(() -> loader.apply(id)));
+    }
+
+    /**
+     * Lấy tất cả tài khoản của user; chỉ dùng cache khi đủ mọi tài khoản trong danh sách
+     */
+    public List<BankAccountDTO> getUserAccounts(Long userId, Function<Long, List<BankAccountDTO>> loader) {
+        List<Long> ids = userAccountIds.getIfPresent(userId);
+        if (ids != null) {
+            Map<Long, BankAccountDTO> cached = accounts.getAllPresent(ids);
+            if (cached.size() == ids.size()) {
+                List<BankAccountDTO> result = new ArrayList<>(ids.size());
+                for (Long id : ids) {
+                    result.add(cached.get(id));
+                }
+                return result;
+            }
+        }
+
+        long userStamp = userStamps.get(stripe(userId));
+        long[] accountStampsBefore = new long[STAMP_STRIPES];
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            accountStampsBefore[i] = accountStamps.get(i);
+        }
+        List<BankAccountDTO> loaded = ReadWriteRoutingDataSource.onPrimary(() -> loader.apply(userId));
+
+        List<Long> loadedIds = new ArrayList<>(loaded.size());
+        for (BankAccountDTO dto : loaded) {
+            loadedIds.add(dto.getId());
+            int stripe = stripe(dto.getId());
+            accounts.asMap().compute(dto.getId(),
+                    (id, current) -> accountStamps.get(stripe) == accountStampsBefore[stripe] ? dto : current);
+        }
+        List<Long> loadedList = List.copyOf(loadedIds);
+        int userStripe = stripe(userId);
+        userAccountIds.asMap().compute(userId,
+                (id, current) -> userStamps.get(userStripe) == userStamp ? loadedList : current);
+        return loaded;
+    }
+
+    /**
+     * Xóa cache của một tài khoản; nếu đang trong transaction thì xóa lại sau khi commit
+     */
+    public void evictAccount(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        invalidateAccount(accountId);
+        afterCommit(() -> invalidateAccount(accountId));
+    }
+
+    public void evictAccounts(Collection<Long> accountIds) {
+        accountIds.forEach(this::invalidateAccount);
+        afterCommit(() -> accountIds.forEach(this::invalidateAccount));
+    }
+
+    /**
+     * Xóa danh sách tài khoản của user (khi user có tài khoản mới)
+     */
+    public void evictUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        invalidateUser(userId);
+        afterCommit(() -> invalidateUser(userId));
+    }
+
+    private void invalidateAccount(Long accountId) {
+        accountStamps.incrementAndGet(stripe(accountId));
+        accounts.invalidate(accountId);
+    }
+
+    private void invalidateUser(Long userId) {
+        userStamps.incrementAndGet(stripe(userId));
+        userAccountIds.invalidate(userId);
+    }
+
+    private static int stripe(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (STAMP_STRIPES - 1);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
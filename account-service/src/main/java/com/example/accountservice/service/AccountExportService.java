@@ -0,0 +1,260 @@
+package com.example.accountservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Export tài khoản theo trạng thái, ghi thẳng ra output stream của response.
+ * - Đọc bằng cursor JDBC chỉ-tiến với fetch size cố định, không map entity,
+ *   nên bộ nhớ dùng không phụ thuộc số dòng.
+ * - Sắp xếp theo id: afterId (keyset) cho phép tiếp tục từ dòng cuối đã nhận.
+ *   Nếu có exportId, mốc được lưu vào export_checkpoints sau mỗi checkpoint-interval dòng
+ *   (sau khi flush ra client) để lần gọi lại cùng exportId tự tiếp tục.
+ */
+@Slf4j
+@Service
+public class AccountExportService {
+
+    public static final Set<String> FORMATS = Set.of("ndjson", "csv");
+
+    private static final String SELECT_SQL =
+            "SELECT id, user_id, account_number, account_type, currency, balance, status, created_at, updated_at " +
+            "FROM bank_accounts WHERE status = ? AND id > ? ORDER BY id";
+    private static final String CSV_HEADER =
+            "id,userId,accountNumber,accountType,currency,balance,status,createdAt,updatedAt\n";
+    private static final String FIND_CHECKPOINT_SQL =
+            "SELECT last_id FROM export_checkpoints WHERE export_id = ? AND status_filter = ? AND completed = FALSE";
+    private static final String UPDATE_CHECKPOINT_SQL =
+            "UPDATE export_checkpoints SET last_id = ?, rows_exported = rows_exported + ?, completed = ?, updated_at = ? " +
+            "WHERE export_id = ?";
+    private static final String INSERT_CHECKPOINT_SQL =
+            "INSERT INTO export_checkpoints (export_id, status_filter, last_id, rows_exported, completed, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final int checkpointInterval;
+
+    public AccountExportService(JdbcTemplate jdbcTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${account.export.fetch-size:1000}") int fetchSize,
+                                @Value("${account.export.checkpoint-interval:10000}") int checkpointInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Xác định id bắt đầu: afterId do client gửi, nếu không có thì lấy mốc đã lưu của exportId
+     */
+    public long resolveStart(String status, Long afterId, String exportId) {
+        if (afterId != null) {
+            return afterId;
+        }
+        if (exportId != null) {
+            List<Long> saved = jdbcTemplate.queryForList(FIND_CHECKPOINT_SQL, Long.class, exportId, status);
+            if (!saved.isEmpty()) {
+                return saved.get(0);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Ghi các tài khoản có status và id > afterId ra out, trả về số dòng đã ghi
+     */
+    public long export(String status, long afterId, String format, String exportId, OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        ExportWriter writer = "csv".equals(format) ? new CsvWriter(buffered) : new NdjsonWriter(buffered);
+        Progress progress = new Progress(afterId);
+        try {
+            writer.begin(afterId);
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(SELECT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setString(1, status);
+                ps.setLong(2, afterId);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    writer.write(rs);
+                    progress.lastId = rs.getLong(1);
+                    progress.rows++;
+                    if (progress.rows % checkpointInterval == 0) {
+                        // Flush trước rồi mới lưu mốc: mốc không bao giờ vượt quá dữ liệu đã gửi
+                        writer.flush();
+                        saveCheckpoint(exportId, status, progress, false);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            saveCheckpoint(exportId, status, progress, true);
+        } catch (UncheckedIOException e) {
+            // Client ngắt kết nối: cursor đã được đóng, lần sau tiếp tục từ mốc đã lưu
+            log.info("Account export {} interrupted after {} rows (last id {})", exportId, progress.rows, progress.lastId);
+            throw e.getCause();
+        }
+        return progress.rows;
+    }
+
+    private void saveCheckpoint(String exportId, String status, Progress progress, boolean completed) {
+        if (exportId == null) {
+            return;
+        }
+        long delta = progress.rows - progress.checkpointedRows;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, progress.lastId, delta, completed, now, exportId) == 0) {
+            jdbcTemplate.update(INSERT_CHECKPOINT_SQL, exportId, status, progress.lastId, delta, completed, now);
+        }
+        progress.checkpointedRows = progress.rows;
+    }
+
+    private static final class Progress {
+        long lastId;
+        long rows;
+        long checkpointedRows;
+
+        Progress(long lastId) {
+            this.lastId = lastId;
+        }
+    }
+
+    private interface ExportWriter {
+        void begin(long afterId) throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void flush() throws IOException;
+    }
+
+    private final class NdjsonWriter implements ExportWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        }
+
+        @Override
+        public void begin(long afterId) {
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong(1));
+            writeLong("userId", rs, 2);
+            generator.writeStringField("accountNumber", rs.getString(3));
+            generator.writeStringField("accountType", rs.getString(4));
+            generator.writeStringField("currency", rs.getString(5));
+            generator.writeNumberField("balance", rs.getBigDecimal(6));
+            generator.writeStringField("status", rs.getString(7));
+            generator.writeStringField("createdAt", timestamp(rs, 8));
+            generator.writeStringField("updatedAt", timestamp(rs, 9));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeLong(String field, ResultSet rs, int column) throws SQLException, IOException {
+            long value = rs.getLong(column);
+            if (rs.wasNull()) {
+                generator.writeNullField(field);
+            } else {
+                generator.writeNumberField(field, value);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class CsvWriter implements ExportWriter {
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void begin(long afterId) throws IOException {
+            // Tiếp tục từ giữa chừng thì không ghi lại header
+            if (afterId == 0) {
+                writer.write(CSV_HEADER);
+            }
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writer.write(nullable(rs.getString(2)));
+            writer.write(',');
+            writer.write(quote(rs.getString(3)));
+            writer.write(',');
+            writer.write(quote(rs.getString(4)));
+            writer.write(',');
+            writer.write(quote(rs.getString(5)));
+            writer.write(',');
+            writer.write(rs.getBigDecimal(6).toPlainString());
+            writer.write(',');
+            writer.write(quote(rs.getString(7)));
+            writer.write(',');
+            writer.write(nullable(timestamp(rs, 8)));
+            writer.write(',');
+            writer.write(nullable(timestamp(rs, 9)));
+            writer.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        private static String nullable(String value) {
+            return value != null ? value : "";
+        }
+
+        private static String quote(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static String timestamp(ResultSet rs, int column) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        return value != null ? value.toLocalDateTime().toString() : null;
+    }
+}
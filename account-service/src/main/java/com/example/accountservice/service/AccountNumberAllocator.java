@@ -0,0 +1,144 @@
+package com.example.accountservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cấp số tài khoản không trùng lặp.
+ * - Mỗi node thuê một khối số liên tiếp từ dòng number_sequences (transaction riêng,
+ *   commit ngay) nên số đã thuê không bao giờ được cấp lại, kể cả sau khi khởi động lại;
+ *   phần còn dư của khối cũ chỉ bị bỏ trống.
+ * - Trong khối, số được cấp bằng getAndIncrement, không khóa; chỉ lúc hết khối mới đồng bộ.
+ * Định dạng: ACC + 11 chữ số + 1 chữ số kiểm tra Luhn (cùng độ dài với số cũ).
+ */
+@Slf4j
+@Component
+public class AccountNumberAllocator {
+
+    static final String SEQUENCE_NAME = "account_number";
+    private static final String PREFIX = "ACC";
+    private static final int DIGITS = 11;
+    private static final long MAX_VALUE = 99_999_999_999L;
+
+    private static final String LEASE_SQL =
+            "UPDATE number_sequences SET next_value = next_value + ? WHERE name = ?";
+    private static final String READ_SQL = "SELECT next_value FROM number_sequences WHERE name = ?";
+    private static final String INIT_SQL = "INSERT INTO number_sequences (name, next_value) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate leaseTransaction;
+    private final int blockSize;
+    private final long initialValue;
+    private volatile Block current = new Block(0, 0);
+
+    public AccountNumberAllocator(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${account.number.block-size:1000}") int blockSize,
+                                  @Value("${account.number.initial-value:10000000000}") long initialValue) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+        this.initialValue = initialValue;
+    }
+
+    /**
+     * Cấp số tài khoản tiếp theo
+     */
+    public String next() {
+        while (true) {
+            Block block = current;
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                return format(value);
+            }
+            refill(block);
+        }
+    }
+
+    /**
+     * Kiểm tra định dạng và chữ số kiểm tra của số tài khoản
+     */
+    public static boolean isValid(String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != PREFIX.length() + DIGITS + 1
+                || !accountNumber.startsWith(PREFIX)) {
+            return false;
+        }
+        String digits = accountNumber.substring(PREFIX.length());
+        for (int i = 0; i < digits.length(); i++) {
+            if (!Character.isDigit(digits.charAt(i))) {
+                return false;
+            }
+        }
+        return luhnCheckDigit(digits.substring(0, DIGITS)) == digits.charAt(DIGITS) - '0';
+    }
+
+    private synchronized void refill(Block exhausted) {
+        // Luồng khác đã thuê khối mới trong lúc chờ
+        if (current != exhausted) {
+            return;
+        }
+        long end = leaseTransaction.execute(status -> lease());
+        if (end > MAX_VALUE + 1) {
+            throw new IllegalStateException("Account number space exhausted");
+        }
+        current = new Block(end - blockSize, end);
+        log.debug("Leased account numbers [{}, {})", end - blockSize, end);
+    }
+
+    private long lease() {
+        if (jdbcTemplate.update(LEASE_SQL, blockSize, SEQUENCE_NAME) == 0) {
+            try {
+                jdbcTemplate.update(INIT_SQL, SEQUENCE_NAME, initialValue + blockSize);
+                return initialValue + blockSize;
+            } catch (DuplicateKeyException e) {
+                // Node khác vừa tạo dòng sequence
+                jdbcTemplate.update(LEASE_SQL, blockSize, SEQUENCE_NAME);
+            }
+        }
+        return jdbcTemplate.queryForObject(READ_SQL, Long.class, SEQUENCE_NAME);
+    }
+
+    private static String format(long value) {
+        String digits = String.format("%0" + DIGITS + "d", value);
+        return PREFIX + digits + luhnCheckDigit(digits);
+    }
+
+    private static int luhnCheckDigit(String digits) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int d = digits.charAt(i) - '0';
+            if (doubled) {
+                d *= 2;
+                if (d > 9) {
+                    d -= 9;
+                }
+            }
+            sum += d;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.exception.ResourceNotFoundException;
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.util.StripedLock;
+import com.example.common.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Engine thực hiện biến động số dư.
+ * - Trong tiến trình: tuần tự hóa theo từng tài khoản bằng khóa phân dải,
+ *   khóa hai tài khoản luôn theo thứ tự xác định.
+ * - Trên DB: cập nhật có điều kiện (balance >= amount) thay vì đọc-sửa-ghi,
+ *   các dòng được cập nhật theo thứ tự id tăng dần để tránh deadlock giữa các node.
+ * Khóa được giữ đến khi transaction commit xong.
+ */
+@Slf4j
+@Component
+public class AccountTransferEngine {
+
+    private static final String CREDIT_SQL =
+            "UPDATE bank_accounts SET balance = balance + ?, event_seq = event_seq + 1, updated_at = ? WHERE id = ?";
+
+    private final BankAccountRepository bankAccountRepository;
+    private final LedgerService ledgerService;
+    private final UserAccountSummaryService userAccountSummaryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StripedLock accountLocks;
+
+    public AccountTransferEngine(BankAccountRepository bankAccountRepository,
+                                 LedgerService ledgerService,
+                                 UserAccountSummaryService userAccountSummaryService,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${account.transfer.lock-stripes:1024}") int lockStripes) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.ledgerService = ledgerService;
+        this.userAccountSummaryService = userAccountSummaryService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accountLocks = new StripedLock(lockStripes);
+    }
+
+    /**
+     * Chuyển tiền giữa hai tài khoản, trả về trạng thái mới của cả hai
+     */
+    public TransferResult transfer(Long fromAccountId, Long toAccountId, Money amount) {
+        return transfer(fromAccountId, toAccountId, amount, result -> { });
+    }
+
+    /**
+     * Chuyển tiền; inTransaction chạy trước khi commit (ví dụ ghi outbox)
+     */
+    public TransferResult transfer(Long fromAccountId, Long toAccountId, Money amount,
+                                   Consumer<TransferResult> inTransaction) {
+        validateAmount(amount);
+        if (fromAccountId.equals(toAccountId)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+
+        try (StripedLock.Handle ignored = accountLocks.lock(fromAccountId, toAccountId)) {
+            return transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                if (fromAccountId < toAccountId) {
+                    debitOrFail(fromAccountId, amount, now);
+                    creditOrFail(toAccountId, amount, now);
+                } else {
+                    creditOrFail(toAccountId, amount, now);
+                    debitOrFail(fromAccountId, amount, now);
+                }
+                ledgerService.record(List.of(
+                        new LedgerService.Entry(fromAccountId, amount.negate(), "TRANSFER_OUT", toAccountId),
+                        new LedgerService.Entry(toAccountId, amount, "TRANSFER_IN", fromAccountId)));
+                TransferResult result = new TransferResult(load(fromAccountId), load(toAccountId));
+                Map<Long, Money> deltas = new HashMap<>();
+                deltas.merge(result.fromAccount().getUserId(), amount.negate(), Money::plus);
+                deltas.merge(result.toAccount().getUserId(), amount, Money::plus);
+                userAccountSummaryService.applyBalanceDeltas(deltas);
+                inTransaction.accept(result);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Nạp tiền vào một tài khoản
+     */
+    public BankAccount deposit(Long accountId, Money amount) {
+        return deposit(accountId, amount, account -> { });
+    }
+
+    public BankAccount deposit(Long accountId, Money amount, Consumer<BankAccount> inTransaction) {
+        validateAmount(amount);
+        try (StripedLock.Handle ignored = accountLocks.lock(accountId)) {
+            return transactionTemplate.execute(status -> {
+                creditOrFail(accountId, amount, LocalDateTime.now());
+                ledgerService.record(List.of(new LedgerService.Entry(accountId, amount, "DEPOSIT", null)));
+                BankAccount account = load(accountId);
+                userAccountSummaryService.applyBalanceDeltas(Map.of(account.getUserId(), amount));
+                inTransaction.accept(account);
+                return account;
+            });
+        }
+    }
+
+    /**
+     * Rút tiền khỏi một tài khoản
+     */
+    public BankAccount withdraw(Long accountId, Money amount) {
+        return withdraw(accountId, amount, account -> { });
+    }
+
+    public BankAccount withdraw(Long accountId, Money amount, Consumer<BankAccount> inTransaction) {
+        validateAmount(amount);
+        try (StripedLock.Handle ignored = accountLocks.lock(accountId)) {
+            return transactionTemplate.execute(status -> {
+                debitOrFail(accountId, amount, LocalDateTime.now());
+                ledgerService.record(List.of(new LedgerService.Entry(accountId, amount.negate(), "WITHDRAW", null)));
+                BankAccount account = load(accountId);
+                userAccountSummaryService.applyBalanceDeltas(Map.of(account.getUserId(), amount.negate()));
+                inTransaction.accept(account);
+                return account;
+            });
+        }
+    }
+
+    /**
+     * Cộng tiền cho nhiều tài khoản bằng một JDBC batch trong một transaction.
+     * Trả về số dòng cập nhật cho từng phần tử (0 nghĩa là tài khoản không tồn tại).
+     * inTransaction nhận trạng thái sau từng khoản (null nếu tài khoản không tồn tại), mỗi khoản một seq,
+     * để người gọi ghi event riêng cho từng tài khoản.
+     * Cộng tiền là phép cộng nguyên tử trên DB nên không cần khóa phân dải;
+     * người gọi nên sắp xếp theo id tăng dần để thứ tự khóa dòng nhất quán với transfer().
+     */
+    public int[] creditBatch(List<Long> accountIds, List<Money> amounts, Consumer<List<Credit>> inTransaction) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return transactionTemplate.execute(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(CREDIT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setBigDecimal(1, amounts.get(i).toBigDecimal());
+                    ps.setTimestamp(2, now);
+                    ps.setLong(3, accountIds.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return accountIds.size();
+                }
+            });
+
+            // Chỉ ghi bút toán cho các dòng thực sự được cập nhật
+            List<LedgerService.Entry> entries = new ArrayList<>(accountIds.size());
+            Map<Long, Money> credited = new HashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    entries.add(new LedgerService.Entry(accountIds.get(i), amounts.get(i), "BULK_CREDIT", null));
+                    credited.merge(accountIds.get(i), amounts.get(i), Money::plus);
+                }
+            }
+            ledgerService.record(entries);
+            userAccountSummaryService.applyAccountDeltas(credited);
+            inTransaction.accept(credits(accountIds, amounts, counts));
+            return counts;
+        });
+    }
+
+    /**
+     * Trạng thái sau từng khoản: đọc số dư/seq cuối của mỗi tài khoản (dòng đã bị khóa bởi UPDATE),
+     * rồi lùi dần qua các khoản trước của cùng tài khoản
+     */
+    private List<Credit> credits(List<Long> accountIds, List<Money> amounts, int[] counts) {
+        Map<Long, Credit> latest = new HashMap<>();
+        for (BankAccountRepository.AccountState state : bankAccountRepository.findStates(new HashSet<>(accountIds))) {
+            latest.put(state.getId(), new Credit(state.getId(), state.getUserId(), null,
+                    state.getBalance().withCurrency(state.getCurrency()), state.getEventSeq()));
+        }
+        Credit[] credits = new Credit[counts.length];
+        for (int i = counts.length - 1; i >= 0; i--) {
+            Credit after = latest.get(accountIds.get(i));
+            if (counts[i] == 0 || after == null) {
+                continue;
+            }
+            Money amount = amounts.get(i);
+            credits[i] = new Credit(after.accountId(), after.userId(), amount, after.balance(), after.seq());
+            latest.put(after.accountId(), new Credit(after.accountId(), after.userId(), null,
+                    after.balance().minus(amount), after.seq() - 1));
+        }
+        return Arrays.asList(credits);
+    }
+
+    /**
+     * Một khoản đã cộng: số tiền, số dư và seq ngay sau khoản đó
+     */
+    public record Credit(Long accountId, Long userId, Money amount, Money balance, long seq) {
+    }
+
+    private void debitOrFail(Long accountId, Money amount, LocalDateTime now) {
+        if (bankAccountRepository.debitIfSufficient(accountId, amount, now) == 0) {
+            if (!bankAccountRepository.existsById(accountId)) {
+                throw new ResourceNotFoundException("Account not found");
+            }
+            throw new RuntimeException("Insufficient balance");
+        }
+    }
+
+    private void creditOrFail(Long accountId, Money amount, LocalDateTime now) {
+        if (bankAccountRepository.credit(accountId, amount, now) == 0) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+    }
+
+    private BankAccount load(Long accountId) {
+        return bankAccountRepository.findById(accountId)
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+    }
+
+    private void validateAmount(Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+    }
+
+    public record TransferResult(BankAccount fromAccount, BankAccount toAccount) {
+    }
+}
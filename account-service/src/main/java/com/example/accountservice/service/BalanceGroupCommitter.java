@@ -0,0 +1,325 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.exception.ResourceNotFoundException;
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.common.money.Money;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Group commit cho nạp/rút tiền (bật bằng account.group-commit.enabled).
+ * Các thao tác đồng thời được xếp hàng trong bộ nhớ, một luồng flush gom tối đa max-batch
+ * thao tác hoặc chờ tối đa window rồi ghi tất cả trong một transaction:
+ * - khóa các tài khoản liên quan một lần (FOR UPDATE, id tăng dần),
+ * - xét từng thao tác theo thứ tự đến trên số dư trong bộ nhớ (rút không đủ tiền chỉ làm hỏng thao tác đó),
+ * - mỗi tài khoản chỉ một câu UPDATE với tổng biến động (JDBC batch).
+ * Future của mỗi thao tác chỉ hoàn thành sau khi transaction của batch commit.
+ * Batch lỗi (ví dụ callback của một thao tác ném exception) thì từng thao tác được chạy lại riêng,
+ * lỗi chỉ rơi vào thao tác gây ra nó. Khi dừng, hàng đợi được xử lý hết trong shutdown-timeout,
+ * thao tác còn lại bị fail thay vì treo.
+ */
+@Slf4j
+@Component
+public class BalanceGroupCommitter {
+
+    private static final String APPLY_SQL =
+            "UPDATE bank_accounts SET balance = balance + ?, event_seq = event_seq + ?, updated_at = ? WHERE id = ?";
+
+    private final BankAccountRepository bankAccountRepository;
+    private final LedgerService ledgerService;
+    private final UserAccountSummaryService userAccountSummaryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatch;
+    private final Duration shutdownTimeout;
+    private final BlockingQueue<Operation> queue;
+    private final DistributionSummary batchSize;
+    private final Timer queueWait;
+    private final Timer commitTime;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public BalanceGroupCommitter(BankAccountRepository bankAccountRepository,
+                                 LedgerService ledgerService,
+                                 UserAccountSummaryService userAccountSummaryService,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${account.group-commit.enabled:false}") boolean enabled,
+                                 @Value("${account.group-commit.window:PT0.005S}") Duration window,
+                                 @Value("${account.group-commit.max-batch:200}") int maxBatch,
+                                 @Value("${account.group-commit.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${account.group-commit.shutdown-timeout:PT30S}") Duration shutdownTimeout) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.ledgerService = ledgerService;
+        this.userAccountSummaryService = userAccountSummaryService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.window = window;
+        this.maxBatch = maxBatch;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = DistributionSummary.builder("account.group_commit.batch_size")
+                .description("Balance operations committed per group-commit transaction")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("account.group_commit.queue_wait")
+                .description("Time a balance operation waited in the group-commit queue")
+                .register(meterRegistry);
+        this.commitTime = Timer.builder("account.group_commit.commit_time")
+                .description("Duration of a group-commit transaction")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "balance-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Ngừng nhận thao tác mới, chờ luồng flush xử lý hết hàng đợi; quá shutdown-timeout thì
+     * fail các thao tác chưa được lấy ra để request đang chờ không bị treo
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        flusher.join(shutdownTimeout.toMillis());
+        List<Operation> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        if (!pending.isEmpty()) {
+            log.warn("Group commit stopped with {} pending operations, failing them", pending.size());
+        }
+        for (Operation operation : pending) {
+            operation.future.completeExceptionally(new IllegalStateException("Group commit is not running"));
+        }
+    }
+
+    public CompletableFuture<BankAccount> deposit(Long accountId, Money amount, Consumer<BankAccount> inTransaction) {
+        return submit(accountId, amount != null && amount.signum() > 0 ? amount : null, "DEPOSIT", inTransaction);
+    }
+
+    public CompletableFuture<BankAccount> withdraw(Long accountId, Money amount, Consumer<BankAccount> inTransaction) {
+        return submit(accountId, amount != null && amount.signum() > 0 ? amount.negate() : null, "WITHDRAW", inTransaction);
+    }
+
+    private CompletableFuture<BankAccount> submit(Long accountId, Money delta, String type,
+                                                  Consumer<BankAccount> inTransaction) {
+        if (delta == null) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (!running) {
+            throw new IllegalStateException("Group commit is not running");
+        }
+        Operation operation = new Operation(accountId, delta, type, inTransaction, System.nanoTime());
+        if (!queue.offer(operation)) {
+            throw new RuntimeException("Balance operation queue is full");
+        }
+        // stop() chạy xen giữa kiểm tra running và offer: không còn ai lấy thao tác ra khỏi hàng đợi
+        if (!running && queue.remove(operation)) {
+            throw new IllegalStateException("Group commit is not running");
+        }
+        return operation.future;
+    }
+
+    private void runFlusher() {
+        List<Operation> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Operation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Gom thêm cho đến khi đủ max-batch hoặc hết cửa sổ
+                long deadline = System.nanoTime() + window.toNanos();
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Operation next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Group commit flush failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void flush(List<Operation> batch) {
+        long now = System.nanoTime();
+        for (Operation operation : batch) {
+            queueWait.record(now - operation.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(batch.size());
+
+        commit(batch, true);
+    }
+
+    private void commit(List<Operation> batch, boolean retryAlone) {
+        Map<Operation, BankAccount> results = new HashMap<>();
+        Map<Operation, RuntimeException> rejected = new HashMap<>();
+        try {
+            commitTime.record(() -> transactionTemplate.executeWithoutResult(status -> apply(batch, results, rejected)));
+        } catch (RuntimeException e) {
+            if (!retryAlone || batch.size() == 1) {
+                batch.forEach(operation -> operation.future.completeExceptionally(e));
+                return;
+            }
+            // Transaction của batch đã rollback: chạy lại từng thao tác để lỗi chỉ rơi vào thao tác gây ra nó
+            log.warn("Group commit batch of {} failed, retrying operations one by one: {}", batch.size(), e.getMessage());
+            batch.forEach(operation -> commit(List.of(operation), false));
+            return;
+        }
+        // Chỉ báo kết quả (kể cả từ chối) sau khi commit, vì từ chối dựa trên số dư của cả batch
+        for (Operation operation : batch) {
+            BankAccount account = results.get(operation);
+            if (account != null) {
+                operation.future.complete(account);
+            } else if (rejected.containsKey(operation)) {
+                operation.future.completeExceptionally(rejected.get(operation));
+            }
+        }
+    }
+
+    private void apply(List<Operation> batch, Map<Operation, BankAccount> results,
+                       Map<Operation, RuntimeException> rejected) {
+        Map<Long, List<Operation>> byAccount = new TreeMap<>();
+        for (Operation operation : batch) {
+            byAccount.computeIfAbsent(operation.accountId, id -> new ArrayList<>()).add(operation);
+        }
+
+        Map<Long, BankAccount> locked = new HashMap<>();
+        for (BankAccount account : bankAccountRepository.findAllForUpdate(byAccount.keySet())) {
+            locked.put(account.getId(), account);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<AccountUpdate> updates = new ArrayList<>(byAccount.size());
+        Map<Long, Money> netByUser = new HashMap<>();
+        List<LedgerService.Entry> entries = new ArrayList<>(batch.size());
+        List<Operation> accepted = new ArrayList<>(batch.size());
+        for (Map.Entry<Long, List<Operation>> group : byAccount.entrySet()) {
+            BankAccount account = locked.get(group.getKey());
+            if (account == null) {
+                group.getValue().forEach(op -> rejected.put(op, new ResourceNotFoundException("Account not found")));
+                continue;
+            }
+            Money balance = account.getBalance();
+            Money net = Money.ZERO;
+            long seq = account.getEventSeq();
+            for (Operation operation : group.getValue()) {
+                if (operation.delta.signum() < 0 && balance.plus(operation.delta).signum() < 0) {
+                    rejected.put(operation, new RuntimeException("Insufficient balance"));
+                    continue;
+                }
+                balance = balance.plus(operation.delta);
+                net = net.plus(operation.delta);
+                entries.add(new LedgerService.Entry(account.getId(), operation.delta, operation.type, null));
+                results.put(operation, snapshot(account, balance, ++seq, now));
+                accepted.add(operation);
+            }
+            if (seq != account.getEventSeq()) {
+                updates.add(new AccountUpdate(account.getId(), net, seq - account.getEventSeq()));
+                netByUser.merge(account.getUserId(), net, Money::plus);
+            }
+        }
+
+        // Một câu UPDATE cho mỗi tài khoản với tổng biến động của batch
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(APPLY_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                AccountUpdate update = updates.get(i);
+                ps.setBigDecimal(1, update.net().toBigDecimal());
+                ps.setLong(2, update.operations());
+                ps.setTimestamp(3, updatedAt);
+                ps.setLong(4, update.accountId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return updates.size();
+            }
+        });
+        ledgerService.record(entries);
+        userAccountSummaryService.applyBalanceDeltas(netByUser);
+        for (Operation operation : accepted) {
+            operation.inTransaction.accept(results.get(operation));
+        }
+    }
+
+    private BankAccount snapshot(BankAccount account, Money balance, long seq, LocalDateTime now) {
+        return new BankAccount(account.getId(), account.getUserId(), account.getAccountNumber(),
+                account.getAccountType(), account.getCurrency(), balance, seq, account.getStatus(),
+                account.getCreatedAt(), now);
+    }
+
+    private record AccountUpdate(Long accountId, Money net, long operations) {
+    }
+
+    static final class Operation {
+        final Long accountId;
+        final Money delta;
+        final String type;
+        final Consumer<BankAccount> inTransaction;
+        final long enqueuedAt;
+        final CompletableFuture<BankAccount> future = new CompletableFuture<>();
+
+        Operation(Long accountId, Money delta, String type, Consumer<BankAccount> inTransaction, long enqueuedAt) {
+            this.accountId = accountId;
+            this.delta = delta;
+            this.type = type;
+            this.inTransaction = inTransaction;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -1,27 +1,52 @@
 package com.example.accountservice.service;
 
+import com.example.accountservice.dto.AccountOwnerDTO;
 import com.example.accountservice.dto.AccountStatisticsDTO;
 import com.example.accountservice.dto.BankAccountDTO;
+import com.example.accountservice.dto.BulkTransferRequestDTO;
+import com.example.accountservice.dto.BulkTransferResultDTO;
 import com.example.accountservice.dto.DepositWithdrawDTO;
+import com.example.accountservice.event.AccountBalanceChanged;
+import com.example.accountservice.event.AccountStatusChanged;
 import com.example.accountservice.exception.ResourceNotFoundException;
 import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.model.UserAccountSummary;
 import com.example.accountservice.repository.BankAccountRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxPublisher;
+import com.example.common.velocity.VelocityTracker;
 import lombok.RequiredArgsConstructor;
-import org.springframework.kafka.core.KafkaTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class BankAccountService {
 
+    private static final int MAX_OWNER_PAGE = 5_000;
+
     private final BankAccountRepository bankAccountRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxPublisher outboxPublisher;
+    private final AccountTransferEngine accountTransferEngine;
+    private final BalanceGroupCommitter balanceGroupCommitter;
+    private final AccountCache accountCache;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final UserAccountSummaryService userAccountSummaryService;
+    private final LedgerService ledgerService;
+    private final VelocityLimiter velocityLimiter;
+    private final BulkTransferProcessor bulkTransferProcessor;
+    private final TransactionServiceClient transactionServiceClient;
 
     /**
      * Tạo tài khoản ngân hàng sau khi đăng ký
@@ -35,15 +60,17 @@ public class BankAccountService {
 
         BankAccount bankAccount = new BankAccount();
         bankAccount.setUserId(userId);
-        bankAccount.setAccountNumber(generateAccountNumber());
+        bankAccount.setAccountNumber(accountNumberAllocator.next());
         bankAccount.setAccountType(accountType != null ? accountType : "SAVINGS");
-        bankAccount.setBalance(BigDecimal.ZERO);
+        bankAccount.setBalance(Money.ZERO);
         bankAccount.setStatus("ACTIVE");
 
         BankAccount saved = bankAccountRepository.save(bankAccount);
+        userAccountSummaryService.accountCreated(userId);
+        accountCache.evictUser(userId);
         
         // Publish account created event
-        kafkaTemplate.send("account-events", "account_created", saved);
+        outboxPublisher.publish("account-events", saved.getId(), String.valueOf(saved.getId()), saved);
         
         return convertToDTO(saved);
     }
@@ -51,68 +78,114 @@ public class BankAccountService {
     /**
      * Xem số dư tài khoản
      */
+    @Transactional(readOnly = true)
     public BankAccountDTO getAccountBalance(Long uid, Long accountId) {
-        BankAccount account = bankAccountRepository.findById(accountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+        BankAccountDTO account = accountCache.getAccount(accountId, id -> bankAccountRepository.findById(id)
+                .map(this::convertToLedgerDTO)
+                .orElse(null));
+        if (account == null) {
+            throw new ResourceNotFoundException("Account not found");
+        }
 
         // Kiểm tra quyền truy cập
         if (!account.getUserId().equals(uid)) {
             throw new RuntimeException("Access denied");
         }
 
-        return convertToDTO(account);
+        return account;
+    }
+
+    /**
+     * Xem số dư tài khoản tại một thời điểm, tính từ sổ cái (snapshot + bút toán)
+     */
+    public BankAccountDTO getAccountBalanceAsOf(Long uid, Long accountId, LocalDateTime asOf) {
+        BankAccountDTO account = getAccountBalance(uid, accountId);
+        return withBalance(account, ledgerService.balanceAsOf(accountId, asOf));
     }
 
     /**
      * Xem tất cả tài khoản của user
      */
+    @Transactional(readOnly = true)
     public List<BankAccountDTO> getUserAccounts(Long uid) {
-        return bankAccountRepository.findAllByUserId(uid)
+        return accountCache.getUserAccounts(uid, userId -> bankAccountRepository.findAllByUserId(userId)
                 .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+                .map(this::convertToLedgerDTO)
+                .collect(Collectors.toList()));
     }
 
     /**
-     * Chuyển tiền nội bộ giữa các tài khoản
+     * Chủ sở hữu của mọi tài khoản sau afterId (endpoint nội bộ để transaction-service backfill account_owners)
      */
-    @Transactional
-    public BankAccountDTO transferBetweenAccounts(Long uid, Long fromAccountId, Long toAccountId, BigDecimal amount, String description) {
+    @Transactional(readOnly = true)
+    public List<AccountOwnerDTO> getAccountOwners(long afterId, int limit) {
+        return bankAccountRepository.findOwnersAfter(afterId, Limit.of(Math.min(Math.max(limit, 1), MAX_OWNER_PAGE)));
+    }
+
+    /**
+     * Chuyển tiền nội bộ giữa các tài khoản; inTransaction nhận kết quả trước khi commit (ghi khóa idempotency)
+     */
+    public BankAccountDTO transferBetweenAccounts(Long uid, Long fromAccountId, Long toAccountId, BigDecimal amount,
+                                                  String description, Consumer<BankAccountDTO> inTransaction) {
         BankAccount fromAccount = bankAccountRepository.findById(fromAccountId)
                 .orElseThrow(() -> new ResourceNotFoundException("From account not found"));
 
-        BankAccount toAccount = bankAccountRepository.findById(toAccountId)
-                .orElseThrow(() -> new ResourceNotFoundException("To account not found"));
+        if (!bankAccountRepository.existsById(toAccountId)) {
+            throw new ResourceNotFoundException("To account not found");
+        }
 
         // Kiểm tra quyền truy cập
         if (!fromAccount.getUserId().equals(uid)) {
             throw new RuntimeException("Access denied");
         }
 
-        // Kiểm tra số dư
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
-            throw new RuntimeException("Insufficient balance");
+        // Giới hạn tần suất kiểm tra trong bộ nhớ trước khi chạm số dư; chuyển thất bại thì trả lại phần đã tính
+        Money transferAmount = Money.of(amount, fromAccount.getCurrency());
+        VelocityTracker.Reservation reservation = velocityLimiter.acquire(fromAccount, transferAmount);
+
+        // Thực hiện chuyển tiền (kiểm tra số dư được làm bằng cập nhật có điều kiện trên DB)
+        AccountTransferEngine.TransferResult result;
+        try {
+            result = accountTransferEngine.transfer(fromAccountId, toAccountId, transferAmount, transfer -> {
+                // Publish balance changed events (qua outbox, cùng transaction)
+                publishBalanceChanged(transfer.fromAccount(), transferAmount.negate(), "TRANSFER_OUT", toAccountId);
+                publishBalanceChanged(transfer.toAccount(), transferAmount, "TRANSFER_IN", fromAccountId);
+                inTransaction.accept(convertToDTO(transfer.toAccount()));
+            });
+        } catch (RuntimeException e) {
+            reservation.release();
+            throw e;
         }
+        accountCache.evictAccount(fromAccountId);
+        accountCache.evictAccount(toAccountId);
 
-        // Thực hiện chuyển tiền
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
+        return convertToDTO(result.toAccount());
+    }
 
-        bankAccountRepository.save(fromAccount);
-        BankAccount updatedToAccount = bankAccountRepository.save(toAccount);
+    /**
+     * Chuyển tiền hàng loạt (trả lương) từ một tài khoản nguồn, xem BulkTransferProcessor;
+     * inTransaction chạy trong transaction trừ tiền nguồn
+     */
+    public BulkTransferResultDTO bulkTransfer(Long uid, BulkTransferRequestDTO request, Runnable inTransaction) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Transfer list is empty");
+        }
+
+        BankAccount fromAccount = bankAccountRepository.findById(request.getFromAccountId())
+                .orElseThrow(() -> new ResourceNotFoundException("From account not found"));
 
-        // Publish account updated events
-        kafkaTemplate.send("account-events", "account_updated", fromAccount);
-        kafkaTemplate.send("account-events", "account_updated", toAccount);
+        // Kiểm tra quyền truy cập
+        if (!fromAccount.getUserId().equals(uid)) {
+            throw new RuntimeException("Access denied");
+        }
 
-        return convertToDTO(updatedToAccount);
+        return bulkTransferProcessor.transfer(fromAccount, request, inTransaction);
     }
 
     /**
-     * Rút tiền / Nạp tiền
+     * Rút tiền / Nạp tiền; inTransaction nhận kết quả trước khi commit (ghi khóa idempotency)
      */
-    @Transactional
-    public BankAccountDTO depositOrWithdraw(Long uid, DepositWithdrawDTO dto) {
+    public BankAccountDTO depositOrWithdraw(Long uid, DepositWithdrawDTO dto, Consumer<BankAccountDTO> inTransaction) {
         BankAccount account = bankAccountRepository.findById(dto.getAccountId())
                 .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
 
@@ -126,23 +199,26 @@ public class BankAccountService {
             throw new RuntimeException("Invalid transaction type");
         }
 
-        // Kiểm tra số dư khi rút tiền
-        if ("WITHDRAW".equals(dto.getType()) && 
-            account.getBalance().compareTo(dto.getAmount()) < 0) {
-            throw new RuntimeException("Insufficient balance");
-        }
-
-        // Thực hiện giao dịch
-        if ("DEPOSIT".equals(dto.getType())) {
-            account.setBalance(account.getBalance().add(dto.getAmount()));
+        // Thực hiện giao dịch (rút tiền sẽ thất bại nếu số dư không đủ)
+        // Publish account updated event (qua outbox, cùng transaction)
+        Money amount = Money.of(dto.getAmount(), account.getCurrency());
+        boolean deposit = "DEPOSIT".equals(dto.getType());
+        Consumer<BankAccount> publish = changed -> {
+            publishBalanceChanged(changed, deposit ? amount : amount.negate(), dto.getType(), null);
+            inTransaction.accept(convertToDTO(changed));
+        };
+        BankAccount updated;
+        if (balanceGroupCommitter.isEnabled()) {
+            // Group commit: chờ batch chứa thao tác này commit xong
+            updated = await(deposit
+                    ? balanceGroupCommitter.deposit(account.getId(), amount, publish)
+                    : balanceGroupCommitter.withdraw(account.getId(), amount, publish));
         } else {
-            account.setBalance(account.getBalance().subtract(dto.getAmount()));
+            updated = deposit
+                    ? accountTransferEngine.deposit(account.getId(), amount, publish)
+                    : accountTransferEngine.withdraw(account.getId(), amount, publish);
         }
-
-        BankAccount updated = bankAccountRepository.save(account);
-        
-        // Publish account updated event
-        kafkaTemplate.send("account-events", "account_updated", updated);
+        accountCache.evictAccount(updated.getId());
 
         return convertToDTO(updated);
     }
@@ -160,14 +236,18 @@ public class BankAccountService {
             throw new RuntimeException("Access denied");
         }
 
+        String previousType = account.getAccountType();
         if (accountType != null && !accountType.isBlank()) {
             account.setAccountType(accountType);
         }
 
         BankAccount updated = bankAccountRepository.save(account);
+        accountCache.evictAccount(accountId);
         
-        // Publish account updated event
-        kafkaTemplate.send("account-events", "account_updated", updated);
+        // Publish account changed event (chỉ khi có thay đổi)
+        if (!previousType.equals(updated.getAccountType())) {
+            publishStatusChanged(updated, null, previousType);
+        }
 
         return convertToDTO(updated);
     }
@@ -189,11 +269,15 @@ public class BankAccountService {
             throw new RuntimeException("Invalid account status");
         }
 
+        String previousStatus = account.getStatus();
         account.setStatus(status);
         BankAccount updated = bankAccountRepository.save(account);
+        accountCache.evictAccount(accountId);
         
-        // Publish account updated event
-        kafkaTemplate.send("account-events", "account_updated", updated);
+        // Publish account changed event (chỉ khi có thay đổi)
+        if (!previousStatus.equals(status)) {
+            publishStatusChanged(updated, previousStatus, null);
+        }
 
         return convertToDTO(updated);
     }
@@ -202,30 +286,64 @@ public class BankAccountService {
      * Thống kê tài khoản
      */
     public AccountStatisticsDTO getAccountStatistics(Long uid) {
-        List<BankAccount> accounts = bankAccountRepository.findAllByUserId(uid);
-
-        BigDecimal totalBalance = accounts.stream()
-                .map(BankAccount::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Đọc dòng tổng hợp + các shard số dư, không quét toàn bộ tài khoản
+        UserAccountSummary summary = userAccountSummaryService.getSummary(uid, transactionServiceClient::countTransactions);
 
         return new AccountStatisticsDTO(
                 uid,
-                totalBalance,
-                (long) accounts.size(),
-                0L // Transaction count moved to transaction-service
+                summary.getTotalBalance(),
+                summary.getAccountCount(),
+                summary.getTransactionCount()
         );
     }
 
+    private BankAccount await(CompletableFuture<BankAccount> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     /**
-     * Helper: Convert BankAccount to DTO
+     * Helper: Ghi event biến động số dư vào outbox, key là account id (phải gọi trong transaction)
      */
-    private BankAccountDTO convertToDTO(BankAccount account) {
+    private void publishBalanceChanged(BankAccount account, Money delta, String reason, Long counterpartyAccountId) {
+        outboxPublisher.publish("account-events", account.getId(), String.valueOf(account.getId()),
+                AccountBalanceChanged.of(account, delta, reason, counterpartyAccountId));
+    }
+
+    /**
+     * Helper: Ghi event thay đổi trạng thái/loại tài khoản vào outbox (phải gọi trong transaction)
+     */
+    private void publishStatusChanged(BankAccount account, String previousStatus, String previousType) {
+        bankAccountRepository.incrementEventSeq(account.getId());
+        Long seq = bankAccountRepository.findEventSeq(account.getId());
+        outboxPublisher.publish("account-events", account.getId(), String.valueOf(account.getId()),
+                AccountStatusChanged.of(account, seq, previousStatus, previousType));
+    }
+
+    /**
+     * Helper: DTO với số dư tính từ sổ cái (snapshot mới nhất + các bút toán sau đó).
+     * getAccountBalance và getUserAccounts dùng chung cache theo tài khoản nên phải cùng một nguồn số dư.
+     */
+    private BankAccountDTO convertToLedgerDTO(BankAccount account) {
+        return withBalance(convertToDTO(account), ledgerService.currentBalance(account.getId()));
+    }
+
+    /**
+     * Helper: Bản sao DTO với số dư khác (số dư tính từ sổ cái)
+     */
+    private BankAccountDTO withBalance(BankAccountDTO account, BigDecimal balance) {
         return new BankAccountDTO(
                 account.getId(),
                 account.getUserId(),
                 account.getAccountNumber(),
                 account.getAccountType(),
-                account.getBalance(),
+                balance,
                 account.getStatus(),
                 account.getCreatedAt(),
                 account.getUpdatedAt()
@@ -233,9 +351,18 @@ public class BankAccountService {
     }
 
     /**
-     * Helper: Generate unique account number
+     * Helper: Convert BankAccount to DTO
      */
-    private String generateAccountNumber() {
-        return "ACC" + UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase();
+    private BankAccountDTO convertToDTO(BankAccount account) {
+        return new BankAccountDTO(
+                account.getId(),
+                account.getUserId(),
+                account.getAccountNumber(),
+                account.getAccountType(),
+                account.getBalance().toBigDecimal(),
+                account.getStatus(),
+                account.getCreatedAt(),
+                account.getUpdatedAt()
+        );
     }
 }
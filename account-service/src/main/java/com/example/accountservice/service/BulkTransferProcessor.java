@@ -0,0 +1,388 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.dto.BulkTransferRequestDTO;
+import com.example.accountservice.dto.BulkTransferResultDTO;
+import com.example.accountservice.event.AccountBalanceChanged;
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Chuyển tiền hàng loạt (trả lương) từ một tài khoản nguồn.
+ * - Tài khoản nguồn bị trừ một lần cho tổng số tiền hợp lệ; cùng transaction đó ghi bulk_transfers
+ *   và từng khoản vào bulk_transfer_items (PENDING), nên tiền đã trừ luôn có bản ghi khoản phải cộng.
+ * - Các khoản được cộng bằng JDBC batch theo từng chunk (mỗi tài khoản được cộng tăng event_seq và có một
+ *   AccountBalanceChanged riêng, key là tài khoản đó); khoản chỉ rời PENDING trong cùng transaction cộng tiền,
+ *   chunk lỗi đánh dấu FAILED; khi hết khoản PENDING, tổng FAILED được hoàn cho tài khoản nguồn
+ *   cùng transaction chuyển bulk_transfers sang COMPLETED.
+ * - Node chết giữa chừng: lần chạy đang RUNNING quá claim-timeout được node khác nhận lại và chạy tiếp
+ *   các khoản còn PENDING, nên không khoản nào bị mất hoặc cộng hai lần.
+ */
+@Slf4j
+@Component
+public class BulkTransferProcessor {
+
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO bulk_transfer_items (bulk_transfer_id, item_index, to_account_id, amount, status) " +
+            "VALUES (?, ?, ?, ?, 'PENDING')";
+    private static final String MARK_ITEM_SQL =
+            "UPDATE bulk_transfer_items SET status = ?, message = ? " +
+            "WHERE bulk_transfer_id = ? AND item_index = ? AND status = 'PENDING'";
+    private static final String RENEW_CLAIM_SQL =
+            "UPDATE bulk_transfers SET claimed_at = ? WHERE id = ? AND status = 'RUNNING'";
+    private static final String CLAIM_SQL =
+            "UPDATE bulk_transfers SET claimed_at = ? WHERE id = ? AND status = 'RUNNING' AND claimed_at < ?";
+    private static final String COMPLETE_SQL =
+            "UPDATE bulk_transfers SET status = 'COMPLETED', refunded_amount = ?, completed_at = ? " +
+            "WHERE id = ? AND status = 'RUNNING' " +
+            "AND NOT EXISTS (SELECT 1 FROM bulk_transfer_items i WHERE i.bulk_transfer_id = ? AND i.status = 'PENDING')";
+
+    private final BankAccountRepository bankAccountRepository;
+    private final AccountTransferEngine accountTransferEngine;
+    private final OutboxPublisher outboxPublisher;
+    private final AccountCache accountCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration claimTimeout;
+
+    public BulkTransferProcessor(BankAccountRepository bankAccountRepository,
+                                 AccountTransferEngine accountTransferEngine,
+                                 OutboxPublisher outboxPublisher,
+                                 AccountCache accountCache,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${account.bulk-transfer.chunk-size:500}") int chunkSize,
+                                 @Value("${account.bulk-transfer.claim-timeout:PT10M}") Duration claimTimeout) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.accountTransferEngine = accountTransferEngine;
+        this.outboxPublisher = outboxPublisher;
+        this.accountCache = accountCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.claimTimeout = claimTimeout;
+    }
+
+    /**
+     * Kiểm tra từng dòng (dòng lỗi được đánh dấu FAILED mà không dừng cả batch), trừ tiền nguồn, cộng và hoàn tiền
+     */
+    public BulkTransferResultDTO transfer(BankAccount fromAccount, BulkTransferRequestDTO request) {
+        return transfer(fromAccount, request, () -> { });
+    }
+
+    /**
+     * Như trên; inTransaction chạy trong transaction trừ tiền nguồn
+     */
+    public BulkTransferResultDTO transfer(BankAccount fromAccount, BulkTransferRequestDTO request, Runnable inTransaction) {
+        List<BulkTransferRequestDTO.Item> items = request.getItems();
+        Long fromAccountId = fromAccount.getId();
+
+        Set<Long> targetIds = items.stream()
+                .filter(Objects::nonNull)
+                .map(BulkTransferRequestDTO.Item::getToAccountId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> existingIds = targetIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(bankAccountRepository.findExistingIds(targetIds));
+
+        BulkTransferResultDTO.ItemResult[] results = new BulkTransferResultDTO.ItemResult[items.size()];
+        List<PendingItem> accepted = new ArrayList<>(items.size());
+        Money total = Money.ZERO;
+        for (int i = 0; i < items.size(); i++) {
+            BulkTransferRequestDTO.Item item = items.get(i);
+            String error = validate(fromAccountId, item, existingIds);
+            if (error != null) {
+                results[i] = itemResult(i, item, "FAILED", error);
+            } else {
+                Money amount = Money.of(item.getAmount(), fromAccount.getCurrency());
+                accepted.add(new PendingItem(i, item.getToAccountId(), amount));
+                total = total.plus(amount);
+            }
+        }
+
+        Money credited = Money.ZERO;
+        if (!accepted.isEmpty()) {
+            long bulkTransferId = start(fromAccountId, request.getDescription(), total, accepted, inTransaction);
+            Map<Integer, Outcome> outcomes = creditAll(bulkTransferId, fromAccountId, accepted);
+            finish(bulkTransferId, fromAccountId, fromAccount.getCurrency());
+
+            for (PendingItem pending : accepted) {
+                Outcome outcome = outcomes.get(pending.index());
+                BulkTransferRequestDTO.Item item = items.get(pending.index());
+                results[pending.index()] = itemResult(pending.index(), item, outcome.status(), outcome.message());
+                if ("SUCCESS".equals(outcome.status())) {
+                    credited = credited.plus(pending.amount());
+                }
+            }
+            fromAccount = bankAccountRepository.findById(fromAccountId).orElse(fromAccount);
+        }
+
+        int succeeded = 0;
+        for (BulkTransferResultDTO.ItemResult result : results) {
+            if ("SUCCESS".equals(result.getStatus())) {
+                succeeded++;
+            }
+        }
+        return new BulkTransferResultDTO(
+                fromAccountId,
+                items.size(),
+                succeeded,
+                items.size() - succeeded,
+                credited.toBigDecimal(),
+                fromAccount.getBalance().toBigDecimal(),
+                Arrays.asList(results)
+        );
+    }
+
+    /**
+     * Nhận lại các lần chuyển hàng loạt bị bỏ dở (node chết sau khi trừ tiền nguồn) và chạy tiếp
+     */
+    @Scheduled(fixedDelayString = "${account.bulk-transfer.recovery-interval-ms:60000}")
+    public void recoverAbandoned() {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp cutoff = Timestamp.valueOf(now.minus(claimTimeout));
+        List<Map<String, Object>> abandoned = jdbcTemplate.queryForList(
+                "SELECT b.id, b.from_account_id, a.currency FROM bulk_transfers b " +
+                "JOIN bank_accounts a ON a.id = b.from_account_id " +
+                "WHERE b.status = 'RUNNING' AND b.claimed_at < ? ORDER BY b.id", cutoff);
+        for (Map<String, Object> row : abandoned) {
+            long bulkTransferId = ((Number) row.get("id")).longValue();
+            if (jdbcTemplate.update(CLAIM_SQL, Timestamp.valueOf(now), bulkTransferId, cutoff) == 0) {
+                // Node khác vừa nhận
+                continue;
+            }
+            Long fromAccountId = ((Number) row.get("from_account_id")).longValue();
+            String currency = (String) row.get("currency");
+            try {
+                List<PendingItem> pending = jdbcTemplate.query(
+                        "SELECT item_index, to_account_id, amount FROM bulk_transfer_items " +
+                        "WHERE bulk_transfer_id = ? AND status = 'PENDING' ORDER BY item_index",
+                        (rs, i) -> new PendingItem(rs.getInt(1), rs.getLong(2), Money.of(rs.getBigDecimal(3), currency)),
+                        bulkTransferId);
+                log.warn("Resuming bulk transfer {} from account {} with {} pending credits",
+                        bulkTransferId, fromAccountId, pending.size());
+                creditAll(bulkTransferId, fromAccountId, pending);
+                finish(bulkTransferId, fromAccountId, currency);
+            } catch (RuntimeException e) {
+                log.error("Resuming bulk transfer {} failed: {}", bulkTransferId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Trừ tiền nguồn, ghi bulk_transfers và các khoản PENDING trong cùng một transaction
+     */
+    private long start(Long fromAccountId, String description, Money total, List<PendingItem> items,
+                       Runnable inTransaction) {
+        long[] bulkTransferId = new long[1];
+        accountTransferEngine.withdraw(fromAccountId, total, account -> {
+            LocalDateTime now = LocalDateTime.now();
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO bulk_transfers (from_account_id, description, total_amount, status, claimed_at, created_at) " +
+                        "VALUES (?, ?, ?, 'RUNNING', ?, ?)", new String[]{"id"});
+                ps.setLong(1, fromAccountId);
+                ps.setString(2, description);
+                ps.setBigDecimal(3, total.toBigDecimal());
+                ps.setTimestamp(4, Timestamp.valueOf(now));
+                ps.setTimestamp(5, Timestamp.valueOf(now));
+                return ps;
+            }, keyHolder);
+            bulkTransferId[0] = keyHolder.getKey().longValue();
+
+            jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, bulkTransferId[0]);
+                    ps.setInt(2, items.get(i).index());
+                    ps.setLong(3, items.get(i).toAccountId());
+                    ps.setBigDecimal(4, items.get(i).amount().toBigDecimal());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return items.size();
+                }
+            });
+            publishBalanceChanged(account, total.negate(), "BULK_TRANSFER_OUT");
+            inTransaction.run();
+        });
+        accountCache.evictAccount(fromAccountId);
+        return bulkTransferId[0];
+    }
+
+    private Map<Integer, Outcome> creditAll(long bulkTransferId, Long fromAccountId, List<PendingItem> items) {
+        Map<Integer, Outcome> outcomes = new HashMap<>(items.size() * 2);
+        for (int start = 0; start < items.size(); start += chunkSize) {
+            List<PendingItem> chunk = new ArrayList<>(items.subList(start, Math.min(start + chunkSize, items.size())));
+            // Sắp xếp theo id để thứ tự khóa dòng trùng với transfer thông thường
+            chunk.sort(Comparator.comparing(PendingItem::toAccountId));
+            try {
+                outcomes.putAll(creditChunk(bulkTransferId, fromAccountId, chunk));
+            } catch (RuntimeException e) {
+                log.error("Bulk transfer {} chunk from account {} failed: {}", bulkTransferId, fromAccountId, e.getMessage());
+                markFailed(bulkTransferId, chunk, e.getMessage());
+                for (PendingItem item : chunk) {
+                    outcomes.put(item.index(), new Outcome("FAILED", e.getMessage()));
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Cộng một chunk và chuyển các khoản khỏi PENDING trong cùng transaction;
+     * khoản không còn PENDING (node khác đã xử lý) thì hủy cả chunk
+     */
+    private Map<Integer, Outcome> creditChunk(long bulkTransferId, Long fromAccountId, List<PendingItem> chunk) {
+        List<Long> accountIds = new ArrayList<>(chunk.size());
+        List<Money> amounts = new ArrayList<>(chunk.size());
+        for (PendingItem item : chunk) {
+            accountIds.add(item.toAccountId());
+            amounts.add(item.amount());
+        }
+
+        Map<Integer, Outcome> outcomes = new HashMap<>(chunk.size() * 2);
+        accountTransferEngine.creditBatch(accountIds, amounts, credits -> {
+            List<Object[]> marks = new ArrayList<>(chunk.size());
+            for (int k = 0; k < credits.size(); k++) {
+                PendingItem item = chunk.get(k);
+                Outcome outcome = credits.get(k) != null
+                        ? new Outcome("SUCCESS", null)
+                        : new Outcome("FAILED", "To account not found");
+                outcomes.put(item.index(), outcome);
+                marks.add(new Object[]{outcome.status(), outcome.message(), bulkTransferId, item.index()});
+            }
+            for (int count : jdbcTemplate.batchUpdate(MARK_ITEM_SQL, marks)) {
+                if (count == 0) {
+                    throw new IllegalStateException("Bulk transfer " + bulkTransferId + " was taken over");
+                }
+            }
+            jdbcTemplate.update(RENEW_CLAIM_SQL, Timestamp.valueOf(LocalDateTime.now()), bulkTransferId);
+
+            // Mỗi tài khoản được cộng một event, key là tài khoản đó, ghi outbox trong cùng transaction
+            for (AccountTransferEngine.Credit credit : credits) {
+                if (credit != null) {
+                    outboxPublisher.publish("account-events", credit.accountId(), String.valueOf(credit.accountId()),
+                            AccountBalanceChanged.of(credit.accountId(), credit.userId(), credit.seq(), credit.amount(),
+                                    credit.balance(), "BULK_TRANSFER_IN", fromAccountId));
+                }
+            }
+        });
+        accountCache.evictAccounts(accountIds);
+        return outcomes;
+    }
+
+    private void markFailed(long bulkTransferId, List<PendingItem> chunk, String message) {
+        List<Object[]> marks = new ArrayList<>(chunk.size());
+        for (PendingItem item : chunk) {
+            marks.add(new Object[]{"FAILED", message, bulkTransferId, item.index()});
+        }
+        // Khoản đã được node khác cộng thì giữ nguyên
+        jdbcTemplate.batchUpdate(MARK_ITEM_SQL, marks);
+    }
+
+    /**
+     * Hoàn tổng các khoản FAILED cho tài khoản nguồn và đóng lần chuyển trong cùng transaction
+     */
+    private void finish(long bulkTransferId, Long fromAccountId, String currency) {
+        BigDecimal failed = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM bulk_transfer_items WHERE bulk_transfer_id = ? AND status = 'FAILED'",
+                BigDecimal.class, bulkTransferId);
+        Money refund = Money.of(failed, currency);
+        Consumer<BankAccount> complete = account -> {
+            if (jdbcTemplate.update(COMPLETE_SQL, refund.toBigDecimal(), Timestamp.valueOf(LocalDateTime.now()),
+                    bulkTransferId, bulkTransferId) == 0) {
+                throw new IllegalStateException("Bulk transfer " + bulkTransferId + " was already completed");
+            }
+            if (account != null) {
+                publishBalanceChanged(account, refund, "BULK_TRANSFER_REFUND");
+            }
+        };
+        if (refund.signum() > 0) {
+            accountTransferEngine.deposit(fromAccountId, refund, complete);
+            accountCache.evictAccount(fromAccountId);
+        } else {
+            transactionTemplate.executeWithoutResult(status -> complete.accept(null));
+        }
+    }
+
+    /**
+     * Helper: Kiểm tra một dòng chuyển tiền hàng loạt, trả về lỗi hoặc null nếu hợp lệ
+     */
+    private String validate(Long fromAccountId, BulkTransferRequestDTO.Item item, Set<Long> existingIds) {
+        if (item == null || item.getToAccountId() == null) {
+            return "To account is required";
+        }
+        if (item.getAmount() == null || item.getAmount().signum() <= 0) {
+            return "Amount must be positive";
+        }
+        if (item.getAmount().stripTrailingZeros().scale() > Money.SCALE) {
+            return "Invalid amount";
+        }
+        if (item.getToAccountId().equals(fromAccountId)) {
+            return "Cannot transfer to the same account";
+        }
+        if (!existingIds.contains(item.getToAccountId())) {
+            return "To account not found";
+        }
+        return null;
+    }
+
+    private BulkTransferResultDTO.ItemResult itemResult(int index, BulkTransferRequestDTO.Item item,
+                                                        String status, String message) {
+        return new BulkTransferResultDTO.ItemResult(
+                index,
+                item != null ? item.getToAccountId() : null,
+                item != null ? item.getAmount() : null,
+                status,
+                message
+        );
+    }
+
+    /**
+     * Helper: Ghi event biến động số dư tài khoản nguồn vào outbox (phải gọi trong transaction)
+     */
+    private void publishBalanceChanged(BankAccount account, Money delta, String reason) {
+        outboxPublisher.publish("account-events", account.getId(), String.valueOf(account.getId()),
+                AccountBalanceChanged.of(account, delta, reason, null));
+    }
+
+    private record PendingItem(int index, Long toAccountId, Money amount) {
+    }
+
+    private record Outcome(String status, String message) {
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.IdempotencyRecord;
+import com.example.accountservice.repository.IdempotencyRecordRepository;
+import com.example.accountservice.util.ResponseUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lưu kết quả theo Idempotency-Key cho các endpoint thay đổi dữ liệu.
+ * - Tầng nhớ: LRU (Caffeine) giữ response đã hoàn thành, trả lại không cần chạm DB.
+ * - Tầng bền: bảng idempotency_keys; INSERT khóa trước khi xử lý nên hai node
+ *   không thể cùng thực hiện một khóa.
+ * - Request trùng khóa đang chạy trên cùng node sẽ chờ kết quả của request đầu tiên.
+ * - Khóa IN_PROGRESS chỉ được giữ đến locked_until; node xử lý chết giữa chừng thì
+ *   request sau nhận lại khóa khi quá hạn thay vì nhận 409 đến hết ttl. Mỗi lần giữ khóa có lease_token riêng.
+ * - Thao tác đổi số dư ghi COMPLETED (hoặc APPLIED khi chưa có response, ví dụ chuyển hàng loạt) qua Completion
+ *   trong chính transaction đổi số dư, kèm điều kiện lease_token: khóa đã bị request khác nhận lại thì transaction
+ *   đó rollback, còn khóa đã COMPLETED/APPLIED thì không bao giờ bị nhận lại, nên hiệu lực không chạy hai lần
+ *   dù node chết sau commit hay request chạy quá lease.
+ * Chỉ response 2xx được lưu; request lỗi xóa khóa để client có thể thử lại, trừ khi hiệu lực đã commit.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO idempotency_keys (idempotency_key, request_hash, status, lease_token, locked_until, created_at, " +
+            "expires_at) VALUES (?, ?, 'IN_PROGRESS', ?, ?, ?, ?)";
+    private static final String RECLAIM_SQL =
+            "UPDATE idempotency_keys SET request_hash = ?, lease_token = ?, locked_until = ?, created_at = ?, expires_at = ? " +
+            "WHERE idempotency_key = ? AND status = 'IN_PROGRESS' AND locked_until < ?";
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_keys SET status = 'COMPLETED', status_code = ?, response_body = ?, locked_until = NULL " +
+            "WHERE idempotency_key = ? AND lease_token = ?";
+    private static final String COMPLETE_IN_TRANSACTION_SQL = COMPLETE_SQL + " AND status = 'IN_PROGRESS'";
+    private static final String APPLIED_SQL =
+            "UPDATE idempotency_keys SET status = 'APPLIED', locked_until = NULL " +
+            "WHERE idempotency_key = ? AND lease_token = ? AND status = 'IN_PROGRESS'";
+    private static final String DELETE_SQL =
+            "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND lease_token = ? AND status = 'IN_PROGRESS'";
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, StoredResponse> completed;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration lease;
+    private final Duration waitTimeout;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              JdbcTemplate jdbcTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${account.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${account.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${account.idempotency.lease:PT5M}") Duration lease,
+                              @Value("${account.idempotency.wait-timeout:PT30S}") Duration waitTimeout) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.waitTimeout = waitTimeout;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Thực hiện action đúng một lần cho mỗi (uid, Idempotency-Key).
+     * Không có khóa thì chạy action như bình thường.
+     */
+    public ResponseEntity<?> execute(String idempotencyKey, String uid, String request,
+                                     Supplier<ResponseEntity<?>> action) {
+        return execute(idempotencyKey, uid, request, completion -> action.get());
+    }
+
+    /**
+     * Như trên, action nhận Completion để ghi kết quả trong transaction nghiệp vụ của nó
+     */
+    public ResponseEntity<?> execute(String idempotencyKey, String uid, String request,
+                                     Function<Completion, ResponseEntity<?>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.apply(new Completion(null, null, null));
+        }
+        String key = uid + ":" + idempotencyKey;
+        String requestHash = sha256(request);
+
+        StoredResponse cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        CompletableFuture<StoredResponse> future = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return awaitFirst(existing, requestHash);
+        }
+
+        try {
+            // Đăng ký khóa trên DB; thất bại nghĩa là khóa đã tồn tại (đã xong hoặc node khác đang chạy)
+            String token = reserve(key, requestHash);
+            if (token == null) {
+                Optional<IdempotencyRecord> record = idempotencyRecordRepository.findById(key);
+                if (record.isPresent() && "COMPLETED".equals(record.get().getStatus())) {
+                    StoredResponse stored = fromRecord(record.get());
+                    completed.put(key, stored);
+                    future.complete(stored);
+                    return replay(stored, requestHash);
+                }
+                ResponseEntity<?> conflict = ResponseUtils.handlerConflict(
+                        record.isPresent() && "APPLIED".equals(record.get().getStatus())
+                                ? "Request with this Idempotency-Key was already applied"
+                                : "Request with this Idempotency-Key is in progress");
+                future.complete(new StoredResponse(requestHash, conflict, null));
+                return conflict;
+            }
+
+            ResponseEntity<?> response;
+            try {
+                response = action.apply(new Completion(key, token, requestHash));
+            } catch (RuntimeException e) {
+                ResponseEntity<?> committed = release(key, token);
+                if (committed == null) {
+                    throw e;
+                }
+                response = committed;
+            }
+
+            if (response.getStatusCode().is2xxSuccessful()) {
+                jdbcTemplate.update(COMPLETE_SQL, response.getStatusCode().value(), toJson(response.getBody()), key, token);
+            } else {
+                ResponseEntity<?> committed = release(key, token);
+                response = committed != null ? committed : response;
+            }
+            StoredResponse stored = new StoredResponse(requestHash, response, null);
+            if (response.getStatusCode().is2xxSuccessful()) {
+                completed.put(key, stored);
+            }
+            future.complete(stored);
+            return response;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Dọn các khóa đã hết hạn trên DB
+     */
+    @Scheduled(fixedDelayString = "${account.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                log.info("Purged {} expired idempotency keys", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Failed to purge expired idempotency keys", e);
+        }
+    }
+
+    /**
+     * Giữ khóa, trả về lease_token của lần giữ này; null nếu khóa đang bị giữ hoặc đã xong
+     */
+    private String reserve(String key, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        String token = UUID.randomUUID().toString();
+        try {
+            insert(key, requestHash, token, now);
+            return token;
+        } catch (DuplicateKeyException e) {
+            // Node giữ khóa đã quá hạn lease mà chưa ghi hiệu lực: nhận lại khóa với token mới
+            if (jdbcTemplate.update(RECLAIM_SQL, requestHash, token, Timestamp.valueOf(now.plus(lease)),
+                    Timestamp.valueOf(now), Timestamp.valueOf(now.plus(ttl)), key, Timestamp.valueOf(now)) > 0) {
+                log.warn("Reclaimed idempotency key {} after its lease expired", key);
+                return token;
+            }
+            // Khóa cũ đã hết hạn thì xóa và đăng ký lại
+            if (idempotencyRecordRepository.deleteIfExpired(key, now) == 0) {
+                return null;
+            }
+            try {
+                insert(key, requestHash, token, now);
+                return token;
+            } catch (DuplicateKeyException again) {
+                return null;
+            }
+        }
+    }
+
+    private void insert(String key, String requestHash, String token, LocalDateTime now) {
+        jdbcTemplate.update(INSERT_SQL, key, requestHash, token, Timestamp.valueOf(now.plus(lease)),
+                Timestamp.valueOf(now), Timestamp.valueOf(now.plus(ttl)));
+    }
+
+    /**
+     * Trả khóa sau khi request lỗi. Khóa không còn IN_PROGRESS nghĩa là hiệu lực đã commit cùng Completion:
+     * giữ khóa và trả về response đã lưu (null nếu chưa có, ví dụ APPLIED)
+     */
+    private ResponseEntity<?> release(String key, String token) {
+        if (jdbcTemplate.update(DELETE_SQL, key, token) > 0) {
+            return null;
+        }
+        Optional<IdempotencyRecord> record = idempotencyRecordRepository.findById(key);
+        if (record.isPresent() && "COMPLETED".equals(record.get().getStatus())) {
+            StoredResponse stored = fromRecord(record.get());
+            return ResponseEntity.status(stored.statusCode()).body(fromJson(stored.body()));
+        }
+        return null;
+    }
+
+    private ResponseEntity<?> awaitFirst(CompletableFuture<StoredResponse> first, String requestHash) {
+        try {
+            return replay(first.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS), requestHash);
+        } catch (TimeoutException e) {
+            return ResponseUtils.handlerConflict("Request with this Idempotency-Key is in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for idempotent request", e);
+        } catch (Exception e) {
+            // Request đầu tiên thất bại: trả về cùng lỗi
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return ResponseUtils.handlerException(cause instanceof Exception ex ? ex : e);
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            return ResponseUtils.handlerUnprocessableEntity("Idempotency-Key was already used with a different request");
+        }
+        if (stored.response() != null) {
+            return stored.response();
+        }
+        return ResponseEntity.status(stored.statusCode()).body(fromJson(stored.body()));
+    }
+
+    private StoredResponse fromRecord(IdempotencyRecord record) {
+        return new StoredResponse(record.getRequestHash(), null, record.getResponseBody(), record.getStatusCode());
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize idempotent response", e);
+        }
+    }
+
+    private Object fromJson(String body) {
+        try {
+            return body != null ? objectMapper.readValue(body, Object.class) : null;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read stored idempotent response", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Ghi kết quả của một lần giữ khóa trong transaction nghiệp vụ đang chạy (có thể trên luồng khác,
+     * ví dụ luồng group commit). Lần giữ khóa đã bị request khác nhận lại thì ném lỗi để transaction rollback.
+     * Không có Idempotency-Key thì không làm gì.
+     */
+    public final class Completion {
+        private final String key;
+        private final String token;
+        private final String requestHash;
+
+        private Completion(String key, String token, String requestHash) {
+            this.key = key;
+            this.token = token;
+            this.requestHash = requestHash;
+        }
+
+        /**
+         * Ghi COMPLETED cùng response (chỉ response 2xx)
+         */
+        public void complete(ResponseEntity<?> response) {
+            if (key == null || !response.getStatusCode().is2xxSuccessful()) {
+                return;
+            }
+            if (jdbcTemplate.update(COMPLETE_IN_TRANSACTION_SQL, response.getStatusCode().value(),
+                    toJson(response.getBody()), key, token) == 0) {
+                throw leaseLost();
+            }
+        }
+
+        /**
+         * Ghi APPLIED khi hiệu lực commit trước khi có response; response được lưu khi request kết thúc
+         */
+        public void applied() {
+            if (key != null && jdbcTemplate.update(APPLIED_SQL, key, token) == 0) {
+                throw leaseLost();
+            }
+        }
+
+        private IllegalStateException leaseLost() {
+            log.warn("Idempotency key {} (request {}) was reclaimed before its effect committed", key, requestHash);
+            return new IllegalStateException("Idempotency-Key lease expired and was taken over by another request");
+        }
+    }
+
+    /**
+     * response: bản trong bộ nhớ; body/statusCode: bản đọc lại từ DB
+     */
+    private record StoredResponse(String requestHash, ResponseEntity<?> response, String body, int statusCode) {
+        StoredResponse(String requestHash, ResponseEntity<?> response, String body) {
+            this(requestHash, response, body, response != null ? response.getStatusCode().value() : 200);
+        }
+    }
+}
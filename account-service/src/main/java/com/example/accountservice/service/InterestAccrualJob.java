@@ -0,0 +1,333 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.event.AccountBalanceChanged;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxPublisher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tính lãi cuối ngày cho các tài khoản ACTIVE.
+ * - bank_accounts được chia thành các khoảng id (fromId, toId], mỗi khoảng là một dòng interest_partitions.
+ * - Các khoảng chạy song song trên pool cố định account.interest.workers luồng;
+ *   trong một khoảng, tài khoản được xử lý theo chunk, mỗi chunk một transaction gồm:
+ *   cộng lãi (JDBC batch, tăng event_seq), bút toán INTEREST, tổng hợp theo user,
+ *   event AccountBalanceChanged cho từng tài khoản và mốc lastId.
+ * - Mốc chỉ tiến khi last_id còn đúng giá trị đã đọc, nên một chunk không bao giờ được cộng hai lần;
+ *   khoảng bị bỏ dở (node chết) được nhận lại sau claim-timeout và chạy tiếp từ lastId.
+ * Lãi ngày = số dư * lãi suất năm theo accountType / 365, làm tròn xuống đến cent.
+ */
+@Slf4j
+@Component
+public class InterestAccrualJob {
+
+    private static final String INSERT_RUN_SQL =
+            "INSERT INTO interest_runs (run_date, status, partitions, started_at) VALUES (?, 'RUNNING', ?, ?)";
+    private static final String INSERT_PARTITION_SQL =
+            "INSERT INTO interest_partitions (run_date, partition_no, from_id, to_id, last_id, status, " +
+            "accounts_processed, interest_total) VALUES (?, ?, ?, ?, ?, 'PENDING', 0, 0)";
+    private static final String CLAIM_SQL =
+            "UPDATE interest_partitions SET status = 'RUNNING', claimed_at = ? " +
+            "WHERE id = ? AND (status = 'PENDING' OR (status = 'RUNNING' AND claimed_at < ?))";
+    private static final String SELECT_CHUNK_SQL =
+            "SELECT id, user_id, account_type, balance FROM bank_accounts " +
+            "WHERE id > ? AND id <= ? AND status = 'ACTIVE' AND balance > 0 ORDER BY id LIMIT ?";
+    private static final String CREDIT_SQL =
+            "UPDATE bank_accounts SET balance = balance + ?, event_seq = event_seq + 1, updated_at = ? WHERE id = ?";
+    private static final String CHECKPOINT_SQL =
+            "UPDATE interest_partitions SET last_id = ?, accounts_processed = accounts_processed + ?, " +
+            "interest_total = interest_total + ?, claimed_at = ? WHERE id = ? AND last_id = ?";
+    private static final String COMPLETE_PARTITION_SQL =
+            "UPDATE interest_partitions SET status = 'COMPLETED', last_id = to_id, claimed_at = ? WHERE id = ?";
+    private static final String COMPLETE_RUN_SQL =
+            "UPDATE interest_runs SET status = 'COMPLETED', finished_at = ? WHERE run_date = ? AND status <> 'COMPLETED' " +
+            "AND NOT EXISTS (SELECT 1 FROM interest_partitions p WHERE p.run_date = ? AND p.status <> 'COMPLETED')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BankAccountRepository bankAccountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerService ledgerService;
+    private final UserAccountSummaryService userAccountSummaryService;
+    private final OutboxPublisher outboxPublisher;
+    private final AccountCache accountCache;
+    private final Map<String, BigDecimal> annualRates;
+    private final int partitions;
+    private final int workers;
+    private final int chunkSize;
+    private final Duration claimTimeout;
+    private final Counter accountsCounter;
+    private final AtomicLong lastThroughput = new AtomicLong();
+
+    public InterestAccrualJob(JdbcTemplate jdbcTemplate,
+                              BankAccountRepository bankAccountRepository,
+                              PlatformTransactionManager transactionManager,
+                              LedgerService ledgerService,
+                              UserAccountSummaryService userAccountSummaryService,
+                              OutboxPublisher outboxPublisher,
+                              AccountCache accountCache,
+                              MeterRegistry meterRegistry,
+                              @Value("${account.interest.annual-rates:SAVINGS:0.03}") String annualRates,
+                              @Value("${account.interest.partitions:32}") int partitions,
+                              @Value("${account.interest.workers:4}") int workers,
+                              @Value("${account.interest.chunk-size:1000}") int chunkSize,
+                              @Value("${account.interest.claim-timeout:PT10M}") Duration claimTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bankAccountRepository = bankAccountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerService = ledgerService;
+        this.userAccountSummaryService = userAccountSummaryService;
+        this.outboxPublisher = outboxPublisher;
+        this.accountCache = accountCache;
+        this.annualRates = parseRates(annualRates);
+        this.partitions = partitions;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+        this.claimTimeout = claimTimeout;
+        this.accountsCounter = Counter.builder("account.interest.accounts")
+                .description("Accounts credited by the interest accrual job")
+                .register(meterRegistry);
+        Gauge.builder("account.interest.throughput", lastThroughput, AtomicLong::get)
+                .description("Accounts per second of the last interest accrual run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Chạy cuối ngày cho ngày hôm trước; các lần chạy dở dang trước đó được chạy tiếp trước
+     */
+    @Scheduled(cron = "${account.interest.cron:0 30 0 * * *}")
+    public void runEndOfDay() {
+        try {
+            List<LocalDate> unfinished = jdbcTemplate.queryForList(
+                    "SELECT run_date FROM interest_runs WHERE status <> 'COMPLETED' ORDER BY run_date", LocalDate.class);
+            for (LocalDate runDate : unfinished) {
+                run(runDate);
+            }
+            run(LocalDate.now().minusDays(1));
+        } catch (Exception e) {
+            log.error("Interest accrual failed", e);
+        }
+    }
+
+    /**
+     * Tính lãi cho ngày runDate (gọi lại an toàn: phần đã commit không bị tính lại)
+     */
+    public RunResult run(LocalDate runDate) throws Exception {
+        createRunIfAbsent(runDate);
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<Map<String, Object>> pending = jdbcTemplate.queryForList(
+                "SELECT id, to_id FROM interest_partitions WHERE run_date = ? AND status <> 'COMPLETED' " +
+                "ORDER BY partition_no", Date.valueOf(runDate));
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, pending.size())));
+        long accounts = 0;
+        BigDecimal interest = BigDecimal.ZERO;
+        try {
+            List<Future<PartitionResult>> futures = new ArrayList<>(pending.size());
+            for (Map<String, Object> row : pending) {
+                long id = ((Number) row.get("id")).longValue();
+                long toId = ((Number) row.get("to_id")).longValue();
+                futures.add(pool.submit(() -> processPartition(id, toId)));
+            }
+            for (Future<PartitionResult> future : futures) {
+                PartitionResult result = future.get();
+                accounts += result.accounts();
+                interest = interest.add(result.interest().toBigDecimal());
+            }
+        } catch (Exception e) {
+            // Một khoảng lỗi thì dừng cả lần chạy; các khoảng khác dừng sau chunk hiện tại, chạy lại sẽ tiếp tục từ mốc
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(COMPLETE_RUN_SQL, now, Date.valueOf(runDate), Date.valueOf(runDate));
+
+        long elapsedMs = Math.max(1, Duration.between(startedAt, LocalDateTime.now()).toMillis());
+        long perSecond = accounts * 1000 / elapsedMs;
+        lastThroughput.set(perSecond);
+        log.info("Interest accrual {}: {} accounts, interest {} in {} ms ({} accounts/s)",
+                runDate, accounts, interest, elapsedMs, perSecond);
+        return new RunResult(runDate, accounts, interest, elapsedMs, perSecond);
+    }
+
+    private void createRunIfAbsent(LocalDate runDate) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(INSERT_RUN_SQL, Date.valueOf(runDate), partitions, Timestamp.valueOf(LocalDateTime.now()));
+                Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM bank_accounts");
+                if (bounds.get("min_id") == null) {
+                    return;
+                }
+                // Chia đều [minId - 1, maxId] thành các khoảng (fromId, toId]
+                long low = ((Number) bounds.get("min_id")).longValue() - 1;
+                long high = ((Number) bounds.get("max_id")).longValue();
+                long width = Math.max(1, (high - low + partitions - 1) / partitions);
+                int partitionNo = 0;
+                for (long from = low; from < high; from += width) {
+                    long to = Math.min(high, from + width);
+                    jdbcTemplate.update(INSERT_PARTITION_SQL, Date.valueOf(runDate), partitionNo++, from, to, from);
+                }
+            });
+        } catch (DuplicateKeyException e) {
+            // Đã có (node khác tạo hoặc chạy lại sau sự cố)
+            log.debug("Interest run {} already exists", runDate);
+        }
+    }
+
+    private PartitionResult processPartition(long partitionId, long toId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jdbcTemplate.update(CLAIM_SQL, Timestamp.valueOf(now), partitionId,
+                Timestamp.valueOf(now.minus(claimTimeout))) == 0) {
+            // Node khác đang xử lý khoảng này
+            return new PartitionResult(0, Money.ZERO);
+        }
+
+        long accounts = 0;
+        Money interest = Money.ZERO;
+        Long lastId = jdbcTemplate.queryForObject("SELECT last_id FROM interest_partitions WHERE id = ?",
+                Long.class, partitionId);
+        while (!Thread.currentThread().isInterrupted()) {
+            long from = lastId;
+            ChunkResult chunk = transactionTemplate.execute(status -> processChunk(partitionId, from, toId));
+            if (chunk == null) {
+                return new PartitionResult(accounts, interest);
+            }
+            lastId = chunk.lastId();
+            accounts += chunk.accounts();
+            interest = interest.plus(chunk.interest());
+        }
+        return new PartitionResult(accounts, interest);
+    }
+
+    private ChunkResult processChunk(long partitionId, long afterId, long toId) {
+        List<AccountRow> rows = jdbcTemplate.query(SELECT_CHUNK_SQL,
+                (rs, i) -> new AccountRow(rs.getLong(1), rs.getLong(2), rs.getString(3), Money.of(rs.getBigDecimal(4))),
+                afterId, toId, chunkSize);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (rows.isEmpty()) {
+            jdbcTemplate.update(COMPLETE_PARTITION_SQL, now, partitionId);
+            return null;
+        }
+
+        List<Long> accountIds = new ArrayList<>(rows.size());
+        List<Money> amounts = new ArrayList<>(rows.size());
+        List<LedgerService.Entry> entries = new ArrayList<>(rows.size());
+        Map<Long, Money> byAccount = new HashMap<>();
+        Map<Long, Money> byUser = new HashMap<>();
+        Money total = Money.ZERO;
+        for (AccountRow row : rows) {
+            Money interest = dailyInterest(row.accountType(), row.balance());
+            if (interest.signum() <= 0) {
+                continue;
+            }
+            accountIds.add(row.id());
+            amounts.add(interest);
+            byAccount.put(row.id(), interest);
+            entries.add(new LedgerService.Entry(row.id(), interest, "INTEREST", null));
+            byUser.merge(row.userId(), interest, Money::plus);
+            total = total.plus(interest);
+        }
+
+        if (!accountIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(CREDIT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setBigDecimal(1, amounts.get(i).toBigDecimal());
+                    ps.setTimestamp(2, now);
+                    ps.setLong(3, accountIds.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return accountIds.size();
+                }
+            });
+            ledgerService.record(entries);
+            userAccountSummaryService.applyBalanceDeltas(byUser);
+            // Mỗi tài khoản một event (key là tài khoản), số dư và seq đọc lại sau UPDATE trong cùng transaction
+            for (BankAccountRepository.AccountState state : bankAccountRepository.findStates(accountIds)) {
+                outboxPublisher.publish("account-events", state.getId(), String.valueOf(state.getId()),
+                        AccountBalanceChanged.of(state.getId(), state.getUserId(), state.getEventSeq(),
+                                byAccount.get(state.getId()),
+                                state.getBalance().withCurrency(state.getCurrency()), "INTEREST", null));
+            }
+            accountCache.evictAccounts(accountIds);
+        }
+
+        long lastId = rows.get(rows.size() - 1).id();
+        if (jdbcTemplate.update(CHECKPOINT_SQL, lastId, accountIds.size(), total.toBigDecimal(), now,
+                partitionId, afterId) == 0) {
+            // Mốc đã bị worker khác đẩy đi: hủy chunk này
+            throw new IllegalStateException("Interest partition " + partitionId + " was taken over");
+        }
+        accountsCounter.increment(accountIds.size());
+        return new ChunkResult(lastId, accountIds.size(), total);
+    }
+
+    private Money dailyInterest(String accountType, Money balance) {
+        BigDecimal rate = annualRates.get(accountType);
+        if (rate == null || rate.signum() <= 0) {
+            return Money.ZERO;
+        }
+        long minor = BigDecimal.valueOf(balance.getMinorUnits()).multiply(rate)
+                .divide(BigDecimal.valueOf(365), 0, RoundingMode.DOWN)
+                .longValueExact();
+        return Money.ofMinor(minor, null);
+    }
+
+    private static Map<String, BigDecimal> parseRates(String value) {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (String pair : value.split(",")) {
+            String[] parts = pair.trim().split(":");
+            if (parts.length == 2) {
+                rates.put(parts[0].trim(), new BigDecimal(parts[1].trim()));
+            }
+        }
+        return rates;
+    }
+
+    private record AccountRow(long id, long userId, String accountType, Money balance) {
+    }
+
+    private record ChunkResult(long lastId, int accounts, Money interest) {
+    }
+
+    private record PartitionResult(long accounts, Money interest) {
+    }
+
+    public record RunResult(LocalDate runDate, long accounts, BigDecimal interest, long elapsedMs, long accountsPerSecond) {
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.exception.ResourceNotFoundException;
+import com.example.accountservice.model.BalanceSnapshot;
+import com.example.accountservice.repository.BalanceSnapshotRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import com.example.common.money.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Sổ cái chỉ ghi thêm (append-only) cùng các mốc số dư định kỳ.
+ * Bút toán được ghi trong cùng transaction với biến động số dư trên bank_accounts,
+ * nên với mỗi tài khoản thứ tự id bút toán trùng với thứ tự commit (khóa dòng tài khoản).
+ */
+@Service
+@RequiredArgsConstructor
+public class LedgerService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ledger_postings (account_id, amount, entry_type, counterparty_account_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerPostingRepository ledgerPostingRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+
+    /**
+     * Ghi bút toán bằng JDBC batch trong transaction hiện tại
+     */
+    public void record(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Entry entry = entries.get(i);
+                ps.setLong(1, entry.accountId());
+                ps.setBigDecimal(2, entry.amount().toBigDecimal());
+                ps.setString(3, entry.entryType());
+                if (entry.counterpartyAccountId() != null) {
+                    ps.setLong(4, entry.counterpartyAccountId());
+                } else {
+                    ps.setNull(4, Types.BIGINT);
+                }
+                ps.setTimestamp(5, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    /**
+     * Số dư hiện tại tính từ sổ cái: snapshot mới nhất + các bút toán sau đó
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal currentBalance(Long accountId) {
+        Optional<BalanceSnapshot> latest = balanceSnapshotRepository.findFirstByAccountIdOrderByLastPostingIdDesc(accountId);
+        if (latest.isEmpty()) {
+            return openingBalance(accountId).balance();
+        }
+        Object[] tail = ledgerPostingRepository.sumAndMaxIdAfter(accountId, latest.get().getLastPostingId()).get(0);
+        return latest.get().getBalance().add((BigDecimal) tail[0]);
+    }
+
+    /**
+     * Số dư tại một thời điểm bất kỳ
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal balanceAsOf(Long accountId, LocalDateTime asOf) {
+        // Mốc trước thời điểm asOf: cộng thêm bút toán phát sinh đến asOf
+        Optional<BalanceSnapshot> before = balanceSnapshotRepository
+                .findFirstByAccountIdAndCreatedAtLessThanEqualOrderByCreatedAtDesc(accountId, asOf);
+        if (before.isPresent()) {
+            BalanceSnapshot snapshot = before.get();
+            return snapshot.getBalance().add(
+                    ledgerPostingRepository.sumAfterIdUntil(accountId, snapshot.getLastPostingId(), asOf));
+        }
+
+        // Chỉ có mốc sau asOf (hoặc chưa có mốc): trừ ngược các bút toán phát sinh sau asOf
+        Opening reference = balanceSnapshotRepository.findFirstByAccountIdOrderByCreatedAtAsc(accountId)
+                .map(s -> new Opening(s.getBalance(), s.getLastPostingId()))
+                .orElseGet(() -> openingBalance(accountId));
+        return reference.balance().subtract(
+                ledgerPostingRepository.sumUpToIdAfter(accountId, reference.lastPostingId(), asOf));
+    }
+
+    /**
+     * Gộp các bút toán mới của tài khoản thành một snapshot, trả về true nếu có snapshot mới
+     */
+    @Transactional
+    public boolean snapshot(Long accountId) {
+        Optional<BalanceSnapshot> latest = balanceSnapshotRepository.findFirstByAccountIdOrderByLastPostingIdDesc(accountId);
+        BalanceSnapshot next = new BalanceSnapshot();
+        next.setAccountId(accountId);
+        next.setCreatedAt(LocalDateTime.now());
+
+        if (latest.isEmpty()) {
+            // Mốc mở đầu lấy từ số dư trên bank_accounts (bao gồm các bút toán đến lastPostingId)
+            Opening opening = openingBalance(accountId);
+            next.setBalance(opening.balance());
+            next.setLastPostingId(opening.lastPostingId());
+        } else {
+            Object[] tail = ledgerPostingRepository.sumAndMaxIdAfter(accountId, latest.get().getLastPostingId()).get(0);
+            if (tail[1] == null) {
+                return false;
+            }
+            next.setBalance(latest.get().getBalance().add((BigDecimal) tail[0]));
+            next.setLastPostingId(((Number) tail[1]).longValue());
+        }
+        balanceSnapshotRepository.save(next);
+        return true;
+    }
+
+    private Opening openingBalance(Long accountId) {
+        List<Object[]> rows = ledgerPostingRepository.findBalanceAndLastPostingId(accountId);
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+        Object[] row = rows.get(0);
+        return new Opening(((Money) row[0]).toBigDecimal(), ((Number) row[1]).longValue());
+    }
+
+    private record Opening(BigDecimal balance, Long lastPostingId) {
+    }
+
+    public record Entry(Long accountId, Money amount, String entryType, Long counterpartyAccountId) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.repository.BalanceSnapshotRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Tác vụ nền gộp bút toán thành các mốc số dư.
+ * Chỉ xét tài khoản có bút toán kể từ lần chạy trước (trừ đi khoảng lag an toàn).
+ * Mốc lần chạy nằm trong ledger_checkpoints nên restart hoặc node khác chạy tiếp đúng chỗ;
+ * mỗi lần chỉ một node được nhận chạy, lần nhận bị bỏ dở quá claim-timeout thì node khác nhận lại.
+ */
+@Slf4j
+@Component
+public class LedgerSnapshotter {
+
+    static final String CHECKPOINT = "balance-snapshots";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ledger_checkpoints (name, last_run_started_at) VALUES (?, ?)";
+    private static final String CLAIM_SQL =
+            "UPDATE ledger_checkpoints SET claimed_at = ? WHERE name = ? AND (claimed_at IS NULL OR claimed_at < ?)";
+    private static final String COMPLETE_SQL =
+            "UPDATE ledger_checkpoints SET last_run_started_at = ?, claimed_at = NULL WHERE name = ?";
+    private static final String RELEASE_SQL =
+            "UPDATE ledger_checkpoints SET claimed_at = NULL WHERE name = ?";
+
+    private final LedgerService ledgerService;
+    private final LedgerPostingRepository ledgerPostingRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration snapshotLag;
+    private final Duration claimTimeout;
+
+    public LedgerSnapshotter(LedgerService ledgerService,
+                             LedgerPostingRepository ledgerPostingRepository,
+                             BalanceSnapshotRepository balanceSnapshotRepository,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${account.ledger.snapshot-lag:PT1M}") Duration snapshotLag,
+                             @Value("${account.ledger.snapshot-claim-timeout:PT10M}") Duration claimTimeout) {
+        this.ledgerService = ledgerService;
+        this.ledgerPostingRepository = ledgerPostingRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotLag = snapshotLag;
+        this.claimTimeout = claimTimeout;
+    }
+
+    @Scheduled(fixedDelayString = "${account.ledger.snapshot-interval-ms:60000}",
+               initialDelayString = "${account.ledger.snapshot-interval-ms:60000}")
+    public void snapshotActiveAccounts() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            createCheckpointIfAbsent();
+            if (jdbcTemplate.update(CLAIM_SQL, Timestamp.valueOf(startedAt), CHECKPOINT,
+                    Timestamp.valueOf(startedAt.minus(claimTimeout))) == 0) {
+                // Node khác đang chạy
+                return;
+            }
+        } catch (Exception e) {
+            log.error("Ledger snapshot could not be claimed", e);
+            return;
+        }
+
+        try {
+            LocalDateTime since = jdbcTemplate.queryForObject(
+                    "SELECT last_run_started_at FROM ledger_checkpoints WHERE name = ?", LocalDateTime.class, CHECKPOINT);
+            List<Long> accountIds = ledgerPostingRepository.findAccountIdsWithPostingsSince(since.minus(snapshotLag));
+            int created = 0;
+            for (Long accountId : accountIds) {
+                if (ledgerService.snapshot(accountId)) {
+                    created++;
+                }
+            }
+            jdbcTemplate.update(COMPLETE_SQL, Timestamp.valueOf(startedAt), CHECKPOINT);
+            if (created > 0) {
+                log.info("Ledger snapshot: {} snapshots for {} active accounts in {} ms",
+                        created, accountIds.size(), Duration.between(startedAt, LocalDateTime.now()).toMillis());
+            }
+        } catch (Exception e) {
+            log.error("Ledger snapshot failed", e);
+            jdbcTemplate.update(RELEASE_SQL, CHECKPOINT);
+        }
+    }
+
+    /**
+     * Lần chạy đầu tiên (bảng trống): bắt đầu từ snapshot mới nhất đã có, chưa có thì từ đầu sổ cái
+     */
+    private void createCheckpointIfAbsent() {
+        Integer exists = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ledger_checkpoints WHERE name = ?", Integer.class, CHECKPOINT);
+        if (exists != null && exists > 0) {
+            return;
+        }
+        LocalDateTime since = balanceSnapshotRepository.findLatestCreatedAt().orElse(LocalDateTime.of(1970, 1, 1, 0, 0));
+        try {
+            jdbcTemplate.update(INSERT_SQL, CHECKPOINT, Timestamp.valueOf(since));
+        } catch (DuplicateKeyException e) {
+            // Node khác vừa tạo
+            log.debug("Ledger checkpoint {} already exists", CHECKPOINT);
+        }
+    }
+}
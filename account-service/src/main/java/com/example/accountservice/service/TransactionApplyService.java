@@ -0,0 +1,135 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.dto.ApplyTransactionDTO;
+import com.example.accountservice.dto.ApplyTransactionResultDTO;
+import com.example.accountservice.event.AccountBalanceChanged;
+import com.example.accountservice.model.AppliedTransaction;
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.AppliedTransactionRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxPublisher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Áp dụng lô giao dịch PENDING của transaction-service lên số dư, theo đúng thứ tự gửi lên.
+ * Mỗi giao dịch chạy trong transaction riêng của AccountTransferEngine; dòng applied_transactions
+ * được ghi trong cùng transaction đó nên một transaction id chỉ làm biến động số dư đúng một lần.
+ * Giao dịch phải có đủ hai tài khoản, và tài khoản gửi phải ACTIVE và thuộc user đã tạo giao dịch: kiểm tra lại
+ * trong transaction trừ tiền (sau khi đã khóa dòng) chứ không tin vào kiểm tra quyền của transaction-service.
+ * Giao dịch bị từ chối (không đủ số dư, không có tài khoản...) cũng được ghi lại để retry trả cùng kết quả.
+ * Lỗi DB/transaction (deadlock, lock wait timeout, mất kết nối) không phải quyết định nghiệp vụ:
+ * không ghi REJECTED mà ném lên để transaction-service gửi lại lô.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionApplyService {
+
+    public static final String APPLIED = "APPLIED";
+    public static final String REJECTED = "REJECTED";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO applied_transactions (transaction_id, status, message, applied_at) VALUES (?, ?, ?, ?)";
+
+    private final AccountTransferEngine accountTransferEngine;
+    private final AppliedTransactionRepository appliedTransactionRepository;
+    private final OutboxPublisher outboxPublisher;
+    private final AccountCache accountCache;
+    private final VelocityLimiter velocityLimiter;
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<ApplyTransactionResultDTO> apply(List<ApplyTransactionDTO> items) {
+        Map<Long, AppliedTransaction> previous = appliedTransactionRepository
+                .findAllById(items.stream().map(ApplyTransactionDTO::getTransactionId).toList())
+                .stream()
+                .collect(Collectors.toMap(AppliedTransaction::getTransactionId, Function.identity()));
+
+        List<ApplyTransactionResultDTO> results = new ArrayList<>(items.size());
+        for (ApplyTransactionDTO item : items) {
+            AppliedTransaction done = previous.get(item.getTransactionId());
+            results.add(done != null ? toResult(done) : applyOne(item));
+        }
+        return results;
+    }
+
+    private ApplyTransactionResultDTO applyOne(ApplyTransactionDTO item) {
+        Long transactionId = item.getTransactionId();
+        try {
+            Money amount = Money.of(item.getAmount(), item.getCurrency());
+            if (item.getFromAccountId() == null || item.getToAccountId() == null) {
+                throw new IllegalArgumentException("Transaction must have both accounts");
+            }
+            AccountTransferEngine.TransferResult result = accountTransferEngine.transfer(
+                    item.getFromAccountId(), item.getToAccountId(), amount, transfer -> {
+                        checkSource(transfer.fromAccount(), item.getUserId());
+                        record(transactionId, APPLIED, null);
+                        publishBalanceChanged(transfer.fromAccount(), amount.negate(), "TRANSFER_OUT", item.getToAccountId());
+                        publishBalanceChanged(transfer.toAccount(), amount, "TRANSFER_IN", item.getFromAccountId());
+                    });
+            // Đã qua giới hạn tần suất ở transaction-service, chỉ ghi nhận để chuyển khoản trực tiếp tính cả phần này
+            velocityLimiter.record(result.fromAccount(), amount);
+            evict(item);
+            return new ApplyTransactionResultDTO(transactionId, APPLIED, null);
+        } catch (DataIntegrityViolationException e) {
+            // Node khác vừa áp dụng cùng giao dịch: transaction này đã rollback, trả kết quả đã lưu
+            return appliedTransactionRepository.findById(transactionId).map(this::toResult).orElseThrow(() -> e);
+        } catch (DataAccessException | TransactionException e) {
+            // Lỗi tạm thời: giao dịch chưa được quyết định, lô sẽ được gửi lại
+            log.warn("Transaction {} not applied, will be retried: {}", transactionId, e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            log.info("Rejected transaction {}: {}", transactionId, e.getMessage());
+            try {
+                record(transactionId, REJECTED, e.getMessage());
+            } catch (DataIntegrityViolationException duplicate) {
+                return appliedTransactionRepository.findById(transactionId).map(this::toResult).orElseThrow(() -> duplicate);
+            }
+            return new ApplyTransactionResultDTO(transactionId, REJECTED, e.getMessage());
+        }
+    }
+
+    /**
+     * Ném lỗi (rollback phần đã trừ) nếu tài khoản gửi không ACTIVE hoặc không thuộc user tạo giao dịch;
+     * giao dịch tạo trước khi có created_by (userId null) cũng bị từ chối
+     */
+    private static void checkSource(BankAccount from, Long userId) {
+        if (!"ACTIVE".equals(from.getStatus())) {
+            throw new RuntimeException("Source account is not active");
+        }
+        if (userId == null || !userId.equals(from.getUserId())) {
+            throw new RuntimeException("Source account is not owned by the requesting user");
+        }
+    }
+
+    private void record(Long transactionId, String status, String message) {
+        jdbcTemplate.update(INSERT_SQL, transactionId, status, message, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private void publishBalanceChanged(BankAccount account, Money delta, String reason, Long counterpartyAccountId) {
+        outboxPublisher.publish("account-events", account.getId(), String.valueOf(account.getId()),
+                AccountBalanceChanged.of(account, delta, reason, counterpartyAccountId));
+    }
+
+    private void evict(ApplyTransactionDTO item) {
+        accountCache.evictAccount(item.getFromAccountId());
+        accountCache.evictAccount(item.getToAccountId());
+    }
+
+    private ApplyTransactionResultDTO toResult(AppliedTransaction applied) {
+        return new ApplyTransactionResultDTO(applied.getTransactionId(), applied.getStatus(), applied.getMessage());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.accountservice.service;
+
+import com.example.common.internal.InternalRequestFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Gọi endpoint nội bộ của transaction-service (mang internal.auth.token).
+ * Dùng khi dựng lại thống kê user: số giao dịch không thể suy ra từ bank_accounts.
+ */
+@Component
+public class TransactionServiceClient {
+
+    private final RestClient restClient;
+
+    public TransactionServiceClient(RestClient.Builder builder,
+                                    @Value("${transaction-service.url:http://transaction-service}") String baseUrl,
+                                    @Value("${transaction-service.timeout:PT5S}") Duration timeout,
+                                    @Value("${internal.auth.token:}") String internalToken) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = builder.baseUrl(baseUrl)
+                .requestFactory(requestFactory)
+                .defaultHeader(InternalRequestFilter.HEADER, internalToken)
+                .build();
+    }
+
+    /**
+     * Số giao dịch có tham gia của các tài khoản
+     */
+    public long countTransactions(Collection<Long> accountIds) {
+        Long count = restClient.get()
+                .uri(uri -> uri.path("/transactions/internal/count").queryParam("accountIds", accountIds).build())
+                .retrieve()
+                .body(Long.class);
+        if (count == null) {
+            throw new IllegalStateException("transaction-service returned no transaction count");
+        }
+        return count;
+    }
+}
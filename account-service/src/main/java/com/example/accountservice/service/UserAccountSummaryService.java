@@ -0,0 +1,186 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.UserAccountSummary;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.UserAccountSummaryRepository;
+import com.example.common.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToLongFunction;
+
+/**
+ * Tổng hợp số dư / số tài khoản / số giao dịch theo user.
+ * Biến động số dư được cộng trong cùng transaction vào một shard ngẫu nhiên (user_balance_shards)
+ * thay vì một dòng duy nhất của user, nên giao dịch đồng thời của cùng user hiếm khi chờ khóa nhau.
+ * Thống kê đọc dòng tổng hợp theo khóa chính cộng tối đa balance-shards dòng shard.
+ * Dòng tổng hợp chưa tồn tại (user cũ) được dựng lại từ bank_accounts ở lần đọc đầu tiên,
+ * số giao dịch lấy từ transaction-service.
+ */
+@Slf4j
+@Service
+public class UserAccountSummaryService {
+
+    private static final String ADD_SHARD_SQL =
+            "UPDATE user_balance_shards SET balance_delta = balance_delta + ? WHERE user_id = ? AND shard = ?";
+    private static final String INSERT_SHARD_SQL =
+            "INSERT INTO user_balance_shards (user_id, shard, balance_delta) VALUES (?, ?, ?)";
+    private static final String SUM_SHARDS_SQL =
+            "SELECT COALESCE(SUM(balance_delta), 0) FROM user_balance_shards WHERE user_id = ?";
+
+    private final UserAccountSummaryRepository userAccountSummaryRepository;
+    private final BankAccountRepository bankAccountRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int balanceShards;
+
+    public UserAccountSummaryService(UserAccountSummaryRepository userAccountSummaryRepository,
+                                     BankAccountRepository bankAccountRepository,
+                                     JdbcTemplate jdbcTemplate,
+                                     @Value("${account.summary.balance-shards:16}") int balanceShards) {
+        this.userAccountSummaryRepository = userAccountSummaryRepository;
+        this.bankAccountRepository = bankAccountRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.balanceShards = balanceShards;
+    }
+
+    /**
+     * Cộng biến động số dư theo user trong transaction hiện tại, mỗi user vào một shard ngẫu nhiên.
+     * Cập nhật theo user id tăng dần để thứ tự khóa dòng nhất quán giữa các transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyBalanceDeltas(Map<Long, Money> deltasByUser) {
+        for (Map.Entry<Long, Money> entry : new TreeMap<>(deltasByUser).entrySet()) {
+            if (entry.getValue().signum() != 0) {
+                addToShard(entry.getKey(), ThreadLocalRandom.current().nextInt(balanceShards),
+                        entry.getValue().toBigDecimal());
+            }
+        }
+    }
+
+    /**
+     * Cộng biến động cho các tài khoản (tra user của tài khoản bằng một câu truy vấn)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyAccountDeltas(Map<Long, Money> deltasByAccount) {
+        if (deltasByAccount.isEmpty()) {
+            return;
+        }
+        Map<Long, Money> deltasByUser = new TreeMap<>();
+        for (BankAccountRepository.AccountOwner owner : bankAccountRepository.findOwners(deltasByAccount.keySet())) {
+            deltasByUser.merge(owner.getUserId(), deltasByAccount.get(owner.getId()), Money::plus);
+        }
+        applyBalanceDeltas(deltasByUser);
+    }
+
+    /**
+     * Ghi nhận tài khoản mới; dòng chưa có thì để lần đọc đầu tiên dựng lại (đã bao gồm tài khoản vừa tạo)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void accountCreated(Long userId) {
+        userAccountSummaryRepository.incrementAccountCount(userId);
+    }
+
+    /**
+     * Tăng số giao dịch cho các user tham gia (mỗi user một lần)
+     */
+    @Transactional
+    public void transactionRecorded(Collection<Long> accountIds) {
+        TreeSet<Long> userIds = new TreeSet<>();
+        for (BankAccountRepository.AccountOwner owner : bankAccountRepository.findOwners(accountIds)) {
+            userIds.add(owner.getUserId());
+        }
+        for (Long userId : userIds) {
+            userAccountSummaryRepository.incrementTransactionCount(userId);
+        }
+    }
+
+    /**
+     * Như transactionRecorded cho nhiều giao dịch (event transactions_created): tra chủ tài khoản một lần,
+     * mỗi user một câu UPDATE cộng số giao dịch có tham gia
+     */
+    @Transactional
+    public void transactionsRecorded(List<? extends Collection<Long>> participants) {
+        Set<Long> accountIds = new HashSet<>();
+        participants.forEach(accountIds::addAll);
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> owners = new HashMap<>();
+        for (BankAccountRepository.AccountOwner owner : bankAccountRepository.findOwners(accountIds)) {
+            owners.put(owner.getId(), owner.getUserId());
+        }
+        TreeMap<Long, Long> counts = new TreeMap<>();
+        for (Collection<Long> transaction : participants) {
+            transaction.stream().map(owners::get).filter(Objects::nonNull).distinct()
+                    .forEach(userId -> counts.merge(userId, 1L, Long::sum));
+        }
+        counts.forEach(userAccountSummaryRepository::addTransactionCount);
+    }
+
+    /**
+     * Đọc tổng hợp của user (dòng tổng hợp + các shard).
+     * Chưa có dòng thì tổng hợp trên DB, đếm giao dịch qua transactionCounter (theo danh sách tài khoản)
+     * rồi lưu lại cho lần sau; không đếm được thì trả kết quả tạm, không lưu.
+     */
+    public UserAccountSummary getSummary(Long userId, ToLongFunction<List<Long>> transactionCounter) {
+        Optional<UserAccountSummary> summary = userAccountSummaryRepository.findById(userId);
+        if (summary.isPresent()) {
+            UserAccountSummary base = summary.get();
+            return new UserAccountSummary(userId, base.getTotalBalance().add(shardTotal(userId)),
+                    base.getAccountCount(), base.getTransactionCount(), base.getUpdatedAt());
+        }
+
+        BankAccountRepository.AccountTotals totals = bankAccountRepository.aggregateByUserId(userId);
+        if (totals.getAccountCount() == 0) {
+            return new UserAccountSummary(userId, totals.getTotalBalance(), 0L, 0L, null);
+        }
+        long transactionCount;
+        try {
+            transactionCount = transactionCounter.applyAsLong(bankAccountRepository.findIdsByUserId(userId));
+        } catch (Exception e) {
+            log.warn("Cannot count transactions of user {}, summary not stored yet: {}", userId, e.getMessage());
+            return new UserAccountSummary(userId, totals.getTotalBalance(), totals.getAccountCount(), 0L, null);
+        }
+        try {
+            userAccountSummaryRepository.insertFromAccounts(userId, transactionCount);
+        } catch (DataIntegrityViolationException e) {
+            // Node khác vừa dựng xong
+            log.debug("User account summary for {} already exists", userId);
+        }
+        return new UserAccountSummary(userId, totals.getTotalBalance(), totals.getAccountCount(), transactionCount, null);
+    }
+
+    private void addToShard(Long userId, int shard, BigDecimal delta) {
+        if (jdbcTemplate.update(ADD_SHARD_SQL, delta, userId, shard) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SHARD_SQL, userId, shard, delta);
+        } catch (DuplicateKeyException e) {
+            // Transaction khác vừa tạo shard này
+            jdbcTemplate.update(ADD_SHARD_SQL, delta, userId, shard);
+        }
+    }
+
+    private BigDecimal shardTotal(Long userId) {
+        return jdbcTemplate.queryForObject(SUM_SHARDS_SQL, BigDecimal.class, userId);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.common.money.Money;
+import com.example.common.velocity.VelocityTracker.Reservation;
+import com.example.common.velocity.VelocityTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giới hạn tần suất chuyển tiền đi (số lần và tổng tiền mỗi phút/giờ/ngày) theo tài khoản gửi và theo user sở hữu,
+ * kiểm tra trong bộ nhớ trước khi chuyển qua VelocityTracker của common-infra, không thêm truy vấn DB.
+ * - Cấu hình ở account.velocity.*; mặc định tắt. Bộ đếm là của từng node nên giới hạn cấu hình là của cả cụm
+ *   và được chia cho account.velocity.replicas.
+ * - Giao dịch của transaction-service áp dụng qua TransactionApplyService chỉ được ghi nhận (đã kiểm tra bên đó),
+ *   nên cửa sổ phản ánh mọi khoản TRANSFER_OUT giống như khi dựng lại từ ledger_postings lúc khởi động.
+ */
+@Slf4j
+@Component
+public class VelocityLimiter implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VelocityTracker tracker;
+    private final boolean enabled;
+    private final int fetchSize;
+
+    public VelocityLimiter(JdbcTemplate jdbcTemplate,
+                           Environment environment,
+                           MeterRegistry meterRegistry,
+                           @Value("${account.velocity.enabled:false}") boolean enabled,
+                           @Value("${account.velocity.rebuild-fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tracker = new VelocityTracker(environment, meterRegistry, "account.velocity", "transfers");
+        this.enabled = enabled;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Cộng lần chuyển từ tài khoản from vào các cửa sổ, vượt giới hạn thì ném lỗi và không cộng.
+     * Chuyển tiền thất bại sau đó thì người gọi release() phần đã cộng.
+     */
+    public Reservation acquire(BankAccount from, Money amount) {
+        if (!enabled) {
+            return Reservation.NONE;
+        }
+        return acquire(from.getId(), from.getUserId(), from.getAccountType(), amount.getMinorUnits(),
+                System.currentTimeMillis());
+    }
+
+    Reservation acquire(Long accountId, Long userId, String accountType, long amount, long nowMillis) {
+        return tracker.acquire(accountId, new VelocityTracker.Owner(userId, accountType), amount, nowMillis);
+    }
+
+    /**
+     * Ghi nhận lần chuyển đã thực hiện mà không kiểm tra giới hạn
+     */
+    public void record(BankAccount from, Money amount) {
+        if (!enabled) {
+            return;
+        }
+        VelocityTracker.Owner owner = new VelocityTracker.Owner(from.getUserId(), from.getAccountType());
+        long now = System.currentTimeMillis();
+        tracker.record(from.getId(), id -> owner, now, amount.getMinorUnits(), now);
+    }
+
+    /**
+     * Dọn tài khoản/user không chuyển tiền trong cửa sổ dài nhất
+     */
+    @Scheduled(fixedDelayString = "${account.velocity.evict-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = tracker.evictIdle(System.currentTimeMillis());
+        if (evicted > 0) {
+            log.debug("Evicted {} idle velocity windows", evicted);
+        }
+    }
+
+    /**
+     * Dựng lại cửa sổ từ bút toán TRANSFER_OUT trong cửa sổ dài nhất (index idx_ledger_created_at)
+     */
+    void rebuild() {
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minus(VelocityTracker.LONGEST);
+        AtomicLong rows = new AtomicLong();
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT p.account_id, p.amount, p.created_at, a.user_id, a.account_type FROM ledger_postings p " +
+                                "JOIN bank_accounts a ON a.id = p.account_id " +
+                                "WHERE p.created_at >= ? AND p.entry_type = 'TRANSFER_OUT'",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setTimestamp(1, Timestamp.valueOf(since));
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                long amount = Money.of(rs.getBigDecimal(2).negate(), null).getMinorUnits();
+                long userId = rs.getLong(4);
+                VelocityTracker.Owner owner = new VelocityTracker.Owner(rs.wasNull() ? null : userId, rs.getString(5));
+                tracker.record(rs.getLong(1), id -> owner, rs.getTimestamp(3).getTime(), amount, now);
+                rows.incrementAndGet();
+            });
+            log.info("Rebuilt velocity windows from {} transfers ({} accounts, {} users) in {} ms",
+                    rows.get(), tracker.trackedAccounts(), tracker.trackedUsers(), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Velocity window rebuild failed: {}", e.getMessage());
+        }
+    }
+}
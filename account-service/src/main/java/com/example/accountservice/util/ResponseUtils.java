@@ -88,4 +88,22 @@ public class ResponseUtils {
         response.put("error", "Unauthorized");
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
     }
+
+    public static ResponseEntity<?> handlerConflict(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("data", null);
+        response.put("message", message);
+        response.put("error", "Conflict");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    public static ResponseEntity<?> handlerUnprocessableEntity(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("data", null);
+        response.put("message", message);
+        response.put("error", "UnprocessableEntity");
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(response);
+    }
 }
@@ -0,0 +1,90 @@
+package com.example.accountservice.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bộ khóa phân dải (striped lock) theo khóa kiểu long.
+ * Mỗi id được ánh xạ cố định vào một dải, nhiều id có thể dùng chung một dải.
+ * Khi cần khóa hai id, các dải luôn được lấy theo thứ tự chỉ số tăng dần
+ * để hai luồng A→B và B→A không thể deadlock lẫn nhau.
+ */
+public class StripedLock {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedLock(int minStripes) {
+        if (minStripes <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(minStripes - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    public int indexOf(long key) {
+        // Trộn bit để các id liên tiếp rơi vào các dải khác nhau
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Khóa một id, trả về handle dùng để mở khóa
+     */
+    public Handle lock(long key) {
+        ReentrantLock lock = stripes[indexOf(key)];
+        lock.lock();
+        return new Handle(lock, null);
+    }
+
+    /**
+     * Khóa hai id theo thứ tự dải xác định
+     */
+    public Handle lock(long first, long second) {
+        int a = indexOf(first);
+        int b = indexOf(second);
+        if (a == b) {
+            ReentrantLock lock = stripes[a];
+            lock.lock();
+            return new Handle(lock, null);
+        }
+        ReentrantLock lower = stripes[Math.min(a, b)];
+        ReentrantLock upper = stripes[Math.max(a, b)];
+        lower.lock();
+        try {
+            upper.lock();
+        } catch (RuntimeException e) {
+            lower.unlock();
+            throw e;
+        }
+        return new Handle(lower, upper);
+    }
+
+    public static final class Handle implements AutoCloseable {
+        private final ReentrantLock first;
+        private final ReentrantLock second;
+
+        private Handle(ReentrantLock first, ReentrantLock second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void close() {
+            if (second != null) {
+                second.unlock();
+            }
+            first.unlock();
+        }
+    }
+}
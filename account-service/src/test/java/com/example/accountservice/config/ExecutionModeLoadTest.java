@@ -0,0 +1,158 @@
+package com.example.accountservice.config;
+
+import com.example.common.bulkhead.ConnectionPoolBulkhead;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh platform thread (200 luồng như Tomcat mặc định) và mỗi request một luồng với cùng một pool 10 kết nối:
+ * một đợt request đến cùng lúc, mỗi request giữ kết nối trong một truy vấn chậm.
+ * Mỗi request một luồng là virtual thread trên Java 21+, trên Java 17 là platform thread không giới hạn số luồng;
+ * cả hai đều dồn mọi request xuống Hikari cùng lúc, thứ bulkhead phải chặn.
+ */
+@Slf4j
+class ExecutionModeLoadTest {
+
+    private static final int POOL_SIZE = 10;
+    private static final int REQUESTS = 4_000;
+    private static final int QUERY_MILLIS = 2;
+
+    private HikariDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:load-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(POOL_SIZE);
+        dataSource.setConnectionTimeout(1_000);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS SLOW_QUERY FOR 'java.lang.Thread.sleep(long)'");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void platformThreads() throws InterruptedException {
+        ExecutorService tomcatLike = Executors.newFixedThreadPool(200);
+        try {
+            assertThat(run(tomcatLike::execute, bulkhead()).completed()).isEqualTo(REQUESTS);
+        } finally {
+            tomcatLike.shutdownNow();
+        }
+    }
+
+    @Test
+    void threadPerRequestIsKeptOffThePoolByTheBulkhead() throws InterruptedException {
+        Result bounded = run(threadPerRequest()::execute, bulkhead());
+
+        assertThat(bounded.completed()).isEqualTo(REQUESTS);
+        assertThat(bounded.failed()).isZero();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void compareExecutionModes() throws InterruptedException {
+        ExecutorService tomcatLike = Executors.newFixedThreadPool(200);
+        try {
+            report("platform (200 threads)", run(tomcatLike::execute, bulkhead()));
+        } finally {
+            tomcatLike.shutdownNow();
+        }
+        SimpleAsyncTaskExecutor perRequest = threadPerRequest();
+        report("thread per request, no bulkhead", run(perRequest::execute, null));
+        Result bounded = run(perRequest::execute, bulkhead());
+        report("thread per request + bulkhead", bounded);
+
+        assertThat(bounded.completed()).isEqualTo(REQUESTS);
+    }
+
+    private static SimpleAsyncTaskExecutor threadPerRequest() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("load-");
+        executor.setVirtualThreads(Runtime.version().feature() >= 21);
+        return executor;
+    }
+
+    private ConnectionPoolBulkhead bulkhead() {
+        return new ConnectionPoolBulkhead(new SimpleMeterRegistry(), POOL_SIZE, 2, Duration.ofSeconds(10));
+    }
+
+    private Result run(Consumer<Runnable> executor, ConnectionPoolBulkhead bulkhead) throws InterruptedException {
+        long[] latencies = new long[REQUESTS];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        long began = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            int request = i;
+            long submitted = System.nanoTime();
+            executor.accept(() -> {
+                try {
+                    if (handle(bulkhead)) {
+                        completed.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                } finally {
+                    latencies[request] = System.nanoTime() - submitted;
+                    done.countDown();
+                }
+            });
+        }
+        assertThat(done.await(2, TimeUnit.MINUTES)).isTrue();
+        long elapsed = System.nanoTime() - began;
+        Arrays.sort(latencies);
+        return new Result(completed.get(), failed.get(), REQUESTS / (elapsed / 1e9),
+                latencies[REQUESTS / 2] / 1e6, latencies[REQUESTS * 99 / 100] / 1e6);
+    }
+
+    private boolean handle(ConnectionPoolBulkhead bulkhead) {
+        try {
+            if (bulkhead != null && !bulkhead.tryAcquire()) {
+                return false;
+            }
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("CALL SLOW_QUERY(" + QUERY_MILLIS + ")");
+                return true;
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+            }
+        } catch (Exception e) {
+            // Hết connection-timeout của Hikari hoặc bị ngắt
+            return false;
+        }
+    }
+
+    private static void report(String mode, Result result) {
+        log.info("{}: {} ok, {} failed, {} req/s, p50 {} ms, p99 {} ms", mode, result.completed(), result.failed(),
+                Math.round(result.throughput()), String.format("%.1f", result.p50Millis()),
+                String.format("%.1f", result.p99Millis()));
+    }
+
+    private record Result(int completed, int failed, double throughput, double p50Millis, double p99Millis) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.accountservice.event;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.common.money.Money;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class AccountEventEncodingTest {
+
+    private static final int EVENTS = 200_000;
+
+    private final JsonSerializer<Object> serializer = new JsonSerializer<>();
+
+    @Test
+    void balanceEventCarriesOnlyDeltaAndOrdering() {
+        BankAccount account = account(42L, 7L);
+        AccountBalanceChanged event = AccountBalanceChanged.of(account, Money.of(new BigDecimal("-12.50"), "USD"),
+                "WITHDRAW", null);
+
+        byte[] bytes = serializer.serialize("account-events", event);
+        JsonDeserializer<AccountBalanceChanged> deserializer = new JsonDeserializer<>(AccountBalanceChanged.class, false);
+        AccountBalanceChanged decoded = deserializer.deserialize("account-events", bytes);
+
+        assertThat(new String(bytes)).contains("\"type\":\"AccountBalanceChanged\"").doesNotContain("accountNumber");
+        assertThat(decoded.accountId()).isEqualTo(42L);
+        assertThat(decoded.seq()).isEqualTo(7L);
+        assertThat(decoded.delta().toBigDecimal()).isEqualByComparingTo("-12.50");
+        assertThat(decoded.balance().toBigDecimal()).isEqualByComparingTo("987.50");
+        assertThat(decoded.counterpartyAccountId()).isNull();
+    }
+
+    @Test
+    void statusEventCarriesOnlyChangedFields() {
+        BankAccount account = account(42L, 8L);
+        account.setStatus("FROZEN");
+
+        AccountStatusChanged event = AccountStatusChanged.of(account, 8L, "ACTIVE", "SAVINGS");
+        String json = new String(serializer.serialize("account-events", event));
+
+        assertThat(json).contains("\"status\":\"FROZEN\"", "\"previousStatus\":\"ACTIVE\"").doesNotContain("accountType");
+    }
+
+    @Test
+    void batchCreditEventIsKeyedAndSequencedByTheCreditedAccount() {
+        AccountBalanceChanged event = AccountBalanceChanged.of(43L, 9L, 3L, Money.of(new BigDecimal("0.03"), "USD"),
+                Money.of(new BigDecimal("365.03"), "USD"), "INTEREST", null);
+        byte[] bytes = serializer.serialize("account-events", event);
+
+        assertThat(bytes.length).isLessThan(serializer.serialize("account-events", account(43L, 3L)).length);
+        assertThat(new String(bytes)).contains("\"accountId\":43", "\"seq\":3", "\"reason\":\"INTEREST\"");
+    }
+
+    /**
+     * So sánh số byte mỗi event và thông lượng producer giữa snapshot BankAccount và event delta
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkAgainstFullSnapshot() {
+        IntFunction<Object> snapshot = i -> account(i, i);
+        IntFunction<Object> delta = i -> AccountBalanceChanged.of(account(i, i), Money.of(new BigDecimal("12.50"), "USD"),
+                "DEPOSIT", null);
+
+        // Khởi động JIT trước khi đo
+        produce(snapshot, EVENTS / 4);
+        produce(delta, EVENTS / 4);
+        Result full = produce(snapshot, EVENTS);
+        Result compact = produce(delta, EVENTS);
+
+        assertThat(compact.bytesPerEvent()).isLessThan(full.bytesPerEvent());
+        log.info("BankAccount: {} B/event, {} events/s; AccountBalanceChanged: {} B/event, {} events/s",
+                Math.round(full.bytesPerEvent()), Math.round(full.eventsPerSecond()),
+                Math.round(compact.bytesPerEvent()), Math.round(compact.eventsPerSecond()));
+    }
+
+    private Result produce(IntFunction<Object> events, int count) {
+        MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        long bytes = 0;
+        long began = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            byte[] value = serializer.serialize("account-events", events.apply(i));
+            producer.send(new ProducerRecord<>("account-events", String.valueOf(i), value));
+            bytes += value.length;
+        }
+        long elapsed = System.nanoTime() - began;
+        assertThat(producer.history()).hasSize(count);
+        return new Result((double) bytes / count, count / (elapsed / 1e9));
+    }
+
+    private static BankAccount account(long id, long seq) {
+        LocalDateTime now = LocalDateTime.now();
+        return new BankAccount(id, 1_000 + id, "ACC1000000000" + (id % 10), "SAVINGS", "USD",
+                Money.of(new BigDecimal("987.50"), "USD"), seq, "ACTIVE", now, now);
+    }
+
+    private record Result(double bytesPerEvent, double eventsPerSecond) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.accountservice.model;
+
+import com.example.common.money.Money;
+import com.example.common.money.MoneyConverter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BankAccountTest {
+
+    @Test
+    void loadedBalanceCarriesTheAccountCurrency() {
+        BankAccount account = new BankAccount();
+        account.setCurrency("VND");
+        account.setBalance(new MoneyConverter().convertToEntityAttribute(new BigDecimal("100.00")));
+
+        assertThat(account.getBalance().getCurrency()).isEqualTo("VND");
+        assertThat(account.getBalance()).isEqualTo(Money.of(new BigDecimal("100.00"), "VND"));
+        assertThatThrownBy(() -> account.getBalance().minus(Money.of(BigDecimal.ONE, "USD")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
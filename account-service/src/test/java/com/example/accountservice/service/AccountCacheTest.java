@@ -0,0 +1,46 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.dto.BankAccountDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountCacheTest {
+
+    private final AccountCache cache = new AccountCache(new SimpleMeterRegistry(), 1000, Duration.ofSeconds(30));
+
+    @Test
+    void loadRacingAnEvictionDoesNotCacheTheStaleBalance() {
+        // Số dư đổi (và bị xóa khỏi cache) trong lúc danh sách tài khoản đang được nạp
+        List<BankAccountDTO> loaded = cache.getUserAccounts(1L, userId -> {
+            List<BankAccountDTO> stale = List.of(account(10L, "10.00"));
+            cache.evictAccount(10L);
+            return stale;
+        });
+        assertThat(loaded).extracting(BankAccountDTO::getBalance).containsExactly(new BigDecimal("10.00"));
+
+        BankAccountDTO account = cache.getAccount(10L, id -> account(id, "20.00"));
+
+        assertThat(account.getBalance()).isEqualByComparingTo("20.00");
+    }
+
+    @Test
+    void loadWithoutConcurrentEvictionIsCached() {
+        cache.getUserAccounts(1L, userId -> List.of(account(10L, "10.00"), account(11L, "5.00")));
+
+        assertThat(cache.getAccount(10L, id -> account(id, "99.00")).getBalance()).isEqualByComparingTo("10.00");
+        assertThat(cache.getUserAccounts(1L, userId -> List.of())).hasSize(2);
+
+        cache.evictUser(1L);
+        assertThat(cache.getUserAccounts(1L, userId -> List.of())).isEmpty();
+    }
+
+    private static BankAccountDTO account(Long id, String balance) {
+        return new BankAccountDTO(id, 1L, "ACC-" + id, "SAVINGS", new BigDecimal(balance), "ACTIVE", null, null);
+    }
+}
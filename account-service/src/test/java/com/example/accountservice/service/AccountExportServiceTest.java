@@ -0,0 +1,142 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.common.money.Money;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountExportServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private BankAccountRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AccountExportService exportService;
+    private final List<Long> activeIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        jdbcTemplate.update("DELETE FROM export_checkpoints");
+        exportService = new AccountExportService(jdbcTemplate, MAPPER, 50, 100);
+        activeIds.clear();
+        for (int i = 0; i < 1000; i++) {
+            BankAccount saved = repository.save(account("EXP" + i, i % 4 == 0 ? "CLOSED" : "ACTIVE"));
+            if ("ACTIVE".equals(saved.getStatus())) {
+                activeIds.add(saved.getId());
+            }
+        }
+    }
+
+    @Test
+    void ndjsonContainsOnlyMatchingRowsInIdOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exportService.export("ACTIVE", 0L, "ndjson", null, out);
+
+        List<Long> ids = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode node = MAPPER.readTree(line);
+            assertThat(node.get("status").asText()).isEqualTo("ACTIVE");
+            ids.add(node.get("id").asLong());
+        }
+        assertThat(rows).isEqualTo(activeIds.size());
+        assertThat(ids).isEqualTo(activeIds);
+    }
+
+    @Test
+    void interruptedExportResumesFromCheckpoint() throws Exception {
+        // Client ngắt kết nối sau khoảng 20KB
+        FailingOutputStream broken = new FailingOutputStream(20_000);
+        assertThatThrownBy(() -> exportService.export("ACTIVE", 0L, "csv", "nightly", broken))
+                .isInstanceOf(IOException.class);
+
+        long resumeFrom = exportService.resolveStart("ACTIVE", null, "nightly");
+        assertThat(resumeFrom).isGreaterThan(0L);
+
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        exportService.export("ACTIVE", resumeFrom, "csv", "nightly", rest);
+
+        TreeSet<Long> received = new TreeSet<>(csvIds(broken.written()));
+        List<Long> resumed = csvIds(rest.toString(StandardCharsets.UTF_8));
+        assertThat(resumed.get(0)).isGreaterThan(resumeFrom);
+        assertThat(rest.toString(StandardCharsets.UTF_8)).doesNotStartWith("id,");
+        received.addAll(resumed);
+        assertThat(received).containsExactlyElementsOf(activeIds);
+
+        // Export đã hoàn tất: exportId không còn mốc dở dang
+        assertThat(exportService.resolveStart("ACTIVE", null, "nightly")).isZero();
+    }
+
+    private List<Long> csvIds(String csv) {
+        List<Long> ids = new ArrayList<>();
+        for (String line : csv.split("\n")) {
+            if (line.startsWith("id,")) {
+                continue;
+            }
+            ids.add(Long.parseLong(line.substring(0, line.indexOf(','))));
+        }
+        return ids;
+    }
+
+    private BankAccount account(String number, String status) {
+        BankAccount account = new BankAccount();
+        account.setUserId(1L);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setBalance(Money.of(new BigDecimal("10.00")));
+        account.setStatus(status);
+        return account;
+    }
+
+    private static final class FailingOutputStream extends OutputStream {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final int limit;
+
+        FailingOutputStream(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (received.size() + len > limit) {
+                throw new IOException("Broken pipe");
+            }
+            received.write(b, off, len);
+        }
+
+        String written() {
+            return received.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
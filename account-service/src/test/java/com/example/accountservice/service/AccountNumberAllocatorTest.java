@@ -0,0 +1,133 @@
+package com.example.accountservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class AccountNumberAllocatorTest {
+
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 25_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM number_sequences WHERE name = ?", AccountNumberAllocator.SEQUENCE_NAME);
+    }
+
+    @Test
+    void twoNodesNeverHandOutTheSameNumber() throws Exception {
+        // Hai instance mô phỏng hai node dùng chung một DB
+        AccountNumberAllocator nodeA = allocator(100);
+        AccountNumberAllocator nodeB = allocator(100);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        run(THREADS, t -> (t % 2 == 0 ? nodeA : nodeB)::next, seen);
+
+        assertThat(seen).hasSize(THREADS * PER_THREAD);
+        assertThat(seen).allMatch(AccountNumberAllocator::isValid);
+    }
+
+    @Test
+    void restartContinuesAfterLeasedBlock() {
+        AccountNumberAllocator first = allocator(1000);
+        String issued = first.next();
+
+        // Khởi động lại: khối cũ bị bỏ, khối mới bắt đầu sau khối đã thuê
+        AccountNumberAllocator restarted = allocator(1000);
+        String next = restarted.next();
+
+        assertThat(digits(next)).isEqualTo(digits(issued) + 1000);
+    }
+
+    @Test
+    void checkDigitRejectsSingleDigitTypos() {
+        String number = allocator(10).next();
+        char last = number.charAt(number.length() - 2);
+        String typo = number.substring(0, number.length() - 2) + (char) ('0' + (last - '0' + 1) % 10)
+                + number.charAt(number.length() - 1);
+
+        assertThat(AccountNumberAllocator.isValid(number)).isTrue();
+        assertThat(AccountNumberAllocator.isValid(typo)).isFalse();
+        assertThat(AccountNumberAllocator.isValid("ACC1A2B3C4D5E6F")).isFalse();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkAgainstUuidSlices() throws Exception {
+        AccountNumberAllocator allocator = allocator(1000);
+        allocator.next();
+
+        Set<String> allocated = ConcurrentHashMap.newKeySet();
+        long allocatorMs = run(THREADS, t -> allocator::next, allocated);
+        long uuidMs = run(THREADS, t -> () -> "ACC" + UUID.randomUUID().toString().replace("-", "")
+                .substring(0, 12).toUpperCase(), ConcurrentHashMap.newKeySet());
+
+        int total = THREADS * PER_THREAD;
+        assertThat(allocated).hasSize(total);
+        log.info("Allocator: {} numbers in {} ms ({}/s), UUID slice: {} ms ({}/s)",
+                total, allocatorMs, total * 1000L / allocatorMs, uuidMs, total * 1000L / uuidMs);
+    }
+
+    private long run(int threads, IntFunction<Supplier<String>> source, Set<String> seen)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Supplier<String> next = source.apply(t);
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < PER_THREAD; i++) {
+                    seen.add(next.get());
+                }
+                return null;
+            }));
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began));
+    }
+
+    private AccountNumberAllocator allocator(int blockSize) {
+        return new AccountNumberAllocator(jdbcTemplate, transactionManager, blockSize, 10_000_000_000L);
+    }
+
+    private long digits(String accountNumber) {
+        return Long.parseLong(accountNumber.substring(3, accountNumber.length() - 1));
+    }
+}
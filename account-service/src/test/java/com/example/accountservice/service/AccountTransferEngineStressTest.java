@@ -0,0 +1,178 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.UserAccountSummaryRepository;
+import com.example.common.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({AccountTransferEngine.class, LedgerService.class, UserAccountSummaryService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountTransferEngineStressTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private AccountTransferEngine engine;
+
+    @Autowired
+    private BankAccountRepository repository;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserAccountSummaryService userAccountSummaryService;
+
+    @Autowired
+    private UserAccountSummaryRepository summaryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cleanUp() {
+        repository.deleteAll();
+        summaryRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM user_balance_shards");
+    }
+
+    @Test
+    void hotAccountKeepsExactBalanceUnderConcurrentTransfers() throws Exception {
+        BankAccount hot = repository.save(account("HOT", "1000000.00"));
+        int transfersPerThread = 25;
+
+        runHotAccountTransfers(hot, transfersPerThread);
+
+        // Sổ cái phải khớp với số dư trên bank_accounts (mốc mở đầu 0 + toàn bộ bút toán)
+        BigDecimal expectedHot = new BigDecimal("1000000.00").subtract(new BigDecimal(THREADS * transfersPerThread));
+        assertThat(ledgerService.balanceAsOf(hot.getId(), hot.getCreatedAt().minusSeconds(1)))
+                .isEqualByComparingTo("1000000.00");
+        ledgerService.snapshot(hot.getId());
+        assertThat(ledgerService.currentBalance(hot.getId())).isEqualByComparingTo(expectedHot);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void hotAccountThroughput() throws Exception {
+        BankAccount hot = repository.save(account("HOT", "1000000.00"));
+        int transfersPerThread = 250;
+
+        long began = System.nanoTime();
+        runHotAccountTransfers(hot, transfersPerThread);
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began));
+
+        int totalTransfers = THREADS * transfersPerThread * 2;
+        log.info("{} transfers on one hot account in {} ms ({}/s)",
+                totalTransfers, elapsedMs, totalTransfers * 1000L / elapsedMs);
+    }
+
+    @Test
+    void concurrentDebitsNeverOverdraw() throws Exception {
+        BankAccount source = repository.save(account("SRC", "100.00"));
+        BankAccount target = repository.save(account("DST", "0.00"));
+        target.setUserId(2L);
+        repository.save(target);
+        // Dựng dòng tổng hợp trước, sau đó chỉ được cộng dồn
+        userAccountSummaryService.getSummary(1L, ids -> 0L);
+        userAccountSummaryService.getSummary(2L, ids -> 0L);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(pool.submit(() -> {
+                try {
+                    engine.transfer(source.getId(), target.getId(), Money.of(BigDecimal.ONE));
+                    succeeded.incrementAndGet();
+                } catch (RuntimeException e) {
+                    assertThat(e).hasMessage("Insufficient balance");
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertThat(succeeded.get()).isEqualTo(100);
+        assertThat(rejected.get()).isEqualTo(400);
+        assertThat(repository.findById(source.getId()).orElseThrow().getBalance().toBigDecimal()).isEqualByComparingTo("0");
+        assertThat(repository.findById(target.getId()).orElseThrow().getBalance().toBigDecimal()).isEqualByComparingTo("100");
+        assertThat(userAccountSummaryService.getSummary(1L, ids -> 0L).getTotalBalance()).isEqualByComparingTo("0");
+        assertThat(userAccountSummaryService.getSummary(2L, ids -> 0L).getTotalBalance()).isEqualByComparingTo("100");
+    }
+
+    /**
+     * Mỗi thread chuyển qua lại giữa tài khoản nóng và một tài khoản riêng, cuối cùng kiểm tra số dư khớp tuyệt đối.
+     */
+    private void runHotAccountTransfers(BankAccount hot, int transfersPerThread) throws Exception {
+        List<Long> others = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            others.add(repository.save(account("ACC" + i, "0.00")).getId());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Long other = others.get(t);
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < transfersPerThread; i++) {
+                    // Hai chiều xen kẽ: hot→other rồi other→hot (kiểm tra không deadlock)
+                    engine.transfer(hot.getId(), other, Money.of(new BigDecimal("2.00")));
+                    engine.transfer(other, hot.getId(), Money.of(new BigDecimal("1.00")));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertThat(repository.findById(hot.getId()).orElseThrow().getBalance().toBigDecimal())
+                .isEqualByComparingTo(new BigDecimal("1000000.00").subtract(new BigDecimal(THREADS * transfersPerThread)));
+        for (Long other : others) {
+            assertThat(repository.findById(other).orElseThrow().getBalance().toBigDecimal())
+                    .isEqualByComparingTo(new BigDecimal(transfersPerThread));
+        }
+    }
+
+    private BankAccount account(String number, String balance) {
+        BankAccount account = new BankAccount();
+        account.setUserId(1L);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setBalance(Money.of(new BigDecimal(balance)));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.common.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({LedgerService.class, UserAccountSummaryService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BalanceGroupCommitterTest {
+
+    @Autowired
+    private BankAccountRepository repository;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserAccountSummaryService userAccountSummaryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BalanceGroupCommitter committer;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        meterRegistry = new SimpleMeterRegistry();
+        committer = new BalanceGroupCommitter(repository, ledgerService, userAccountSummaryService, jdbcTemplate,
+                transactionManager, meterRegistry, true, Duration.ofMillis(5), 200, 10_000, Duration.ofSeconds(30));
+        committer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        committer.stop();
+    }
+
+    @Test
+    void concurrentOperationsAreCoalescedWithoutOverdraft() {
+        BankAccount account = repository.save(account("GC1", "50.00"));
+        AtomicInteger callbacks = new AtomicInteger();
+
+        // 1000 lần rút 1.00 và 200 lần nạp 1.00 xen kẽ: số lần rút thành công <= 50 + số lần nạp
+        List<CompletableFuture<BankAccount>> withdrawals = new ArrayList<>();
+        List<CompletableFuture<BankAccount>> deposits = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            withdrawals.add(committer.withdraw(account.getId(), Money.of(BigDecimal.ONE), a -> callbacks.incrementAndGet()));
+            if (i % 5 == 0) {
+                deposits.add(committer.deposit(account.getId(), Money.of(BigDecimal.ONE), a -> callbacks.incrementAndGet()));
+            }
+        }
+        int succeeded = 0;
+        for (CompletableFuture<BankAccount> f : withdrawals) {
+            try {
+                assertThat(f.orTimeout(1, TimeUnit.MINUTES).join().getBalance().signum()).isGreaterThanOrEqualTo(0);
+                succeeded++;
+            } catch (CompletionException e) {
+                assertThat(e.getCause()).hasMessage("Insufficient balance");
+            }
+        }
+        deposits.forEach(CompletableFuture::join);
+
+        BigDecimal expected = new BigDecimal("50.00").add(BigDecimal.valueOf(deposits.size() - succeeded));
+        assertThat(expected.signum()).isGreaterThanOrEqualTo(0);
+        assertThat(repository.findById(account.getId()).orElseThrow().getBalance().toBigDecimal())
+                .isEqualByComparingTo(expected);
+        assertThat(ledgerService.currentBalance(account.getId())).isEqualByComparingTo(expected);
+        assertThat(callbacks.get()).isEqualTo(succeeded + deposits.size());
+
+        assertThat(meterRegistry.get("account.group_commit.batch_size").summary().mean()).isGreaterThan(1.0);
+    }
+
+    @Test
+    void failingOperationDoesNotFailTheRestOfItsBatch() {
+        BankAccount account = repository.save(account("GC3", "0.00"));
+
+        List<CompletableFuture<BankAccount>> deposits = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            deposits.add(committer.deposit(account.getId(), Money.of(BigDecimal.ONE), a -> { }));
+        }
+        CompletableFuture<BankAccount> failing = committer.deposit(account.getId(), Money.of(BigDecimal.TEN), a -> {
+            throw new IllegalStateException("outbox unavailable");
+        });
+        for (int i = 0; i < 20; i++) {
+            deposits.add(committer.deposit(account.getId(), Money.of(BigDecimal.ONE), a -> { }));
+        }
+
+        deposits.forEach(f -> f.orTimeout(1, TimeUnit.MINUTES).join());
+        assertThat(failing).failsWithin(Duration.ofSeconds(10))
+                .withThrowableOfType(ExecutionException.class)
+                .withMessageContaining("outbox unavailable");
+        assertThat(repository.findById(account.getId()).orElseThrow().getBalance().toBigDecimal())
+                .isEqualByComparingTo("40.00");
+        assertThat(ledgerService.currentBalance(account.getId())).isEqualByComparingTo("40.00");
+    }
+
+    @Test
+    void stopCompletesEveryQueuedOperation() throws InterruptedException {
+        BankAccount account = repository.save(account("GC4", "0.00"));
+
+        List<CompletableFuture<BankAccount>> deposits = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            deposits.add(committer.deposit(account.getId(), Money.of(BigDecimal.ONE), a -> { }));
+        }
+        committer.stop();
+
+        assertThat(deposits).allMatch(CompletableFuture::isDone);
+        long applied = deposits.stream().filter(f -> !f.isCompletedExceptionally()).count();
+        assertThat(repository.findById(account.getId()).orElseThrow().getBalance().toBigDecimal())
+                .isEqualByComparingTo(BigDecimal.valueOf(applied));
+        assertThatThrownBy(() -> committer.deposit(account.getId(), Money.of(BigDecimal.ONE), a -> { }))
+                .hasMessage("Group commit is not running");
+    }
+
+    @Test
+    void unknownAccountFailsOnlyItsOwnOperation() {
+        BankAccount account = repository.save(account("GC2", "0.00"));
+
+        CompletableFuture<BankAccount> ok = committer.deposit(account.getId(), Money.of(BigDecimal.TEN), a -> { });
+        CompletableFuture<BankAccount> missing = committer.deposit(Long.MAX_VALUE, Money.of(BigDecimal.TEN), a -> { });
+
+        assertThat(ok.join().getBalance().toBigDecimal()).isEqualByComparingTo("10");
+        assertThat(missing).failsWithin(Duration.ofSeconds(10));
+    }
+
+    private BankAccount account(String number, String balance) {
+        BankAccount account = new BankAccount();
+        account.setUserId(1L);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setBalance(Money.of(new BigDecimal(balance)));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
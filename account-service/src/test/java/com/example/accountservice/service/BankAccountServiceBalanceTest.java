@@ -0,0 +1,117 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.dto.BankAccountDTO;
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BalanceSnapshotRepository;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({BankAccountService.class, AccountCache.class, LedgerService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BankAccountServiceBalanceTest {
+
+    @Autowired
+    private BankAccountService bankAccountService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private BankAccountRepository accountRepository;
+
+    @Autowired
+    private LedgerPostingRepository ledgerPostingRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private OutboxPublisher outboxPublisher;
+
+    @MockitoBean
+    private AccountTransferEngine accountTransferEngine;
+
+    @MockitoBean
+    private BalanceGroupCommitter balanceGroupCommitter;
+
+    @MockitoBean
+    private AccountNumberAllocator accountNumberAllocator;
+
+    @MockitoBean
+    private UserAccountSummaryService userAccountSummaryService;
+
+    @MockitoBean
+    private VelocityLimiter velocityLimiter;
+
+    @MockitoBean
+    private BulkTransferProcessor bulkTransferProcessor;
+
+    @MockitoBean
+    private TransactionServiceClient transactionServiceClient;
+
+    @BeforeEach
+    void setUp() {
+        balanceSnapshotRepository.deleteAll();
+        ledgerPostingRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    void singleAndListReadsReturnTheLedgerBalance() {
+        BankAccount first = accountRepository.save(account(40L, "BALANCE-1"));
+        BankAccount second = accountRepository.save(account(40L, "BALANCE-2"));
+        // Cột bank_accounts.balance lệch với sổ cái: cả hai cách đọc vẫn trả cùng số dư sổ cái
+        ledgerService.snapshot(first.getId());
+        ledgerService.snapshot(second.getId());
+        posting(first.getId(), "200.00");
+        posting(second.getId(), "-50.00");
+
+        BankAccountDTO single = bankAccountService.getAccountBalance(40L, first.getId());
+        assertThat(single.getBalance()).isEqualByComparingTo("1200.00");
+        assertThat(bankAccountService.getUserAccounts(40L))
+                .extracting(BankAccountDTO::getBalance)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactlyInAnyOrder(new BigDecimal("1200.00"), new BigDecimal("950.00"));
+        // Danh sách đã nạp vào cache trước thì lần đọc một tài khoản vẫn thấy cùng số dư
+        assertThat(bankAccountService.getAccountBalance(40L, second.getId()).getBalance())
+                .isEqualByComparingTo("950.00");
+    }
+
+    private void posting(Long accountId, String amount) {
+        jdbcTemplate.update("INSERT INTO ledger_postings (account_id, amount, entry_type, created_at) VALUES (?, ?, ?, ?)",
+                accountId, new BigDecimal(amount), "DEPOSIT", Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private static BankAccount account(Long userId, String number) {
+        BankAccount account = new BankAccount();
+        account.setUserId(userId);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setCurrency("USD");
+        account.setBalance(Money.of(new BigDecimal("1000.00")));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.dto.BulkTransferRequestDTO;
+import com.example.accountservice.dto.BulkTransferResultDTO;
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxEvent;
+import com.example.common.outbox.OutboxEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "account.bulk-transfer.chunk-size=2"
+})
+@Import({BulkTransferProcessor.class, AccountTransferEngine.class, LedgerService.class, UserAccountSummaryService.class,
+        AccountCache.class, SimpleMeterRegistry.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BulkTransferProcessorTest {
+
+    @Autowired
+    private BulkTransferProcessor processor;
+
+    @MockitoSpyBean
+    private AccountTransferEngine engine;
+
+    @Autowired
+    private BankAccountRepository accountRepository;
+
+    @Autowired
+    private LedgerPostingRepository ledgerPostingRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private BankAccount payer;
+    private List<Long> payees;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM bulk_transfer_items");
+        jdbcTemplate.update("DELETE FROM bulk_transfers");
+        ledgerPostingRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        accountRepository.deleteAll();
+        payer = accountRepository.save(account("BULK-PAYER", "1000.00"));
+        payees = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            payees.add(accountRepository.save(account("BULK-PAYEE-" + i, "0.00")).getId());
+        }
+    }
+
+    @Test
+    void failedChunkIsRefundedAndTotalBalanceIsConserved() {
+        AtomicInteger chunks = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (chunks.incrementAndGet() == 2) {
+                throw new IllegalStateException("Lock wait timeout exceeded");
+            }
+            return invocation.callRealMethod();
+        }).when(engine).creditBatch(any(), any(), any());
+
+        BulkTransferResultDTO result = processor.transfer(payer, request("100.00"));
+
+        assertThat(result.getSucceeded()).isEqualTo(3);
+        assertThat(result.getItems()).extracting(BulkTransferResultDTO.ItemResult::getStatus)
+                .containsExactly("SUCCESS", "SUCCESS", "FAILED", "FAILED", "SUCCESS");
+        assertThat(result.getFromBalance()).isEqualByComparingTo("700.00");
+        assertThat(totalBalance()).isEqualByComparingTo("1000.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM bulk_transfers", String.class)).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void everyCreditedAccountGetsItsOwnSequencedEvent() throws Exception {
+        // Cùng một tài khoản nhận hai khoản trong một chunk: hai event, seq và số dư theo đúng thứ tự
+        Long payee = payees.get(0);
+        processor.transfer(payer, new BulkTransferRequestDTO(payer.getId(), "payroll", List.of(
+                new BulkTransferRequestDTO.Item(payee, new BigDecimal("100.00"), null),
+                new BulkTransferRequestDTO.Item(payee, new BigDecimal("50.00"), null))));
+
+        List<OutboxEvent> credits = outboxEventRepository.findAll().stream()
+                .filter(e -> e.getMessageKey().equals(String.valueOf(payee)))
+                .sorted(Comparator.comparing(OutboxEvent::getId))
+                .toList();
+        assertThat(credits).hasSize(2);
+        JsonNode first = objectMapper.readTree(credits.get(0).getPayload());
+        JsonNode second = objectMapper.readTree(credits.get(1).getPayload());
+        assertThat(first.get("type").asText()).isEqualTo("AccountBalanceChanged");
+        assertThat(first.get("reason").asText()).isEqualTo("BULK_TRANSFER_IN");
+        assertThat(first.get("counterpartyAccountId").asLong()).isEqualTo(payer.getId());
+        assertThat(first.get("seq").asLong()).isEqualTo(1);
+        assertThat(first.get("balance").decimalValue()).isEqualByComparingTo("100.00");
+        assertThat(second.get("seq").asLong()).isEqualTo(2);
+        assertThat(second.get("balance").decimalValue()).isEqualByComparingTo("150.00");
+        assertThat(accountRepository.findEventSeq(payee)).isEqualTo(2L);
+    }
+
+    @Test
+    void abandonedTransferIsResumedWithoutLosingOrDoublingMoney() {
+        // Node chết sau chunk đầu tiên: tiền nguồn đã trừ, phần còn lại chỉ nằm trong bulk_transfer_items
+        AtomicInteger chunks = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (chunks.incrementAndGet() == 2) {
+                throw new OutOfMemoryError("simulated crash");
+            }
+            return invocation.callRealMethod();
+        }).when(engine).creditBatch(any(), any(), any());
+        assertThatThrownBy(() -> processor.transfer(payer, request("100.00"))).isInstanceOf(OutOfMemoryError.class);
+
+        assertThat(balance(payer.getId())).isEqualByComparingTo("500.00");
+        assertThat(totalBalance()).isEqualByComparingTo("700.00");
+
+        // Chưa quá claim-timeout: không node nào nhận lại
+        processor.recoverAbandoned();
+        assertThat(totalBalance()).isEqualByComparingTo("700.00");
+
+        jdbcTemplate.update("UPDATE bulk_transfers SET claimed_at = DATEADD('HOUR', -1, claimed_at)");
+        processor.recoverAbandoned();
+        processor.recoverAbandoned();
+
+        assertThat(totalBalance()).isEqualByComparingTo("1000.00");
+        for (Long payee : payees) {
+            assertThat(balance(payee)).isEqualByComparingTo("100.00");
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM bulk_transfers", String.class)).isEqualTo("COMPLETED");
+    }
+
+    private BulkTransferRequestDTO request(String amount) {
+        List<BulkTransferRequestDTO.Item> items = new ArrayList<>();
+        for (Long payee : payees) {
+            items.add(new BulkTransferRequestDTO.Item(payee, new BigDecimal(amount), null));
+        }
+        return new BulkTransferRequestDTO(payer.getId(), "payroll", items);
+    }
+
+    private BigDecimal totalBalance() {
+        return jdbcTemplate.queryForObject("SELECT SUM(balance) FROM bank_accounts", BigDecimal.class);
+    }
+
+    private BigDecimal balance(Long accountId) {
+        return accountRepository.findById(accountId).orElseThrow().getBalance().toBigDecimal();
+    }
+
+    private static BankAccount account(String number, String balance) {
+        BankAccount account = new BankAccount();
+        account.setUserId(1L);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setCurrency("USD");
+        account.setBalance(Money.of(new BigDecimal(balance)));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
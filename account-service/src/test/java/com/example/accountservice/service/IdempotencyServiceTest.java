@@ -0,0 +1,252 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.repository.IdempotencyRecordRepository;
+import com.example.accountservice.util.ResponseUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({IdempotencyService.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        jdbcTemplate.update("DELETE FROM ledger_postings");
+        executions.set(0);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void repeatedRequestIsReplayedFromMemoryAndFromDatabase() {
+        ResponseEntity<?> first = idempotencyService.execute("k-replay", "1", "deposit:100", this::created);
+        ResponseEntity<?> second = idempotencyService.execute("k-replay", "1", "deposit:100", this::created);
+
+        assertThat(executions).hasValue(1);
+        assertThat(second).isSameAs(first);
+
+        // Node khác (bộ nhớ trống) đọc lại kết quả đã lưu trên DB
+        ResponseEntity<?> replayed = otherNode().execute("k-replay", "1", "deposit:100", this::created);
+        assertThat(executions).hasValue(1);
+        assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(replayed.getBody()).isInstanceOf(Map.class);
+        assertThat(((Map<?, ?>) replayed.getBody()).get("data")).isEqualTo(1);
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyIsRejected() {
+        idempotencyService.execute("k-body", "1", "deposit:100", this::created);
+
+        ResponseEntity<?> conflicting = idempotencyService.execute("k-body", "1", "deposit:999", this::created);
+        ResponseEntity<?> conflictingOnOtherNode = otherNode().execute("k-body", "1", "deposit:999", this::created);
+
+        assertThat(executions).hasValue(1);
+        assertThat(conflicting.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(conflictingOnOtherNode.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        // Cùng khóa nhưng uid khác là khóa khác
+        assertThat(idempotencyService.execute("k-body", "2", "deposit:999", this::created).getStatusCode())
+                .isEqualTo(HttpStatus.CREATED);
+    }
+
+    @Test
+    void concurrentDuplicatesRunTheActionOnce() throws Exception {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                // Nửa số request đi qua "node" thứ hai: chỉ chia sẻ bảng idempotency_keys
+                IdempotencyService node = i % 2 == 0 ? idempotencyService : otherNode();
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return node.execute("k-concurrent", "1", "transfer:1:2:50", () -> {
+                        sleep(200);
+                        return created();
+                    });
+                }));
+            }
+            start.countDown();
+
+            int created = 0;
+            for (Future<ResponseEntity<?>> result : results) {
+                HttpStatus status = HttpStatus.valueOf(result.get(30, TimeUnit.SECONDS).getStatusCode().value());
+                assertThat(status).isIn(HttpStatus.CREATED, HttpStatus.CONFLICT);
+                if (status == HttpStatus.CREATED) {
+                    created++;
+                }
+            }
+            assertThat(executions).hasValue(1);
+            assertThat(created).isPositive();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void keyLeftInProgressByACrashedNodeIsReclaimedAfterItsLease() {
+        LocalDateTime now = LocalDateTime.now();
+        inProgress("1:k-fresh", now.plusMinutes(5), now);
+        inProgress("1:k-stale", now.minusSeconds(1), now.minusMinutes(10));
+
+        assertThat(idempotencyService.execute("k-fresh", "1", "deposit:100", this::created).getStatusCode())
+                .isEqualTo(HttpStatus.CONFLICT);
+        assertThat(idempotencyService.execute("k-stale", "1", "deposit:100", this::created).getStatusCode())
+                .isEqualTo(HttpStatus.CREATED);
+
+        assertThat(executions).hasValue(1);
+        assertThat(repository.findById("1:k-stale").orElseThrow().getStatus()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void effectCommittedWithTheKeyIsNotRepeatedWhenTheRequestFailsAfterCommit() {
+        ResponseEntity<?> failed = idempotencyService.execute("k-after-commit", "1", "transfer:1:2:50", completion -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                effect();
+                completion.complete(created());
+            });
+            // Lỗi sau khi chuyển tiền đã commit (ví dụ dọn cache): không được xóa khóa
+            return ResponseUtils.handlerException(new IllegalStateException("cache unavailable"));
+        });
+
+        assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(repository.findById("1:k-after-commit").orElseThrow().getStatus()).isEqualTo("COMPLETED");
+        ResponseEntity<?> retried = otherNode().execute("k-after-commit", "1", "transfer:1:2:50", this::created);
+        assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(executions).hasValue(1);
+        assertThat(effects()).isEqualTo(1);
+    }
+
+    @Test
+    void requestThatOutlivedItsLeaseCannotCommitAfterTheKeyWasTakenOver() {
+        ResponseEntity<?> slow = idempotencyService.execute("k-slow", "1", "transfer:1:2:50", completion -> {
+            // Request chạy quá lease: request trùng nhận lại khóa và chuyển tiền trước
+            jdbcTemplate.update("UPDATE idempotency_keys SET locked_until = ? WHERE idempotency_key = '1:k-slow'",
+                    Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+            ResponseEntity<?> retried = otherNode().execute("k-slow", "1", "transfer:1:2:50", retry -> {
+                ResponseEntity<?> response = created();
+                transactionTemplate.executeWithoutResult(status -> {
+                    effect();
+                    retry.complete(response);
+                });
+                return response;
+            });
+            assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    effect();
+                    completion.complete(created());
+                });
+            } catch (IllegalStateException e) {
+                return ResponseUtils.handlerException(e);
+            }
+            return created();
+        });
+
+        // Lần chạy cũ bị rollback, client nhận kết quả của lần đã commit
+        assertThat(effects()).isEqualTo(1);
+        assertThat(slow.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(((Map<?, ?>) slow.getBody()).get("data")).isEqualTo(1);
+    }
+
+    @Test
+    void appliedKeyIsNeverReclaimed() {
+        assertThatThrownBy(() -> idempotencyService.execute("k-applied", "1", "bulk-transfer:1", completion -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                effect();
+                completion.applied();
+            });
+            // Node chết trước khi lưu response: giả lập bằng lease đã hết hạn
+            throw new IllegalStateException("node crashed");
+        })).hasMessage("node crashed");
+        jdbcTemplate.update("UPDATE idempotency_keys SET locked_until = ? WHERE idempotency_key = '1:k-applied'",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(10)));
+
+        ResponseEntity<?> retried = otherNode().execute("k-applied", "1", "bulk-transfer:1", this::created);
+
+        assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(executions).hasValue(0);
+        assertThat(effects()).isEqualTo(1);
+    }
+
+    private void effect() {
+        jdbcTemplate.update("INSERT INTO ledger_postings (account_id, amount, entry_type, created_at) VALUES (1, 1, 'DEPOSIT', ?)",
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private int effects() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_postings", Integer.class);
+    }
+
+    private void inProgress(String key, LocalDateTime lockedUntil, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO idempotency_keys (idempotency_key, request_hash, status, locked_until, created_at, " +
+                        "expires_at) VALUES (?, 'crashed', 'IN_PROGRESS', ?, ?, ?)",
+                key, Timestamp.valueOf(lockedUntil), Timestamp.valueOf(createdAt), Timestamp.valueOf(createdAt.plusHours(24)));
+    }
+
+    private ResponseEntity<?> created() {
+        return ResponseUtils.handlerCreated(executions.incrementAndGet());
+    }
+
+    private IdempotencyService otherNode() {
+        return new IdempotencyService(repository, jdbcTemplate, objectMapper, 1000,
+                Duration.ofHours(24), Duration.ofMinutes(5), Duration.ofSeconds(30));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
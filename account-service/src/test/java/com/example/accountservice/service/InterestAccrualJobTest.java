@@ -0,0 +1,179 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BalanceSnapshotRepository;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxEventRepository;
+import com.example.common.outbox.OutboxPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({LedgerService.class, UserAccountSummaryService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class InterestAccrualJobTest {
+
+    private static final int ACCOUNTS = 1000;
+    private static final int BENCHMARK_ACCOUNTS = 50_000;
+    private static final LocalDate RUN_DATE = LocalDate.of(2026, 1, 31);
+
+    @Autowired
+    private BankAccountRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private LedgerPostingRepository ledgerPostingRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private UserAccountSummaryService userAccountSummaryService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM interest_partitions");
+        jdbcTemplate.update("DELETE FROM interest_runs");
+        jdbcTemplate.update("DELETE FROM ledger_postings");
+        outboxEventRepository.deleteAll();
+        repository.deleteAll();
+        seed(0, ACCOUNTS);
+    }
+
+    @Test
+    void accruesInterestPerAccountTypeExactlyOnce() throws Exception {
+        InterestAccrualJob job = job(ledgerService, Duration.ofMinutes(10));
+
+        InterestAccrualJob.RunResult result = job.run(RUN_DATE);
+
+        assertThat(result.accounts()).isEqualTo(ACCOUNTS * 9 / 10);
+        assertBalances();
+        // Mỗi tài khoản được cộng lãi một event riêng, key là tài khoản đó, seq tăng cùng câu UPDATE
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM outbox_events o JOIN bank_accounts a ON o.message_key = CAST(a.id AS VARCHAR) " +
+                "WHERE a.status = 'ACTIVE' AND a.event_seq = 1 AND o.payload_type LIKE '%AccountBalanceChanged' " +
+                "AND o.payload LIKE '%\"reason\":\"INTEREST\"%'",
+                Long.class)).isEqualTo(ACCOUNTS * 9 / 10);
+
+        // Chạy lại cùng ngày không cộng thêm
+        assertThat(job.run(RUN_DATE).accounts()).isZero();
+        assertBalances();
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM interest_runs", String.class)).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void crashedRunResumesFromPartitionCheckpoints() throws Exception {
+        // Lần chạy đầu "chết" ở chunk thứ 6
+        AtomicInteger calls = new AtomicInteger();
+        LedgerService failing = new LedgerService(jdbcTemplate, ledgerPostingRepository, balanceSnapshotRepository) {
+            @Override
+            public void record(List<Entry> entries) {
+                if (calls.incrementAndGet() == 6) {
+                    throw new IllegalStateException("Simulated crash");
+                }
+                super.record(entries);
+            }
+        };
+        assertThatThrownBy(() -> job(failing, Duration.ofMinutes(10)).run(RUN_DATE))
+                .hasRootCauseMessage("Simulated crash");
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM interest_runs", String.class)).isEqualTo("RUNNING");
+
+        // Node khác nhận lại các khoảng bị bỏ dở và chạy tiếp từ mốc
+        InterestAccrualJob.RunResult resumed = job(ledgerService, Duration.ZERO).run(RUN_DATE);
+
+        assertThat(resumed.accounts()).isLessThan(ACCOUNTS * 9 / 10);
+        assertBalances();
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM interest_runs", String.class)).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void throughput() throws Exception {
+        seed(ACCOUNTS, BENCHMARK_ACCOUNTS);
+
+        InterestAccrualJob.RunResult result = job(ledgerService, Duration.ofMinutes(10)).run(RUN_DATE);
+
+        assertThat(result.accounts()).isEqualTo(BENCHMARK_ACCOUNTS * 9 / 10);
+        log.info("Interest accrual: {} accounts in {} ms ({} accounts/s)",
+                result.accounts(), result.elapsedMs(), result.accountsPerSecond());
+    }
+
+    private void seed(int from, int to) {
+        List<BankAccount> accounts = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            // SAVINGS 3%/năm trên 365.00 = 0.03/ngày; CHECKING 0.1%/năm trên 3650.00 = 0.01/ngày
+            boolean savings = i % 2 == 0;
+            accounts.add(account("INT" + i, savings ? "SAVINGS" : "CHECKING", savings ? "365.00" : "3650.00",
+                    i % 10 == 9 ? "CLOSED" : "ACTIVE"));
+        }
+        repository.saveAll(accounts);
+    }
+
+    private void assertBalances() {
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM bank_accounts WHERE status = 'ACTIVE' AND account_type = 'SAVINGS' AND balance <> 365.03",
+                Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM bank_accounts WHERE status = 'ACTIVE' AND account_type = 'CHECKING' AND balance <> 3650.01",
+                Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM bank_accounts WHERE status = 'CLOSED' AND balance NOT IN (365.00, 3650.00)",
+                Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ledger_postings WHERE entry_type = 'INTEREST'", Long.class))
+                .isEqualTo(ACCOUNTS * 9 / 10);
+    }
+
+    private InterestAccrualJob job(LedgerService ledger, Duration claimTimeout) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new InterestAccrualJob(jdbcTemplate, repository, transactionManager, ledger, userAccountSummaryService,
+                new OutboxPublisher(outboxEventRepository, new ObjectMapper()),
+                new AccountCache(meterRegistry, 1000, Duration.ofSeconds(30)), meterRegistry,
+                "SAVINGS:0.03,CHECKING:0.001", 8, 4, 100, claimTimeout);
+    }
+
+    private BankAccount account(String number, String type, String balance, String status) {
+        BankAccount account = new BankAccount();
+        account.setUserId(1L);
+        account.setAccountNumber(number);
+        account.setAccountType(type);
+        account.setBalance(Money.of(new BigDecimal(balance)));
+        account.setStatus(status);
+        return account;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BalanceSnapshotRepository;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import com.example.common.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({LedgerSnapshotter.class, AccountTransferEngine.class, LedgerService.class, UserAccountSummaryService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LedgerSnapshotterTest {
+
+    @Autowired
+    private LedgerSnapshotter snapshotter;
+
+    @Autowired
+    private AccountTransferEngine engine;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private BankAccountRepository accountRepository;
+
+    @Autowired
+    private LedgerPostingRepository ledgerPostingRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private BankAccount account;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM ledger_checkpoints");
+        balanceSnapshotRepository.deleteAll();
+        ledgerPostingRepository.deleteAll();
+        accountRepository.deleteAll();
+        account = accountRepository.save(account("LEDGER-1", "1000.00"));
+    }
+
+    @Test
+    void snapshotPlusLaterPostingsMatchesAccountBalance() {
+        engine.deposit(account.getId(), usd("200.00"));
+        snapshotter.snapshotActiveAccounts();
+        assertThat(balanceSnapshotRepository.count()).isEqualTo(1);
+
+        engine.withdraw(account.getId(), usd("50.00"));
+        engine.deposit(account.getId(), usd("30.00"));
+
+        assertThat(ledgerService.currentBalance(account.getId())).isEqualByComparingTo("1180.00");
+        assertThat(balance()).isEqualByComparingTo("1180.00");
+
+        snapshotter.snapshotActiveAccounts();
+        assertThat(balanceSnapshotRepository.count()).isEqualTo(2);
+        assertThat(ledgerService.currentBalance(account.getId())).isEqualByComparingTo(balance());
+    }
+
+    @Test
+    void checkpointIsPersistedAndReadAfterRestart() {
+        engine.deposit(account.getId(), usd("10.00"));
+        snapshotter.snapshotActiveAccounts();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT claimed_at FROM ledger_checkpoints WHERE name = ?", LocalDateTime.class, LedgerSnapshotter.CHECKPOINT))
+                .isNull();
+
+        // Bút toán đã nằm trước mốc: node khởi động lại không quét lại từ đầu sổ cái
+        engine.deposit(account.getId(), usd("10.00"));
+        jdbcTemplate.update("UPDATE ledger_postings SET created_at = DATEADD('HOUR', -1, created_at)");
+        restarted().snapshotActiveAccounts();
+
+        assertThat(balanceSnapshotRepository.count()).isEqualTo(1);
+        assertThat(ledgerService.currentBalance(account.getId())).isEqualByComparingTo("1020.00");
+    }
+
+    @Test
+    void onlyOneNodeRunsUntilTheClaimExpires() {
+        engine.deposit(account.getId(), usd("10.00"));
+        snapshotter.snapshotActiveAccounts();
+        engine.deposit(account.getId(), usd("10.00"));
+        jdbcTemplate.update("UPDATE ledger_checkpoints SET claimed_at = ?", LocalDateTime.now());
+
+        restarted().snapshotActiveAccounts();
+        assertThat(balanceSnapshotRepository.count()).isEqualTo(1);
+
+        jdbcTemplate.update("UPDATE ledger_checkpoints SET claimed_at = DATEADD('HOUR', -1, claimed_at)");
+        restarted().snapshotActiveAccounts();
+        assertThat(balanceSnapshotRepository.count()).isEqualTo(2);
+    }
+
+    private LedgerSnapshotter restarted() {
+        return new LedgerSnapshotter(ledgerService, ledgerPostingRepository, balanceSnapshotRepository, jdbcTemplate,
+                Duration.ZERO, Duration.ofMinutes(10));
+    }
+
+    private BigDecimal balance() {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance().toBigDecimal();
+    }
+
+    private static Money usd(String amount) {
+        return Money.of(new BigDecimal(amount), "USD");
+    }
+
+    private static BankAccount account(String number, String balance) {
+        BankAccount account = new BankAccount();
+        account.setUserId(1L);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setCurrency("USD");
+        account.setBalance(Money.of(new BigDecimal(balance)));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
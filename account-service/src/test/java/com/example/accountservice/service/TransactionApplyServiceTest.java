@@ -0,0 +1,165 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.dto.ApplyTransactionDTO;
+import com.example.accountservice.dto.ApplyTransactionResultDTO;
+import com.example.accountservice.model.AppliedTransaction;
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.AppliedTransactionRepository;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({TransactionApplyService.class, AccountTransferEngine.class, LedgerService.class, UserAccountSummaryService.class,
+        AccountCache.class, VelocityLimiter.class, SimpleMeterRegistry.class,
+        JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionApplyServiceTest {
+
+    @Autowired
+    private TransactionApplyService applyService;
+
+    @MockitoSpyBean
+    private AccountTransferEngine engine;
+
+    @Autowired
+    private BankAccountRepository accountRepository;
+
+    @Autowired
+    private AppliedTransactionRepository appliedTransactionRepository;
+
+    @Autowired
+    private LedgerPostingRepository ledgerPostingRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    private Long alice;
+    private Long bob;
+
+    @BeforeEach
+    void setUp() {
+        appliedTransactionRepository.deleteAll();
+        ledgerPostingRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        accountRepository.deleteAll();
+        alice = accountRepository.save(account("APPLY-A", "100.00")).getId();
+        bob = accountRepository.save(account("APPLY-B", "0.00")).getId();
+    }
+
+    @Test
+    void appliesBatchInOrderAndRejectsWhatCannotBeApplied() {
+        List<ApplyTransactionResultDTO> results = applyService.apply(List.of(
+                item(1L, alice, bob, "60.00"),
+                item(2L, alice, bob, "60.00"),
+                item(3L, bob, alice, "25.00"),
+                item(4L, alice, bob, "60.00"),
+                item(5L, bob, 999_999L, "1.00")));
+
+        assertThat(results).extracting(ApplyTransactionResultDTO::getStatus)
+                .containsExactly("APPLIED", "REJECTED", "APPLIED", "APPLIED", "REJECTED");
+        assertThat(results.get(1).getMessage()).isEqualTo("Insufficient balance");
+        assertThat(balance(alice)).isEqualByComparingTo("5.00");
+        assertThat(balance(bob)).isEqualByComparingTo("95.00");
+        assertThat(outboxEventRepository.count()).isEqualTo(6);
+    }
+
+    @Test
+    void retriedTransactionsReturnTheStoredOutcomeWithoutMovingMoneyAgain() {
+        applyService.apply(List.of(item(1L, alice, bob, "60.00"), item(2L, alice, bob, "60.00")));
+        // Số dư đủ cho giao dịch 2 sau khi nhận lại tiền, nhưng kết quả cũ vẫn được giữ
+        applyService.apply(List.of(item(3L, bob, alice, "60.00")));
+
+        List<ApplyTransactionResultDTO> retried = applyService.apply(List.of(
+                item(1L, alice, bob, "60.00"), item(2L, alice, bob, "60.00")));
+
+        assertThat(retried).extracting(ApplyTransactionResultDTO::getStatus).containsExactly("APPLIED", "REJECTED");
+        assertThat(balance(alice)).isEqualByComparingTo("100.00");
+        assertThat(balance(bob)).isEqualByComparingTo("0.00");
+        assertThat(ledgerPostingRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void onlyTransfersFromAnActiveAccountOfTheCreatorAreApplied() {
+        List<ApplyTransactionResultDTO> results = applyService.apply(List.of(
+                item(1L, null, alice, "25.00"),
+                item(2L, alice, null, "25.00"),
+                item(3L, alice, bob, "25.00", 2L),
+                item(4L, alice, bob, "25.00", null)));
+
+        assertThat(results).extracting(ApplyTransactionResultDTO::getMessage).containsExactly(
+                "Transaction must have both accounts", "Transaction must have both accounts",
+                "Source account is not owned by the requesting user", "Source account is not owned by the requesting user");
+
+        BankAccount inactive = accountRepository.findById(alice).orElseThrow();
+        inactive.setStatus("INACTIVE");
+        accountRepository.save(inactive);
+        assertThat(applyService.apply(List.of(item(5L, alice, bob, "25.00"))))
+                .extracting(ApplyTransactionResultDTO::getMessage).containsExactly("Source account is not active");
+
+        // Phần đã trừ trong transaction bị rollback: không có biến động, bút toán hay event nào
+        assertThat(balance(alice)).isEqualByComparingTo("100.00");
+        assertThat(balance(bob)).isEqualByComparingTo("0.00");
+        assertThat(ledgerPostingRepository.count()).isZero();
+        assertThat(outboxEventRepository.count()).isZero();
+        assertThat(appliedTransactionRepository.findAll()).extracting(AppliedTransaction::getStatus).containsOnly("REJECTED");
+    }
+
+    @Test
+    void transientDatabaseFailureIsRetriedInsteadOfRejected() {
+        doThrow(new CannotAcquireLockException("Lock wait timeout exceeded")).doCallRealMethod()
+                .when(engine).transfer(any(), any(), any(), any());
+
+        assertThatThrownBy(() -> applyService.apply(List.of(item(1L, alice, bob, "60.00"))))
+                .isInstanceOf(CannotAcquireLockException.class);
+        assertThat(appliedTransactionRepository.count()).isZero();
+
+        List<ApplyTransactionResultDTO> retried = applyService.apply(List.of(item(1L, alice, bob, "60.00")));
+
+        assertThat(retried).extracting(ApplyTransactionResultDTO::getStatus).containsExactly("APPLIED");
+        assertThat(balance(bob)).isEqualByComparingTo("60.00");
+    }
+
+    private BigDecimal balance(Long accountId) {
+        return accountRepository.findById(accountId).orElseThrow().getBalance().toBigDecimal();
+    }
+
+    private static ApplyTransactionDTO item(Long transactionId, Long from, Long to, String amount) {
+        return item(transactionId, from, to, amount, 1L);
+    }
+
+    private static ApplyTransactionDTO item(Long transactionId, Long from, Long to, String amount, Long userId) {
+        return new ApplyTransactionDTO(transactionId, from, to, new BigDecimal(amount), "USD", userId);
+    }
+
+    private static BankAccount account(String number, String balance) {
+        BankAccount account = new BankAccount();
+        account.setUserId(1L);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setCurrency("USD");
+        account.setBalance(Money.of(new BigDecimal(balance)));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
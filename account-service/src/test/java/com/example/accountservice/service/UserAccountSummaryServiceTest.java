@@ -0,0 +1,117 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.UserAccountSummaryRepository;
+import com.example.common.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "account.summary.balance-shards=4"
+})
+@Import(UserAccountSummaryService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserAccountSummaryServiceTest {
+
+    @Autowired
+    private UserAccountSummaryService userAccountSummaryService;
+
+    @Autowired
+    private BankAccountRepository accountRepository;
+
+    @Autowired
+    private UserAccountSummaryRepository summaryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository.deleteAll();
+        summaryRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM user_balance_shards");
+    }
+
+    @Test
+    void deltasAreSpreadOverShardsAndAddedToTheSummary() {
+        accountRepository.save(account(1L, "SUM-1", "100.00"));
+        assertThat(userAccountSummaryService.getSummary(1L, ids -> 7L).getTransactionCount()).isEqualTo(7L);
+
+        for (int i = 0; i < 40; i++) {
+            applyDelta(1L, "2.50");
+        }
+
+        assertThat(userAccountSummaryService.getSummary(1L, ids -> 0L).getTotalBalance()).isEqualByComparingTo("200.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_balance_shards WHERE user_id = 1", Integer.class))
+                .isBetween(2, 4);
+    }
+
+    @Test
+    void rebuildDoesNotCountShardDeltasTwiceAndTakesTransactionCountFromCounter() {
+        // Biến động đã vào shard và bank_accounts trước khi dòng tổng hợp được dựng
+        BankAccount first = accountRepository.save(account(2L, "SUM-2", "50.00"));
+        BankAccount second = accountRepository.save(account(2L, "SUM-3", "30.00"));
+        applyDelta(2L, "30.00");
+
+        var summary = userAccountSummaryService.getSummary(2L, ids -> {
+            assertThat(ids).containsExactlyInAnyOrder(first.getId(), second.getId());
+            return 12L;
+        });
+
+        assertThat(summary.getTotalBalance()).isEqualByComparingTo("110.00");
+        assertThat(summary.getAccountCount()).isEqualTo(2L);
+        assertThat(summary.getTransactionCount()).isEqualTo(12L);
+        assertThat(userAccountSummaryService.getSummary(2L, ids -> 0L).getTotalBalance()).isEqualByComparingTo("110.00");
+        assertThat(userAccountSummaryService.getSummary(2L, ids -> 0L).getTransactionCount()).isEqualTo(12L);
+    }
+
+    @Test
+    void summaryIsNotStoredWhenTransactionsCannotBeCounted() {
+        accountRepository.save(account(3L, "SUM-4", "10.00"));
+
+        var summary = userAccountSummaryService.getSummary(3L, ids -> {
+            throw new IllegalStateException("transaction-service unavailable");
+        });
+
+        assertThat(summary.getTotalBalance()).isEqualByComparingTo("10.00");
+        assertThat(summaryRepository.findById(3L)).isEmpty();
+        assertThat(userAccountSummaryService.getSummary(3L, ids -> 4L).getTransactionCount()).isEqualTo(4L);
+    }
+
+    private void applyDelta(Long userId, String amount) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE bank_accounts SET balance = balance + ? WHERE user_id = ? AND account_number = " +
+                    "(SELECT MIN(account_number) FROM bank_accounts WHERE user_id = ?)", new BigDecimal(amount), userId, userId);
+            userAccountSummaryService.applyBalanceDeltas(Map.of(userId, Money.of(new BigDecimal(amount))));
+        });
+    }
+
+    private static BankAccount account(Long userId, String number, String balance) {
+        BankAccount account = new BankAccount();
+        account.setUserId(userId);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setCurrency("USD");
+        account.setBalance(Money.of(new BigDecimal(balance)));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.BankAccount;
+import com.example.accountservice.repository.BankAccountRepository;
+import com.example.accountservice.repository.LedgerPostingRepository;
+import com.example.common.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "account.velocity.enabled=true",
+        "account.velocity.limits.DEFAULT.minute.count=3",
+        "account.velocity.limits.DEFAULT.day.amount=1000.00",
+        "account.velocity.limits.CHECKING.day.amount=5000.00",
+        "account.velocity.user.minute.count=5"
+})
+@Import({VelocityLimiter.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VelocityLimiterTest {
+
+    @Autowired
+    private VelocityLimiter velocityLimiter;
+
+    @Autowired
+    private BankAccountRepository accountRepository;
+
+    @Autowired
+    private LedgerPostingRepository ledgerPostingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        ledgerPostingRepository.deleteAll();
+        accountRepository.deleteAll();
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    void limitsFollowAccountTypeAndOwner() {
+        velocityLimiter.acquire(100L, 10L, "SAVINGS", 600_00, now);
+        assertThatThrownBy(() -> velocityLimiter.acquire(100L, 10L, "SAVINGS", 500_00, now))
+                .hasMessage("Velocity limit exceeded: account amount per day");
+        velocityLimiter.acquire(101L, 10L, "CHECKING", 4000_00, now);
+
+        velocityLimiter.acquire(101L, 10L, "CHECKING", 1_00, now);
+        velocityLimiter.acquire(102L, 10L, "SAVINGS", 1_00, now);
+        velocityLimiter.acquire(102L, 10L, "SAVINGS", 1_00, now);
+        assertThatThrownBy(() -> velocityLimiter.acquire(102L, 10L, "SAVINGS", 1_00, now))
+                .hasMessage("Velocity limit exceeded: user transfers per minute");
+    }
+
+    @Test
+    void releasedReservationFreesItsSlot() {
+        for (int i = 0; i < 3; i++) {
+            velocityLimiter.acquire(200L, 20L, null, 1_00, now).release();
+        }
+        for (int i = 0; i < 3; i++) {
+            velocityLimiter.acquire(200L, 20L, null, 1_00, now);
+        }
+
+        assertThatThrownBy(() -> velocityLimiter.acquire(200L, 20L, null, 1_00, now))
+                .hasMessage("Velocity limit exceeded: account transfers per minute");
+    }
+
+    @Test
+    void rebuildCountsRecentOutgoingTransfers() {
+        BankAccount account = accountRepository.save(account("VELOCITY-1"));
+        LocalDateTime recent = LocalDateTime.now().minusSeconds(5);
+        posting(account.getId(), "-400.00", "TRANSFER_OUT", LocalDateTime.now().minusDays(2));
+        posting(account.getId(), "-400.00", "TRANSFER_OUT", recent);
+        posting(account.getId(), "-400.00", "TRANSFER_OUT", recent);
+        posting(account.getId(), "900.00", "TRANSFER_IN", recent);
+
+        velocityLimiter.rebuild();
+
+        assertThatThrownBy(() -> velocityLimiter.acquire(account, Money.of(new BigDecimal("300.00"), "USD")))
+                .hasMessage("Velocity limit exceeded: account amount per day");
+        velocityLimiter.acquire(account, Money.of(new BigDecimal("100.00"), "USD"));
+    }
+
+    private void posting(Long accountId, String amount, String type, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO ledger_postings (account_id, amount, entry_type, created_at) VALUES (?, ?, ?, ?)",
+                accountId, new BigDecimal(amount), type, Timestamp.valueOf(createdAt));
+    }
+
+    private static BankAccount account(String number) {
+        BankAccount account = new BankAccount();
+        account.setUserId(30L);
+        account.setAccountNumber(number);
+        account.setAccountType("SAVINGS");
+        account.setCurrency("USD");
+        account.setBalance(Money.of(new BigDecimal("0.00")));
+        account.setStatus("ACTIVE");
+        return account;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.common.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Duration;
+
+/**
+ * Đăng ký ConnectionPoolBulkhead cho service web.
+ * Bật mặc định khi spring.threads.virtual.enabled=true, hoặc bằng bulkhead.enabled.
+ */
+@AutoConfiguration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("${bulkhead.enabled:${spring.threads.virtual.enabled:false}}")
+public class BulkheadAutoConfiguration {
+
+    @Bean
+    public ConnectionPoolBulkhead connectionPoolBulkhead(
+            MeterRegistry meterRegistry,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${bulkhead.permits-per-connection:2}") int permitsPerConnection,
+            @Value("${bulkhead.acquire-timeout:PT2S}") Duration acquireTimeout) {
+        return new ConnectionPoolBulkhead(meterRegistry, poolSize, permitsPerConnection, acquireTimeout);
+    }
+}
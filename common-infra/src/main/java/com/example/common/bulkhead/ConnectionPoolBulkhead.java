@@ -0,0 +1,156 @@
+package com.example.common.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Giới hạn số request xử lý đồng thời theo kích thước pool kết nối DB
+ * (maximum-pool-size x permits-per-connection).
+ * Với virtual thread, Tomcat không còn giới hạn số luồng nên hàng nghìn request có thể cùng
+ * chờ Hikari rồi hết connection-timeout; bulkhead cho request chờ tối đa acquire-timeout
+ * rồi trả 503 ngay thay vì dồn vào pool.
+ * Request async (DeferredResult, Callable...) giữ permit tới khi hoàn tất hẳn: lượt dispatch đầu lấy permit,
+ * các lượt async dispatch đi qua filter nhưng không lấy thêm, permit được trả một lần khi request kết thúc.
+ */
+public class ConnectionPoolBulkhead extends OncePerRequestFilter {
+
+    static final String PERMIT_ATTRIBUTE = ConnectionPoolBulkhead.class.getName() + ".PERMIT";
+
+    private final Semaphore permits;
+    private final int limit;
+    private final long acquireTimeoutNanos;
+    private final Counter rejected;
+    private final Timer waitTime;
+
+    public ConnectionPoolBulkhead(MeterRegistry meterRegistry, int poolSize, int permitsPerConnection,
+                                  Duration acquireTimeout) {
+        this.limit = Math.max(1, poolSize * permitsPerConnection);
+        this.permits = new Semaphore(limit, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        Gauge.builder("http.server.bulkhead.in_flight", this, bulkhead -> bulkhead.limit - bulkhead.permits.availablePermits())
+                .description("Requests currently holding a bulkhead permit")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("http.server.bulkhead.rejected")
+                .description("Requests rejected because no permit was free within the acquire timeout")
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("http.server.bulkhead.wait")
+                .description("Time a request waited for a bulkhead permit")
+                .register(meterRegistry);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Chờ permit tối đa acquire-timeout; false nếu hết thời gian
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        long began = System.nanoTime();
+        boolean acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        waitTime.record(System.nanoTime() - began, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejected.increment();
+        }
+        return acquired;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AtomicBoolean held = (AtomicBoolean) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (held == null) {
+            if (!acquire()) {
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.setHeader("Retry-After", "1");
+                return;
+            }
+            held = new AtomicBoolean(true);
+            request.setAttribute(PERMIT_ATTRIBUTE, held);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Mỗi lần startAsync tạo lại danh sách listener nên phải đăng ký sau từng lượt dispatch
+                request.getAsyncContext().addListener(new ReleaseOnComplete(held));
+            } else {
+                releaseOnce(held);
+            }
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void releaseOnce(AtomicBoolean held) {
+        if (held.compareAndSet(true, false)) {
+            release();
+        }
+    }
+
+    /**
+     * Trả permit khi request async kết thúc, kể cả khi client ngắt kết nối và không còn lượt dispatch nào
+     */
+    private final class ReleaseOnComplete implements AsyncListener {
+
+        private final AtomicBoolean held;
+
+        private ReleaseOnComplete(AtomicBoolean held) {
+            this.held = held;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            releaseOnce(held);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
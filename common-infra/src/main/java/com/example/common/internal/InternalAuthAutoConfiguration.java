@@ -0,0 +1,25 @@
+package com.example.common.internal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+
+/**
+ * Đăng ký InternalRequestFilter trước mọi filter khác của service
+ */
+@AutoConfiguration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class InternalAuthAutoConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<InternalRequestFilter> internalRequestFilter(
+            @Value("${internal.auth.token:}") String token) {
+        FilterRegistrationBean<InternalRequestFilter> registration =
+                new FilterRegistrationBean<>(new InternalRequestFilter(token));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.common.internal;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Chỉ cho service nội bộ gọi các endpoint có "/internal/" trong đường dẫn:
+ * request phải mang header X-Internal-Token trùng với internal.auth.token.
+ * Chưa cấu hình token thì mọi request vào endpoint nội bộ đều bị từ chối.
+ */
+@Slf4j
+public class InternalRequestFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Internal-Token";
+
+    private final byte[] token;
+
+    public InternalRequestFilter(String token) {
+        this.token = token != null && !token.isBlank() ? token.getBytes(StandardCharsets.UTF_8) : null;
+        if (this.token == null) {
+            log.warn("internal.auth.token is not set: all /internal/ endpoints will reject requests");
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().contains("/internal/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String presented = request.getHeader(HEADER);
+        if (token == null || presented == null
+                || !MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Rejected internal request {} {} from {}", request.getMethod(), request.getRequestURI(),
+                    request.getRemoteAddr());
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"success\":false,\"message\":\"Internal endpoint\"}");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
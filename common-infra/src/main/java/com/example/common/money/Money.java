@@ -0,0 +1,137 @@
+package com.example.common.money;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Số tiền dạng số nguyên đơn vị nhỏ nhất (cent) + mã tiền tệ, bất biến.
+ * Cộng/trừ dùng Math.*Exact nên tràn số ném ArithmeticException thay vì sai âm thầm.
+ * currency = null: số tiền chưa gắn loại tiền (ví dụ ZERO, số tiền đọc từ JSON request),
+ * được phép tính với mọi loại tiền; hai loại tiền khác nhau thì không được cộng/trừ.
+ * Scale luôn là SCALE nên 1.0 và 1.00 là cùng một giá trị; equals/compareTo xét cả số tiền lẫn loại tiền
+ * (compareTo == 0 khi và chỉ khi equals).
+ * JSON giữ dạng số thập phân như trước.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0, null);
+
+    private final long minorUnits;
+    private final String currency;
+
+    private Money(long minorUnits, String currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    /**
+     * Chuyển từ BigDecimal; không chấp nhận quá SCALE chữ số thập phân
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        if (amount == null) {
+            return null;
+        }
+        try {
+            return new Money(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact(), currency);
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Invalid amount: " + amount.toPlainString());
+        }
+    }
+
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        return of(amount, null);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public Money withCurrency(String currency) {
+        return Objects.equals(this.currency, currency) ? this : new Money(minorUnits, currency);
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minorUnits, other.minorUnits), commonCurrency(other));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), commonCurrency(other));
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isLessThan(Money other) {
+        commonCurrency(other);
+        return minorUnits < other.minorUnits;
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * So theo số tiền; cùng số tiền thì số chưa gắn loại tiền đứng trước (nhất quán với equals).
+     * Hai loại tiền khác nhau không so được
+     */
+    @Override
+    public int compareTo(Money other) {
+        commonCurrency(other);
+        int byAmount = Long.compare(minorUnits, other.minorUnits);
+        if (byAmount != 0 || Objects.equals(currency, other.currency)) {
+            return byAmount;
+        }
+        return currency == null ? -1 : 1;
+    }
+
+    private String commonCurrency(Money other) {
+        if (currency == null) {
+            return other.currency;
+        }
+        if (other.currency != null && !currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+        return currency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money other)) {
+            return false;
+        }
+        return minorUnits == other.minorUnits && Objects.equals(currency, other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + Objects.hashCode(currency);
+    }
+
+    @Override
+    public String toString() {
+        return currency != null ? toBigDecimal().toPlainString() + " " + currency : toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.common.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * Ánh xạ Money vào cột DECIMAL hiện có (scale 2); loại tiền nằm ở cột currency riêng,
+ * entity gắn lại loại tiền trong getter (converter không đọc được cột khác)
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return money != null ? money.toBigDecimal() : null;
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal value) {
+        return value != null ? Money.of(value, null) : null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.common.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Outbox dùng chung cho các service: đăng ký entity/repository outbox_events và OutboxPublisher.
+ * Chạy trước HibernateJpaAutoConfiguration để package outbox nằm trong phạm vi quét JPA
+ * (kể cả trong @DataJpaTest).
+ */
+@AutoConfiguration(after = JacksonAutoConfiguration.class, before = HibernateJpaAutoConfiguration.class)
+@AutoConfigurationPackage(basePackageClasses = OutboxEvent.class)
+public class OutboxAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(ObjectMapper.class)
+    public OutboxPublisher outboxPublisher(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        return new OutboxPublisher(outboxEventRepository, objectMapper);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.common.outbox;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Event chờ gửi Kafka, được ghi trong cùng transaction với thay đổi dữ liệu.
+ * OutboxRelay gửi theo thứ tự id rồi xóa khỏi bảng.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "topic", nullable = false)
+    private String topic;
+
+    @Column(name = "aggregate_key")
+    private String aggregateKey; // id tài khoản/giao dịch/user, dùng để giữ thứ tự theo aggregate
+
+    @Column(name = "message_key")
+    private String messageKey; // key của Kafka message
+
+    @Column(name = "payload_type", nullable = false)
+    private String payloadType;
+
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "LONGTEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,29 @@
+package com.example.common.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Lấy một batch theo thứ tự id và khóa lại; các node khác chờ nên thứ tự gửi được giữ nguyên
+     */
+    @Query(value = "SELECT * FROM outbox_events ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e")
+    Optional<LocalDateTime> findOldestCreatedAt();
+}
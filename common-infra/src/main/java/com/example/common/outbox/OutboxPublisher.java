@@ -0,0 +1,40 @@
+package com.example.common.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ghi event vào outbox trong transaction hiện tại thay vì gọi kafkaTemplate.send trực tiếp.
+ * Nếu transaction rollback thì event cũng biến mất, không còn event "ma".
+ */
+@RequiredArgsConstructor
+public class OutboxPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(String topic, Object aggregateKey, String messageKey, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setTopic(topic);
+        event.setAggregateKey(aggregateKey != null ? String.valueOf(aggregateKey) : null);
+        event.setMessageKey(messageKey);
+        event.setPayloadType(payload.getClass().getName());
+        event.setPayload(toJson(payload));
+        event.setCreatedAt(LocalDateTime.now());
+        outboxEventRepository.save(event);
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize outbox payload " + payload.getClass().getName(), e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.common.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đẩy event từ outbox sang Kafka theo batch.
+ * - Batch được lấy theo thứ tự id và khóa FOR UPDATE, nên chỉ một node gửi tại một thời điểm
+ *   và thứ tự theo từng aggregate key được giữ nguyên.
+ * - Các message được gửi bất đồng bộ để producer gom batch/nén, sau đó chờ ack một lần.
+ * - Nếu một event bị lỗi, các event sau cùng aggregate key trong batch được giữ lại để gửi lại.
+ * Độ trễ outbox được báo qua outbox.lag.events và outbox.lag.seconds.
+ * Bean được tạo bởi OutboxRelayAutoConfiguration khi service có KafkaTemplate.
+ */
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, Object> kafkaTemplate,
+                       ObjectMapper objectMapper,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.send-timeout:PT10S}") Duration sendTimeout) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        Gauge.builder("outbox.lag.events", pendingEvents, AtomicLong::get)
+                .description("Outbox events waiting to be relayed")
+                .register(meterRegistry);
+        Gauge.builder("outbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Age of the oldest unrelayed outbox event")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public void relay() {
+        try {
+            int relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed >= batchSize);
+            updateLag();
+        } catch (Exception e) {
+            log.error("Outbox relay failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gửi một batch, trả về số event đã gửi thành công (và đã xóa khỏi outbox)
+     */
+    private int relayBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<SendResult<String, Object>>> futures = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            futures.add(send(event));
+        }
+        kafkaTemplate.flush();
+
+        List<Long> sentIds = new ArrayList<>(batch.size());
+        Set<String> blockedKeys = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            if (event.getAggregateKey() != null && blockedKeys.contains(event.getAggregateKey())) {
+                continue;
+            }
+            try {
+                futures.get(i).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                sentIds.add(event.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.warn("Outbox event {} to {} not delivered: {}", event.getId(), event.getTopic(), e.getMessage());
+                if (event.getAggregateKey() != null) {
+                    blockedKeys.add(event.getAggregateKey());
+                }
+            }
+        }
+
+        if (!sentIds.isEmpty()) {
+            outboxEventRepository.deleteByIdIn(sentIds);
+        }
+        return sentIds.size() == batch.size() ? sentIds.size() : 0;
+    }
+
+    private CompletableFuture<SendResult<String, Object>> send(OutboxEvent event) {
+        try {
+            Object payload = objectMapper.readValue(event.getPayload(), Class.forName(event.getPayloadType()));
+            return kafkaTemplate.send(event.getTopic(), event.getMessageKey(), payload);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void updateLag() {
+        pendingEvents.set(outboxEventRepository.count());
+        lagSeconds.set(outboxEventRepository.findOldestCreatedAt()
+                .map(oldest -> Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()))
+                .orElse(0L));
+    }
+}
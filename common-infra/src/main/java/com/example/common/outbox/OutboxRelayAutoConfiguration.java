@@ -0,0 +1,16 @@
+package com.example.common.outbox;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * Bật OutboxRelay khi service có KafkaTemplate (cấu hình qua outbox.relay.*)
+ */
+@AutoConfiguration(after = {KafkaAutoConfiguration.class, OutboxAutoConfiguration.class})
+@ConditionalOnBean(KafkaTemplate.class)
+@Import(OutboxRelay.class)
+public class OutboxRelayAutoConfiguration {
+}
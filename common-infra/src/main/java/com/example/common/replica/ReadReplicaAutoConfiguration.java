@@ -0,0 +1,105 @@
+package com.example.common.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Tách đọc/ghi khi bật datasource.replica.enabled: hai pool Hikari "primary" (spring.datasource.*)
+ * và "replica" (datasource.replica.*), DataSource chính là routing bọc LazyConnectionDataSourceProxy.
+ * Tắt (mặc định) thì Spring Boot tự cấu hình một DataSource như cũ.
+ * Chạy trước DataSourceAutoConfiguration để DataSource mặc định lùi lại.
+ * Metric mỗi pool: hikaricp.connections.* với tag pool=primary|replica.
+ */
+@AutoConfiguration(before = DataSourceAutoConfiguration.class)
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaAutoConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        return named(pool, "primary", meterRegistry);
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(MeterRegistry meterRegistry,
+                                              DataSourceProperties properties,
+                                              @Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${datasource.replica.password:${spring.datasource.password:}}") String password,
+                                              @Value("${datasource.replica.max-pool-size:10}") int maxPoolSize) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaximumPoolSize(maxPoolSize);
+        pool.setReadOnly(true);
+        return named(pool, "replica", meterRegistry);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${datasource.replica.max-lag:PT2S}") Duration maxLag) {
+        return new ReplicaLagMonitor(primary, replica, maxLag, meterRegistry);
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+            @Value("${datasource.replica.read-your-writes-window:PT5S}") Duration window) {
+        return new ReadYourWritesTracker(window);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 ReadYourWritesTracker readYourWritesTracker,
+                                 MeterRegistry meterRegistry) {
+        return routing(primary, replica, replicaLagMonitor, readYourWritesTracker, meterRegistry);
+    }
+
+    static DataSource routing(DataSource primary, DataSource replica, ReplicaLagMonitor replicaLagMonitor,
+                              ReadYourWritesTracker readYourWritesTracker, MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(
+                primary, replica, replicaLagMonitor, readYourWritesTracker, meterRegistry));
+    }
+
+    static HikariDataSource named(HikariDataSource pool, String name, MeterRegistry meterRegistry) {
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
+    }
+
+    /**
+     * Filter gắn uid chỉ có nghĩa với service web; thiếu nó mọi lần đọc được coi là việc nền và đi primary
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ReadYourWritesWebConfiguration {
+
+        @Bean
+        public ReadYourWritesFilter readYourWritesFilter() {
+            return new ReadYourWritesFilter();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.common.replica;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Chọn primary/replica khi lấy connection:
+ * - chỉ công việc @Transactional(readOnly = true) trong một HTTP request mới đi replica
+ *   (job nền, relay, luồng group commit luôn đọc primary),
+ * - user vừa ghi trong cửa sổ read-your-writes đọc primary (chỉ theo uid người ghi, xem ReadYourWritesTracker),
+ * - replica trễ hơn max-lag hoặc không đo được thì đọc primary,
+ * - phần việc chạy trong onPrimary (ví dụ nạp cache dùng chung cho mọi user) đọc primary.
+ * Phải được bọc bởi LazyConnectionDataSourceProxy để connection chỉ được lấy sau khi
+ * transaction đã gắn cờ readOnly. Số lần chọn mỗi pool được đếm qua datasource.routing.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final ReadYourWritesTracker readYourWrites;
+    private final Counter writes;
+    private final Counter backgroundReads;
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter lagFallbacks;
+    private final Counter pinnedReads;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica,
+                                      ReplicaLagMonitor lagMonitor,
+                                      ReadYourWritesTracker readYourWrites,
+                                      MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+        this.writes = routed(meterRegistry, PRIMARY, "write");
+        this.backgroundReads = routed(meterRegistry, PRIMARY, "background");
+        this.replicaReads = routed(meterRegistry, REPLICA, "read");
+        this.stickyReads = routed(meterRegistry, PRIMARY, "read-your-writes");
+        this.lagFallbacks = routed(meterRegistry, PRIMARY, "replica-lag");
+        this.pinnedReads = routed(meterRegistry, PRIMARY, "pinned");
+    }
+
+    /**
+     * Chạy work với mọi connection lấy trên thread hiện tại đi primary.
+     * Dùng khi kết quả đọc được dùng lại cho user khác (cache), vì read-your-writes chỉ che user vừa ghi.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PINNED.get();
+        PINNED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PINNED.remove();
+            } else {
+                PINNED.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWrite();
+            writes.increment();
+            return PRIMARY;
+        }
+        if (PINNED.get() != null) {
+            pinnedReads.increment();
+            return PRIMARY;
+        }
+        if (!ReadYourWritesTracker.inRequest()) {
+            backgroundReads.increment();
+            return PRIMARY;
+        }
+        if (readYourWrites.isSticky()) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+        if (!lagMonitor.isReplicaUsable()) {
+            lagFallbacks.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return REPLICA;
+    }
+
+    /**
+     * Mở cửa sổ read-your-writes khi transaction ghi lấy connection, và mở lại sau khi commit
+     * để cửa sổ tính từ lúc dữ liệu thực sự được ghi. Connection lấy ngoài transaction
+     * (kể cả lần LazyConnectionDataSourceProxy dò autocommit/isolation) không tính là ghi.
+     */
+    private void recordWrite() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        readYourWrites.recordWrite();
+        if (ReadYourWritesTracker.inRequest() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readYourWrites.recordWrite();
+                }
+            });
+        }
+    }
+
+    private static Counter routed(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("datasource.routing")
+                .description("Connections handed out by the read/write routing datasource")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
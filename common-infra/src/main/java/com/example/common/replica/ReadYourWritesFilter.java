@@ -0,0 +1,26 @@
+package com.example.common.replica;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Gắn user của request (header uid) vào thread cho ReadYourWritesTracker
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadYourWritesTracker.bind(request.getHeader("uid"));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWritesTracker.clear();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.common.replica;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-your-writes cho routing primary/replica.
+ * Sau khi user ghi, các lần đọc của chính user đó trong cửa sổ window đi primary
+ * (replica có thể chưa nhận được bản ghi mới). Chỉ áp dụng trong node hiện tại.
+ * Cửa sổ chỉ gắn với uid của người ghi: người khác đọc dữ liệu vừa đổi (ví dụ người nhận chuyển khoản
+ * xem số dư) vẫn có thể đi replica và thấy bản cũ tối đa max-lag; phần đọc cần mới nhất cho mọi người
+ * thì chạy trong ReadWriteRoutingDataSource.onPrimary.
+ * Request hiện tại (và user của nó, lấy từ header uid) được gắn vào thread bởi ReadYourWritesFilter.
+ */
+public class ReadYourWritesTracker {
+
+    /** User của request đang chạy trên thread; "" là request không có uid, null là không phải request */
+    private static final ThreadLocal<String> CURRENT_USER = new ThreadLocal<>();
+
+    private final long windowNanos;
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+    private volatile long nextPurge;
+
+    public ReadYourWritesTracker(Duration window) {
+        this.windowNanos = window.toNanos();
+        this.nextPurge = System.nanoTime() + windowNanos;
+    }
+
+    public static void bind(String userId) {
+        CURRENT_USER.set(userId != null ? userId : "");
+    }
+
+    public static void clear() {
+        CURRENT_USER.remove();
+    }
+
+    public static boolean inRequest() {
+        return CURRENT_USER.get() != null;
+    }
+
+    /**
+     * Ghi nhận user hiện tại vừa ghi; các lần đọc tiếp theo trong window đi primary
+     */
+    public void recordWrite() {
+        String userId = CURRENT_USER.get();
+        if (userId == null || userId.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        stickyUntil.put(userId, now + windowNanos);
+        if (now - nextPurge > 0) {
+            nextPurge = now + windowNanos;
+            stickyUntil.values().removeIf(until -> until - now <= 0);
+        }
+    }
+
+    /**
+     * User hiện tại còn trong cửa sổ sau lần ghi gần nhất hay không
+     */
+    public boolean isSticky() {
+        String userId = CURRENT_USER.get();
+        if (userId == null || userId.isEmpty()) {
+            return false;
+        }
+        Long until = stickyUntil.get(userId);
+        return until != null && until - System.nanoTime() > 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.common.replica;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Đo độ trễ replica bằng heartbeat: mỗi chu kỳ ghi thời điểm hiện tại vào replica_heartbeat trên primary,
+ * rồi đọc lại từ replica; độ trễ = now - beat_at đọc được (sai số tối đa một chu kỳ).
+ * Replica bị coi là không dùng được khi trễ hơn max-lag, khi chưa đo được lần nào hoặc khi truy vấn lỗi.
+ * Độ trễ được báo qua datasource.replica.lag (giây).
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    static final String CREATE_SQL =
+            "CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+    private volatile long lagMillis = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag, MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMillis = maxLag.toMillis();
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagMillis < 0 ? Double.NaN : monitor.lagMillis / 1000.0)
+                .description("Replica lag measured through the heartbeat table")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isReplicaUsable() {
+        long lag = lagMillis;
+        return lag >= 0 && lag <= maxLagMillis;
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.heartbeat-interval-ms:500}")
+    public void check() {
+        long now = System.currentTimeMillis();
+        try {
+            beat(now);
+        } catch (Exception e) {
+            log.warn("Replica heartbeat write failed: {}", e.getMessage());
+        }
+        try {
+            List<Long> beats = replica.queryForList("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Long.class);
+            lagMillis = beats.isEmpty() ? -1 : Math.max(0, now - beats.get(0));
+        } catch (Exception e) {
+            lagMillis = -1;
+            log.warn("Replica heartbeat read failed, reads fall back to primary: {}", e.getMessage());
+        }
+    }
+
+    private void beat(long now) {
+        try {
+            if (primary.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", now) > 0) {
+                return;
+            }
+        } catch (BadSqlGrammarException e) {
+            // Lần chạy đầu: chưa có bảng
+            primary.execute(CREATE_SQL);
+        }
+        if (primary.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", now) == 0) {
+            primary.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", now);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.common.sequence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Đăng ký IdSequenceInitializer cho các bảng trong id-sequence.tables (service dùng @TableGenerator trên number_sequences)
+ */
+@AutoConfiguration(after = JdbcTemplateAutoConfiguration.class)
+@ConditionalOnProperty("id-sequence.tables")
+public class IdSequenceAutoConfiguration {
+
+    @Bean
+    public IdSequenceInitializer idSequenceInitializer(JdbcTemplate jdbcTemplate,
+                                                       @Value("${id-sequence.tables}") List<String> tables) {
+        return new IdSequenceInitializer(jdbcTemplate, tables);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.common.sequence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Bảng chuyển từ AUTO_INCREMENT sang id cấp theo khối (@TableGenerator pooled-lo trên number_sequences):
+ * trước khi nhận request/event, đưa next_value lên trên id lớn nhất hiện có để khối đầu tiên không trùng id cũ.
+ * Tên sequence (pkColumnValue của @TableGenerator) trùng tên bảng.
+ * Chỉ tăng, không bao giờ giảm, nên chạy lại hoặc nhiều node cùng khởi động đều an toàn.
+ * Khi nâng cấp cần dừng các node bản cũ (còn ghi bằng AUTO_INCREMENT) trước khi node bản mới nhận ghi.
+ */
+@Slf4j
+public class IdSequenceInitializer implements SmartInitializingSingleton {
+
+    private static final String RAISE_SQL = "UPDATE number_sequences SET next_value = ? WHERE name = ? AND next_value <= ?";
+    private static final String EXISTS_SQL = "SELECT COUNT(*) FROM number_sequences WHERE name = ?";
+    private static final String INIT_SQL = "INSERT INTO number_sequences (name, next_value) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<String> tables;
+
+    public IdSequenceInitializer(JdbcTemplate jdbcTemplate, List<String> tables) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tables = List.copyOf(tables);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        tables.forEach(this::align);
+    }
+
+    void align(String table) {
+        long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        if (jdbcTemplate.update(RAISE_SQL, maxId + 1, table, maxId) > 0) {
+            log.info("Raised id sequence {} above existing id {}", table, maxId);
+            return;
+        }
+        if (jdbcTemplate.queryForObject(EXISTS_SQL, Integer.class, table) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INIT_SQL, table, maxId + 1);
+            log.info("Created id sequence {} starting at {}", table, maxId + 1);
+        } catch (DuplicateKeyException e) {
+            // Node khác vừa tạo dòng sequence
+            jdbcTemplate.update(RAISE_SQL, maxId + 1, table, maxId);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.common.velocity;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bộ đếm cửa sổ trượt không khóa: vòng buckets ô, mỗi ô dài window / buckets, đếm số lần và tổng tiền (cent).
+ * Ô mang số thứ tự epoch = thời điểm / độ dài ô; ghi vào vị trí đang giữ epoch cũ thì ô được thay bằng ô mới qua CAS.
+ * Một vị trí chỉ bị thay khi thời gian đã đi hết một vòng, nên lần ghi đua với lần thay chỉ mất phần đã ra khỏi cửa sổ.
+ * Tổng cửa sổ là tổng các ô có epoch trong buckets ô gần nhất, sai số tối đa một ô.
+ */
+public final class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> ring;
+
+    public SlidingWindowCounter(Duration window, int buckets) {
+        if (buckets <= 0 || window.toMillis() < buckets) {
+            throw new IllegalArgumentException("Window must be at least one millisecond per bucket");
+        }
+        this.bucketMillis = window.toMillis() / buckets;
+        this.ring = new AtomicReferenceArray<>(buckets);
+    }
+
+    /**
+     * Cộng vào ô chứa thời điểm atMillis, trả về ô để hoàn lại sau này; null nếu thời điểm đã ra khỏi cửa sổ
+     */
+    public Bucket add(long atMillis, long count, long amount) {
+        long epoch = atMillis / bucketMillis;
+        int index = (int) Math.floorMod(epoch, (long) ring.length());
+        while (true) {
+            Bucket bucket = ring.get(index);
+            if (bucket != null && bucket.epoch == epoch) {
+                bucket.add(count, amount);
+                return bucket;
+            }
+            if (bucket != null && bucket.epoch > epoch) {
+                return null;
+            }
+            Bucket fresh = new Bucket(epoch);
+            fresh.add(count, amount);
+            if (ring.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * Số lần trong cửa sổ kết thúc tại nowMillis
+     */
+    public long count(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - ring.length();
+        long total = 0;
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && bucket.epoch > oldest) {
+                total += bucket.count.get();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Tổng tiền (cent) trong cửa sổ kết thúc tại nowMillis
+     */
+    public long amount(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - ring.length();
+        long total = 0;
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && bucket.epoch > oldest) {
+                total += bucket.amount.get();
+            }
+        }
+        return total;
+    }
+
+    public static final class Bucket {
+        private final long epoch;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong amount = new AtomicLong();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        public void add(long count, long amount) {
+            this.count.addAndGet(count);
+            this.amount.addAndGet(amount);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.common.velocity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.env.Environment;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cửa sổ tần suất (số lần và tổng tiền mỗi phút/giờ/ngày) theo tài khoản gửi và theo user sở hữu, giữ trong bộ nhớ.
+ * - Mỗi tài khoản/user có một SlidingWindowCounter cho từng cửa sổ; lần gửi được cộng trước rồi mới so giới hạn,
+ *   vượt thì trừ lại và từ chối, nên hai request đồng thời không thể cùng lọt qua giới hạn.
+ * - Giới hạn tài khoản theo loại tài khoản: {prefix}.limits.{TYPE}.{minute|hour|day}.{count|amount}
+ *   (thiếu thì lấy DEFAULT), giới hạn user ở {prefix}.user.*; không cấu hình hoặc 0 là không giới hạn.
+ * - Bộ đếm là của từng node: giới hạn cấu hình là của cả cụm và được chia đều cho {prefix}.replicas node
+ *   (làm tròn lên), đúng khi load balancer rải request của một user đều giữa các node.
+ * - Tài khoản/user không có lần gửi nào trong cửa sổ dài nhất được dọn bằng evictIdle.
+ */
+public class VelocityTracker {
+
+    public static final String DEFAULT_TYPE = "DEFAULT";
+    public static final Duration LONGEST = Window.DAY.length;
+    private static final int BUCKETS = 60;
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    enum Window {
+        MINUTE(Duration.ofMinutes(1)),
+        HOUR(Duration.ofHours(1)),
+        DAY(Duration.ofDays(1));
+
+        private static final Window[] ALL = values();
+
+        private final Duration length;
+
+        Window(Duration length) {
+            this.length = length;
+        }
+    }
+
+    /**
+     * Chủ sở hữu và loại của tài khoản gửi; userId null thì chỉ áp giới hạn tài khoản
+     */
+    public record Owner(Long userId, String accountType) {
+    }
+
+    private final Environment environment;
+    private final String prefix;
+    private final String noun;
+    private final int replicas;
+    private final Limits userLimits;
+    private final Map<String, Limits> typeLimits = new ConcurrentHashMap<>();
+    private final Map<Long, AccountWindows> accounts = new ConcurrentHashMap<>();
+    private final Map<Long, Windows> users = new ConcurrentHashMap<>();
+    private final Timer checkTimer;
+    private final Counter rejectedByAccount;
+    private final Counter rejectedByUser;
+
+    /**
+     * @param prefix tiền tố cấu hình và metric, ví dụ transactions.velocity
+     * @param noun   tên lần gửi trong thông báo lỗi, ví dụ transactions
+     */
+    public VelocityTracker(Environment environment, MeterRegistry meterRegistry, String prefix, String noun) {
+        this.environment = environment;
+        this.prefix = prefix;
+        this.noun = noun;
+        this.replicas = Math.max(1, environment.getProperty(prefix + ".replicas", Integer.class, 1));
+        this.userLimits = loadLimits(prefix + ".user", null);
+        this.checkTimer = Timer.builder(prefix + ".check")
+                .description("Time to check and record an outgoing " + noun + " against velocity limits")
+                .register(meterRegistry);
+        this.rejectedByAccount = Counter.builder(prefix + ".rejected")
+                .tag("scope", "account")
+                .description("Outgoing " + noun + " rejected by velocity limits")
+                .register(meterRegistry);
+        this.rejectedByUser = Counter.builder(prefix + ".rejected")
+                .tag("scope", "user")
+                .description("Outgoing " + noun + " rejected by velocity limits")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".tracked", accounts, Map::size)
+                .tag("scope", "account")
+                .description("Accounts with velocity windows in memory")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".tracked", users, Map::size)
+                .tag("scope", "user")
+                .description("Users with velocity windows in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cộng lần gửi từ accountId vào các cửa sổ, vượt giới hạn thì ném lỗi và không cộng.
+     * ownerLookup chỉ được gọi khi tài khoản chưa có trong bộ nhớ.
+     */
+    public Reservation acquire(Long accountId, Function<Long, Owner> ownerLookup, long amount, long nowMillis) {
+        long started = System.nanoTime();
+        try {
+            return check(account(accountId, ownerLookup, nowMillis), amount, nowMillis);
+        } finally {
+            checkTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Như acquire ở trên khi người gọi đã biết chủ sở hữu hiện tại của tài khoản
+     */
+    public Reservation acquire(Long accountId, Owner owner, long amount, long nowMillis) {
+        long started = System.nanoTime();
+        try {
+            AccountWindows account = account(accountId, id -> owner, nowMillis);
+            account.owner = owner;
+            return check(account, amount, nowMillis);
+        } finally {
+            checkTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Cộng lần gửi đã xảy ra tại atMillis mà không kiểm tra giới hạn
+     */
+    public void record(Long accountId, Function<Long, Owner> ownerLookup, long atMillis, long amount, long nowMillis) {
+        AccountWindows account = account(accountId, ownerLookup, nowMillis);
+        account.add(null, 0, atMillis, amount);
+        Owner owner = account.owner;
+        if (owner != null && owner.userId() != null) {
+            user(owner.userId(), nowMillis).add(null, 0, atMillis, amount);
+        }
+    }
+
+    /**
+     * Cập nhật chủ sở hữu/loại của tài khoản đang theo dõi
+     */
+    public void ownerChanged(Long accountId, Owner owner) {
+        AccountWindows account = accounts.get(accountId);
+        if (account != null) {
+            account.owner = owner;
+        }
+    }
+
+    /**
+     * Dọn tài khoản/user không có lần gửi nào trong cửa sổ dài nhất, trả về số khóa đã dọn
+     */
+    public int evictIdle(long nowMillis) {
+        long cutoff = nowMillis - LONGEST.toMillis();
+        return evict(accounts, cutoff) + evict(users, cutoff);
+    }
+
+    public int trackedAccounts() {
+        return accounts.size();
+    }
+
+    public int trackedUsers() {
+        return users.size();
+    }
+
+    private Reservation check(AccountWindows account, long amount, long nowMillis) {
+        Owner owner = account.owner;
+        Windows user = owner != null && owner.userId() != null ? user(owner.userId(), nowMillis) : null;
+        SlidingWindowCounter.Bucket[] buckets = new SlidingWindowCounter.Bucket[Window.ALL.length * 2];
+        account.add(buckets, 0, nowMillis, amount);
+        if (user != null) {
+            user.add(buckets, Window.ALL.length, nowMillis, amount);
+        }
+        Reservation reservation = new Reservation(buckets, amount);
+
+        String exceeded = account.exceeded(limitsFor(owner != null ? owner.accountType() : null), nowMillis);
+        if (exceeded != null) {
+            reservation.release();
+            rejectedByAccount.increment();
+            throw new RuntimeException("Velocity limit exceeded: account " + exceeded);
+        }
+        exceeded = user != null ? user.exceeded(userLimits, nowMillis) : null;
+        if (exceeded != null) {
+            reservation.release();
+            rejectedByUser.increment();
+            throw new RuntimeException("Velocity limit exceeded: user " + exceeded);
+        }
+        return reservation;
+    }
+
+    private static <W extends Windows> int evict(Map<Long, W> windows, long cutoff) {
+        int evicted = 0;
+        for (Map.Entry<Long, W> entry : windows.entrySet()) {
+            if (entry.getValue().retire(cutoff)) {
+                windows.remove(entry.getKey(), entry.getValue());
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private AccountWindows account(Long accountId, Function<Long, Owner> ownerLookup, long nowMillis) {
+        while (true) {
+            AccountWindows account = accounts.get(accountId);
+            if (account == null) {
+                Owner owner = ownerLookup.apply(accountId);
+                account = accounts.computeIfAbsent(accountId, id -> new AccountWindows(owner, nowMillis));
+            }
+            if (account.touch(nowMillis)) {
+                return account;
+            }
+            accounts.remove(accountId, account);
+        }
+    }
+
+    private Windows user(Long userId, long nowMillis) {
+        while (true) {
+            Windows user = users.computeIfAbsent(userId, id -> new Windows(nowMillis));
+            if (user.touch(nowMillis)) {
+                return user;
+            }
+            users.remove(userId, user);
+        }
+    }
+
+    private Limits limitsFor(String accountType) {
+        String type = accountType != null ? accountType : DEFAULT_TYPE;
+        Limits limits = typeLimits.get(type);
+        if (limits == null) {
+            Limits fallback = DEFAULT_TYPE.equals(type) ? null : limitsFor(DEFAULT_TYPE);
+            limits = loadLimits(prefix + ".limits." + type, fallback);
+            typeLimits.putIfAbsent(type, limits);
+        }
+        return limits;
+    }
+
+    /**
+     * Đọc giới hạn của cả cụm rồi chia cho số node; phần của một node ít nhất là 1
+     */
+    private Limits loadLimits(String name, Limits fallback) {
+        long[] maxCount = new long[Window.ALL.length];
+        long[] maxAmount = new long[Window.ALL.length];
+        for (Window window : Window.ALL) {
+            String key = name + "." + window.name().toLowerCase();
+            int i = window.ordinal();
+            Long count = environment.getProperty(key + ".count", Long.class);
+            maxCount[i] = count != null ? perReplica(count) : fallback != null ? fallback.maxCount[i] : 0L;
+            BigDecimal amount = environment.getProperty(key + ".amount", BigDecimal.class);
+            maxAmount[i] = amount != null ? perReplica(amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact())
+                    : fallback != null ? fallback.maxAmount[i] : 0L;
+        }
+        return new Limits(maxCount, maxAmount);
+    }
+
+    private long perReplica(long limit) {
+        return limit > 0 ? (limit + replicas - 1) / replicas : 0L;
+    }
+
+    /**
+     * Phần đã cộng của một lần gửi, trả lại khi lần gửi không thành
+     */
+    public static final class Reservation {
+
+        public static final Reservation NONE = new Reservation(new SlidingWindowCounter.Bucket[0], 0);
+
+        private final SlidingWindowCounter.Bucket[] buckets;
+        private final long amount;
+
+        private Reservation(SlidingWindowCounter.Bucket[] buckets, long amount) {
+            this.buckets = buckets;
+            this.amount = amount;
+        }
+
+        public void release() {
+            for (SlidingWindowCounter.Bucket bucket : buckets) {
+                if (bucket != null) {
+                    bucket.add(-1, -amount);
+                }
+            }
+        }
+    }
+
+    /**
+     * Giới hạn số lần/tổng tiền (cent) của một node theo từng cửa sổ, 0 là không giới hạn
+     */
+    private record Limits(long[] maxCount, long[] maxAmount) {
+    }
+
+    /**
+     * Cửa sổ của một khóa; lastUsed = RETIRED khi đã bị dọn, luồng đang dùng thì tạo bản mới
+     */
+    private class Windows {
+        private final SlidingWindowCounter[] counters = new SlidingWindowCounter[Window.ALL.length];
+        private final AtomicLong lastUsed;
+
+        Windows(long nowMillis) {
+            for (Window window : Window.ALL) {
+                counters[window.ordinal()] = new SlidingWindowCounter(window.length, BUCKETS);
+            }
+            this.lastUsed = new AtomicLong(nowMillis);
+        }
+
+        void add(SlidingWindowCounter.Bucket[] buckets, int offset, long atMillis, long amount) {
+            for (int i = 0; i < counters.length; i++) {
+                SlidingWindowCounter.Bucket bucket = counters[i].add(atMillis, 1, amount);
+                if (buckets != null) {
+                    buckets[offset + i] = bucket;
+                }
+            }
+            lastUsed.accumulateAndGet(atMillis, (current, at) -> current == RETIRED ? RETIRED : Math.max(current, at));
+        }
+
+        String exceeded(Limits limits, long nowMillis) {
+            for (Window window : Window.ALL) {
+                int i = window.ordinal();
+                if (limits.maxCount[i] > 0 && counters[i].count(nowMillis) > limits.maxCount[i]) {
+                    return noun + " per " + window.name().toLowerCase();
+                }
+                if (limits.maxAmount[i] > 0 && counters[i].amount(nowMillis) > limits.maxAmount[i]) {
+                    return "amount per " + window.name().toLowerCase();
+                }
+            }
+            return null;
+        }
+
+        boolean touch(long nowMillis) {
+            while (true) {
+                long current = lastUsed.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (current >= nowMillis || lastUsed.compareAndSet(current, nowMillis)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean retire(long cutoff) {
+            long current = lastUsed.get();
+            return current != RETIRED && current < cutoff && lastUsed.compareAndSet(current, RETIRED);
+        }
+    }
+
+    private final class AccountWindows extends Windows {
+        private volatile Owner owner;
+
+        AccountWindows(Owner owner, long nowMillis) {
+            super(nowMillis);
+            this.owner = owner;
+        }
+    }
+}
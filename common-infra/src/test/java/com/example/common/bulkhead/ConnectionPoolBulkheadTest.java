@@ -0,0 +1,59 @@
+package com.example.common.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionPoolBulkheadTest {
+
+    private final ConnectionPoolBulkhead bulkhead =
+            new ConnectionPoolBulkhead(new SimpleMeterRegistry(), 1, 1, Duration.ofMillis(10));
+
+    @Test
+    void requestOverTheLimitIsRejectedWith503() throws Exception {
+        assertThat(bulkhead.tryAcquire()).isTrue();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        bulkhead.doFilter(new MockHttpServletRequest("GET", "/accounts/1"), response, (req, res) -> { });
+
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+        bulkhead.release();
+        assertThat(run(new MockHttpServletRequest("GET", "/accounts/1"), (req, res) -> { }).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void asyncRequestHoldsItsPermitUntilItCompletes() throws Exception {
+        assertThat(bulkhead.shouldNotFilterAsyncDispatch()).isFalse();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/accounts/1");
+        request.setAsyncSupported(true);
+
+        run(request, (req, res) -> req.startAsync());
+
+        // Lượt dispatch đầu đã xong nhưng việc async còn chạy: request khác phải chờ
+        assertThat(run(new MockHttpServletRequest("GET", "/accounts/2"), (req, res) -> { }).getStatus()).isEqualTo(503);
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertThat(run(new MockHttpServletRequest("GET", "/accounts/2"), (req, res) -> { }).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void actuatorIsNotLimited() throws Exception {
+        assertThat(bulkhead.tryAcquire()).isTrue();
+
+        assertThat(run(new MockHttpServletRequest("GET", "/actuator/health"), (req, res) -> { }).getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletResponse run(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        bulkhead.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.common.internal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InternalRequestFilterTest {
+
+    private static final String APPLY = "/accounts/internal/transactions/apply";
+
+    @Test
+    void internalEndpointRequiresTheSharedToken() throws Exception {
+        InternalRequestFilter filter = new InternalRequestFilter("s3cret");
+
+        assertThat(run(filter, APPLY, null).getStatus()).isEqualTo(403);
+        assertThat(run(filter, APPLY, "wrong").getStatus()).isEqualTo(403);
+        assertThat(run(filter, APPLY, "s3cret").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void missingConfigurationRejectsEveryInternalRequest() throws Exception {
+        InternalRequestFilter filter = new InternalRequestFilter("");
+
+        assertThat(run(filter, APPLY, "").getStatus()).isEqualTo(403);
+        assertThat(run(filter, "/accounts/1/balance", null).getStatus()).isEqualTo(200);
+    }
+
+    private static MockHttpServletResponse run(InternalRequestFilter filter, String uri, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        if (token != null) {
+            request.addHeader(InternalRequestFilter.HEADER, token);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.common.money;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MoneyTest {
+
+    private static final int ITERATIONS = 2_000_000;
+
+    @Test
+    void arithmeticIsExactAndOverflowChecked() {
+        Money a = Money.of(new BigDecimal("10.25"), "USD");
+        Money b = Money.of(new BigDecimal("0.75"), "USD");
+
+        assertThat(a.plus(b).toBigDecimal()).isEqualByComparingTo("11.00");
+        assertThat(a.minus(b).minus(a).toBigDecimal()).isEqualByComparingTo("-0.75");
+        assertThat(Money.ofMinor(Long.MAX_VALUE, "USD").minus(b).isLessThan(Money.ofMinor(Long.MAX_VALUE, "USD"))).isTrue();
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE, "USD").plus(b)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("1.005"), "USD")).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void currenciesMustMatchUnlessUnbound() {
+        Money usd = Money.of(BigDecimal.ONE, "USD");
+        Money fromColumn = new MoneyConverter().convertToEntityAttribute(new BigDecimal("2.00"));
+
+        assertThat(usd.plus(fromColumn).getCurrency()).isEqualTo("USD");
+        assertThatThrownBy(() -> usd.plus(Money.of(BigDecimal.ONE, "VND"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void equalsAgreesWithCompareTo() {
+        Money usd = Money.of(new BigDecimal("5.0"), "USD");
+        Money sameUsd = Money.of(new BigDecimal("5.00"), "USD");
+        Money unbound = Money.of(new BigDecimal("5.00"));
+
+        assertThat(usd).isEqualTo(sameUsd).hasSameHashCodeAs(sameUsd);
+        assertThat(usd.compareTo(sameUsd)).isZero();
+        assertThat(usd).isNotEqualTo(unbound);
+        assertThat(usd.compareTo(unbound)).isPositive();
+        assertThat(unbound.compareTo(usd)).isNegative();
+        assertThat(Money.of(new BigDecimal("4.99"), "USD").compareTo(unbound)).isNegative();
+    }
+
+    /**
+     * So sánh đường xử lý số dư: kiểm tra > 0, so sánh đủ tiền, trừ, cộng, cộng dồn tổng
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkAgainstBigDecimal() {
+        BigDecimal[] decimals = new BigDecimal[1024];
+        Money[] monies = new Money[1024];
+        for (int i = 0; i < decimals.length; i++) {
+            decimals[i] = BigDecimal.valueOf(100 + i * 7L, 2);
+            monies[i] = Money.of(decimals[i], "USD");
+        }
+
+        LongSupplier bigDecimalPath = () -> {
+            BigDecimal balance = new BigDecimal("1000000.00");
+            BigDecimal total = BigDecimal.ZERO;
+            for (int i = 0; i < ITERATIONS; i++) {
+                BigDecimal amount = decimals[i & 1023];
+                if (amount.signum() > 0 && balance.compareTo(amount) >= 0) {
+                    balance = balance.subtract(amount).add(amount);
+                    total = total.add(amount);
+                }
+            }
+            return total.unscaledValue().longValue();
+        };
+        LongSupplier moneyPath = () -> {
+            Money balance = Money.of(new BigDecimal("1000000.00"), "USD");
+            Money total = Money.ZERO;
+            for (int i = 0; i < ITERATIONS; i++) {
+                Money amount = monies[i & 1023];
+                if (amount.signum() > 0 && balance.compareTo(amount) >= 0) {
+                    balance = balance.minus(amount).plus(amount);
+                    total = total.plus(amount);
+                }
+            }
+            return total.getMinorUnits();
+        };
+
+        // Khởi động JIT trước khi đo
+        for (int i = 0; i < 5; i++) {
+            bigDecimalPath.getAsLong();
+            moneyPath.getAsLong();
+        }
+        Result bigDecimal = measure(bigDecimalPath);
+        Result money = measure(moneyPath);
+
+        assertThat(money.checksum()).isEqualTo(bigDecimal.checksum());
+        log.info("BigDecimal: {} ns/op, {} B/op; Money: {} ns/op, {} B/op",
+                String.format("%.1f", bigDecimal.nsPerOp()), String.format("%.1f", bigDecimal.bytesPerOp()),
+                String.format("%.1f", money.nsPerOp()), String.format("%.1f", money.bytesPerOp()));
+    }
+
+    private Result measure(LongSupplier path) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long began = System.nanoTime();
+        long checksum = path.getAsLong();
+        long elapsed = System.nanoTime() - began;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        return new Result(checksum, (double) elapsed / ITERATIONS, (double) bytes / ITERATIONS);
+    }
+
+    private record Result(long checksum, double nsPerOp, double bytesPerOp) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.common.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routing primary/replica trên hai H2 in-memory; "replication" được giả lập bằng cách chép heartbeat
+ */
+class ReadReplicaRoutingTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private ReplicaLagMonitor lagMonitor;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTx;
+    private TransactionTemplate readTx;
+
+    @BeforeEach
+    void setUp() {
+        primary = pool("primary");
+        replica = pool("replica");
+        for (HikariDataSource node : new HikariDataSource[]{primary, replica}) {
+            JdbcTemplate jdbc = new JdbcTemplate(node);
+            jdbc.execute("CREATE TABLE node_name (name VARCHAR(16))");
+            jdbc.update("INSERT INTO node_name VALUES (?)", node.getPoolName());
+            jdbc.execute(ReplicaLagMonitor.CREATE_SQL);
+        }
+        lagMonitor = new ReplicaLagMonitor(primary, replica, Duration.ofSeconds(2), meterRegistry);
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(Duration.ofMillis(300));
+        DataSource routing = ReadReplicaAutoConfiguration.routing(primary, replica, lagMonitor, tracker, meterRegistry);
+
+        jdbcTemplate = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        writeTx = new TransactionTemplate(transactionManager);
+        readTx = new TransactionTemplate(transactionManager);
+        readTx.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWritesTracker.clear();
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    void readOnlyRequestWorkGoesToReplicaWhenItIsCaughtUp() {
+        replicate();
+        ReadYourWritesTracker.bind("1");
+
+        assertThat(readNode()).isEqualTo("replica");
+        assertThat(writeNode()).isEqualTo("primary");
+        assertThat(routed("replica", "read")).isEqualTo(1);
+    }
+
+    @Test
+    void backgroundWorkAlwaysUsesPrimary() {
+        replicate();
+
+        assertThat(readNode()).isEqualTo("primary");
+        assertThat(routed("primary", "background")).isEqualTo(1);
+    }
+
+    @Test
+    void writerReadsItsOwnWritesFromPrimaryWithinWindow() throws InterruptedException {
+        replicate();
+        ReadYourWritesTracker.bind("1");
+        writeTx.executeWithoutResult(status -> jdbcTemplate.update("UPDATE node_name SET name = name"));
+
+        assertThat(readNode()).isEqualTo("primary");
+        ReadYourWritesTracker.bind("2");
+        assertThat(readNode()).isEqualTo("replica");
+
+        Thread.sleep(400);
+        replicate();
+        ReadYourWritesTracker.bind("1");
+        assertThat(readNode()).isEqualTo("replica");
+        assertThat(routed("primary", "read-your-writes")).isEqualTo(1);
+    }
+
+    @Test
+    void laggingOrUnreachableReplicaFallsBackToPrimary() {
+        ReadYourWritesTracker.bind("1");
+        // Chưa đo được độ trễ lần nào
+        assertThat(readNode()).isEqualTo("primary");
+
+        // Heartbeat trên replica cũ hơn max-lag
+        new JdbcTemplate(replica).update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)",
+                System.currentTimeMillis() - 10_000);
+        lagMonitor.check();
+        assertThat(lagMonitor.getLagMillis()).isGreaterThan(2_000);
+        assertThat(readNode()).isEqualTo("primary");
+
+        new JdbcTemplate(replica).execute("DROP TABLE replica_heartbeat");
+        lagMonitor.check();
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(readNode()).isEqualTo("primary");
+        assertThat(routed("primary", "replica-lag")).isEqualTo(3);
+    }
+
+    @Test
+    void pinnedWorkReadsPrimaryEvenWhenReplicaIsUsable() {
+        replicate();
+        ReadYourWritesTracker.bind("1");
+
+        assertThat(ReadWriteRoutingDataSource.onPrimary(this::readNode)).isEqualTo("primary");
+        assertThat(readNode()).isEqualTo("replica");
+        assertThat(routed("primary", "pinned")).isEqualTo(1);
+    }
+
+    @Test
+    void metricsArePublishedPerPool() {
+        replicate();
+        ReadYourWritesTracker.bind("1");
+        readNode();
+        writeNode();
+
+        assertThat(meterRegistry.find("hikaricp.connections").tag("pool", "primary").gauge()).isNotNull();
+        assertThat(meterRegistry.find("hikaricp.connections").tag("pool", "replica").gauge()).isNotNull();
+        assertThat(meterRegistry.get("datasource.replica.lag").gauge().value()).isLessThan(2.0);
+    }
+
+    /**
+     * Ghi heartbeat lên primary rồi chép sang replica, sau đó đo lại độ trễ
+     */
+    private void replicate() {
+        lagMonitor.check();
+        Long beat = new JdbcTemplate(primary).queryForObject("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Long.class);
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.update("DELETE FROM replica_heartbeat");
+        replicaJdbc.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", beat);
+        lagMonitor.check();
+    }
+
+    private String readNode() {
+        return readTx.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node_name", String.class));
+    }
+
+    private String writeNode() {
+        return writeTx.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node_name", String.class));
+    }
+
+    private double routed(String target, String reason) {
+        return meterRegistry.get("datasource.routing").tag("target", target).tag("reason", reason).counter().count();
+    }
+
+    private HikariDataSource pool(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        pool.setMaximumPoolSize(4);
+        return ReadReplicaAutoConfiguration.named(pool, name, meterRegistry);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.common.sequence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdSequenceInitializerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private IdSequenceInitializer initializer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:sequences;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        jdbcTemplate.execute("CREATE TABLE number_sequences (name VARCHAR(255) PRIMARY KEY, next_value BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE transactions (id BIGINT PRIMARY KEY)");
+        initializer = new IdSequenceInitializer(jdbcTemplate, List.of("transactions"));
+    }
+
+    @Test
+    void createsTheSequenceAboveTheLargestExistingId() {
+        jdbcTemplate.update("INSERT INTO transactions VALUES (5000)");
+
+        initializer.afterSingletonsInstantiated();
+
+        assertThat(nextValue()).isEqualTo(5001);
+    }
+
+    @Test
+    void onlyRaisesTheSequenceNeverLowersIt() {
+        jdbcTemplate.update("INSERT INTO number_sequences VALUES ('transactions', 100)");
+        jdbcTemplate.update("INSERT INTO transactions VALUES (700)");
+
+        initializer.afterSingletonsInstantiated();
+        assertThat(nextValue()).isEqualTo(701);
+
+        jdbcTemplate.update("UPDATE number_sequences SET next_value = 9000");
+        initializer.afterSingletonsInstantiated();
+        assertThat(nextValue()).isEqualTo(9000);
+    }
+
+    private long nextValue() {
+        return jdbcTemplate.queryForObject("SELECT next_value FROM number_sequences WHERE name = 'transactions'", Long.class);
+    }
+}
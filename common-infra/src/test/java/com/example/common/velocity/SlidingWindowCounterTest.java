@@ -0,0 +1,57 @@
+package com.example.common.velocity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SlidingWindowCounterTest {
+
+    private static final long T0 = 1_800_000_000_000L;
+
+    @Test
+    void countsOnlyBucketsInsideTheWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(Duration.ofMinutes(1), 60);
+        counter.add(T0, 1, 100);
+        counter.add(T0 + 30_000, 1, 250);
+        counter.add(T0 + 59_000, 2, 50);
+
+        assertThat(counter.count(T0 + 59_000)).isEqualTo(4);
+        assertThat(counter.amount(T0 + 59_000)).isEqualTo(400);
+        // Ô đầu tiên trượt ra khỏi cửa sổ
+        assertThat(counter.count(T0 + 60_000)).isEqualTo(3);
+        assertThat(counter.amount(T0 + 90_000)).isEqualTo(50);
+        assertThat(counter.count(T0 + 120_000)).isZero();
+    }
+
+    @Test
+    void reusedSlotStartsFromZeroAndStaleWritesAreIgnored() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(Duration.ofMinutes(1), 60);
+        counter.add(T0, 5, 500);
+        SlidingWindowCounter.Bucket bucket = counter.add(T0 + 60_000, 1, 10);
+
+        assertThat(counter.count(T0 + 60_000)).isEqualTo(1);
+        assertThat(counter.add(T0, 1, 1)).isNull();
+        bucket.add(-1, -10);
+        assertThat(counter.count(T0 + 60_000)).isZero();
+        assertThat(counter.amount(T0 + 60_000)).isZero();
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(Duration.ofHours(1), 60);
+        IntStream.range(0, 100_000).parallel().forEach(i -> counter.add(T0 + i % 1000, 1, 2));
+
+        assertThat(counter.count(T0 + 1000)).isEqualTo(100_000);
+        assertThat(counter.amount(T0 + 1000)).isEqualTo(200_000);
+    }
+
+    @Test
+    void rejectsInvalidSizing() {
+        assertThatThrownBy(() -> new SlidingWindowCounter(Duration.ofMinutes(1), 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SlidingWindowCounter(Duration.ofMillis(10), 60)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
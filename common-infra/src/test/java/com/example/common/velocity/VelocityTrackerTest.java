@@ -0,0 +1,69 @@
+package com.example.common.velocity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VelocityTrackerTest {
+
+    private static final long T0 = 1_800_000_000_000L;
+
+    @Test
+    void clusterLimitsAreSplitAcrossReplicas() {
+        VelocityTracker tracker = tracker(new MockEnvironment()
+                .withProperty("test.velocity.replicas", "3")
+                .withProperty("test.velocity.limits.DEFAULT.minute.count", "10")
+                .withProperty("test.velocity.limits.DEFAULT.day.amount", "90.00"));
+
+        // 10 lần/phút của cả cụm thành 4 lần mỗi node (làm tròn lên)
+        for (int i = 0; i < 4; i++) {
+            tracker.acquire(1L, (VelocityTracker.Owner) null, 1_00, T0);
+        }
+        assertThatThrownBy(() -> tracker.acquire(1L, (VelocityTracker.Owner) null, 1_00, T0))
+                .hasMessage("Velocity limit exceeded: account payments per minute");
+
+        tracker.acquire(2L, (VelocityTracker.Owner) null, 30_00, T0);
+        assertThatThrownBy(() -> tracker.acquire(2L, (VelocityTracker.Owner) null, 1, T0))
+                .hasMessage("Velocity limit exceeded: account amount per day");
+    }
+
+    @Test
+    void ownerIsLookedUpOnceAndCanChange() {
+        VelocityTracker tracker = tracker(new MockEnvironment()
+                .withProperty("test.velocity.limits.DEFAULT.minute.count", "1")
+                .withProperty("test.velocity.limits.CHECKING.minute.count", "2"));
+        AtomicInteger lookups = new AtomicInteger();
+
+        tracker.acquire(1L, id -> {
+            lookups.incrementAndGet();
+            return new VelocityTracker.Owner(10L, "SAVINGS");
+        }, 1_00, T0);
+        assertThatThrownBy(() -> tracker.acquire(1L, id -> null, 1_00, T0))
+                .hasMessage("Velocity limit exceeded: account payments per minute");
+        assertThat(lookups).hasValue(1);
+
+        tracker.ownerChanged(1L, new VelocityTracker.Owner(10L, "CHECKING"));
+        tracker.acquire(1L, id -> null, 1_00, T0);
+    }
+
+    @Test
+    void idleKeysAreEvictedAndStartEmpty() {
+        VelocityTracker tracker = tracker(new MockEnvironment()
+                .withProperty("test.velocity.user.minute.count", "1"));
+        tracker.acquire(1L, new VelocityTracker.Owner(10L, null), 1_00, T0);
+
+        assertThat(tracker.evictIdle(T0 + Duration.ofDays(1).toMillis() + 1)).isEqualTo(2);
+        assertThat(tracker.trackedAccounts()).isZero();
+        tracker.acquire(1L, new VelocityTracker.Owner(10L, null), 1_00, T0 + 1);
+    }
+
+    private static VelocityTracker tracker(MockEnvironment environment) {
+        return new VelocityTracker(environment, new SimpleMeterRegistry(), "test.velocity", "payments");
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.notificationservice.service;
 
 import com.example.notificationservice.model.Notification;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -13,6 +19,8 @@ import java.util.UUID;
 @Slf4j
 public class NotificationService {
 
+    private final ObjectMapper objectMapper;
+
     public Notification sendNotification(String recipientEmail, String subject, String message) {
         Notification notification = new Notification();
         notification.setId(UUID.randomUUID().toString());
@@ -28,11 +36,16 @@ public class NotificationService {
         return notification;
     }
 
-    @KafkaListener(topics = "account-events", groupId = "notification-service-group")
-    public void handleAccountEvents(String message) {
-        log.info("Received account event: {}", message);
-        // Send notification about account event (account created, updated)
-        sendNotification("customer@example.com", "Account Update", "Your account has been updated: " + message);
+    /**
+     * Key của account-events là account id (không còn là account_created/account_updated);
+     * loại event nằm trong field "type" của payload (AccountBalanceChanged, AccountStatusChanged)
+     */
+    @KafkaListener(topics = "account-events", groupId = "notification-service-group",
+            properties = "value.deserializer=org.apache.kafka.common.serialization.StringDeserializer")
+    public void handleAccountEvents(@Header(name = KafkaHeaders.RECEIVED_KEY, required = false) String accountId,
+                                    @Payload String message) {
+        log.info("Received account event for account {}: {}", accountId, message);
+        sendNotification("customer@example.com", "Account Update", describeAccountEvent(accountId, message));
     }
 
     @KafkaListener(topics = "user-transfer-events", groupId = "notification-service-group")
@@ -49,6 +62,20 @@ public class NotificationService {
         sendNotification("customer@example.com", "User Event", "Your user account has been updated: " + message);
     }
 
+    private String describeAccountEvent(String accountId, String message) {
+        try {
+            JsonNode event = objectMapper.readTree(message);
+            return switch (event.path("type").asText()) {
+                case "AccountBalanceChanged" -> "Account " + accountId + ": " + event.path("reason").asText()
+                        + " " + event.path("delta").asText() + ", balance " + event.path("balance").asText();
+                case "AccountStatusChanged" -> "Account " + accountId + " is now " + event.path("status").asText();
+                default -> "Your account " + accountId + " has been updated: " + message;
+            };
+        } catch (JsonProcessingException e) {
+            return "Your account " + accountId + " has been updated: " + message;
+        }
+    }
+
     private void simulateSendEmail(Notification notification) {
         try {
             // Simulate email sending delay
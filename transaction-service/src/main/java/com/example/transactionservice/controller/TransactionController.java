@@ -1,12 +1,24 @@
 package com.example.transactionservice.controller;
 
 import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.dto.TransactionPageDTO;
+import com.example.transactionservice.dto.TransactionVolumeDTO;
+import com.example.transactionservice.service.StatementExportService;
+import com.example.transactionservice.service.TransactionBulkIngestService;
+import com.example.transactionservice.service.TransactionRollupService;
 import com.example.transactionservice.service.TransactionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -14,17 +26,36 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final TransactionService transactionService;
+    private final StatementExportService statementExportService;
+    private final TransactionRollupService transactionRollupService;
+    private final TransactionBulkIngestService transactionBulkIngestService;
 
     /**
-     * Tạo giao dịch chuyển tiền mới
+     * Tạo giao dịch chuyển tiền mới từ tài khoản của user
      */
     @PostMapping
     public ResponseEntity<TransactionDTO> createTransaction(
             @RequestHeader(name = "uid", required = true) Long userId,
             @RequestBody TransactionDTO transactionDTO) {
         return ResponseEntity.status(HttpStatus.CREATED)
-                .body(transactionService.createTransaction(transactionDTO));
+                .body(transactionService.createTransaction(userId, transactionDTO));
+    }
+
+    /**
+     * Nhập hàng loạt giao dịch từ file đối tác: body NDJSON, mỗi dòng một giao dịch (bắt buộc referenceCode)
+     * từ tài khoản của user gửi file.
+     * Trả về NDJSON kết quả từng dòng (CREATED/EXISTING/REJECTED) theo thứ tự, ghi dần sau mỗi chunk
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> bulkCreateTransactions(
+            @RequestHeader(name = "uid", required = true) Long userId,
+            InputStream body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> transactionBulkIngestService.ingest(userId, body, out));
     }
 
     /**
@@ -38,12 +69,15 @@ public class TransactionController {
     }
 
     /**
-     * Xem tất cả giao dịch của user (gửi hoặc nhận)
+     * Xem tất cả giao dịch của user (gửi hoặc nhận), mới nhất trước.
+     * Trang tiếp theo: gửi lại giá trị header X-Next-Cursor trong tham số cursor.
      */
     @GetMapping
     public ResponseEntity<List<TransactionDTO>> getUserTransactions(
-            @RequestHeader(name = "uid", required = true) Long userId) {
-        return ResponseEntity.ok(transactionService.getUserTransactions(userId));
+            @RequestHeader(name = "uid", required = true) Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return page(transactionService.getUserTransactions(userId, cursor, limit));
     }
 
     /**
@@ -51,8 +85,10 @@ public class TransactionController {
      */
     @GetMapping("/sent")
     public ResponseEntity<List<TransactionDTO>> getSentTransactions(
-            @RequestHeader(name = "uid", required = true) Long userId) {
-        return ResponseEntity.ok(transactionService.getSentTransactions(userId));
+            @RequestHeader(name = "uid", required = true) Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return page(transactionService.getSentTransactions(userId, cursor, limit));
     }
 
     /**
@@ -60,8 +96,10 @@ public class TransactionController {
      */
     @GetMapping("/received")
     public ResponseEntity<List<TransactionDTO>> getReceivedTransactions(
-            @RequestHeader(name = "uid", required = true) Long userId) {
-        return ResponseEntity.ok(transactionService.getReceivedTransactions(userId));
+            @RequestHeader(name = "uid", required = true) Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return page(transactionService.getReceivedTransactions(userId, cursor, limit));
     }
 
     /**
@@ -85,4 +123,55 @@ public class TransactionController {
         transactionService.cancelTransaction(userId, transactionId);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Xuất sao kê của một tài khoản trong khoảng ngày [from, to], nén gzip (format=ndjson|csv)
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStatement(
+            @RequestHeader(name = "uid", required = true) Long userId,
+            @RequestParam Long accountId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        StatementExportService.Format exportFormat = StatementExportService.Format.parse(format);
+        statementExportService.checkRequest(userId, accountId, from, to);
+        String filename = "statement-" + accountId + "-" + from + "-" + to + "." + exportFormat.getExtension() + ".gz";
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(out -> statementExportService.export(accountId, from, to, exportFormat, out));
+    }
+
+    /**
+     * Tổng số lượng/số tiền theo loại giao dịch của một tài khoản trong [from, to] (mặc định hôm nay),
+     * direction = SENT|RECEIVED
+     */
+    @GetMapping("/volume")
+    public ResponseEntity<List<TransactionVolumeDTO>> getVolume(
+            @RequestHeader(name = "uid", required = true) Long userId,
+            @RequestParam Long accountId,
+            @RequestParam(defaultValue = "SENT") String direction,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate today = LocalDate.now();
+        return ResponseEntity.ok(transactionRollupService.volume(userId, accountId, direction.toUpperCase(),
+                from != null ? from : today, to != null ? to : today));
+    }
+
+    /**
+     * Số giao dịch có tham gia của các tài khoản (nội bộ, account-service dựng lại thống kê user)
+     */
+    @GetMapping("/internal/count")
+    public ResponseEntity<Long> countTransactions(@RequestParam List<Long> accountIds) {
+        return ResponseEntity.ok(transactionService.countTransactions(accountIds));
+    }
+
+    private ResponseEntity<List<TransactionDTO>> page(TransactionPageDTO page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
 }
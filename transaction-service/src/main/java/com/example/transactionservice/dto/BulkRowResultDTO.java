@@ -0,0 +1,14 @@
+package com.example.transactionservice.dto;
+
+/**
+ * Kết quả của một dòng trong bulk ingestion, theo đúng thứ tự dòng gửi lên.
+ * status: CREATED (giao dịch mới), EXISTING (reference code đã có với cùng nội dung, id là giao dịch cũ),
+ * REJECTED (error là lý do)
+ */
+public record BulkRowResultDTO(
+    long line,
+    String status,
+    Long id,
+    String referenceCode,
+    String error
+) {}
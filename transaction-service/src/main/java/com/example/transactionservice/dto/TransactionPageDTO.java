@@ -0,0 +1,11 @@
+package com.example.transactionservice.dto;
+
+import java.util.List;
+
+/**
+ * Một trang lịch sử giao dịch; nextCursor = null khi đã hết
+ */
+public record TransactionPageDTO(
+    List<TransactionDTO> items,
+    String nextCursor
+) {}
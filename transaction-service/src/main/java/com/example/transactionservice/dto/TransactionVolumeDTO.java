@@ -0,0 +1,11 @@
+package com.example.transactionservice.dto;
+
+import java.math.BigDecimal;
+
+public record TransactionVolumeDTO(
+    String transactionType,
+    long count,
+    BigDecimal total,
+    BigDecimal min,
+    BigDecimal max
+) {}
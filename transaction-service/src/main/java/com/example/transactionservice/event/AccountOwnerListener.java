@@ -0,0 +1,74 @@
+package com.example.transactionservice.event;
+
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import com.example.transactionservice.service.VelocityLimiter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccountOwnerListener {
+
+    private static final int KNOWN_ACCOUNTS_LIMIT = 100_000;
+
+    private final AccountOwnerRepository accountOwnerRepository;
+    private final VelocityLimiter velocityLimiter;
+    private final Set<Long> knownAccounts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Ghi nhận chủ sở hữu tài khoản từ account-events (account_created mang snapshot đầy đủ,
+     * event biến động số dư/trạng thái mang accountId và userId nên tài khoản cũ cũng được bổ sung dần).
+     * Event mang accountType (account_created, đổi trạng thái/loại) thì cập nhật loại tài khoản cho giới hạn tần suất.
+     * Payload đọc dạng Map vì transaction-service không có lớp của account-service.
+     */
+    @KafkaListener(topics = "account-events", groupId = "${spring.application.name}-account-owners",
+            properties = {
+                    "spring.json.use.type.headers=false",
+                    "spring.json.value.default.type=java.util.LinkedHashMap"
+            })
+    public void handleAccountEvent(ConsumerRecord<String, Object> record) {
+        if (!(record.value() instanceof Map<?, ?> event)) {
+            return;
+        }
+        Long accountId = toLong(event.containsKey("accountId") ? event.get("accountId") : event.get("id"));
+        Long userId = toLong(event.get("userId"));
+        String accountType = event.get("accountType") instanceof String type ? type : null;
+        if (accountId == null || userId == null || accountType == null && knownAccounts.contains(accountId)) {
+            return;
+        }
+        try {
+            AccountOwner owner = accountOwnerRepository.findById(accountId).orElse(null);
+            if (owner == null) {
+                accountOwnerRepository.save(new AccountOwner(accountId, userId, accountType));
+            } else if (accountType != null && !accountType.equals(owner.getAccountType())) {
+                owner.setAccountType(accountType);
+                accountOwnerRepository.save(owner);
+                velocityLimiter.accountChanged(accountId, owner.getUserId(), accountType);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Node khác vừa ghi
+            log.debug("Account owner for {} already recorded", accountId);
+        } catch (Exception e) {
+            log.error("Failed to record owner of account {}", accountId, e);
+            return;
+        }
+        if (knownAccounts.size() >= KNOWN_ACCOUNTS_LIMIT) {
+            knownAccounts.clear();
+        }
+        knownAccounts.add(accountId);
+    }
+
+    private Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
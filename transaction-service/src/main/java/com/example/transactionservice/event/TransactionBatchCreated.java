@@ -0,0 +1,51 @@
+package com.example.transactionservice.event;
+
+import com.example.common.money.Money;
+import com.example.transactionservice.model.Transaction;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Event transactions_created: một event cho cả chunk của bulk ingestion thay vì một transaction_created mỗi dòng.
+ * Chỉ giữ các trường consumer cần (mọi giao dịch đều PENDING), trường null không được ghi.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TransactionBatchCreated(List<Item> transactions) {
+
+    public static final String KEY = "transactions_created";
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item(
+            Long id,
+            Long fromAccountId,
+            Long toAccountId,
+            BigDecimal amount,
+            String currency,
+            String transactionType,
+            String referenceCode,
+            LocalDateTime createdAt
+    ) {
+        public static Item of(Transaction transaction) {
+            return new Item(transaction.getId(), transaction.getFromAccountId(), transaction.getToAccountId(),
+                    transaction.getAmount().toBigDecimal(), transaction.getCurrency(), transaction.getTransactionType(),
+                    transaction.getReferenceCode(), transaction.getCreatedAt());
+        }
+
+        public Transaction toTransaction() {
+            Transaction transaction = new Transaction();
+            transaction.setId(id);
+            transaction.setFromAccountId(fromAccountId);
+            transaction.setToAccountId(toAccountId);
+            transaction.setAmount(Money.of(amount, currency));
+            transaction.setCurrency(currency);
+            transaction.setTransactionType(transactionType);
+            transaction.setStatus("PENDING");
+            transaction.setReferenceCode(referenceCode);
+            transaction.setCreatedAt(createdAt);
+            return transaction;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.transactionservice.event;
+
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.service.TransactionRollupService;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.event.ListenerContainerPartitionIdleEvent;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đọc transaction-events của chính service (transaction_created và transactions_created của bulk ingestion)
+ * để cộng vào rollup theo ngày.
+ * Vị trí đọc lưu trong DB cùng với rollup (không dùng offset commit của Kafka): nhận partition thì seek về đó.
+ * Partition không có event trong spring.kafka.listener.idle-partition-event-interval được báo idle để tiến watermark.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionRollupListener implements ConsumerSeekAware {
+
+    static final String LISTENER_ID = "transaction-rollups";
+
+    private final TransactionRollupService rollupService;
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = "transaction-events",
+            groupId = "${spring.application.name}-rollups", properties = "auto.offset.reset=earliest")
+    public void handleTransactionEvent(ConsumerRecord<String, Object> record) {
+        List<Transaction> created = List.of();
+        if ("transaction_created".equals(record.key()) && record.value() instanceof Transaction t) {
+            created = List.of(t);
+        } else if (TransactionBatchCreated.KEY.equals(record.key()) && record.value() instanceof TransactionBatchCreated batch) {
+            created = batch.transactions().stream().map(TransactionBatchCreated.Item::toTransaction).toList();
+        }
+        if (rollupService.recordAll(record.partition(), record.offset(), created)) {
+            rollupService.flush();
+        }
+    }
+
+    /**
+     * Chạy trên luồng consumer nên đọc được position và metadata của consumer
+     */
+    @EventListener(condition = "event.listenerId.startsWith('" + LISTENER_ID + "')")
+    public void onPartitionIdle(ListenerContainerPartitionIdleEvent event) {
+        TopicPartition partition = event.getTopicPartition();
+        rollupService.idle(partition.partition(), event.getConsumer().position(partition),
+                event.getConsumer().partitionsFor(partition.topic()).size(), LocalDateTime.now());
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        Map<Integer, Long> offsets = rollupService.loadOffsets(assignments.keySet().stream().map(TopicPartition::partition).toList());
+        assignments.keySet().forEach(partition -> {
+            Long next = offsets.get(partition.partition());
+            if (next != null) {
+                callback.seek(partition.topic(), partition.partition(), next);
+            }
+        });
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        rollupService.release(partitions.stream().map(TopicPartition::partition).toList());
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Bản sao quan hệ tài khoản -> user, dựng từ account-events (account-service sở hữu bank_accounts)
+ */
+@Entity
+@Table(name = "account_owners", indexes = @Index(name = "idx_account_owners_user", columnList = "user_id, account_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountOwner {
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Loại tài khoản (SAVINGS, CHECKING...) để chọn giới hạn tần suất; null khi event chưa mang thông tin này
+    @Column(name = "account_type")
+    private String accountType;
+
+    public AccountOwner(Long accountId, Long userId) {
+        this(accountId, userId, null);
+    }
+}
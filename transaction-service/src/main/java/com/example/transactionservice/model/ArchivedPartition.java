@@ -0,0 +1,36 @@
+package com.example.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Chỉ mục các file archive (.txa) dùng chung cho cả cụm: mỗi partition tháng đã archive một dòng với khoảng id của file.
+ * Node chưa nạp file tra bảng này khi tìm hụt rồi mở file từ transactions.archive.dir (ổ dùng chung)
+ */
+@Entity
+@Table(name = "transaction_archives", indexes = @Index(name = "idx_transaction_archives_ids", columnList = "min_id, max_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedPartition {
+    // Tên file trong transactions.archive.dir, vd. transactions-2024-01.txa
+    @Id
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "min_id", nullable = false)
+    private Long minId;
+
+    @Column(name = "max_id", nullable = false)
+    private Long maxId;
+
+    @Column(name = "row_count", nullable = false)
+    private Long rowCount;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
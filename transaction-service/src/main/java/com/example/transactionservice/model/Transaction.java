@@ -1,20 +1,29 @@
 package com.example.transactionservice.model;
 
 import jakarta.persistence.*;
+import com.example.common.money.Money;
+import com.example.common.money.MoneyConverter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_from_created", columnList = "from_account_id, created_at DESC, id DESC"),
+        @Index(name = "idx_transactions_to_created", columnList = "to_account_id, created_at DESC, id DESC"),
+        @Index(name = "idx_transactions_status", columnList = "status, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
+    // Id cấp theo khối từ number_sequences (pooled-lo) thay vì AUTO_INCREMENT để Hibernate gom INSERT thành batch;
+    // IdSequenceInitializer đưa dòng sequence lên trên id lớn nhất hiện có khi khởi động
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "transactions_id")
+    @TableGenerator(name = "transactions_id", table = "number_sequences", pkColumnName = "name",
+            valueColumnName = "next_value", pkColumnValue = "transactions", allocationSize = 100)
     private Long id;
 
     @Column(name = "from_account_id")
@@ -23,8 +32,13 @@ public class Transaction {
     @Column(name = "to_account_id")
     private Long toAccountId;
 
+    // User tạo giao dịch (chủ tài khoản gửi), account-service kiểm tra lại trước khi áp dụng; null ở dòng cũ
+    @Column(name = "created_by")
+    private Long createdBy;
+
     @Column(name = "amount", nullable = false)
-    private BigDecimal amount;
+    @Convert(converter = MoneyConverter.class)
+    private Money amount;
 
     @Column(name = "currency", nullable = false)
     private String currency = "USD";
@@ -35,7 +49,7 @@ public class Transaction {
     @Column(name = "status", nullable = false)
     private String status;
 
-    @Column(name = "reference_code", unique = true)
+    @Column(name = "reference_code")
     private String referenceCode;
 
     @Column(name = "description")
@@ -47,6 +61,13 @@ public class Transaction {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
+    /**
+     * Số tiền gắn loại tiền của giao dịch (cột amount chỉ lưu số tiền)
+     */
+    public Money getAmount() {
+        return amount != null ? amount.withCurrency(currency) : null;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
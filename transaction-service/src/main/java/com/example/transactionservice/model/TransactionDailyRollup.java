@@ -0,0 +1,59 @@
+package com.example.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tổng hợp giao dịch theo (tài khoản, ngày tạo, loại, chiều SENT/RECEIVED), cộng dồn từ transaction-events
+ */
+@Entity
+@Table(name = "transaction_daily_rollups")
+@IdClass(TransactionDailyRollup.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionDailyRollup {
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Id
+    @Column(name = "direction", length = 8)
+    private String direction;
+
+    @Id
+    @Column(name = "rollup_day")
+    private LocalDate day;
+
+    @Id
+    @Column(name = "transaction_type")
+    private String transactionType;
+
+    @Column(name = "tx_count", nullable = false)
+    private long count;
+
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "min_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal minAmount;
+
+    @Column(name = "max_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal maxAmount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long accountId;
+        private String direction;
+        private LocalDate day;
+        private String transactionType;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Giữ tính duy nhất của reference_code trên toàn bộ giao dịch, kể cả đã archive:
+ * bảng transactions chia partition theo created_at nên không còn unique key riêng trên reference_code được
+ */
+@Entity
+@Table(name = "transaction_references", indexes = {
+        @Index(name = "idx_transaction_references_transaction", columnList = "transaction_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionReference {
+    @Id
+    @Column(name = "reference_code")
+    private String referenceCode;
+
+    @Column(name = "transaction_id", nullable = false)
+    private Long transactionId;
+}
@@ -0,0 +1,33 @@
+package com.example.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vị trí đã cộng vào transaction_daily_rollups của từng partition transaction-events, ghi cùng transaction với rollup:
+ * - next_offset: consumer seek tới đây khi nhận partition, nên event không bị cộng hai lần
+ * - watermark: created_at lớn nhất đã cộng; covered_from: created_at nhỏ nhất của lần cộng đầu tiên
+ */
+@Entity
+@Table(name = "transaction_rollup_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionRollupState {
+    @Id
+    @Column(name = "partition_id")
+    private Integer partitionId;
+
+    @Column(name = "next_offset", nullable = false)
+    private Long nextOffset;
+
+    @Column(name = "watermark", nullable = false)
+    private LocalDateTime watermark;
+
+    @Column(name = "covered_from", nullable = false)
+    private LocalDateTime coveredFrom;
+}
@@ -0,0 +1,28 @@
+package com.example.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số giao dịch xấp xỉ theo trạng thái, cộng dồn theo từng lần chuyển trạng thái (không đếm lại bảng transactions)
+ */
+@Entity
+@Table(name = "transaction_status_counts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionStatusCount {
+    @Id
+    @Column(name = "status")
+    private String status;
+
+    @Column(name = "tx_count", nullable = false)
+    private Long txCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
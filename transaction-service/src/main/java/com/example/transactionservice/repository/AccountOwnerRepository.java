@@ -0,0 +1,16 @@
+package com.example.transactionservice.repository;
+
+import com.example.transactionservice.model.AccountOwner;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AccountOwnerRepository extends JpaRepository<AccountOwner, Long> {
+
+    @Query("SELECT o.accountId FROM AccountOwner o WHERE o.userId = :userId ORDER BY o.accountId")
+    List<Long> findAccountIdsByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,16 @@
+package com.example.transactionservice.repository;
+
+import com.example.transactionservice.model.ArchivedPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ArchivedPartitionRepository extends JpaRepository<ArchivedPartition, String> {
+
+    @Query("SELECT a FROM ArchivedPartition a WHERE a.minId <= :id AND a.maxId >= :id ORDER BY a.minId")
+    List<ArchivedPartition> findCovering(@Param("id") Long id);
+}
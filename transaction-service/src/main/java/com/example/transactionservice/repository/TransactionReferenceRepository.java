@@ -0,0 +1,20 @@
+package com.example.transactionservice.repository;
+
+import com.example.transactionservice.model.TransactionReference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TransactionReferenceRepository extends JpaRepository<TransactionReference, String> {
+
+    /**
+     * INSERT thẳng (save() sẽ merge và ghi đè): trùng mã thì lỗi DataIntegrityViolationException
+     */
+    @Modifying
+    @Query(value = "INSERT INTO transaction_references (reference_code, transaction_id) VALUES (:referenceCode, :transactionId)",
+           nativeQuery = true)
+    void insert(@Param("referenceCode") String referenceCode, @Param("transactionId") Long transactionId);
+}
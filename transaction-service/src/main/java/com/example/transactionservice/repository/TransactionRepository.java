@@ -1,12 +1,76 @@
 package com.example.transactionservice.repository;
 
 import com.example.transactionservice.model.Transaction;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    List<Transaction> findByStatus(String status);
+    /**
+     * Trang đầu giao dịch theo trạng thái, mới nhất trước (index status, created_at, id đọc ngược)
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.status = :status " +
+           "ORDER BY t.status DESC, t.createdAt DESC, t.id DESC")
+    List<Transaction> findByStatusFirst(@Param("status") String status, Limit limit);
+
+    @Query("SELECT t FROM Transaction t WHERE t.status = :status " +
+           "AND t.createdAt <= :createdAt AND (t.createdAt < :createdAt OR t.id < :id) " +
+           "ORDER BY t.status DESC, t.createdAt DESC, t.id DESC")
+    List<Transaction> findByStatusBefore(@Param("status") String status,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id,
+                                         Limit limit);
+
+    /**
+     * Trang đầu giao dịch gửi của một tài khoản (index from_account_id, created_at DESC, id DESC).
+     * Cột lọc bằng đứng đầu ORDER BY để thứ tự trùng hẳn với index, DB đọc theo index không cần sort.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.fromAccountId = :accountId " +
+           "ORDER BY t.fromAccountId, t.createdAt DESC, t.id DESC")
+    List<Transaction> findSentFirst(@Param("accountId") Long accountId, Limit limit);
+
+    /**
+     * Trang tiếp theo (keyset): các giao dịch gửi đứng sau vị trí (createdAt, id) của trang trước.
+     * Điều kiện createdAt <= :createdAt tách riêng để DB dùng được làm cận của khoảng quét index.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.fromAccountId = :accountId " +
+           "AND t.createdAt <= :createdAt AND (t.createdAt < :createdAt OR t.id < :id) " +
+           "ORDER BY t.fromAccountId, t.createdAt DESC, t.id DESC")
+    List<Transaction> findSentBefore(@Param("accountId") Long accountId,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Limit limit);
+
+    /**
+     * Trang đầu giao dịch nhận của một tài khoản (index to_account_id, created_at DESC, id DESC)
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.toAccountId = :accountId " +
+           "ORDER BY t.toAccountId, t.createdAt DESC, t.id DESC")
+    List<Transaction> findReceivedFirst(@Param("accountId") Long accountId, Limit limit);
+
+    @Query("SELECT t FROM Transaction t WHERE t.toAccountId = :accountId " +
+           "AND t.createdAt <= :createdAt AND (t.createdAt < :createdAt OR t.id < :id) " +
+           "ORDER BY t.toAccountId, t.createdAt DESC, t.id DESC")
+    List<Transaction> findReceivedBefore(@Param("accountId") Long accountId,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id,
+                                         Limit limit);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Transaction t SET t.status = :status WHERE t.id = :id AND t.status = 'PENDING'")
+    int updateStatusIfPending(@Param("id") Long id, @Param("status") String status);
+
+    /**
+     * Số giao dịch có tham gia của một nhóm tài khoản (dùng khi account-service dựng lại thống kê của user)
+     */
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.fromAccountId IN :accountIds OR t.toAccountId IN :accountIds")
+    long countByParticipants(@Param("accountIds") Collection<Long> accountIds);
 }
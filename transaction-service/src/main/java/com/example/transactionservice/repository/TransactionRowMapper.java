@@ -0,0 +1,39 @@
+package com.example.transactionservice.repository;
+
+import com.example.common.money.Money;
+import com.example.transactionservice.model.Transaction;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Map dòng transactions đọc bằng JDBC (SELECT COLUMNS) sang Transaction, dùng cho các job đọc/ghi hàng loạt
+ */
+public class TransactionRowMapper implements RowMapper<Transaction> {
+
+    public static final String COLUMNS = "id, from_account_id, to_account_id, amount, currency, transaction_type, " +
+            "status, reference_code, description, created_at, completed_at, created_by";
+
+    public static final TransactionRowMapper INSTANCE = new TransactionRowMapper();
+
+    @Override
+    public Transaction mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Transaction transaction = new Transaction();
+        transaction.setId(rs.getLong(1));
+        transaction.setFromAccountId(rs.getObject(2, Long.class));
+        transaction.setToAccountId(rs.getObject(3, Long.class));
+        transaction.setCurrency(rs.getString(5));
+        transaction.setAmount(Money.of(rs.getBigDecimal(4), transaction.getCurrency()));
+        transaction.setTransactionType(rs.getString(6));
+        transaction.setStatus(rs.getString(7));
+        transaction.setReferenceCode(rs.getString(8));
+        transaction.setDescription(rs.getString(9));
+        transaction.setCreatedAt(rs.getTimestamp(10).toLocalDateTime());
+        Timestamp completedAt = rs.getTimestamp(11);
+        transaction.setCompletedAt(completedAt != null ? completedAt.toLocalDateTime() : null);
+        transaction.setCreatedBy(rs.getObject(12, Long.class));
+        return transaction;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bổ sung account_owners cho tài khoản có từ trước khi transaction-service dựng bản sao này
+ * (account-events chỉ mang tài khoản mới hoặc vừa có biến động).
+ * Đọc chủ sở hữu từ account-service theo trang id tăng dần và chỉ thêm dòng còn thiếu, nên dòng
+ * AccountOwnerListener đã ghi không bị đè và nhiều node cùng chạy vẫn an toàn.
+ * Lỗi giữa chừng thì lần chạy sau tiếp tục từ trang đang dở; đi hết một lượt thì dừng hẳn.
+ */
+@Slf4j
+@Component
+public class AccountOwnerBackfill {
+
+    private final AccountServiceClient accountServiceClient;
+    private final AccountOwnerRepository accountOwnerRepository;
+    private final boolean enabled;
+    private final int pageSize;
+    private volatile long afterId;
+    private volatile boolean completed;
+
+    public AccountOwnerBackfill(AccountServiceClient accountServiceClient,
+                                AccountOwnerRepository accountOwnerRepository,
+                                @Value("${transactions.owner-backfill.enabled:true}") boolean enabled,
+                                @Value("${transactions.owner-backfill.page-size:1000}") int pageSize) {
+        this.accountServiceClient = accountServiceClient;
+        this.accountOwnerRepository = accountOwnerRepository;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+    }
+
+    @Scheduled(initialDelayString = "${transactions.owner-backfill.initial-delay-ms:10000}",
+            fixedDelayString = "${transactions.owner-backfill.retry-interval-ms:60000}")
+    public void backfill() {
+        if (!enabled || completed) {
+            return;
+        }
+        int added = 0;
+        try {
+            List<AccountServiceClient.AccountOwnerRecord> page;
+            while (!(page = accountServiceClient.owners(afterId, pageSize)).isEmpty()) {
+                added += addMissing(page);
+                afterId = page.get(page.size() - 1).accountId();
+            }
+            completed = true;
+            log.info("Account owner backfill completed, {} owners added in the last run", added);
+        } catch (Exception e) {
+            log.warn("Account owner backfill paused after account {} ({} owners added), retrying later: {}",
+                    afterId, added, e.getMessage());
+        }
+    }
+
+    /**
+     * Chủ sở hữu của tài khoản chưa có trong account_owners, hỏi thẳng account-service ngay lúc cần kiểm tra quyền.
+     * Không ghi lại (backfill hoặc AccountOwnerListener sẽ ghi), nên gọi được cả trong transaction chỉ đọc.
+     * account-service lỗi hoặc không có tài khoản thì trả empty: người gọi coi như không sở hữu.
+     */
+    public Optional<AccountOwner> lookup(Long accountId) {
+        try {
+            return accountServiceClient.owner(accountId)
+                    .map(owner -> new AccountOwner(owner.accountId(), owner.userId(), owner.accountType()));
+        } catch (Exception e) {
+            log.warn("Owner lookup for account {} failed, denying access: {}", accountId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    private int addMissing(List<AccountServiceClient.AccountOwnerRecord> page) {
+        Set<Long> known = accountOwnerRepository.findAllById(
+                        page.stream().map(AccountServiceClient.AccountOwnerRecord::accountId).toList())
+                .stream()
+                .map(AccountOwner::getAccountId)
+                .collect(Collectors.toSet());
+        int added = 0;
+        for (AccountServiceClient.AccountOwnerRecord owner : page) {
+            if (known.contains(owner.accountId())) {
+                continue;
+            }
+            try {
+                accountOwnerRepository.save(new AccountOwner(owner.accountId(), owner.userId(), owner.accountType()));
+                added++;
+            } catch (DataIntegrityViolationException e) {
+                // AccountOwnerListener hoặc node khác vừa ghi
+                log.debug("Account owner for {} already recorded", owner.accountId());
+            }
+        }
+        return added;
+    }
+}
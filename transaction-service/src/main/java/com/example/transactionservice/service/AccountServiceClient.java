@@ -0,0 +1,98 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.model.Transaction;
+import com.example.common.internal.InternalRequestFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Gọi account-service để áp dụng biến động số dư của giao dịch và đọc chủ sở hữu tài khoản (backfill account_owners).
+ * Endpoint áp dụng idempotent theo transaction id nên gửi lại cả lô sau timeout là an toàn.
+ * Mỗi request mang internal.auth.token (endpoint nội bộ của account-service từ chối request không có token).
+ */
+@Component
+public class AccountServiceClient {
+
+    public static final String APPLIED = "APPLIED";
+    public static final String REJECTED = "REJECTED";
+
+    private final RestClient restClient;
+
+    public AccountServiceClient(RestClient.Builder builder,
+                                @Value("${account-service.url:http://account-service}") String baseUrl,
+                                @Value("${account-service.timeout:PT10S}") Duration timeout,
+                                @Value("${internal.auth.token:}") String internalToken) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = builder.baseUrl(baseUrl)
+                .requestFactory(requestFactory)
+                .defaultHeader(InternalRequestFilter.HEADER, internalToken)
+                .build();
+    }
+
+    /**
+     * Áp dụng lô giao dịch theo đúng thứ tự; kết quả cùng thứ tự với đầu vào
+     */
+    public List<ApplyResult> apply(List<Transaction> transactions) {
+        List<ApplyRequest> body = transactions.stream()
+                .map(t -> new ApplyRequest(t.getId(), t.getFromAccountId(), t.getToAccountId(),
+                        t.getAmount().toBigDecimal(), t.getCurrency(), t.getCreatedBy()))
+                .toList();
+        ApiResponse<List<ApplyResult>> response = restClient.post()
+                .uri("/accounts/internal/transactions/apply")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(new ParameterizedTypeReference<ApiResponse<List<ApplyResult>>>() { });
+        if (response == null || !response.success() || response.data() == null) {
+            throw new IllegalStateException("account-service rejected batch: " + (response != null ? response.message() : null));
+        }
+        return response.data();
+    }
+
+    /**
+     * Chủ sở hữu của các tài khoản có id lớn hơn afterId, tối đa limit dòng, theo id tăng dần
+     */
+    public List<AccountOwnerRecord> owners(long afterId, int limit) {
+        ApiResponse<List<AccountOwnerRecord>> response = restClient.get()
+                .uri("/accounts/internal/owners?afterId={afterId}&limit={limit}", afterId, limit)
+                .retrieve()
+                .body(new ParameterizedTypeReference<ApiResponse<List<AccountOwnerRecord>>>() { });
+        if (response == null || !response.success() || response.data() == null) {
+            throw new IllegalStateException("account-service rejected owner lookup: " + (response != null ? response.message() : null));
+        }
+        return response.data();
+    }
+
+    /**
+     * Chủ sở hữu của một tài khoản (trang một dòng bắt đầu ngay trước id); empty nếu tài khoản không tồn tại
+     */
+    public Optional<AccountOwnerRecord> owner(long accountId) {
+        return owners(accountId - 1, 1).stream()
+                .filter(owner -> owner.accountId() == accountId)
+                .findFirst();
+    }
+
+    public record ApplyRequest(Long transactionId, Long fromAccountId, Long toAccountId, BigDecimal amount,
+                               String currency, Long userId) {
+    }
+
+    public record ApplyResult(Long transactionId, String status, String message) {
+    }
+
+    public record AccountOwnerRecord(Long accountId, Long userId, String accountType) {
+    }
+
+    private record ApiResponse<T>(boolean success, T data, String message) {
+    }
+}
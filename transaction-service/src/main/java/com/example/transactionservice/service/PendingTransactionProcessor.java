@@ -0,0 +1,266 @@
+package com.example.transactionservice.service;
+
+import com.example.common.outbox.OutboxPublisher;
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.repository.TransactionRowMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Đưa giao dịch PENDING sang COMPLETED/FAILED bằng cách áp dụng số dư qua account-service.
+ * - Giao dịch chia vào parallelism slot theo tài khoản gửi (tài khoản nhận nếu là nạp tiền);
+ *   mỗi slot chỉ một worker trong cả cụm (GET_LOCK trên MySQL) và xử lý theo thứ tự (created_at, id),
+ *   nên giao dịch của cùng một tài khoản gửi luôn được áp dụng đúng thứ tự tạo.
+ * - Mỗi batch: một transaction khóa FOR UPDATE SKIP LOCKED và chuyển hàng loạt sang PROCESSING,
+ *   gọi account-service một lần cho cả batch, rồi một transaction cập nhật hàng loạt kết quả
+ *   (kèm completed_at) và ghi event vào outbox.
+ * - Gọi account-service lỗi thì các dòng giữ PROCESSING và được nhận lại ở lượt sau;
+ *   account-service idempotent theo transaction id nên gửi lại không làm trừ tiền hai lần.
+ * Mỗi worker giữ một kết nối cho lock và mượn thêm một kết nối khi chạy transaction.
+ */
+@Slf4j
+@Component
+public class PendingTransactionProcessor {
+
+    static final String PROCESSING = "PROCESSING";
+    private static final String LOCK_PREFIX = "transactions-processor-";
+    private static final String SLOT_EXPRESSION = "MOD(COALESCE(from_account_id, to_account_id, 0), ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountServiceClient accountServiceClient;
+    private final OutboxPublisher outboxPublisher;
+    private final TransactionStatusCounts statusCounts;
+    private final boolean enabled;
+    private final int parallelism;
+    private final int batchSize;
+    private final AtomicBoolean[] running;
+    private final ExecutorService executor;
+    private final Counter completed;
+    private final Counter failed;
+    private final Timer claimTimer;
+    private final Timer applyTimer;
+    private volatile Boolean mysql;
+
+    public PendingTransactionProcessor(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       AccountServiceClient accountServiceClient,
+                                       OutboxPublisher outboxPublisher,
+                                       TransactionStatusCounts statusCounts,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${transactions.processor.enabled:true}") boolean enabled,
+                                       @Value("${transactions.processor.parallelism:4}") int parallelism,
+                                       @Value("${transactions.processor.batch-size:200}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accountServiceClient = accountServiceClient;
+        this.outboxPublisher = outboxPublisher;
+        this.statusCounts = statusCounts;
+        this.enabled = enabled;
+        this.parallelism = Math.max(parallelism, 1);
+        this.batchSize = batchSize;
+        this.running = new AtomicBoolean[this.parallelism];
+        for (int slot = 0; slot < this.parallelism; slot++) {
+            running[slot] = new AtomicBoolean();
+        }
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread thread = new Thread(r, "transaction-processor-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.completed = Counter.builder("transactions.processor.processed")
+                .tag("outcome", "completed")
+                .description("Transactions moved out of PENDING by the processor")
+                .register(meterRegistry);
+        this.failed = Counter.builder("transactions.processor.processed")
+                .tag("outcome", "failed")
+                .description("Transactions moved out of PENDING by the processor")
+                .register(meterRegistry);
+        this.claimTimer = Timer.builder("transactions.processor.claim")
+                .description("Time to lock and mark a batch of pending transactions as PROCESSING")
+                .register(meterRegistry);
+        this.applyTimer = Timer.builder("transactions.processor.apply")
+                .description("Time for account-service to apply a batch")
+                .register(meterRegistry);
+        Gauge.builder("transactions.processor.backlog", statusCounts,
+                        counts -> counts.getCount("PENDING") + counts.getCount(PROCESSING))
+                .description("Transactions waiting to be processed (PENDING or PROCESSING), approximate")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.processor.interval-ms:200}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        for (int slot = 0; slot < parallelism; slot++) {
+            if (running[slot].compareAndSet(false, true)) {
+                int current = slot;
+                executor.execute(() -> {
+                    try {
+                        drain(current);
+                    } catch (Exception e) {
+                        log.error("Transaction processor slot {} failed: {}", current, e.getMessage());
+                    } finally {
+                        running[current].set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Xử lý liên tục một slot đến khi hết việc; node khác đang giữ slot thì bỏ qua lượt này
+     */
+    private void drain(int slot) {
+        if (!isMysql()) {
+            while (processBatch(slot) >= batchSize) {
+                // tiếp tục đến khi batch không đầy
+            }
+            return;
+        }
+        String lockName = LOCK_PREFIX + slot + "-of-" + parallelism;
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            Integer acquired = jdbc.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, lockName);
+            if (acquired == null || acquired != 1) {
+                return null;
+            }
+            try {
+                while (processBatch(slot) >= batchSize) {
+                    // tiếp tục đến khi batch không đầy
+                }
+            } finally {
+                jdbc.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, lockName);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Nhận và xử lý một batch của slot, trả về số giao dịch đã nhận.
+     * Các dòng PROCESSING còn sót (account-service lỗi, node chết giữa chừng) được nhận lại trước theo thứ tự tạo.
+     * Không xếp theo id vì mỗi node cấp id từ khối riêng nên id không tăng theo thời gian giữa các node.
+     */
+    public int processBatch(int slot) {
+        List<Transaction> batch = claimTimer.record(() -> transactionTemplate.execute(status -> claim(slot)));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<AccountServiceClient.ApplyResult> results;
+        try {
+            results = applyTimer.recordCallable(() -> accountServiceClient.apply(batch));
+        } catch (Exception e) {
+            log.warn("Applying {} transactions failed, will retry: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> complete(batch, results));
+        return batch.size();
+    }
+
+    private List<Transaction> claim(int slot) {
+        List<Transaction> batch = jdbcTemplate.query("SELECT " + TransactionRowMapper.COLUMNS + " FROM transactions " +
+                        "WHERE status IN ('PENDING', 'PROCESSING') AND " + SLOT_EXPRESSION + " = ? " +
+                        "ORDER BY created_at, id LIMIT ? FOR UPDATE SKIP LOCKED",
+                TransactionRowMapper.INSTANCE, parallelism, slot, batchSize);
+        if (!batch.isEmpty()) {
+            List<Long> ids = batch.stream().map(Transaction::getId).toList();
+            jdbcTemplate.update("UPDATE transactions SET status = '" + PROCESSING + "' WHERE id IN (" +
+                    placeholders(ids.size()) + ")", ids.toArray());
+            statusCounts.transition("PENDING", PROCESSING, batch.stream().filter(t -> "PENDING".equals(t.getStatus())).count());
+        }
+        return batch;
+    }
+
+    private void complete(List<Transaction> batch, List<AccountServiceClient.ApplyResult> results) {
+        Map<Long, AccountServiceClient.ApplyResult> byId = new HashMap<>();
+        for (AccountServiceClient.ApplyResult result : results) {
+            byId.put(result.transactionId(), result);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> done = new ArrayList<>();
+        List<Transaction> rejected = new ArrayList<>();
+        for (Transaction transaction : batch) {
+            AccountServiceClient.ApplyResult result = byId.get(transaction.getId());
+            if (result == null) {
+                // Thiếu kết quả: giữ PROCESSING để lượt sau gửi lại
+                continue;
+            }
+            transaction.setCompletedAt(now);
+            if (AccountServiceClient.APPLIED.equals(result.status())) {
+                transaction.setStatus("COMPLETED");
+                done.add(transaction);
+            } else {
+                transaction.setStatus("FAILED");
+                rejected.add(transaction);
+            }
+        }
+        transition(done, "COMPLETED", now);
+        transition(rejected, "FAILED", now);
+        completed.increment(done.size());
+        failed.increment(rejected.size());
+    }
+
+    private void transition(List<Transaction> transactions, String status, LocalDateTime completedAt) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        List<Object> args = new ArrayList<>(transactions.size() + 2);
+        args.add(status);
+        args.add(Timestamp.valueOf(completedAt));
+        transactions.forEach(t -> args.add(t.getId()));
+        int updated = jdbcTemplate.update("UPDATE transactions SET status = ?, completed_at = ? WHERE id IN (" +
+                placeholders(transactions.size()) + ") AND status = '" + PROCESSING + "'", args.toArray());
+        statusCounts.transition(PROCESSING, status, updated);
+        for (Transaction transaction : transactions) {
+            outboxPublisher.publish("transaction-events", transaction.getId(),
+                    "transaction_" + status.toLowerCase(), transaction);
+        }
+    }
+
+    private boolean isMysql() {
+        if (mysql == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            mysql = "MySQL".equalsIgnoreCase(product);
+        }
+        return mysql;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter trên capacity reference_code mới nhất (theo transaction_id) để bỏ qua kiểm tra trùng khi tạo giao dịch:
+ * - mightContain = false: mã chắc chắn mới trong cửa sổ, INSERT luôn; mã cũ hơn cửa sổ hoặc vừa tạo ở node khác
+ *   vẫn bị khóa chính transaction_references chặn như trước.
+ * - mightContain = true: tra transaction_references theo khóa chính; không thấy thì là dương tính giả.
+ * Filter được dựng lại định kỳ ở bên cạnh rồi mới thay thế; mã put trong lúc dựng được ghi vào cả hai.
+ * Chưa dựng xong (lúc khởi động) hoặc tắt thì mọi mã đều được tra.
+ */
+@Slf4j
+@Component
+public class ReferenceCodeFilter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int capacity;
+    private final double fpp;
+    private final int fetchSize;
+    private final Counter definitelyNew;
+    private final Counter probableDuplicates;
+    private final Counter falsePositiveCounter;
+    // Đếm theo từng thế hệ filter để tỉ lệ dương tính giả phản ánh filter hiện tại
+    private final AtomicLong generationNew = new AtomicLong();
+    private final AtomicLong generationFalsePositives = new AtomicLong();
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+
+    public ReferenceCodeFilter(JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${transactions.reference-filter.enabled:true}") boolean enabled,
+                               @Value("${transactions.reference-filter.capacity:1000000}") int capacity,
+                               @Value("${transactions.reference-filter.fpp:0.01}") double fpp,
+                               @Value("${statement.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.fpp = fpp;
+        this.fetchSize = fetchSize;
+        this.definitelyNew = Counter.builder("transactions.reference.filter")
+                .tag("result", "new")
+                .description("Reference codes checked against the bloom filter")
+                .register(meterRegistry);
+        this.probableDuplicates = Counter.builder("transactions.reference.filter")
+                .tag("result", "probable_duplicate")
+                .description("Reference codes checked against the bloom filter")
+                .register(meterRegistry);
+        this.falsePositiveCounter = Counter.builder("transactions.reference.filter.false.positives")
+                .description("Probable duplicates that turned out to be new reference codes")
+                .register(meterRegistry);
+        Gauge.builder("transactions.reference.filter.false.positive.rate", this, ReferenceCodeFilter::falsePositiveRate)
+                .description("Observed false positive rate of the current filter")
+                .register(meterRegistry);
+        Gauge.builder("transactions.reference.filter.expected.fpp", this,
+                        f -> f.filter != null ? f.filter.expectedFpp() : 0)
+                .description("Expected false positive rate from the current fill of the filter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * false = chắc chắn chưa có trong cửa sổ, không cần tra DB
+     */
+    public boolean mightContain(String referenceCode) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        if (current.mightContain(referenceCode)) {
+            probableDuplicates.increment();
+            return true;
+        }
+        definitelyNew.increment();
+        generationNew.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Tra DB sau mightContain = true nhưng mã là mới
+     */
+    public void recordFalsePositive() {
+        if (filter != null) {
+            falsePositiveCounter.increment();
+            generationFalsePositives.incrementAndGet();
+        }
+    }
+
+    public void put(String referenceCode) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(referenceCode);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(referenceCode);
+        }
+    }
+
+    /**
+     * Dương tính giả / mọi mã mới đã kiểm tra, tính trên filter hiện tại
+     */
+    public double falsePositiveRate() {
+        long falsePositives = generationFalsePositives.get();
+        long total = falsePositives + generationNew.get();
+        return total == 0 ? 0 : (double) falsePositives / total;
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.reference-filter.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            BloomFilter next = BloomFilter.create(capacity, fpp);
+            building = next;
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT reference_code FROM transaction_references ORDER BY transaction_id DESC LIMIT ?",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setInt(1, capacity);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, (RowCallbackHandler) rs -> next.put(rs.getString(1)));
+            filter = next;
+            generationNew.set(0);
+            generationFalsePositives.set(0);
+            log.info("Rebuilt reference code filter with {} codes in {} ms", next.getInsertions(),
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Reference code filter rebuild failed: {}", e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Xuất sao kê giao dịch của một tài khoản theo khoảng ngày, dạng NDJSON hoặc CSV, nén gzip.
+ * - Đọc bằng JDBC cursor với fetch size cố định và ghi thẳng từ ResultSet ra response, không tạo entity,
+ *   nên bộ nhớ không phụ thuộc số dòng (MySQL cần useCursorFetch=true để fetch size có hiệu lực và để
+ *   hai cursor cùng mở trên một connection).
+ * - Chiều chuyển đi và chiều nhận là hai cursor theo index riêng, trộn trong Java theo (created_at, id),
+ *   thay vì UNION ALL ... ORDER BY buộc DB sort (filesort) toàn bộ khoảng ngày trước khi trả dòng đầu.
+ * - Mỗi fetch-size dòng thì flush gzip để client nhận dần; khi client ngắt kết nối, lần ghi kế tiếp lỗi
+ *   và truy vấn bị cancel ngay thay vì đọc tiếp phần còn lại.
+ */
+@Slf4j
+@Service
+public class StatementExportService {
+
+    public enum Format {
+        NDJSON("ndjson"),
+        CSV("csv");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported format: " + value);
+            }
+        }
+    }
+
+    private static final String COLUMNS = "id, from_account_id, to_account_id, amount, currency, transaction_type, " +
+            "status, reference_code, description, created_at, completed_at";
+
+    // Mỗi chiều một truy vấn đi theo index (from_account_id, created_at, id) hoặc (to_account_id, created_at, id)
+    // nên đọc ra đã đúng thứ tự, không cần sort; chuyển cho chính mình chỉ tính ở chiều DEBIT
+    private static final String DEBIT_SQL =
+            "SELECT 'DEBIT' AS direction, " + COLUMNS + " FROM transactions " +
+            "WHERE from_account_id = ? AND created_at >= ? AND created_at < ? " +
+            "ORDER BY created_at, id";
+    private static final String CREDIT_SQL =
+            "SELECT 'CREDIT' AS direction, " + COLUMNS + " FROM transactions " +
+            "WHERE to_account_id = ? AND (from_account_id IS NULL OR from_account_id <> ?) " +
+            "AND created_at >= ? AND created_at < ? " +
+            "ORDER BY created_at, id";
+
+    private static final String[] FIELDS = {"direction", "id", "fromAccountId", "toAccountId", "amount", "currency",
+            "transactionType", "status", "referenceCode", "description", "createdAt", "completedAt"};
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountOwnerRepository accountOwnerRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int fetchSize;
+    private final Counter exportedRows;
+
+    public StatementExportService(JdbcTemplate jdbcTemplate,
+                                  AccountOwnerRepository accountOwnerRepository,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${statement.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.accountOwnerRepository = accountOwnerRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.fetchSize = fetchSize;
+        this.exportedRows = Counter.builder("statement.export.rows")
+                .description("Transactions written to statement exports")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Kiểm tra trước khi bắt đầu stream (sau đó không còn trả lỗi JSON được nữa)
+     */
+    public void checkRequest(Long userId, Long accountId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (!accountOwnerRepository.findAccountIdsByUserId(userId).contains(accountId)) {
+            throw new RuntimeException("Access denied");
+        }
+    }
+
+    /**
+     * Ghi sao kê [from, to] (tính cả hai ngày) theo thứ tự thời gian vào out; trả về số dòng đã ghi.
+     * out không bị đóng, chỉ kết thúc luồng gzip.
+     */
+    public long export(Long accountId, LocalDate from, LocalDate to, Format format, OutputStream out) throws IOException {
+        long began = System.nanoTime();
+        long[] rows = {0};
+        String outcome = "failed";
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE, true);
+            RowWriter writer = format == Format.NDJSON ? new NdjsonWriter(gzip) : new CsvWriter(gzip);
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+                Timestamp end = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+                try (PreparedStatement debits = prepare(connection, DEBIT_SQL, accountId, start, end);
+                     PreparedStatement credits = prepare(connection, CREDIT_SQL, accountId, accountId, start, end)) {
+                    try (OrderedRows debit = new OrderedRows(debits.executeQuery());
+                         OrderedRows credit = new OrderedRows(credits.executeQuery())) {
+                        // Trộn hai luồng đã sắp theo (created_at, id), mỗi lần lấy dòng nhỏ hơn
+                        while (debit.hasRow() || credit.hasRow()) {
+                            OrderedRows next = !credit.hasRow() || debit.hasRow() && debit.compareTo(credit) <= 0
+                                    ? debit : credit;
+                            writer.write(next.resultSet());
+                            if (++rows[0] % fetchSize == 0) {
+                                writer.flush();
+                            }
+                            next.advance();
+                        }
+                    } catch (IOException e) {
+                        // Client đã ngắt kết nối: dừng cả hai truy vấn trên DB ngay
+                        cancel(debits);
+                        cancel(credits);
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return null;
+            });
+            writer.finish();
+            gzip.finish();
+            outcome = "completed";
+            return rows[0];
+        } catch (UncheckedIOException e) {
+            outcome = "cancelled";
+            log.info("Statement export of account {} cancelled after {} rows: {}", accountId, rows[0], e.getMessage());
+            throw e.getCause();
+        } finally {
+            exportedRows.increment(rows[0]);
+            Timer.builder("statement.export")
+                    .description("Statement export duration")
+                    .tag("format", format.getExtension())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - began, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, Object... parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        return statement;
+    }
+
+    private static void cancel(PreparedStatement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            log.warn("Could not cancel statement export query: {}", e.getMessage());
+        }
+    }
+
+    private static Long nullableLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static String timestamp(ResultSet rs, int column) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        return value != null ? value.toLocalDateTime().toString() : null;
+    }
+
+    /**
+     * Một luồng dòng đã sắp theo (created_at, id); giữ khóa của dòng hiện tại để so khi trộn
+     */
+    private static final class OrderedRows implements Comparable<OrderedRows>, AutoCloseable {
+
+        private final ResultSet rs;
+        private boolean hasRow;
+        private Timestamp createdAt;
+        private long id;
+
+        OrderedRows(ResultSet rs) throws SQLException {
+            this.rs = rs;
+            advance();
+        }
+
+        void advance() throws SQLException {
+            hasRow = rs.next();
+            if (hasRow) {
+                createdAt = rs.getTimestamp(11);
+                id = rs.getLong(2);
+            }
+        }
+
+        boolean hasRow() {
+            return hasRow;
+        }
+
+        ResultSet resultSet() {
+            return rs;
+        }
+
+        @Override
+        public int compareTo(OrderedRows other) {
+            int byTime = createdAt.compareTo(other.createdAt);
+            return byTime != 0 ? byTime : Long.compare(id, other.id);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            rs.close();
+        }
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * Mỗi dòng một object JSON, tên trường giống TransactionDTO (thêm direction)
+     */
+    private final class NdjsonWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeStringField(FIELDS[0], rs.getString(1));
+            generator.writeNumberField(FIELDS[1], rs.getLong(2));
+            writeLong(FIELDS[2], nullableLong(rs, 3));
+            writeLong(FIELDS[3], nullableLong(rs, 4));
+            generator.writeNumberField(FIELDS[4], rs.getBigDecimal(5));
+            for (int column = 6; column <= 10; column++) {
+                generator.writeStringField(FIELDS[column - 1], rs.getString(column));
+            }
+            generator.writeStringField(FIELDS[10], timestamp(rs, 11));
+            generator.writeStringField(FIELDS[11], timestamp(rs, 12));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeLong(String field, Long value) throws IOException {
+            if (value != null) {
+                generator.writeNumberField(field, value);
+            } else {
+                generator.writeNullField(field);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * CSV theo RFC 4180: dòng tiêu đề, trường chứa dấu phẩy/nháy/xuống dòng được đặt trong nháy kép
+     */
+    private static final class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writer.write(String.join(",", FIELDS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(rs.getString(1));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(2)));
+            writeField(nullableLong(rs, 3));
+            writeField(nullableLong(rs, 4));
+            BigDecimal amount = rs.getBigDecimal(5);
+            writeField(amount != null ? amount.toPlainString() : null);
+            for (int column = 6; column <= 10; column++) {
+                writeField(rs.getString(column));
+            }
+            writeField(timestamp(rs, 11));
+            writeField(timestamp(rs, 12));
+            writer.write("\r\n");
+        }
+
+        private void writeField(Object value) throws IOException {
+            writer.write(',');
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.model.ArchivedPartition;
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.repository.ArchivedPartitionRepository;
+import com.example.transactionservice.util.TransactionArchiveFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Đường đọc chậm cho giao dịch đã chuyển khỏi bảng transactions:
+ * mỗi tháng đã archive là một file .txa trong transactions.archive.dir (ổ dùng chung của mọi instance).
+ * Khoảng id của từng file đã nạp được giữ trong bộ nhớ, tìm theo id chỉ mở file có khoảng chứa id đó.
+ * Mỗi file đăng ký cũng được ghi vào bảng transaction_archives; tìm hụt trong bộ nhớ thì tra bảng này,
+ * nên file do node khác vừa archive vẫn đọc được mà không cần khởi động lại.
+ */
+@Slf4j
+@Component
+public class TransactionArchive {
+
+    private final Path directory;
+    private final ArchivedPartitionRepository archivedPartitionRepository;
+    private volatile List<TransactionArchiveFile.Reader> readers = List.of();
+
+    public TransactionArchive(@Value("${transactions.archive.dir:./data/archive}") Path directory,
+                              ArchivedPartitionRepository archivedPartitionRepository) {
+        this.directory = directory;
+        this.archivedPartitionRepository = archivedPartitionRepository;
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(TransactionArchiveFile.EXTENSION)).toList()) {
+                register(file);
+            }
+        }
+    }
+
+    public Path pathFor(YearMonth month) {
+        return directory.resolve("transactions-" + month + TransactionArchiveFile.EXTENSION);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Đưa file vào danh sách tra cứu và bảng chỉ mục (gọi trước khi xóa partition tương ứng để không có lúc tìm hụt)
+     */
+    public void register(Path file) throws IOException {
+        TransactionArchiveFile.Reader reader = open(file);
+        archivedPartitionRepository.save(new ArchivedPartition(file.getFileName().toString(), reader.getMinId(),
+                reader.getMaxId(), reader.getRowCount(), LocalDateTime.now()));
+    }
+
+    public Optional<Transaction> findById(Long id) {
+        List<TransactionArchiveFile.Reader> loaded = readers;
+        for (TransactionArchiveFile.Reader reader : loaded) {
+            if (id < reader.getMinId()) {
+                break;
+            }
+            if (id > reader.getMaxId()) {
+                continue;
+            }
+            Optional<Transaction> found = find(reader, id);
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        // File node khác archive sau khi node này khởi động
+        for (ArchivedPartition archived : archivedPartitionRepository.findCovering(id)) {
+            Path file = directory.resolve(archived.getFileName());
+            if (loaded.stream().anyMatch(reader -> reader.getPath().equals(file))) {
+                continue;
+            }
+            if (!Files.exists(file)) {
+                throw new IllegalStateException("Archive " + file + " is indexed but not readable on this node; "
+                        + "transactions.archive.dir must be shared by all instances");
+            }
+            try {
+                Optional<Transaction> found = find(openIfAbsent(file), id);
+                if (found.isPresent()) {
+                    return found;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open " + file, e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (TransactionArchiveFile.Reader reader : readers) {
+            reader.close();
+        }
+        readers = List.of();
+    }
+
+    /**
+     * Request song song cùng tìm hụt chỉ mở file một lần (mở lại sẽ đóng reader request kia đang đọc)
+     */
+    private synchronized TransactionArchiveFile.Reader openIfAbsent(Path file) throws IOException {
+        for (TransactionArchiveFile.Reader reader : readers) {
+            if (reader.getPath().equals(file)) {
+                return reader;
+            }
+        }
+        return open(file);
+    }
+
+    private synchronized TransactionArchiveFile.Reader open(Path file) throws IOException {
+        TransactionArchiveFile.Reader reader = TransactionArchiveFile.open(file);
+        List<TransactionArchiveFile.Reader> updated = new ArrayList<>(readers);
+        List<TransactionArchiveFile.Reader> replaced = updated.stream()
+                .filter(existing -> existing.getPath().equals(file))
+                .toList();
+        updated.removeAll(replaced);
+        updated.add(reader);
+        updated.sort(Comparator.comparingLong(TransactionArchiveFile.Reader::getMinId));
+        readers = List.copyOf(updated);
+        for (TransactionArchiveFile.Reader old : replaced) {
+            old.close();
+        }
+        log.info("Registered transaction archive {} ({} rows, ids {}..{})",
+                file.getFileName(), reader.getRowCount(), reader.getMinId(), reader.getMaxId());
+        return reader;
+    }
+
+    private static Optional<Transaction> find(TransactionArchiveFile.Reader reader, Long id) {
+        try {
+            return reader.findById(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + reader.getPath(), e);
+        }
+    }
+}
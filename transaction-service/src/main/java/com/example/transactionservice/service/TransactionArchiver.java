@@ -0,0 +1,142 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.repository.TransactionRowMapper;
+import com.example.transactionservice.util.TransactionArchiveFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Chuyển các partition tháng cũ hơn transactions.archive.after-months ra file .txa rồi DROP PARTITION.
+ * Thứ tự an toàn: ghi file tạm, fsync, đọc lại đếm dòng, đổi tên, nạp vào TransactionArchive
+ * (kèm dòng chỉ mục transaction_archives cho các node khác), cuối cùng mới xóa partition.
+ * Chạy lại sau sự cố giữa chừng thì dùng lại file đã đổi tên nếu số dòng khớp.
+ * Partition còn giao dịch PENDING/PROCESSING được bỏ qua vì có thể còn bị cập nhật.
+ */
+@Slf4j
+@Component
+public class TransactionArchiver {
+
+    private final TransactionPartitionManager partitionManager;
+    private final TransactionArchive transactionArchive;
+    private final TransactionStatusCounts statusCounts;
+    private final int afterMonths;
+    private final int fetchSize;
+    private final Counter archivedPartitions;
+    private final Counter archivedRows;
+
+    public TransactionArchiver(TransactionPartitionManager partitionManager,
+                               TransactionArchive transactionArchive,
+                               TransactionStatusCounts statusCounts,
+                               MeterRegistry meterRegistry,
+                               @Value("${transactions.archive.after-months:12}") int afterMonths,
+                               @Value("${statement.export.fetch-size:1000}") int fetchSize) {
+        this.partitionManager = partitionManager;
+        this.transactionArchive = transactionArchive;
+        this.statusCounts = statusCounts;
+        this.afterMonths = afterMonths;
+        this.fetchSize = fetchSize;
+        this.archivedPartitions = Counter.builder("transactions.archive.partitions")
+                .description("Monthly partitions moved to archive files")
+                .register(meterRegistry);
+        this.archivedRows = Counter.builder("transactions.archive.rows")
+                .description("Transactions moved to archive files")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${transactions.archive.cron:0 0 2 * * *}")
+    public void archive() {
+        if (!partitionManager.isActive()) {
+            return;
+        }
+        try {
+            partitionManager.withLock(jdbc -> {
+                YearMonth cutoff = YearMonth.now().minusMonths(afterMonths);
+                for (String partition : TransactionPartitionManager.partitionsBefore(partitionManager.listPartitions(jdbc), cutoff)) {
+                    archivePartition(jdbc, partition);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Transaction archiving failed: {}", e.getMessage());
+        }
+    }
+
+    private void archivePartition(JdbcTemplate jdbc, String partition) {
+        Map<String, Long> byStatus = new HashMap<>();
+        jdbc.query("SELECT status, COUNT(*) FROM transactions PARTITION (" + partition + ") GROUP BY status",
+                rs -> {
+                    byStatus.put(rs.getString(1), rs.getLong(2));
+                });
+        long pending = byStatus.getOrDefault("PENDING", 0L) + byStatus.getOrDefault("PROCESSING", 0L);
+        if (pending > 0) {
+            log.warn("Skipping archive of partition {}: {} transactions not processed yet", partition, pending);
+            return;
+        }
+        long expected = byStatus.values().stream().mapToLong(Long::longValue).sum();
+        Path target = transactionArchive.pathFor(TransactionPartitionManager.monthOf(partition));
+        try {
+            if (!Files.exists(target) || countRows(target) != expected) {
+                write(jdbc, partition, target);
+            }
+            long written = countRows(target);
+            if (written != expected) {
+                Files.delete(target);
+                throw new IllegalStateException("Archive of " + partition + " has " + written + " rows, expected " + expected);
+            }
+            transactionArchive.register(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive partition " + partition, e);
+        }
+        partitionManager.dropPartition(jdbc, partition);
+        byStatus.forEach((status, count) -> statusCounts.transition(status, null, count));
+        archivedPartitions.increment();
+        archivedRows.increment(expected);
+        log.info("Archived partition {} ({} rows) to {}", partition, expected, target);
+    }
+
+    private void write(JdbcTemplate jdbc, String partition, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (TransactionArchiveFile.Writer writer = TransactionArchiveFile.create(temporary)) {
+            jdbc.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT " + TransactionRowMapper.COLUMNS +
+                                " FROM transactions PARTITION (" + partition + ") ORDER BY id",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    writer.append(TransactionRowMapper.INSTANCE.mapRow(rs, 0));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temporary);
+            throw e.getCause();
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long countRows(Path file) throws IOException {
+        try (TransactionArchiveFile.Reader reader = TransactionArchiveFile.open(file)) {
+            return reader.getRowCount();
+        }
+    }
+}
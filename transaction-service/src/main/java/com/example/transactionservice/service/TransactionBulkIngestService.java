@@ -0,0 +1,469 @@
+package com.example.transactionservice.service;
+
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxPublisher;
+import com.example.transactionservice.dto.BulkRowResultDTO;
+import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.event.TransactionBatchCreated;
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.model.TransactionReference;
+import com.example.transactionservice.repository.TransactionReferenceRepository;
+import com.example.transactionservice.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nhập hàng loạt giao dịch từ file đối tác: mỗi dòng NDJSON là một TransactionDTO, kết quả từng dòng trả về
+ * dạng NDJSON theo đúng thứ tự.
+ * - Đọc theo chunk chunk-size dòng; parse và kiểm tra chunk kế tiếp chạy song song trên validation-threads luồng
+ *   trong lúc chunk hiện tại đang được ghi; bộ nhớ chỉ giữ tối đa hai chunk.
+ * - Người gửi file phải sở hữu tài khoản gửi của từng dòng (như createTransaction, chưa biết chủ thì từ chối),
+ *   và mỗi dòng phải có đủ hai tài khoản.
+ * - Trùng reference code được so với dòng đầu tiên trong chunk và với DB (Bloom filter, rồi một truy vấn IN
+ *   cho cả chunk; chunk trước đã commit nên cũng được tìm thấy ở đây): cùng tài khoản và số tiền thì trả EXISTING
+ *   với id cũ (đối tác gửi lại file), khác thì REJECTED.
+ * - Dòng vượt giới hạn tần suất của tài khoản/user gửi (VelocityLimiter) bị REJECTED như khi tạo từng giao dịch.
+ * - Mỗi chunk một transaction: INSERT giao dịch và transaction_references theo JDBC batch batch-size dòng,
+ *   kèm một event transactions_created vào outbox cho cả chunk. Kết quả của chunk được ghi ra ngay sau commit.
+ * - Chunk đụng mã vừa được request khác tạo (lỗi unique) thì rollback và xử lý lại từng dòng qua insertTransaction.
+ */
+@Slf4j
+@Service
+public class TransactionBulkIngestService {
+
+    public static final String CREATED = "CREATED";
+    public static final String EXISTING = "EXISTING";
+    public static final String REJECTED = "REJECTED";
+
+    static final int MAX_REFERENCE_LENGTH = 255;
+
+    private static final String INSERT_REFERENCE =
+            "INSERT INTO transaction_references (reference_code, transaction_id) VALUES (?, ?)";
+
+    private final TransactionService transactionService;
+    private final TransactionRepository transactionRepository;
+    private final TransactionReferenceRepository transactionReferenceRepository;
+    private final TransactionArchive transactionArchive;
+    private final ReferenceCodeFilter referenceCodeFilter;
+    private final OutboxPublisher outboxPublisher;
+    private final TransactionStatusCounts statusCounts;
+    private final VelocityLimiter velocityLimiter;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int batchSize;
+    private final int validationThreads;
+    private final ExecutorService executor;
+    private final Counter created;
+    private final Counter existing;
+    private final Counter rejected;
+    private final Timer chunkTimer;
+
+    public TransactionBulkIngestService(TransactionService transactionService,
+                                        TransactionRepository transactionRepository,
+                                        TransactionReferenceRepository transactionReferenceRepository,
+                                        TransactionArchive transactionArchive,
+                                        ReferenceCodeFilter referenceCodeFilter,
+                                        OutboxPublisher outboxPublisher,
+                                        TransactionStatusCounts statusCounts,
+                                        VelocityLimiter velocityLimiter,
+                                        JdbcTemplate jdbcTemplate,
+                                        EntityManager entityManager,
+                                        ObjectMapper objectMapper,
+                                        PlatformTransactionManager transactionManager,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${transactions.bulk.chunk-size:1000}") int chunkSize,
+                                        @Value("${transactions.bulk.batch-size:500}") int batchSize,
+                                        @Value("${transactions.bulk.validation-threads:4}") int validationThreads) {
+        if (chunkSize <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Chunk and batch size must be positive");
+        }
+        this.transactionService = transactionService;
+        this.transactionRepository = transactionRepository;
+        this.transactionReferenceRepository = transactionReferenceRepository;
+        this.transactionArchive = transactionArchive;
+        this.referenceCodeFilter = referenceCodeFilter;
+        this.outboxPublisher = outboxPublisher;
+        this.statusCounts = statusCounts;
+        this.velocityLimiter = velocityLimiter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.validationThreads = Math.max(validationThreads, 1);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.validationThreads, r -> {
+            Thread thread = new Thread(r, "transaction-bulk-validate-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.created = rowCounter(meterRegistry, "created");
+        this.existing = rowCounter(meterRegistry, "existing");
+        this.rejected = rowCounter(meterRegistry, "rejected");
+        this.chunkTimer = Timer.builder("transactions.bulk.chunk")
+                .description("Time to de-duplicate and insert one bulk ingestion chunk")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Đọc NDJSON từ in đến hết, tạo giao dịch thay cho userId và ghi kết quả từng dòng (bỏ qua dòng trống) ra out;
+     * trả về số dòng đã xử lý. out không bị đóng.
+     */
+    public long ingest(Long userId, InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long[] lineNumber = {0};
+        long processed = 0;
+
+        List<Line> chunk = readChunk(reader, lineNumber);
+        CompletableFuture<List<Row>> validating = validate(chunk);
+        while (!chunk.isEmpty()) {
+            List<Row> rows = validating.join();
+            // Kiểm tra chunk sau trong lúc ghi chunk này
+            chunk = readChunk(reader, lineNumber);
+            validating = validate(chunk);
+            chunkTimer.record(() -> store(userId, rows));
+            for (Row row : rows) {
+                writer.write(objectMapper.writeValueAsString(row.result()));
+                writer.write('\n');
+            }
+            writer.flush();
+            processed += rows.size();
+        }
+        return processed;
+    }
+
+    private List<Line> readChunk(BufferedReader reader, long[] lineNumber) throws IOException {
+        List<Line> chunk = new ArrayList<>(chunkSize);
+        String text;
+        while (chunk.size() < chunkSize && (text = reader.readLine()) != null) {
+            lineNumber[0]++;
+            if (!text.isBlank()) {
+                chunk.add(new Line(lineNumber[0], text));
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Parse và kiểm tra chunk trên các luồng validation, giữ nguyên thứ tự dòng
+     */
+    private CompletableFuture<List<Row>> validate(List<Line> chunk) {
+        int sliceSize = Math.max((chunk.size() + validationThreads - 1) / validationThreads, 1);
+        List<CompletableFuture<List<Row>>> slices = new ArrayList<>();
+        for (int start = 0; start < chunk.size(); start += sliceSize) {
+            List<Line> slice = chunk.subList(start, Math.min(start + sliceSize, chunk.size()));
+            slices.add(CompletableFuture.supplyAsync(() -> slice.stream().map(this::parse).toList(), executor));
+        }
+        return CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new))
+                .thenApply(done -> slices.stream().flatMap(slice -> slice.join().stream()).toList());
+    }
+
+    private Row parse(Line line) {
+        TransactionDTO request;
+        try {
+            request = objectMapper.readValue(line.text(), TransactionDTO.class);
+        } catch (JsonProcessingException e) {
+            request = null;
+        }
+        Row row = new Row(line.number(), request);
+        if (request == null) {
+            row.reject("Invalid JSON");
+            return row;
+        }
+        String error = check(request);
+        if (error != null) {
+            row.reject(error);
+        }
+        return row;
+    }
+
+    static String check(TransactionDTO request) {
+        if (request.referenceCode() == null || request.referenceCode().isBlank()) {
+            return "Reference code is required";
+        }
+        if (request.referenceCode().length() > MAX_REFERENCE_LENGTH) {
+            return "Reference code is too long";
+        }
+        if (request.transactionType() == null || request.transactionType().isBlank()) {
+            return "Transaction type is required";
+        }
+        if (request.fromAccountId() == null || request.toAccountId() == null) {
+            return "Transaction must have both accounts";
+        }
+        if (request.amount() == null || request.amount().signum() <= 0) {
+            return "Amount must be positive";
+        }
+        try {
+            Money.of(request.amount(), request.currency());
+        } catch (ArithmeticException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    private void store(Long userId, List<Row> rows) {
+        authorize(userId, rows);
+        // Dòng đầu tiên của mỗi reference code trong chunk; lặp lại ở chunk sau thì tìm thấy qua DB
+        Map<String, Row> seen = new HashMap<>();
+        List<Row> fresh = new ArrayList<>();
+        List<Row> repeated = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.status != null) {
+                continue;
+            }
+            Row first = seen.putIfAbsent(row.referenceCode(), row);
+            if (first == null) {
+                fresh.add(row);
+            } else {
+                row.duplicateOf = first;
+                repeated.add(row);
+            }
+        }
+
+        resolveExisting(fresh);
+        List<Row> inserts = fresh.stream().filter(row -> row.status == null).toList();
+        if (!inserts.isEmpty()) {
+            insert(userId, inserts);
+        }
+        // Dòng lặp lại trong request nhận kết quả của dòng đầu tiên
+        for (Row row : repeated) {
+            Row first = row.duplicateOf;
+            if (!sameRequest(first.request, row.request)) {
+                row.reject("Reference code already used");
+            } else if (REJECTED.equals(first.status)) {
+                row.reject(first.error);
+            } else {
+                row.resolve(EXISTING, first.id);
+            }
+        }
+
+        for (Row row : rows) {
+            switch (row.status) {
+                case CREATED -> created.increment();
+                case EXISTING -> existing.increment();
+                default -> rejected.increment();
+            }
+        }
+    }
+
+    /**
+     * Từ chối dòng có tài khoản gửi không thuộc userId, trước khi tra reference code
+     * (không để lộ giao dịch của người khác qua kết quả EXISTING)
+     */
+    private void authorize(Long userId, List<Row> rows) {
+        Set<Long> sources = new HashSet<>();
+        for (Row row : rows) {
+            if (row.status == null) {
+                sources.add(row.request.fromAccountId());
+            }
+        }
+        if (sources.isEmpty()) {
+            return;
+        }
+        Set<Long> owned = transactionService.ownedAccounts(userId, sources);
+        for (Row row : rows) {
+            if (row.status == null && !owned.contains(row.request.fromAccountId())) {
+                row.reject("Access denied");
+            }
+        }
+    }
+
+    /**
+     * Mã có thể đã dùng (theo Bloom filter) được tra một lần cho cả chunk
+     */
+    private void resolveExisting(List<Row> fresh) {
+        Set<String> candidates = new HashSet<>();
+        for (Row row : fresh) {
+            if (referenceCodeFilter.mightContain(row.referenceCode())) {
+                candidates.add(row.referenceCode());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Map<String, Long> ids = new HashMap<>();
+        for (TransactionReference reference : transactionReferenceRepository.findAllById(candidates)) {
+            ids.put(reference.getReferenceCode(), reference.getTransactionId());
+        }
+        Map<Long, Transaction> transactions = new HashMap<>();
+        transactionRepository.findAllById(ids.values()).forEach(t -> transactions.put(t.getId(), t));
+
+        for (Row row : fresh) {
+            if (!candidates.contains(row.referenceCode())) {
+                continue;
+            }
+            Long id = ids.get(row.referenceCode());
+            if (id == null) {
+                referenceCodeFilter.recordFalsePositive();
+                continue;
+            }
+            Transaction found = transactions.get(id);
+            if (found == null) {
+                found = transactionArchive.findById(id).orElse(null);
+            }
+            resolveAgainst(row, found);
+        }
+    }
+
+    private void insert(Long userId, List<Row> rows) {
+        List<Row> accepted = new ArrayList<>(rows.size());
+        List<Transaction> saved;
+        try {
+            saved = transactionTemplate.execute(status -> {
+                List<Transaction> transactions = new ArrayList<>(rows.size());
+                for (Row row : rows) {
+                    Transaction transaction = TransactionService.newTransaction(userId, row.request);
+                    try {
+                        // Phần đã cộng được trả lại nếu chunk rollback
+                        velocityLimiter.acquire(transaction.getFromAccountId(), transaction.getAmount());
+                    } catch (RuntimeException e) {
+                        row.reject(e.getMessage());
+                        continue;
+                    }
+                    accepted.add(row);
+                    transactions.add(transaction);
+                }
+                if (transactions.isEmpty()) {
+                    return transactions;
+                }
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                transactionRepository.saveAll(transactions);
+                transactionRepository.flush();
+                jdbcTemplate.batchUpdate(INSERT_REFERENCE, transactions, batchSize, (ps, transaction) -> {
+                    ps.setString(1, transaction.getReferenceCode());
+                    ps.setLong(2, transaction.getId());
+                });
+                outboxPublisher.publish("transaction-events", transactions.get(0).getId(), TransactionBatchCreated.KEY,
+                        new TransactionBatchCreated(transactions.stream().map(TransactionBatchCreated.Item::of).toList()));
+                statusCounts.created(transactions.get(0).getStatus(), transactions.size());
+                return transactions;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("Bulk chunk of {} rows hit a concurrently used reference code, retrying row by row", rows.size());
+            rows.forEach(row -> storeOne(userId, row));
+            return;
+        }
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).resolve(CREATED, saved.get(i).getId());
+            referenceCodeFilter.put(accepted.get(i).referenceCode());
+        }
+    }
+
+    private void storeOne(Long userId, Row row) {
+        Transaction found = transactionService.findByReferenceCode(row.referenceCode()).orElse(null);
+        if (found != null) {
+            resolveAgainst(row, found);
+            return;
+        }
+        try {
+            row.resolve(CREATED, transactionService.insertTransaction(userId, row.request).id());
+        } catch (DataIntegrityViolationException e) {
+            resolveAgainst(row, transactionService.findByReferenceCode(row.referenceCode()).orElse(null));
+        } catch (RuntimeException e) {
+            row.reject(e.getMessage());
+        }
+    }
+
+    private static void resolveAgainst(Row row, Transaction found) {
+        if (found != null && TransactionService.isSameRequest(found, row.request)) {
+            row.resolve(EXISTING, found.getId());
+        } else {
+            row.reject("Reference code already used");
+        }
+    }
+
+    private static boolean sameRequest(TransactionDTO first, TransactionDTO other) {
+        return Objects.equals(first.fromAccountId(), other.fromAccountId())
+                && Objects.equals(first.toAccountId(), other.toAccountId())
+                && first.amount().compareTo(other.amount()) == 0;
+    }
+
+    private static Counter rowCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("transactions.bulk.rows")
+                .tag("result", result)
+                .description("Rows received by bulk ingestion")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private record Line(long number, String text) {
+    }
+
+    private static final class Row {
+        final long line;
+        final TransactionDTO request;
+        String status;
+        Long id;
+        String error;
+        Row duplicateOf;
+
+        Row(long line, TransactionDTO request) {
+            this.line = line;
+            this.request = request;
+        }
+
+        String referenceCode() {
+            return request != null ? request.referenceCode() : null;
+        }
+
+        void resolve(String status, Long id) {
+            this.status = status;
+            this.id = id;
+            this.error = null;
+        }
+
+        void reject(String error) {
+            this.status = REJECTED;
+            this.error = error;
+        }
+
+        BulkRowResultDTO result() {
+            return new BulkRowResultDTO(line, status, id, referenceCode(), error);
+        }
+    }
+}
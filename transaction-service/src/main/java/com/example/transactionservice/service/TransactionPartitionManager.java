@@ -0,0 +1,184 @@
+package com.example.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Bảo trì partition theo tháng của created_at (MySQL RANGE COLUMNS) trên bảng transactions:
+ * việc chuyển bảng sang partition là migration TransactionPartitioningMigration (Flyway, trước khi nhận request);
+ * ở đây chỉ hằng ngày tạo trước partition cho premake-months tháng tới bằng cách tách từ pmax (pmax rỗng nên rẻ).
+ * Chỉ chạy trên MySQL; các node cùng dùng GET_LOCK nên chỉ một node chạy DDL tại một thời điểm.
+ */
+@Slf4j
+@Component
+public class TransactionPartitionManager {
+
+    static final String MAX_PARTITION = "pmax";
+    static final String LIST_PARTITIONS_SQL = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'transactions' AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION";
+    private static final String LOCK_NAME = "transactions-partitions";
+    private static final Pattern MONTH_PARTITION = Pattern.compile("p\\d{6}");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int premakeMonths;
+    private volatile Boolean mysql;
+
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate,
+                                       @Value("${transactions.partitioning.enabled:true}") boolean enabled,
+                                       @Value("${transactions.partitioning.premake-months:3}") int premakeMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.premakeMonths = premakeMonths;
+    }
+
+    @Scheduled(cron = "${transactions.partitioning.cron:0 30 0 * * *}")
+    public void ensurePartitions() {
+        if (!isActive()) {
+            return;
+        }
+        try {
+            withLock(jdbc -> {
+                YearMonth last = YearMonth.now().plusMonths(premakeMonths);
+                List<String> partitions = listPartitions(jdbc);
+                if (partitions.isEmpty()) {
+                    log.warn("Table transactions is not partitioned; migration V1 has not been applied");
+                    return null;
+                }
+                addPartitionsSql(partitions, last).ifPresent(sql -> {
+                    log.info("Adding transaction partitions up to {}", last);
+                    jdbc.execute(sql);
+                });
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Transaction partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Bật và đang chạy trên MySQL (H2 trong test không hỗ trợ partition)
+     */
+    public boolean isActive() {
+        if (!enabled) {
+            return false;
+        }
+        if (mysql == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            mysql = "MySQL".equalsIgnoreCase(product);
+        }
+        return mysql;
+    }
+
+    /**
+     * Chạy work khi giữ GET_LOCK; work dùng chính kết nối giữ lock. Node khác đang giữ thì bỏ qua lượt này.
+     */
+    public <T> Optional<T> withLock(Function<JdbcTemplate, T> work) {
+        return Optional.ofNullable(jdbcTemplate.execute((ConnectionCallback<T>) connection -> {
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            Integer acquired = jdbc.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, LOCK_NAME);
+            if (acquired == null || acquired != 1) {
+                log.debug("Transaction partition lock is held by another node");
+                return null;
+            }
+            try {
+                return work.apply(jdbc);
+            } finally {
+                jdbc.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK_NAME);
+            }
+        }));
+    }
+
+    public List<String> listPartitions(JdbcTemplate jdbc) {
+        return jdbc.queryForList(LIST_PARTITIONS_SQL, String.class);
+    }
+
+    public void dropPartition(JdbcTemplate jdbc, String partition) {
+        requireMonthPartition(partition);
+        jdbc.execute("ALTER TABLE transactions DROP PARTITION " + partition);
+    }
+
+    static String partitionName(YearMonth month) {
+        return month.format(NAME_FORMAT);
+    }
+
+    /**
+     * Tháng của partition theo tên; pmax hoặc tên lạ trả về null
+     */
+    static YearMonth monthOf(String partition) {
+        return MONTH_PARTITION.matcher(partition).matches() ? YearMonth.parse(partition, NAME_FORMAT) : null;
+    }
+
+    static String partitionTableSql(YearMonth first, YearMonth last) {
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.add(definition(month));
+        }
+        definitions.add(maxDefinition());
+        return "ALTER TABLE transactions PARTITION BY RANGE COLUMNS(created_at) (" + String.join(", ", definitions) + ")";
+    }
+
+    /**
+     * Tách pmax thành các tháng còn thiếu sau tháng mới nhất đã có, tới last
+     */
+    static Optional<String> addPartitionsSql(Collection<String> existing, YearMonth last) {
+        YearMonth newest = existing.stream()
+                .map(TransactionPartitionManager::monthOf)
+                .filter(month -> month != null)
+                .max(YearMonth::compareTo)
+                .orElse(null);
+        if (newest == null || !newest.isBefore(last)) {
+            return Optional.empty();
+        }
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = newest.plusMonths(1); !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.add(definition(month));
+        }
+        definitions.add(maxDefinition());
+        return Optional.of("ALTER TABLE transactions REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+                + String.join(", ", definitions) + ")");
+    }
+
+    /**
+     * Các partition tháng cũ hơn cutoff, cũ nhất trước
+     */
+    static List<String> partitionsBefore(Collection<String> existing, YearMonth cutoff) {
+        return existing.stream()
+                .filter(partition -> {
+                    YearMonth month = monthOf(partition);
+                    return month != null && month.isBefore(cutoff);
+                })
+                .sorted()
+                .toList();
+    }
+
+    private static String definition(YearMonth month) {
+        return "PARTITION " + partitionName(month) + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + " 00:00:00')";
+    }
+
+    private static String maxDefinition() {
+        return "PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE)";
+    }
+
+    private static void requireMonthPartition(String partition) {
+        if (monthOf(partition) == null) {
+            throw new IllegalArgumentException("Not a monthly transaction partition: " + partition);
+        }
+    }
+}
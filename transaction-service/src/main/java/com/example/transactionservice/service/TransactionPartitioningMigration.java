@@ -0,0 +1,119 @@
+package com.example.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Migration V1: chia bảng transactions thành partition theo tháng của created_at (chỉ MySQL, DB khác bỏ qua).
+ * Flyway chạy trước Hibernate (ddl-auto=update), nên:
+ * - DB mới: tạo luôn bảng transactions đã partition, Hibernate chỉ bổ sung phần còn thiếu.
+ * - Bảng cũ chưa partition: chép reference_code sang transaction_references, bỏ các unique index,
+ *   khóa chính thành (id, created_at) vì mọi unique key của bảng partition phải chứa cột phân vùng, rồi ALTER.
+ *   Bước này dựng lại cả bảng, nên chạy trong cửa sổ bảo trì với một node.
+ * DB đã có dữ liệu nhưng chưa có flyway_schema_history được baseline ở version 0 để V1 vẫn chạy.
+ */
+@Slf4j
+@Component
+public class TransactionPartitioningMigration implements JavaMigration {
+
+    static final String CREATE_TRANSACTIONS_SQL = "CREATE TABLE transactions (" +
+            "id BIGINT NOT NULL, " +
+            "from_account_id BIGINT, " +
+            "to_account_id BIGINT, " +
+            "amount DECIMAL(38,2) NOT NULL, " +
+            "currency VARCHAR(255) NOT NULL, " +
+            "transaction_type VARCHAR(255) NOT NULL, " +
+            "status VARCHAR(255) NOT NULL, " +
+            "reference_code VARCHAR(255), " +
+            "description VARCHAR(255), " +
+            "created_at DATETIME(6) NOT NULL, " +
+            "completed_at DATETIME(6), " +
+            "PRIMARY KEY (id, created_at), " +
+            "INDEX idx_transactions_from_created (from_account_id, created_at DESC, id DESC), " +
+            "INDEX idx_transactions_to_created (to_account_id, created_at DESC, id DESC), " +
+            "INDEX idx_transactions_status (status, created_at, id)" +
+            ") ENGINE=InnoDB";
+
+    static final String CREATE_REFERENCES_SQL = "CREATE TABLE IF NOT EXISTS transaction_references (" +
+            "reference_code VARCHAR(255) NOT NULL, " +
+            "transaction_id BIGINT NOT NULL, " +
+            "PRIMARY KEY (reference_code), " +
+            "INDEX idx_transaction_references_transaction (transaction_id)" +
+            ") ENGINE=InnoDB";
+
+    private final int premakeMonths;
+
+    public TransactionPartitioningMigration(@Value("${transactions.partitioning.premake-months:3}") int premakeMonths) {
+        this.premakeMonths = premakeMonths;
+    }
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("1");
+    }
+
+    @Override
+    public String getDescription() {
+        return "partition transactions by month";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        // DDL của MySQL tự commit
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        if (!"MySQL".equalsIgnoreCase(context.getConnection().getMetaData().getDatabaseProductName())) {
+            return;
+        }
+        JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        YearMonth last = YearMonth.now().plusMonths(premakeMonths);
+        jdbc.execute(CREATE_REFERENCES_SQL);
+        if (!tableExists(jdbc)) {
+            log.info("Creating transactions partitioned by month up to {}", last);
+            jdbc.execute(CREATE_TRANSACTIONS_SQL);
+            jdbc.execute(TransactionPartitionManager.partitionTableSql(YearMonth.now(), last));
+            return;
+        }
+        if (!jdbc.queryForList(TransactionPartitionManager.LIST_PARTITIONS_SQL, String.class).isEmpty()) {
+            return;
+        }
+        LocalDateTime oldest = jdbc.queryForObject("SELECT MIN(created_at) FROM transactions", LocalDateTime.class);
+        YearMonth first = oldest != null ? YearMonth.from(oldest) : YearMonth.now();
+        log.warn("Partitioning transactions by month from {} to {}; this rebuilds the table", first, last);
+
+        jdbc.update("INSERT IGNORE INTO transaction_references (reference_code, transaction_id) " +
+                "SELECT reference_code, id FROM transactions WHERE reference_code IS NOT NULL");
+        List<String> uniqueIndexes = jdbc.queryForList("SELECT DISTINCT INDEX_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'transactions' AND NON_UNIQUE = 0 " +
+                "AND INDEX_NAME <> 'PRIMARY'", String.class);
+        for (String index : uniqueIndexes) {
+            jdbc.execute("ALTER TABLE transactions DROP INDEX `" + index + "`");
+        }
+        jdbc.execute("ALTER TABLE transactions DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at)");
+        jdbc.execute(TransactionPartitionManager.partitionTableSql(first, last));
+    }
+
+    private static boolean tableExists(JdbcTemplate jdbc) {
+        Integer tables = jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'transactions'", Integer.class);
+        return tables != null && tables > 0;
+    }
+}
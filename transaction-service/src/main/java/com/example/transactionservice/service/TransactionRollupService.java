@@ -0,0 +1,389 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.dto.TransactionVolumeDTO;
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.model.TransactionDailyRollup;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tổng hợp theo ngày (tài khoản, ngày tạo, loại, SENT/RECEIVED) từ event transaction_created/transactions_created
+ * của chính service:
+ * - Event được cộng dồn trong bộ nhớ theo partition Kafka rồi flush định kỳ bằng batch UPDATE + INSERT.
+ *   Offset kế tiếp và watermark (created_at lớn nhất) ghi cùng transaction với rollup,
+ *   consumer seek về offset đó khi nhận partition nên event không bị cộng thiếu hay cộng hai lần.
+ * - Ngày được coi là đã chốt khi watermark - grace của mọi partition đã sang ngày sau (grace bù cho giao dịch
+ *   commit chậm và outbox relay trễ). Partition đã đọc hết mà không có event mới (idle) vẫn tiến watermark tới
+ *   thời điểm idle, nên một partition vắng giao dịch không giữ ngày mãi chưa chốt; partition chưa có dòng
+ *   transaction_rollup_state thì chưa ngày nào được chốt. Truy vấn cộng rollup của các ngày đã chốt với một lần quét bảng transactions
+ *   theo index (account_id, created_at) cho các ngày chưa chốt, nên kết quả khớp với quét toàn bộ.
+ * Rollup tính mọi giao dịch đã tạo (kể cả sau đó FAILED/CANCELLED), tức khối lượng đã yêu cầu.
+ */
+@Slf4j
+@Service
+public class TransactionRollupService {
+
+    public static final String SENT = "SENT";
+    public static final String RECEIVED = "RECEIVED";
+
+    private static final String UPDATE_ROLLUP = "UPDATE transaction_daily_rollups SET tx_count = tx_count + ?, " +
+            "total_amount = total_amount + ?, min_amount = LEAST(min_amount, ?), max_amount = GREATEST(max_amount, ?) " +
+            "WHERE account_id = ? AND direction = ? AND rollup_day = ? AND transaction_type = ?";
+    private static final String INSERT_ROLLUP = "INSERT INTO transaction_daily_rollups (tx_count, total_amount, " +
+            "min_amount, max_amount, account_id, direction, rollup_day, transaction_type) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_STATE = "UPDATE transaction_rollup_state SET next_offset = GREATEST(next_offset, ?), " +
+            "watermark = GREATEST(watermark, COALESCE(?, watermark)) WHERE partition_id = ?";
+    private static final String INSERT_STATE = "INSERT INTO transaction_rollup_state " +
+            "(next_offset, watermark, covered_from, partition_id) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountOwnerRepository accountOwnerRepository;
+    private final Duration grace;
+    private final int maxBufferedKeys;
+    private final Counter events;
+    private final Timer flushTimer;
+    private final Object flushLock = new Object();
+    private final Map<Integer, Long> committedOffsets = new ConcurrentHashMap<>();
+    // Số partition của topic theo metadata của consumer; 0 khi chưa biết
+    private volatile int topicPartitions;
+    // Phần chưa flush theo partition, truy cập trong synchronized (this)
+    private Map<Integer, PartitionBuffer> buffer = new HashMap<>();
+    private int bufferedKeys;
+
+    public TransactionRollupService(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    AccountOwnerRepository accountOwnerRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${transactions.rollup.grace:PT5M}") Duration grace,
+                                    @Value("${transactions.rollup.max-buffered-keys:10000}") int maxBufferedKeys) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accountOwnerRepository = accountOwnerRepository;
+        this.grace = grace;
+        this.maxBufferedKeys = maxBufferedKeys;
+        this.events = Counter.builder("transactions.rollup.events")
+                .description("Transaction events added to daily rollups")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("transactions.rollup.flush")
+                .description("Time to upsert buffered rollups")
+                .register(meterRegistry);
+        Gauge.builder("transactions.rollup.buffered", this, TransactionRollupService::getBufferedKeys)
+                .description("Rollup keys waiting to be flushed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ghi nhận event ở (partition, offset); created = null với event không phải transaction_created
+     * (chỉ dịch offset). Trả về true khi buffer đã đầy và nên flush ngay.
+     */
+    public boolean record(int partition, long offset, Transaction created) {
+        return recordAll(partition, offset, created != null ? List.of(created) : List.of());
+    }
+
+    /**
+     * Như trên cho event chứa nhiều giao dịch (transactions_created của bulk ingestion)
+     */
+    public synchronized boolean recordAll(int partition, long offset, List<Transaction> created) {
+        Long committed = committedOffsets.get(partition);
+        PartitionBuffer pending = buffer.get(partition);
+        if ((committed != null && offset < committed) || (pending != null && offset < pending.nextOffset)) {
+            // Event đã được cộng (gửi lại sau rebalance/lỗi)
+            return false;
+        }
+        if (pending == null) {
+            pending = new PartitionBuffer();
+            buffer.put(partition, pending);
+        }
+        pending.nextOffset = offset + 1;
+        for (Transaction transaction : created) {
+            add(pending, transaction);
+        }
+        return bufferedKeys >= maxBufferedKeys;
+    }
+
+    /**
+     * Partition không có event mới trong idle-partition-event-interval (consumer đã đọc tới position):
+     * mọi giao dịch tạo trước idleAt đã có event trong partition (trừ phần trễ hơn grace), nên watermark tiến tới idleAt.
+     * Ghi ở lần flush kế tiếp cùng phần còn trong buffer, để ngày không được chốt trước khi rollup của nó được ghi.
+     */
+    public synchronized void idle(int partition, long position, int partitions, LocalDateTime idleAt) {
+        topicPartitions = partitions;
+        PartitionBuffer pending = buffer.get(partition);
+        if (pending == null) {
+            pending = new PartitionBuffer();
+            pending.nextOffset = committedOffsets.getOrDefault(partition, 0L);
+            buffer.put(partition, pending);
+        }
+        pending.nextOffset = Math.max(pending.nextOffset, position);
+        pending.heartbeat(idleAt);
+    }
+
+    private void add(PartitionBuffer pending, Transaction created) {
+        if (created.getCreatedAt() == null || created.getAmount() == null || created.getTransactionType() == null) {
+            return;
+        }
+        LocalDate day = created.getCreatedAt().toLocalDate();
+        BigDecimal amount = created.getAmount().toBigDecimal();
+        if (created.getFromAccountId() != null) {
+            bufferedKeys += pending.add(new TransactionDailyRollup.Key(created.getFromAccountId(), SENT, day,
+                    created.getTransactionType()), amount);
+        }
+        if (created.getToAccountId() != null) {
+            bufferedKeys += pending.add(new TransactionDailyRollup.Key(created.getToAccountId(), RECEIVED, day,
+                    created.getTransactionType()), amount);
+        }
+        pending.extend(created.getCreatedAt());
+        events.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.rollup.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Integer, PartitionBuffer> pending;
+            synchronized (this) {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+                pending = buffer;
+                buffer = new HashMap<>();
+                bufferedKeys = 0;
+            }
+            try {
+                flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> write(pending)));
+                pending.forEach((partition, flushed) -> committedOffsets.put(partition, flushed.nextOffset));
+            } catch (Exception e) {
+                log.warn("Rollup flush failed, keeping {} partitions buffered: {}", pending.size(), e.getMessage());
+                synchronized (this) {
+                    pending.forEach((partition, failed) -> buffer.merge(partition, failed, PartitionBuffer::absorb));
+                    bufferedKeys = buffer.values().stream().mapToInt(b -> b.rollups.size()).sum();
+                }
+            }
+        }
+    }
+
+    /**
+     * Offset kế tiếp đã lưu của các partition vừa được giao, để consumer seek tới
+     */
+    public Map<Integer, Long> loadOffsets(Collection<Integer> partitions) {
+        Map<Integer, Long> offsets = new HashMap<>();
+        jdbcTemplate.query("SELECT partition_id, next_offset FROM transaction_rollup_state",
+                rs -> {
+                    if (partitions.contains(rs.getInt(1))) {
+                        offsets.put(rs.getInt(1), rs.getLong(2));
+                    }
+                });
+        committedOffsets.putAll(offsets);
+        return offsets;
+    }
+
+    /**
+     * Partition bị thu hồi: flush lần cuối; phần không flush được bị bỏ vì node mới sẽ đọc lại từ offset đã lưu
+     */
+    public void release(Collection<Integer> partitions) {
+        flush();
+        synchronized (this) {
+            partitions.forEach(buffer::remove);
+            bufferedKeys = buffer.values().stream().mapToInt(b -> b.rollups.size()).sum();
+        }
+        partitions.forEach(committedOffsets::remove);
+    }
+
+    /**
+     * Tổng theo loại giao dịch của một tài khoản trong [from, to] (tính cả hai ngày), direction = SENT|RECEIVED
+     */
+    public List<TransactionVolumeDTO> volume(Long userId, Long accountId, String direction, LocalDate from, LocalDate to) {
+        if (!SENT.equals(direction) && !RECEIVED.equals(direction)) {
+            throw new IllegalArgumentException("direction must be SENT or RECEIVED");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (!accountOwnerRepository.findAccountIdsByUserId(userId).contains(accountId)) {
+            throw new RuntimeException("Access denied");
+        }
+
+        Map<String, Aggregate> totals = new TreeMap<>();
+        LocalDate[] rolled = rolledUpRange(from, to);
+        if (rolled == null) {
+            scan(totals, accountId, direction, from, to);
+        } else {
+            sumRollups(totals, accountId, direction, rolled[0], rolled[1]);
+            if (from.isBefore(rolled[0])) {
+                scan(totals, accountId, direction, from, rolled[0].minusDays(1));
+            }
+            if (rolled[1].isBefore(to)) {
+                scan(totals, accountId, direction, rolled[1].plusDays(1), to);
+            }
+        }
+        List<TransactionVolumeDTO> result = new ArrayList<>(totals.size());
+        totals.forEach((type, total) -> result.add(
+                new TransactionVolumeDTO(type, total.count, total.total, total.min, total.max)));
+        return result;
+    }
+
+    public synchronized int getBufferedKeys() {
+        return bufferedKeys;
+    }
+
+    /**
+     * Phần của [from, to] lấy được từ rollup: từ ngày đầy đủ đầu tiên đến ngày đã chốt cuối cùng; null nếu không có
+     */
+    private LocalDate[] rolledUpRange(LocalDate from, LocalDate to) {
+        Map<String, Object> state = jdbcTemplate.queryForMap("SELECT COUNT(*) AS partitions, " +
+                "MAX(covered_from) AS covered_from, MIN(watermark) AS watermark FROM transaction_rollup_state");
+        if (state.get("covered_from") == null || ((Number) state.get("partitions")).intValue() < topicPartitions) {
+            // Partition chưa có dòng trạng thái có thể còn event chưa cộng ở bất kỳ ngày nào
+            return null;
+        }
+        LocalDate firstDay = ((Timestamp) state.get("covered_from")).toLocalDateTime().toLocalDate().plusDays(1);
+        LocalDate lastDay = ((Timestamp) state.get("watermark")).toLocalDateTime().minus(grace).toLocalDate().minusDays(1);
+        LocalDate start = from.isAfter(firstDay) ? from : firstDay;
+        LocalDate end = to.isBefore(lastDay) ? to : lastDay;
+        return start.isAfter(end) ? null : new LocalDate[]{start, end};
+    }
+
+    private void sumRollups(Map<String, Aggregate> totals, Long accountId, String direction, LocalDate from, LocalDate to) {
+        jdbcTemplate.query("SELECT transaction_type, SUM(tx_count), SUM(total_amount), MIN(min_amount), MAX(max_amount) " +
+                        "FROM transaction_daily_rollups WHERE account_id = ? AND direction = ? " +
+                        "AND rollup_day BETWEEN ? AND ? GROUP BY transaction_type",
+                rs -> {
+                    totals.computeIfAbsent(rs.getString(1), type -> new Aggregate())
+                            .merge(rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4), rs.getBigDecimal(5));
+                },
+                accountId, direction, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Quét bảng transactions theo index (from/to_account_id, created_at) cho các ngày chưa có rollup
+     */
+    private void scan(Map<String, Aggregate> totals, Long accountId, String direction, LocalDate from, LocalDate to) {
+        String column = SENT.equals(direction) ? "from_account_id" : "to_account_id";
+        jdbcTemplate.query("SELECT transaction_type, COUNT(*), SUM(amount), MIN(amount), MAX(amount) FROM transactions " +
+                        "WHERE " + column + " = ? AND created_at >= ? AND created_at < ? GROUP BY transaction_type",
+                rs -> {
+                    totals.computeIfAbsent(rs.getString(1), type -> new Aggregate())
+                            .merge(rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4), rs.getBigDecimal(5));
+                },
+                accountId, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+    }
+
+    private void write(Map<Integer, PartitionBuffer> pending) {
+        // Cùng một khóa có thể đến từ nhiều partition: gộp trước để INSERT không trùng khóa trong cùng lần flush
+        Map<TransactionDailyRollup.Key, Aggregate> merged = new HashMap<>();
+        pending.values().forEach(partition -> partition.rollups.forEach((key, value) -> merged
+                .computeIfAbsent(key, k -> new Aggregate()).merge(value.count, value.total, value.min, value.max)));
+        List<Object[]> updates = new ArrayList<>(merged.size());
+        merged.forEach((key, value) -> updates.add(new Object[]{
+                value.count, value.total, value.min, value.max,
+                key.getAccountId(), key.getDirection(), Date.valueOf(key.getDay()), key.getTransactionType()}));
+        if (!updates.isEmpty()) {
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_ROLLUP, updates);
+            List<Object[]> inserts = new ArrayList<>();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    inserts.add(updates.get(i));
+                }
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ROLLUP, inserts);
+            }
+        }
+
+        pending.forEach((partition, flushed) -> {
+            Timestamp watermark = flushed.watermark != null ? Timestamp.valueOf(flushed.watermark) : null;
+            int updated = jdbcTemplate.update(UPDATE_STATE, flushed.nextOffset, watermark, partition);
+            if (updated == 0 && watermark != null) {
+                jdbcTemplate.update(INSERT_STATE, flushed.nextOffset, watermark,
+                        Timestamp.valueOf(flushed.coveredFrom), partition);
+            }
+        });
+    }
+
+    private static final class PartitionBuffer {
+        private final Map<TransactionDailyRollup.Key, Aggregate> rollups = new HashMap<>();
+        private long nextOffset;
+        private LocalDateTime watermark;
+        private LocalDateTime coveredFrom;
+
+        /**
+         * Trả về 1 nếu tạo key mới
+         */
+        int add(TransactionDailyRollup.Key key, BigDecimal amount) {
+            Aggregate aggregate = rollups.get(key);
+            int created = 0;
+            if (aggregate == null) {
+                aggregate = new Aggregate();
+                rollups.put(key, aggregate);
+                created = 1;
+            }
+            aggregate.merge(1, amount, amount, amount);
+            return created;
+        }
+
+        /**
+         * Chỉ tiến watermark; partition chưa có dòng trạng thái thì coi như được cộng đầy đủ từ lúc này
+         */
+        void heartbeat(LocalDateTime idleAt) {
+            watermark = watermark == null || idleAt.isAfter(watermark) ? idleAt : watermark;
+            coveredFrom = coveredFrom == null ? idleAt : coveredFrom;
+        }
+
+        void extend(LocalDateTime createdAt) {
+            watermark = watermark == null || createdAt.isAfter(watermark) ? createdAt : watermark;
+            coveredFrom = coveredFrom == null || createdAt.isBefore(coveredFrom) ? createdAt : coveredFrom;
+        }
+
+        /**
+         * Gộp phần flush lỗi với phần nhận thêm trong lúc flush (cộng dồn nên không phụ thuộc thứ tự)
+         */
+        PartitionBuffer absorb(PartitionBuffer other) {
+            other.rollups.forEach((key, value) -> rollups.computeIfAbsent(key, k -> new Aggregate())
+                    .merge(value.count, value.total, value.min, value.max));
+            nextOffset = Math.max(nextOffset, other.nextOffset);
+            if (other.watermark != null) {
+                extend(other.watermark);
+                extend(other.coveredFrom);
+            }
+            return this;
+        }
+    }
+
+    private static final class Aggregate {
+        private long count;
+        private BigDecimal total = BigDecimal.ZERO;
+        private BigDecimal min;
+        private BigDecimal max;
+
+        void merge(long count, BigDecimal total, BigDecimal min, BigDecimal max) {
+            this.count += count;
+            this.total = this.total.add(total);
+            this.min = this.min == null || min.compareTo(this.min) < 0 ? min : this.min;
+            this.max = this.max == null || max.compareTo(this.max) > 0 ? max : this.max;
+        }
+    }
+}
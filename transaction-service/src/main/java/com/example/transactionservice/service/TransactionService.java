@@ -1,80 +1,206 @@
 package com.example.transactionservice.service;
 
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxPublisher;
 import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.dto.TransactionPageDTO;
+import com.example.transactionservice.model.AccountOwner;
 import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.model.TransactionReference;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import com.example.transactionservice.repository.TransactionReferenceRepository;
 import com.example.transactionservice.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
 
+    static final int MAX_PAGE_SIZE = 200;
+
+    // Trạng thái người tham gia được tự đặt (khi giao dịch còn PENDING)
+    private static final Set<String> MANUAL_STATUSES = Set.of("CANCELLED", "FAILED");
+
+    private static final Comparator<Transaction> NEWEST_FIRST = Comparator
+            .comparing(Transaction::getCreatedAt, Comparator.reverseOrder())
+            .thenComparing(Transaction::getId, Comparator.reverseOrder());
+
     private final TransactionRepository transactionRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final AccountOwnerRepository accountOwnerRepository;
+    private final AccountOwnerBackfill accountOwnerBackfill;
+    private final TransactionReferenceRepository transactionReferenceRepository;
+    private final TransactionArchive transactionArchive;
+    private final ReferenceCodeFilter referenceCodeFilter;
+    private final OutboxPublisher outboxPublisher;
+    private final TransactionStatusCounts statusCounts;
+    private final VelocityLimiter velocityLimiter;
+    private final TransactionTemplate transactionTemplate;
 
     /**
-     * Tạo giao dịch chuyển tiền giữa hai user
+     * Tạo giao dịch chuyển tiền giữa hai user.
+     * User phải sở hữu tài khoản gửi (account_owners, chưa biết chủ thì từ chối) và giao dịch phải có đủ hai tài khoản:
+     * dòng chỉ có một phía sẽ thành nạp/rút tiền không ai kiểm soát khi áp dụng.
+     * Gửi lại cùng reference code (retry của đối tác) trả về giao dịch đã tạo thay vì lỗi trùng khóa;
+     * Bloom filter cho phép bỏ qua bước tra khi mã chắc chắn là mới.
+     * Giao dịch gửi đi vượt giới hạn tần suất của tài khoản/user (VelocityLimiter) bị từ chối.
+     * Mã vừa được ghi ở request khác (node khác, hoặc cũ hơn cửa sổ Bloom filter) làm INSERT transaction_references
+     * trùng khóa: transaction tạo giao dịch đã rollback, nên tra lại và trả về giao dịch đã có như một retry.
+     * Gọi ngoài transaction, để lỗi trùng khóa không làm hỏng transaction của người gọi.
      */
-    @Transactional
-    public TransactionDTO createTransaction(TransactionDTO transactionDTO) {
-        Transaction transaction = new Transaction();
-        transaction.setFromAccountId(transactionDTO.fromAccountId());
-        transaction.setToAccountId(transactionDTO.toAccountId());
-        transaction.setAmount(transactionDTO.amount());
-        transaction.setCurrency(transactionDTO.currency() != null ? transactionDTO.currency() : "USD");
-        transaction.setTransactionType(transactionDTO.transactionType());
-        transaction.setStatus("PENDING");
-        transaction.setReferenceCode(transactionDTO.referenceCode());
-        transaction.setDescription(transactionDTO.description());
+    public TransactionDTO createTransaction(Long userId, TransactionDTO transactionDTO) {
+        if (transactionDTO.fromAccountId() == null || transactionDTO.toAccountId() == null) {
+            throw new IllegalArgumentException("Transaction must have both accounts");
+        }
+        checkOwner(userId, List.of(transactionDTO.fromAccountId()));
+        try {
+            return insertTransaction(userId, transactionDTO);
+        } catch (DataIntegrityViolationException e) {
+            Optional<Transaction> existing = transactionDTO.referenceCode() != null
+                    ? findByReferenceCode(transactionDTO.referenceCode())
+                    : Optional.empty();
+            if (existing.isEmpty()) {
+                throw e;
+            }
+            return convertToDTO(checkSameRequest(existing.get(), transactionDTO));
+        }
+    }
 
-        Transaction savedTransaction = transactionRepository.save(transaction);
+    /**
+     * Như createTransaction nhưng không kiểm tra quyền (người gọi đã kiểm tra), và để lỗi trùng reference code
+     * (DataIntegrityViolationException) cho người gọi xử lý
+     */
+    TransactionDTO insertTransaction(Long userId, TransactionDTO transactionDTO) {
+        return transactionTemplate.execute(status -> {
+            String referenceCode = transactionDTO.referenceCode();
+            if (referenceCode != null && referenceCodeFilter.mightContain(referenceCode)) {
+                Optional<Transaction> existing = findByReferenceCode(referenceCode);
+                if (existing.isPresent()) {
+                    return convertToDTO(checkSameRequest(existing.get(), transactionDTO));
+                }
+                referenceCodeFilter.recordFalsePositive();
+            }
 
-        // Publish transaction created event
-        kafkaTemplate.send("transaction-events", "transaction_created", savedTransaction);
+            Transaction transaction = newTransaction(userId, transactionDTO);
+            velocityLimiter.acquire(transaction.getFromAccountId(), transaction.getAmount());
+            Transaction savedTransaction = transactionRepository.save(transaction);
+            if (savedTransaction.getReferenceCode() != null) {
+                transactionReferenceRepository.insert(savedTransaction.getReferenceCode(), savedTransaction.getId());
+                referenceCodeFilter.put(savedTransaction.getReferenceCode());
+            }
+            statusCounts.created(savedTransaction.getStatus(), 1);
 
-        return convertToDTO(savedTransaction);
+            // Publish transaction created event
+            outboxPublisher.publish("transaction-events", savedTransaction.getId(), "transaction_created", savedTransaction);
+
+            return convertToDTO(savedTransaction);
+        });
     }
 
     /**
-     * Xem chi tiết giao dịch
+     * Xem chi tiết giao dịch; không có trong bảng thì tìm tiếp trong file archive (chậm hơn)
      */
-    public TransactionDTO getTransactionById(Long transactionId) {
+    @Transactional(readOnly = true)
+    public TransactionDTO getTransactionById(Long userId, Long transactionId) {
         Transaction transaction = transactionRepository.findById(transactionId)
+                .or(() -> transactionArchive.findById(transactionId))
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
-        
+        checkParticipant(userId, transaction);
+
         return convertToDTO(transaction);
     }
 
     /**
-     * Xem tất cả giao dịch theo trạng thái
+     * Xem giao dịch của user (gửi hoặc nhận), mới nhất trước, phân trang keyset theo cursor
      */
-    public List<TransactionDTO> getTransactionsByStatus(String status) {
-        return transactionRepository.findByStatus(status)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public TransactionPageDTO getUserTransactions(Long userId, String cursor, int limit) {
+        return history(userId, cursor, limit, true, true);
+    }
+
+    /**
+     * Xem giao dịch gửi của user
+     */
+    @Transactional(readOnly = true)
+    public TransactionPageDTO getSentTransactions(Long userId, String cursor, int limit) {
+        return history(userId, cursor, limit, true, false);
+    }
+
+    /**
+     * Xem giao dịch nhận của user
+     */
+    @Transactional(readOnly = true)
+    public TransactionPageDTO getReceivedTransactions(Long userId, String cursor, int limit) {
+        return history(userId, cursor, limit, false, true);
+    }
+
+    /**
+     * Xem giao dịch theo trạng thái, mới nhất trước, phân trang keyset theo cursor (index status, created_at, id)
+     */
+    @Transactional(readOnly = true)
+    public TransactionPageDTO getTransactionsByStatus(String status, String cursor, int limit) {
+        int size = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        Cursor after = decodeCursor(cursor);
+        Limit fetch = Limit.of(size + 1);
+        List<Transaction> page = after == null
+                ? transactionRepository.findByStatusFirst(status, fetch)
+                : transactionRepository.findByStatusBefore(status, after.createdAt(), after.id(), fetch);
+        return toPage(page, size);
+    }
+
+    /**
+     * Số giao dịch xấp xỉ theo trạng thái (cộng dồn theo từng lần chuyển trạng thái, không COUNT(*))
+     */
+    public Map<String, Long> getStatusCounts() {
+        return statusCounts.getCounts();
+    }
+
+    /**
+     * Số giao dịch có tham gia của các tài khoản (endpoint nội bộ cho account-service)
+     */
+    public long countTransactions(Collection<Long> accountIds) {
+        return accountIds.isEmpty() ? 0 : transactionRepository.countByParticipants(accountIds);
     }
 
     /**
      * Cập nhật trạng thái giao dịch
      */
     @Transactional
-    public TransactionDTO updateTransactionStatus(Long transactionId, String status) {
+    public TransactionDTO updateTransactionStatus(Long userId, Long transactionId, String status) {
+        // PROCESSING/COMPLETED chỉ do PendingTransactionProcessor đặt sau khi số dư đã được áp dụng
+        if (!MANUAL_STATUSES.contains(status)) {
+            throw new RuntimeException("Status " + status + " is set by the transaction processor");
+        }
         Transaction transaction = transactionRepository.findById(transactionId)
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        checkParticipant(userId, transaction);
 
-        transaction.setStatus(status);
-        Transaction updatedTransaction = transactionRepository.save(transaction);
+        Transaction updatedTransaction = changePendingStatus(transaction, status);
 
         // Publish transaction status updated event
-        kafkaTemplate.send("transaction-events", "transaction_" + status.toLowerCase(), updatedTransaction);
+        outboxPublisher.publish("transaction-events", updatedTransaction.getId(),
+                "transaction_" + status.toLowerCase(), updatedTransaction);
 
         return convertToDTO(updatedTransaction);
     }
@@ -83,19 +209,175 @@ public class TransactionService {
      * Hủy giao dịch (chỉ có thể hủy giao dịch ở trạng thái PENDING)
      */
     @Transactional
-    public void cancelTransaction(Long transactionId) {
+    public void cancelTransaction(Long userId, Long transactionId) {
         Transaction transaction = transactionRepository.findById(transactionId)
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
 
+        // Chỉ người gửi được hủy
+        checkOwner(userId, List.of(transaction.getFromAccountId()));
+
         if (!"PENDING".equals(transaction.getStatus())) {
             throw new RuntimeException("Cannot cancel completed or failed transaction");
         }
 
-        transaction.setStatus("CANCELLED");
-        transactionRepository.save(transaction);
+        Transaction cancelled = changePendingStatus(transaction, "CANCELLED");
 
         // Publish transaction cancelled event
-        kafkaTemplate.send("transaction-events", "transaction_cancelled", transaction);
+        outboxPublisher.publish("transaction-events", cancelled.getId(), "transaction_cancelled", cancelled);
+    }
+
+    /**
+     * Đổi trạng thái khi giao dịch còn PENDING: UPDATE có điều kiện nên không đè lên
+     * dòng processor vừa nhận (PROCESSING) hoặc đã xử lý xong
+     */
+    private Transaction changePendingStatus(Transaction transaction, String status) {
+        if (transactionRepository.updateStatusIfPending(transaction.getId(), status) == 0) {
+            throw new RuntimeException("Only PENDING transactions can change status");
+        }
+        statusCounts.transition("PENDING", status, 1);
+        transaction.setStatus(status);
+        return transaction;
+    }
+
+    /**
+     * Gộp trang của từng tài khoản của user: mỗi tài khoản một truy vấn seek theo index
+     * (account_id, created_at DESC, id DESC) lấy tối đa limit + 1 dòng, rồi trộn theo thứ tự mới nhất trước.
+     * Chi phí không phụ thuộc trang thứ mấy, khác với OFFSET phải đọc bỏ mọi dòng phía trước.
+     */
+    private TransactionPageDTO history(Long userId, String cursor, int limit, boolean sent, boolean received) {
+        int size = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        Cursor after = decodeCursor(cursor);
+        Limit fetch = Limit.of(size + 1);
+
+        // Giao dịch giữa hai tài khoản của cùng user xuất hiện ở cả chiều gửi và nhận
+        Map<Long, Transaction> merged = new LinkedHashMap<>();
+        for (Long accountId : accountOwnerRepository.findAccountIdsByUserId(userId)) {
+            if (sent) {
+                List<Transaction> page = after == null
+                        ? transactionRepository.findSentFirst(accountId, fetch)
+                        : transactionRepository.findSentBefore(accountId, after.createdAt(), after.id(), fetch);
+                page.forEach(t -> merged.putIfAbsent(t.getId(), t));
+            }
+            if (received) {
+                List<Transaction> page = after == null
+                        ? transactionRepository.findReceivedFirst(accountId, fetch)
+                        : transactionRepository.findReceivedBefore(accountId, after.createdAt(), after.id(), fetch);
+                page.forEach(t -> merged.putIfAbsent(t.getId(), t));
+            }
+        }
+
+        List<Transaction> ordered = new ArrayList<>(merged.values());
+        ordered.sort(NEWEST_FIRST);
+        return toPage(ordered, size);
+    }
+
+    /**
+     * Cắt size dòng đầu của danh sách đã sắp mới nhất trước; còn dư thì dòng cuối trang làm cursor
+     */
+    private TransactionPageDTO toPage(List<Transaction> ordered, int size) {
+        List<Transaction> items = ordered.subList(0, Math.min(size, ordered.size()));
+        String nextCursor = ordered.size() > size ? encodeCursor(items.get(items.size() - 1)) : null;
+        return new TransactionPageDTO(items.stream().map(this::convertToDTO).collect(Collectors.toList()), nextCursor);
+    }
+
+    /**
+     * Giao dịch PENDING mới từ request của userId (chưa lưu)
+     */
+    static Transaction newTransaction(Long userId, TransactionDTO transactionDTO) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccountId(transactionDTO.fromAccountId());
+        transaction.setToAccountId(transactionDTO.toAccountId());
+        transaction.setCreatedBy(userId);
+        transaction.setCurrency(transactionDTO.currency() != null ? transactionDTO.currency() : "USD");
+        transaction.setAmount(Money.of(transactionDTO.amount(), transaction.getCurrency()));
+        transaction.setTransactionType(transactionDTO.transactionType());
+        transaction.setStatus("PENDING");
+        transaction.setReferenceCode(transactionDTO.referenceCode());
+        transaction.setDescription(transactionDTO.description());
+        return transaction;
+    }
+
+    Optional<Transaction> findByReferenceCode(String referenceCode) {
+        return transactionReferenceRepository.findById(referenceCode)
+                .map(TransactionReference::getTransactionId)
+                .flatMap(id -> transactionRepository.findById(id).or(() -> transactionArchive.findById(id)));
+    }
+
+    /**
+     * Chỉ coi là retry khi cùng tài khoản và số tiền; mã trùng cho giao dịch khác vẫn bị từ chối
+     */
+    private static Transaction checkSameRequest(Transaction existing, TransactionDTO request) {
+        if (!isSameRequest(existing, request)) {
+            throw new RuntimeException("Reference code already used");
+        }
+        return existing;
+    }
+
+    static boolean isSameRequest(Transaction existing, TransactionDTO request) {
+        return Objects.equals(existing.getFromAccountId(), request.fromAccountId())
+                && Objects.equals(existing.getToAccountId(), request.toAccountId())
+                && request.amount() != null
+                && existing.getAmount().toBigDecimal().compareTo(request.amount()) == 0;
+    }
+
+    private void checkParticipant(Long userId, Transaction transaction) {
+        checkOwner(userId, Stream.of(transaction.getFromAccountId(), transaction.getToAccountId())
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList());
+    }
+
+    /**
+     * User phải sở hữu một trong các tài khoản
+     */
+    private void checkOwner(Long userId, List<Long> accountIds) {
+        if (ownedAccounts(userId, accountIds).isEmpty()) {
+            throw new RuntimeException("Access denied");
+        }
+    }
+
+    /**
+     * Các tài khoản (trong accountIds) thuộc userId. Tài khoản chưa có trong account_owners
+     * (AccountOwnerBackfill chưa chạy xong, event tạo tài khoản chưa tới) được hỏi thẳng account-service;
+     * vẫn không biết chủ thì coi như không sở hữu.
+     */
+    Set<Long> ownedAccounts(Long userId, Collection<Long> accountIds) {
+        List<AccountOwner> owners = accountOwnerRepository.findAllById(accountIds);
+        Set<Long> known = owners.stream().map(AccountOwner::getAccountId).collect(Collectors.toSet());
+        Set<Long> owned = owners.stream()
+                .filter(owner -> owner.getUserId().equals(userId))
+                .map(AccountOwner::getAccountId)
+                .collect(Collectors.toCollection(HashSet::new));
+        for (Long accountId : accountIds) {
+            if (!known.contains(accountId) && accountOwnerBackfill.lookup(accountId)
+                    .filter(owner -> owner.getUserId().equals(userId))
+                    .isPresent()) {
+                owned.add(accountId);
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Cursor = base64url("createdAt|id") của dòng cuối trang trước
+     */
+    private static String encodeCursor(Transaction last) {
+        String position = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|');
+            return new Cursor(LocalDateTime.parse(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 
     /**
@@ -106,7 +388,7 @@ public class TransactionService {
                 transaction.getId(),
                 transaction.getFromAccountId(),
                 transaction.getToAccountId(),
-                transaction.getAmount(),
+                transaction.getAmount() != null ? transaction.getAmount().toBigDecimal() : null,
                 transaction.getCurrency(),
                 transaction.getTransactionType(),
                 transaction.getStatus(),
@@ -116,4 +398,7 @@ public class TransactionService {
                 transaction.getCompletedAt()
         );
     }
+
+    private record Cursor(LocalDateTime createdAt, Long id) {
+    }
 }
@@ -0,0 +1,221 @@
+package com.example.transactionservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số giao dịch xấp xỉ theo trạng thái cho dashboard (gauge transactions.status.count{status}), không cần COUNT(*).
+ * - Mỗi lần chuyển trạng thái được cộng vào bộ đếm trong bộ nhớ sau khi transaction commit (rollback thì không tính),
+ *   rồi flush định kỳ thành UPDATE tx_count = tx_count + delta trên transaction_status_counts:
+ *   mỗi trạng thái một câu mỗi flush-interval-ms thay vì một câu trên dòng nóng cho mỗi giao dịch.
+ * - Số đọc ra = giá trị đã flush của cả cụm (đọc lại mỗi lần flush) + phần chưa flush của node này,
+ *   nên chỉ thiếu phần chưa flush của các node khác.
+ * - Delta mất khi node chết được sửa ở lần reconcile: một câu GROUP BY status chạy trên index (status, created_at, id),
+ *   mặc định hằng ngày lúc ít tải và khi khởi động mà bảng đếm còn trống.
+ */
+@Slf4j
+@Component
+public class TransactionStatusCounts implements SmartInitializingSingleton {
+
+    private static final String ADD_SQL =
+            "UPDATE transaction_status_counts SET tx_count = tx_count + ?, updated_at = ? WHERE status = ?";
+    private static final String SET_SQL =
+            "UPDATE transaction_status_counts SET tx_count = ?, updated_at = ? WHERE status = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO transaction_status_counts (tx_count, updated_at, status) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Object flushLock = new Object();
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final Set<String> gauged = ConcurrentHashMap.newKeySet();
+    private volatile Map<String, Long> flushed = Map.of();
+
+    public TransactionStatusCounts(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transaction_status_counts", Integer.class);
+            if (rows == null || rows == 0) {
+                reconcile();
+            } else {
+                refresh();
+            }
+        } catch (Exception e) {
+            log.warn("Cannot load transaction status counts: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi nhận count giao dịch mới ở trạng thái status
+     */
+    public void created(String status, long count) {
+        transition(null, status, count);
+    }
+
+    /**
+     * Ghi nhận count giao dịch chuyển từ from sang to (to = null: rời khỏi bảng, ví dụ archive).
+     * Trong transaction thì chỉ được tính khi commit.
+     */
+    public void transition(String from, String to, long count) {
+        if (count <= 0 || Objects.equals(from, to)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(from, to, count);
+                }
+            });
+        } else {
+            apply(from, to, count);
+        }
+    }
+
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>(flushed);
+        pending.forEach((status, delta) -> counts.merge(status, delta.sum(), Long::sum));
+        return counts;
+    }
+
+    public long getCount(String status) {
+        LongAdder delta = pending.get(status);
+        return flushed.getOrDefault(status, 0L) + (delta != null ? delta.sum() : 0);
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.status-counts.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Long> written = new HashMap<>();
+            LocalDateTime now = LocalDateTime.now();
+            // Theo thứ tự trạng thái để các node khóa dòng cùng thứ tự
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(pending).entrySet()) {
+                long delta = entry.getValue().sumThenReset();
+                if (delta == 0) {
+                    continue;
+                }
+                try {
+                    add(entry.getKey(), delta, now);
+                    written.put(entry.getKey(), delta);
+                } catch (Exception e) {
+                    log.warn("Cannot flush {} count delta {}: {}", entry.getKey(), delta, e.getMessage());
+                    entry.getValue().add(delta);
+                }
+            }
+            if (!written.isEmpty()) {
+                Map<String, Long> updated = new HashMap<>(flushed);
+                written.forEach((status, delta) -> updated.merge(status, delta, Long::sum));
+                flushed = updated;
+            }
+            try {
+                refresh();
+            } catch (Exception e) {
+                log.warn("Cannot refresh transaction status counts: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Đặt lại số đếm theo bảng transactions; phần chuyển trạng thái trong lúc chạy có thể lệch một chút
+     */
+    @Scheduled(cron = "${transactions.status-counts.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        synchronized (flushLock) {
+            flush();
+            Map<String, Long> actual = new HashMap<>();
+            jdbcTemplate.query("SELECT status, COUNT(*) FROM transactions GROUP BY status",
+                    rs -> {
+                        actual.put(rs.getString(1), rs.getLong(2));
+                    });
+            Set<String> statuses = new TreeSet<>(actual.keySet());
+            statuses.addAll(flushed.keySet());
+            LocalDateTime now = LocalDateTime.now();
+            for (String status : statuses) {
+                set(status, actual.getOrDefault(status, 0L), now);
+            }
+            refresh();
+            log.info("Reconciled transaction status counts: {}", actual);
+        }
+    }
+
+    private void apply(String from, String to, long count) {
+        if (from != null) {
+            adder(from).add(-count);
+        }
+        if (to != null) {
+            adder(to).add(count);
+        }
+    }
+
+    private LongAdder adder(String status) {
+        gauge(status);
+        return pending.computeIfAbsent(status, s -> new LongAdder());
+    }
+
+    private void add(String status, long delta, LocalDateTime now) {
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        if (jdbcTemplate.update(ADD_SQL, delta, updatedAt, status) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SQL, delta, updatedAt, status);
+        } catch (DuplicateKeyException e) {
+            // Node khác vừa tạo dòng
+            jdbcTemplate.update(ADD_SQL, delta, updatedAt, status);
+        }
+    }
+
+    private void set(String status, long count, LocalDateTime now) {
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        if (jdbcTemplate.update(SET_SQL, count, updatedAt, status) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SQL, count, updatedAt, status);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update(SET_SQL, count, updatedAt, status);
+        }
+    }
+
+    private void refresh() {
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT status, tx_count FROM transaction_status_counts", rs -> {
+            counts.put(rs.getString(1), rs.getLong(2));
+        });
+        counts.keySet().forEach(this::gauge);
+        flushed = counts;
+    }
+
+    private void gauge(String status) {
+        if (gauged.add(status)) {
+            Gauge.builder("transactions.status.count", this, counts -> counts.getCount(status))
+                    .tag("status", status)
+                    .description("Approximate number of transactions per status")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.transactionservice.service;
+
+import com.example.common.money.Money;
+import com.example.common.velocity.VelocityTracker.Reservation;
+import com.example.common.velocity.VelocityTracker;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giới hạn tần suất giao dịch gửi đi (số lần và tổng tiền mỗi phút/giờ/ngày) theo tài khoản gửi và theo user sở hữu,
+ * kiểm tra trong bộ nhớ ngay khi tạo giao dịch qua VelocityTracker của common-infra, không truy vấn DB mỗi request.
+ * - Chủ sở hữu/loại tài khoản đọc từ account_owners lần đầu gặp tài khoản, sau đó cập nhật qua accountChanged.
+ *   Transaction tạo giao dịch rollback thì phần đã cộng được trả lại.
+ * - Cấu hình ở transactions.velocity.*; mặc định tắt. Bộ đếm là của từng node nên giới hạn cấu hình là của cả cụm
+ *   và được chia cho transactions.velocity.replicas.
+ * - Khi khởi động dựng lại cửa sổ từ giao dịch trong cửa sổ dài nhất.
+ */
+@Slf4j
+@Component
+public class VelocityLimiter implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountOwnerRepository accountOwnerRepository;
+    private final VelocityTracker tracker;
+    private final boolean enabled;
+    private final int fetchSize;
+
+    public VelocityLimiter(JdbcTemplate jdbcTemplate,
+                           AccountOwnerRepository accountOwnerRepository,
+                           Environment environment,
+                           MeterRegistry meterRegistry,
+                           @Value("${transactions.velocity.enabled:false}") boolean enabled,
+                           @Value("${transactions.velocity.rebuild-fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.accountOwnerRepository = accountOwnerRepository;
+        this.tracker = new VelocityTracker(environment, meterRegistry, "transactions.velocity", "transactions");
+        this.enabled = enabled;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Cộng giao dịch gửi từ fromAccountId vào các cửa sổ, vượt giới hạn thì ném lỗi và không cộng.
+     * Trong transaction thì tự trả lại khi rollback; ngoài transaction người gọi release() khi thao tác thất bại.
+     */
+    public Reservation acquire(Long fromAccountId, Money amount) {
+        if (!enabled || fromAccountId == null || amount == null) {
+            return Reservation.NONE;
+        }
+        Reservation reservation = acquire(fromAccountId, amount.getMinorUnits(), System.currentTimeMillis());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        reservation.release();
+                    }
+                }
+            });
+        }
+        return reservation;
+    }
+
+    Reservation acquire(Long fromAccountId, long amount, long nowMillis) {
+        return tracker.acquire(fromAccountId, this::owner, amount, nowMillis);
+    }
+
+    /**
+     * Cập nhật chủ sở hữu/loại tài khoản đang theo dõi khi account-service báo thay đổi
+     */
+    public void accountChanged(Long accountId, Long userId, String accountType) {
+        tracker.ownerChanged(accountId, new VelocityTracker.Owner(userId, accountType));
+    }
+
+    /**
+     * Dọn tài khoản/user không có giao dịch trong cửa sổ dài nhất
+     */
+    @Scheduled(fixedDelayString = "${transactions.velocity.evict-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = tracker.evictIdle(System.currentTimeMillis());
+        if (evicted > 0) {
+            log.debug("Evicted {} idle velocity windows", evicted);
+        }
+    }
+
+    /**
+     * Dựng lại cửa sổ từ giao dịch gửi trong cửa sổ dài nhất (chỉ quét partition tháng hiện tại/trước đó)
+     */
+    void rebuild() {
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minus(VelocityTracker.LONGEST);
+        AtomicLong rows = new AtomicLong();
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT t.from_account_id, t.amount, t.created_at, o.user_id, o.account_type " +
+                                "FROM transactions t LEFT JOIN account_owners o ON o.account_id = t.from_account_id " +
+                                "WHERE t.created_at >= ? AND t.from_account_id IS NOT NULL",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setTimestamp(1, Timestamp.valueOf(since));
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                long amount = Money.of(rs.getBigDecimal(2), null).getMinorUnits();
+                long at = rs.getTimestamp(3).getTime();
+                long userId = rs.getLong(4);
+                VelocityTracker.Owner owner = new VelocityTracker.Owner(rs.wasNull() ? null : userId, rs.getString(5));
+                tracker.record(rs.getLong(1), id -> owner, at, amount, now);
+                rows.incrementAndGet();
+            });
+            log.info("Rebuilt velocity windows from {} transactions ({} accounts, {} users) in {} ms",
+                    rows.get(), tracker.trackedAccounts(), tracker.trackedUsers(), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Velocity window rebuild failed: {}", e.getMessage());
+        }
+    }
+
+    private VelocityTracker.Owner owner(Long accountId) {
+        return accountOwnerRepository.findById(accountId)
+                .map(owner -> new VelocityTracker.Owner(owner.getUserId(), owner.getAccountType()))
+                .orElse(null);
+    }
+}
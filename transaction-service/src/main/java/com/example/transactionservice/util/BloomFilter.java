@@ -0,0 +1,111 @@
+package com.example.transactionservice.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter cho chuỗi, an toàn khi nhiều thread cùng put/mightContain (set bit bằng CAS, không khóa).
+ * mightContain = false thì chắc chắn chưa put; true thì có thể là dương tính giả với xác suất ~ fpp.
+ * Vị trí bit theo double hashing (Kirsch-Mitzenmacher): h1 + i * h2, i = 0..k-1.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final LongAdder insertions = new LongAdder();
+
+    private BloomFilter(long bitCount, int hashCount) {
+        this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        this.bitCount = (long) words.length() * 64;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Kích thước tối ưu cho expectedInsertions phần tử với tỉ lệ dương tính giả fpp
+     */
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Invalid bloom filter size: " + expectedInsertions + " / " + fpp);
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        if (bits > (long) Integer.MAX_VALUE * 64) {
+            throw new IllegalArgumentException("Bloom filter too large: " + bits + " bits");
+        }
+        int hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+        return new BloomFilter(bits, hashes);
+    }
+
+    public void put(String value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tỉ lệ dương tính giả ước tính theo số phần tử đã put: (1 - e^(-k*n/m))^k
+     */
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions.sum() / bitCount), hashCount);
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * FNV-1a 64 bit trên UTF-8; chất lượng phân bố do mix() đảm nhận
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Bước fmix64 của MurmurHash3
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53a87c3L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
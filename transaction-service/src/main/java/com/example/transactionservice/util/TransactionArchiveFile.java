@@ -0,0 +1,458 @@
+package com.example.transactionservice.util;
+
+import com.example.common.money.Money;
+import com.example.transactionservice.model.Transaction;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * File lưu trữ giao dịch đã archive (.txa), dạng cột theo từng nhóm dòng:
+ * - Giao dịch ghi theo id tăng dần, mỗi GROUP_ROWS dòng thành một nhóm nén deflate riêng.
+ * - Trong nhóm, từng cột được ghi liền nhau: id và created_at ghi delta dạng varint,
+ *   currency/transaction_type/status ghi bằng từ điển, chuỗi ghi độ dài trước rồi tới nội dung.
+ * - Cuối file có footer (offset, số dòng, id nhỏ nhất/lớn nhất của từng nhóm), nên tìm theo id
+ *   chỉ cần giải nén một nhóm.
+ */
+public final class TransactionArchiveFile {
+
+    public static final String EXTENSION = ".txa";
+
+    static final int GROUP_ROWS = 4096;
+
+    private static final int MAGIC = 0x54584152; // "TXAR"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private TransactionArchiveFile() {
+    }
+
+    public static Writer create(Path path) throws IOException {
+        return new Writer(path);
+    }
+
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    private record Group(long offset, int rows, long minId, long maxId) {
+    }
+
+    public static final class Writer implements Closeable {
+
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private final List<Transaction> pending = new ArrayList<>(GROUP_ROWS);
+        private final List<Group> groups = new ArrayList<>();
+        private long position;
+        private long lastId = Long.MIN_VALUE;
+        private long rows;
+
+        private Writer(Path path) throws IOException {
+            this.file = new FileOutputStream(path.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position = 2 * Integer.BYTES;
+        }
+
+        /**
+         * Giao dịch phải được thêm theo id tăng dần
+         */
+        public void append(Transaction transaction) throws IOException {
+            if (transaction.getId() <= lastId) {
+                throw new IllegalArgumentException("Transactions must be appended in ascending id order");
+            }
+            lastId = transaction.getId();
+            pending.add(transaction);
+            rows++;
+            if (pending.size() == GROUP_ROWS) {
+                writeGroup();
+            }
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        private void writeGroup() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DataOutputStream columns = new DataOutputStream(new DeflaterOutputStream(compressed, deflater))) {
+                encode(pending, columns);
+            } finally {
+                deflater.end();
+            }
+            groups.add(new Group(position, pending.size(), pending.get(0).getId(), pending.get(pending.size() - 1).getId()));
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+            position += Integer.BYTES + compressed.size();
+            pending.clear();
+        }
+
+        /**
+         * Ghi nhóm cuối, footer rồi fsync
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                writeGroup();
+                long footerOffset = position;
+                for (Group group : groups) {
+                    out.writeLong(group.offset());
+                    out.writeInt(group.rows());
+                    out.writeLong(group.minId());
+                    out.writeLong(group.maxId());
+                }
+                out.writeLong(footerOffset);
+                out.writeInt(groups.size());
+                out.writeInt(MAGIC);
+                out.flush();
+                file.getFD().sync();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Đọc file archive; đọc theo vị trí (FileChannel) nên dùng chung được giữa nhiều luồng
+     */
+    public static final class Reader implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final List<Group> groups;
+        private final long footerOffset;
+
+        private Reader(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < 2 * Integer.BYTES + TRAILER_BYTES || readBuffer(0, Integer.BYTES).getInt() != MAGIC) {
+                    throw new IOException("Not a transaction archive: " + path);
+                }
+                ByteBuffer trailer = readBuffer(size - TRAILER_BYTES, TRAILER_BYTES);
+                footerOffset = trailer.getLong();
+                int groupCount = trailer.getInt();
+                if (trailer.getInt() != MAGIC) {
+                    throw new IOException("Truncated transaction archive: " + path);
+                }
+                ByteBuffer footer = readBuffer(footerOffset, groupCount * (Long.BYTES * 3 + Integer.BYTES));
+                List<Group> loaded = new ArrayList<>(groupCount);
+                for (int i = 0; i < groupCount; i++) {
+                    loaded.add(new Group(footer.getLong(), footer.getInt(), footer.getLong(), footer.getLong()));
+                }
+                this.groups = List.copyOf(loaded);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getRowCount() {
+            return groups.stream().mapToLong(Group::rows).sum();
+        }
+
+        public long getMinId() {
+            return groups.isEmpty() ? Long.MAX_VALUE : groups.get(0).minId();
+        }
+
+        public long getMaxId() {
+            return groups.isEmpty() ? Long.MIN_VALUE : groups.get(groups.size() - 1).maxId();
+        }
+
+        public int getGroupCount() {
+            return groups.size();
+        }
+
+        /**
+         * Tìm nhóm chứa id bằng tìm kiếm nhị phân trên footer, chỉ giải nén nhóm đó
+         */
+        public Optional<Transaction> findById(long id) throws IOException {
+            int low = 0;
+            int high = groups.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                Group group = groups.get(middle);
+                if (id < group.minId()) {
+                    high = middle - 1;
+                } else if (id > group.maxId()) {
+                    low = middle + 1;
+                } else {
+                    return readGroup(middle).stream().filter(t -> t.getId() == id).findFirst();
+                }
+            }
+            return Optional.empty();
+        }
+
+        public List<Transaction> readGroup(int index) throws IOException {
+            Group group = groups.get(index);
+            long end = index + 1 < groups.size() ? groups.get(index + 1).offset() : footerOffset;
+            ByteBuffer block = readBuffer(group.offset(), (int) (end - group.offset()));
+            int length = block.getInt();
+            InputStream compressed = new ByteArrayInputStream(block.array(), Integer.BYTES, length);
+            try (DataInputStream columns = new DataInputStream(new InflaterInputStream(compressed))) {
+                return decode(columns, group.rows());
+            }
+        }
+
+        private ByteBuffer readBuffer(long offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of " + path);
+                }
+            }
+            return buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static void encode(List<Transaction> rows, DataOutputStream out) throws IOException {
+        long previous = 0;
+        for (Transaction t : rows) {
+            writeVarLong(out, t.getId() - previous);
+            previous = t.getId();
+        }
+        for (Transaction t : rows) {
+            writeNullableLong(out, t.getFromAccountId());
+        }
+        for (Transaction t : rows) {
+            writeNullableLong(out, t.getToAccountId());
+        }
+        for (Transaction t : rows) {
+            writeVarLong(out, zigZag(t.getAmount().getMinorUnits()));
+        }
+        writeDictionary(out, rows, Transaction::getCurrency);
+        writeDictionary(out, rows, Transaction::getTransactionType);
+        writeDictionary(out, rows, Transaction::getStatus);
+        writeStrings(out, rows, Transaction::getReferenceCode);
+        writeStrings(out, rows, Transaction::getDescription);
+        previous = 0;
+        for (Transaction t : rows) {
+            long created = micros(t.getCreatedAt());
+            writeVarLong(out, zigZag(created - previous));
+            previous = created;
+        }
+        for (Transaction t : rows) {
+            // 0 = chưa hoàn tất, còn lại là khoảng cách tới created_at
+            writeVarLong(out, t.getCompletedAt() == null ? 0
+                    : zigZag(micros(t.getCompletedAt()) - micros(t.getCreatedAt())) + 1);
+        }
+    }
+
+    private static List<Transaction> decode(DataInputStream in, int count) throws IOException {
+        List<Transaction> rows = new ArrayList<>(count);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            Transaction t = new Transaction();
+            previous += readVarLong(in);
+            t.setId(previous);
+            rows.add(t);
+        }
+        for (Transaction t : rows) {
+            t.setFromAccountId(readNullableLong(in));
+        }
+        for (Transaction t : rows) {
+            t.setToAccountId(readNullableLong(in));
+        }
+        long[] amounts = new long[count];
+        for (int i = 0; i < count; i++) {
+            amounts[i] = unZigZag(readVarLong(in));
+        }
+        List<String> currencies = readDictionary(in, count);
+        List<String> types = readDictionary(in, count);
+        List<String> statuses = readDictionary(in, count);
+        List<String> references = readStrings(in, count);
+        List<String> descriptions = readStrings(in, count);
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            Transaction t = rows.get(i);
+            t.setCurrency(currencies.get(i));
+            t.setAmount(Money.ofMinor(amounts[i], currencies.get(i)));
+            t.setTransactionType(types.get(i));
+            t.setStatus(statuses.get(i));
+            t.setReferenceCode(references.get(i));
+            t.setDescription(descriptions.get(i));
+            previous += unZigZag(readVarLong(in));
+            t.setCreatedAt(fromMicros(previous));
+        }
+        for (Transaction t : rows) {
+            long completed = readVarLong(in);
+            t.setCompletedAt(completed == 0 ? null : fromMicros(micros(t.getCreatedAt()) + unZigZag(completed - 1)));
+        }
+        return rows;
+    }
+
+    private static void writeDictionary(DataOutputStream out, List<Transaction> rows,
+                                        Function<Transaction, String> column) throws IOException {
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        int[] encoded = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            String value = column.apply(rows.get(i));
+            if (value != null) {
+                // Mã 0 dành cho null
+                encoded[i] = codes.computeIfAbsent(value, v -> {
+                    values.add(v);
+                    return values.size();
+                });
+            }
+        }
+        writeVarLong(out, values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+        for (int code : encoded) {
+            writeVarLong(out, code);
+        }
+    }
+
+    private static List<String> readDictionary(DataInputStream in, int count) throws IOException {
+        int size = (int) readVarLong(in);
+        List<String> values = new ArrayList<>(size + 1);
+        values.add(null);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        List<String> column = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            column.add(values.get((int) readVarLong(in)));
+        }
+        return column;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<Transaction> rows,
+                                     Function<Transaction, String> column) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(rows.size());
+        for (Transaction t : rows) {
+            String value = column.apply(t);
+            byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+            encoded.add(bytes);
+            // 0 = null, còn lại là độ dài + 1
+            writeVarLong(out, bytes == null ? 0 : bytes.length + 1);
+        }
+        for (byte[] bytes : encoded) {
+            if (bytes != null) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in, int count) throws IOException {
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = (int) readVarLong(in);
+        }
+        List<String> column = new ArrayList<>(count);
+        for (int length : lengths) {
+            if (length == 0) {
+                column.add(null);
+            } else {
+                byte[] bytes = new byte[length - 1];
+                in.readFully(bytes);
+                column.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return column;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableLong(OutputStream out, Long value) throws IOException {
+        writeVarLong(out, value == null ? 0 : zigZag(value) + 1);
+    }
+
+    private static Long readNullableLong(InputStream in) throws IOException {
+        long value = readVarLong(in);
+        return value == 0 ? null : unZigZag(value - 1);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated archive group");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in archive group");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long micros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "transactions.owner-backfill.page-size=2"
+})
+@Import(AccountOwnerBackfill.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountOwnerBackfillTest {
+
+    @Autowired
+    private AccountOwnerBackfill backfill;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @MockitoBean
+    private AccountServiceClient accountServiceClient;
+
+    @BeforeEach
+    void setUp() {
+        accountOwnerRepository.deleteAll();
+    }
+
+    @Test
+    void missingOwnersAreAddedPageByPageAndResumeAfterAFailure() {
+        // Tài khoản 1 đã có từ account-events (loại mới hơn bản của account-service): không bị đè
+        accountOwnerRepository.save(new AccountOwner(1L, 10L, "CHECKING"));
+        when(accountServiceClient.owners(0L, 2)).thenReturn(List.of(owner(1L, 10L), owner(2L, 10L)));
+        when(accountServiceClient.owners(2L, 2)).thenThrow(new IllegalStateException("account-service unavailable"));
+
+        backfill.backfill();
+
+        assertThat(backfill.isCompleted()).isFalse();
+        assertThat(accountOwnerRepository.findAccountIdsByUserId(10L)).containsExactly(1L, 2L);
+        assertThat(accountOwnerRepository.findById(1L).orElseThrow().getAccountType()).isEqualTo("CHECKING");
+
+        doReturn(List.of(owner(3L, 20L))).when(accountServiceClient).owners(2L, 2);
+        when(accountServiceClient.owners(3L, 2)).thenReturn(List.of());
+        backfill.backfill();
+
+        assertThat(backfill.isCompleted()).isTrue();
+        assertThat(accountOwnerRepository.findAccountIdsByUserId(20L)).containsExactly(3L);
+        // Lần thứ hai tiếp tục từ trang dở chứ không đọc lại từ đầu
+        verify(accountServiceClient, times(1)).owners(eq(0L), anyInt());
+
+        clearInvocations(accountServiceClient);
+        backfill.backfill();
+        verify(accountServiceClient, never()).owners(anyLong(), anyInt());
+    }
+
+    private static AccountServiceClient.AccountOwnerRecord owner(Long accountId, Long userId) {
+        return new AccountServiceClient.AccountOwnerRecord(accountId, userId, "SAVINGS");
+    }
+}
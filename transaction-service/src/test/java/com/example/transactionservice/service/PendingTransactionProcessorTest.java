@@ -0,0 +1,174 @@
+package com.example.transactionservice.service;
+
+import com.example.common.money.Money;
+import com.example.common.outbox.OutboxEventRepository;
+import com.example.common.outbox.OutboxPublisher;
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PendingTransactionProcessorTest {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OutboxPublisher outboxPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final FakeAccountServiceClient client = new FakeAccountServiceClient();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TransactionStatusCounts statusCounts;
+    private PendingTransactionProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM transaction_status_counts");
+        statusCounts = new TransactionStatusCounts(jdbcTemplate, meterRegistry);
+        processor = new PendingTransactionProcessor(jdbcTemplate, transactionManager, client, outboxPublisher,
+                statusCounts, meterRegistry, false, 2, 3);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.shutdown();
+    }
+
+    @Test
+    void claimsBatchesPerSlotInOrderAndTransitionsThemInBulk() {
+        List<Long> even = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            even.add(pending(10L, 20L).getId());
+        }
+        Long odd = pending(11L, 20L).getId();
+        client.rejected = Set.of(even.get(1));
+        statusCounts.reconcile();
+
+        assertThat(processor.processBatch(0)).isEqualTo(3);
+        assertThat(processor.processBatch(0)).isEqualTo(1);
+        assertThat(processor.processBatch(0)).isZero();
+
+        assertThat(client.batches).containsExactly(even.subList(0, 3), even.subList(3, 4));
+        // account-service kiểm tra lại chủ tài khoản gửi theo user đã tạo giao dịch
+        assertThat(client.creators).containsOnly(7L);
+        assertThat(status(even.get(0))).isEqualTo("COMPLETED");
+        assertThat(status(even.get(1))).isEqualTo("FAILED");
+        assertThat(status(odd)).isEqualTo("PENDING");
+        assertThat(transactionRepository.findById(even.get(0)).orElseThrow().getCompletedAt()).isNotNull();
+        assertThat(outboxEventRepository.count()).isEqualTo(4);
+
+        assertThat(processor.processBatch(1)).isEqualTo(1);
+        assertThat(status(odd)).isEqualTo("COMPLETED");
+        assertThat(meterRegistry.counter("transactions.processor.processed", "outcome", "completed").count()).isEqualTo(4);
+        assertThat(meterRegistry.counter("transactions.processor.processed", "outcome", "failed").count()).isEqualTo(1);
+        assertThat(meterRegistry.timer("transactions.processor.claim").count()).isEqualTo(4);
+        assertThat(statusCounts.getCounts()).containsEntry("PENDING", 0L).containsEntry("PROCESSING", 0L)
+                .containsEntry("COMPLETED", 4L).containsEntry("FAILED", 1L);
+        assertThat(meterRegistry.get("transactions.processor.backlog").gauge().value()).isZero();
+    }
+
+    @Test
+    void rowsStayProcessingWhenAccountServiceFailsAndAreRetried() {
+        Long first = pending(10L, 20L).getId();
+        Long deposit = pending(null, 30L).getId();
+        client.failing = true;
+
+        assertThat(processor.processBatch(0)).isZero();
+        assertThat(status(first)).isEqualTo("PROCESSING");
+        assertThat(status(deposit)).isEqualTo("PROCESSING");
+        assertThat(outboxEventRepository.count()).isZero();
+
+        client.failing = false;
+        assertThat(processor.processBatch(0)).isEqualTo(2);
+        assertThat(status(first)).isEqualTo("COMPLETED");
+        assertThat(status(deposit)).isEqualTo("COMPLETED");
+        assertThat(client.batches).containsExactly(List.of(first, deposit), List.of(first, deposit));
+    }
+
+    @Test
+    void cancelledWhileProcessingIsNotOverwritten() {
+        Long id = pending(10L, 20L).getId();
+        client.onApply = () -> jdbcTemplate.update("UPDATE transactions SET status = 'CANCELLED' WHERE id = ?", id);
+
+        processor.processBatch(0);
+
+        assertThat(status(id)).isEqualTo("CANCELLED");
+    }
+
+    private String status(Long id) {
+        return jdbcTemplate.queryForObject("SELECT status FROM transactions WHERE id = ?", String.class, id);
+    }
+
+    private Transaction pending(Long from, Long to) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccountId(from);
+        transaction.setToAccountId(to);
+        transaction.setCreatedBy(7L);
+        transaction.setCurrency("USD");
+        transaction.setAmount(Money.ofMinor(500, "USD"));
+        transaction.setTransactionType(from != null ? "TRANSFER" : "DEPOSIT");
+        transaction.setStatus("PENDING");
+        return transactionRepository.save(transaction);
+    }
+
+    private static class FakeAccountServiceClient extends AccountServiceClient {
+
+        private final List<List<Long>> batches = new ArrayList<>();
+        private final Set<Long> creators = new HashSet<>();
+        private Set<Long> rejected = Set.of();
+        private boolean failing;
+        private Runnable onApply = () -> { };
+
+        FakeAccountServiceClient() {
+            super(RestClient.builder(), "http://localhost", Duration.ofSeconds(1), "test-token");
+        }
+
+        @Override
+        public List<ApplyResult> apply(List<Transaction> transactions) {
+            batches.add(transactions.stream().map(Transaction::getId).toList());
+            transactions.forEach(t -> creators.add(t.getCreatedBy()));
+            onApply.run();
+            if (failing) {
+                throw new IllegalStateException("account-service unavailable");
+            }
+            return transactions.stream()
+                    .map(t -> rejected.contains(t.getId())
+                            ? new ApplyResult(t.getId(), REJECTED, "Insufficient balance")
+                            : new ApplyResult(t.getId(), APPLIED, null))
+                    .toList();
+        }
+    }
+}
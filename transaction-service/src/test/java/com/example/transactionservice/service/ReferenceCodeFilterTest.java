@@ -0,0 +1,111 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.dto.TransactionDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({TransactionService.class, TransactionArchive.class, ReferenceCodeFilter.class, TransactionStatusCounts.class,
+        VelocityLimiter.class, JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferenceCodeFilterTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ReferenceCodeFilter referenceCodeFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AccountOwnerBackfill accountOwnerBackfill;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM transaction_references");
+        jdbcTemplate.update("DELETE FROM account_owners");
+        jdbcTemplate.update("INSERT INTO account_owners (account_id, user_id) VALUES (10, 1)");
+    }
+
+    @Test
+    void retriedReferenceCodeReturnsTheExistingTransaction() {
+        TransactionDTO created = transactionService.createTransaction(1L, transfer("PARTNER-1", "5.00"));
+        referenceCodeFilter.rebuild();
+
+        TransactionDTO retried = transactionService.createTransaction(1L, transfer("PARTNER-1", "5.00"));
+
+        assertThat(retried.id()).isEqualTo(created.id());
+        assertThat(retried.status()).isEqualTo("PENDING");
+        assertThat(count("transactions")).isEqualTo(1);
+        assertThat(count("outbox_events")).isEqualTo(1);
+        assertThatThrownBy(() -> transactionService.createTransaction(1L, transfer("PARTNER-1", "6.00")))
+                .hasMessage("Reference code already used");
+    }
+
+    @Test
+    void newCodesSkipTheLookupAndCodesCreatedAfterRebuildAreTracked() {
+        transactionService.createTransaction(1L, transfer("PARTNER-1", "5.00"));
+        referenceCodeFilter.rebuild();
+        double checkedNew = newChecks();
+
+        assertThat(referenceCodeFilter.mightContain("PARTNER-1")).isTrue();
+        assertThat(referenceCodeFilter.mightContain("PARTNER-2")).isFalse();
+        assertThat(newChecks()).isEqualTo(checkedNew + 1);
+
+        transactionService.createTransaction(1L, transfer("PARTNER-2", "5.00"));
+        assertThat(referenceCodeFilter.mightContain("PARTNER-2")).isTrue();
+        assertThat(transactionService.createTransaction(1L, transfer("PARTNER-2", "5.00")).referenceCode())
+                .isEqualTo("PARTNER-2");
+        assertThat(count("transactions")).isEqualTo(2);
+    }
+
+    @Test
+    void falsePositiveRateIsReported() {
+        referenceCodeFilter.rebuild();
+        double falsePositives = meterRegistry.get("transactions.reference.filter.false.positives").counter().count();
+        referenceCodeFilter.mightContain("A");
+        referenceCodeFilter.mightContain("B");
+        referenceCodeFilter.mightContain("C");
+        referenceCodeFilter.recordFalsePositive();
+
+        assertThat(meterRegistry.get("transactions.reference.filter.false.positive.rate").gauge().value())
+                .isEqualTo(0.25);
+        assertThat(meterRegistry.get("transactions.reference.filter.false.positives").counter().count())
+                .isEqualTo(falsePositives + 1);
+    }
+
+    private double newChecks() {
+        return meterRegistry.get("transactions.reference.filter").tag("result", "new").counter().count();
+    }
+
+    private Integer count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private static TransactionDTO transfer(String referenceCode, String amount) {
+        return new TransactionDTO(null, 10L, 20L, new BigDecimal(amount), "USD", "TRANSFER", null,
+                referenceCode, null, null, null);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "statement.export.fetch-size=100"
+})
+@Import({StatementExportService.class, JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatementExportServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 1);
+
+    @Autowired
+    private StatementExportService exportService;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        accountOwnerRepository.deleteAll();
+        accountOwnerRepository.save(new AccountOwner(10L, 1L));
+    }
+
+    @Test
+    void ndjsonContainsBothDirectionsInRangeInChronologicalOrder() throws IOException {
+        insert(10L, 20L, DAY.atTime(9, 0), "rent");
+        insert(20L, 10L, DAY.atTime(8, 0), null);
+        insert(10L, 10L, DAY.plusDays(1).atTime(23, 59), "self");
+        insert(20L, 30L, DAY.atTime(10, 0), "other accounts");
+        insert(10L, 20L, DAY.minusDays(1).atTime(23, 59), "before range");
+        insert(10L, 20L, DAY.plusDays(2).atStartOfDay(), "after range");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exportService.export(10L, DAY, DAY.plusDays(1), StatementExportService.Format.NDJSON, out);
+
+        List<String> lines = gunzip(out).lines().toList();
+        assertThat(rows).isEqualTo(3);
+        assertThat(lines).hasSize(3);
+        JsonNode credit = objectMapper.readTree(lines.get(0));
+        assertThat(credit.get("direction").asText()).isEqualTo("CREDIT");
+        assertThat(credit.get("amount").decimalValue()).isEqualByComparingTo("12.50");
+        assertThat(credit.get("description").isNull()).isTrue();
+        assertThat(credit.get("createdAt").asText()).isEqualTo("2026-03-01T08:00");
+        assertThat(objectMapper.readTree(lines.get(1)).get("description").asText()).isEqualTo("rent");
+        assertThat(objectMapper.readTree(lines.get(2)).get("direction").asText()).isEqualTo("DEBIT");
+    }
+
+    @Test
+    void debitAndCreditCursorsAreMergedByTimeThenId() throws IOException {
+        // Hai chiều xen kẽ, nhiều dòng trùng created_at: thứ tự phụ theo id phải giữ qua phép trộn
+        for (int i = 0; i < 40; i++) {
+            LocalDateTime createdAt = DAY.atTime(9, (i * 7) % 5);
+            if (i % 3 == 0) {
+                insert(20L, 10L, createdAt, null);
+            } else {
+                insert(10L, 20L, createdAt, null);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(10L, DAY, DAY, StatementExportService.Format.NDJSON, out);
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : gunzip(out).lines().toList()) {
+            lines.add(objectMapper.readTree(line));
+        }
+        assertThat(lines).hasSize(40);
+        assertThat(lines).filteredOn(line -> line.get("direction").asText().equals("CREDIT")).hasSize(14);
+        for (int i = 1; i < lines.size(); i++) {
+            JsonNode previous = lines.get(i - 1);
+            JsonNode current = lines.get(i);
+            int byTime = previous.get("createdAt").asText().compareTo(current.get("createdAt").asText());
+            assertThat(byTime < 0 || byTime == 0 && previous.get("id").asLong() < current.get("id").asLong()).isTrue();
+        }
+    }
+
+    @Test
+    void csvQuotesFieldsThatNeedIt() throws IOException {
+        insert(10L, 20L, DAY.atTime(9, 0), "dinner, \"team\"\nMarch");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(10L, DAY, DAY, StatementExportService.Format.CSV, out);
+
+        String csv = gunzip(out);
+        assertThat(csv).startsWith("direction,id,fromAccountId,toAccountId,amount,currency,transactionType,status,"
+                + "referenceCode,description,createdAt,completedAt\r\n");
+        assertThat(csv).contains(",10,20,12.50,USD,TRANSFER,COMPLETED,,\"dinner, \"\"team\"\"\nMarch\",2026-03-01T09:00,\r\n");
+    }
+
+    @Test
+    void clientDisconnectStopsTheExport() {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            batch.add(new Object[]{Timestamp.valueOf(DAY.atStartOfDay().plusSeconds(i)), "row-" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, from_account_id, to_account_id, amount, currency, "
+                + "transaction_type, status, created_at, description) VALUES ((SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), 10, 20, 12.50, 'USD', 'TRANSFER', "
+                + "'COMPLETED', ?, ?)", batch);
+
+        // Socket đóng sau khoảng 8 KB dữ liệu nén
+        OutputStream disconnecting = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                written += len;
+                if (written > 8 * 1024) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+
+        assertThatThrownBy(() -> exportService.export(10L, DAY, DAY, StatementExportService.Format.NDJSON, disconnecting))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        assertThat(meterRegistry.get("statement.export").tag("outcome", "cancelled").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("statement.export.rows").counter().count()).isLessThan(20_000);
+    }
+
+    @Test
+    void requestIsCheckedBeforeStreaming() {
+        assertThatThrownBy(() -> exportService.checkRequest(2L, 10L, DAY, DAY)).hasMessage("Access denied");
+        assertThatThrownBy(() -> exportService.checkRequest(1L, 10L, DAY, DAY.minusDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StatementExportService.Format.parse("xml"))
+                .isInstanceOf(IllegalArgumentException.class);
+        exportService.checkRequest(1L, 10L, DAY, DAY);
+    }
+
+    private void insert(Long from, Long to, LocalDateTime createdAt, String description) {
+        jdbcTemplate.update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, currency, "
+                        + "transaction_type, status, created_at, description) VALUES ((SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), ?, ?, 12.50, 'USD', 'TRANSFER', "
+                        + "'COMPLETED', ?, ?)",
+                from, to, Timestamp.valueOf(createdAt), description);
+    }
+
+    private static String gunzip(ByteArrayOutputStream out) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.transactionservice.service;
+
+import com.example.common.money.Money;
+import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.model.ArchivedPartition;
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import com.example.transactionservice.repository.ArchivedPartitionRepository;
+import com.example.transactionservice.util.TransactionArchiveFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({TransactionService.class, TransactionArchive.class, ReferenceCodeFilter.class, TransactionStatusCounts.class,
+        VelocityLimiter.class, JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionArchivingTest {
+
+    @TempDir
+    static Path directory;
+
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) {
+        registry.add("transactions.archive.dir", () -> directory.toString());
+    }
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionArchive transactionArchive;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private ArchivedPartitionRepository archivedPartitionRepository;
+
+    @Autowired
+    private ReferenceCodeFilter referenceCodeFilter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AccountOwnerBackfill accountOwnerBackfill;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM transaction_references");
+        archivedPartitionRepository.deleteAll();
+        accountOwnerRepository.deleteAll();
+        accountOwnerRepository.saveAll(List.of(new AccountOwner(10L, 1L), new AccountOwner(20L, 2L)));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        transactionArchive.close();
+    }
+
+    @Test
+    void archivedTransactionIsStillReadableById() throws IOException {
+        Path file = writeArchive("transactions-2024-01", archived(42L));
+        transactionArchive.register(file);
+
+        TransactionDTO found = transactionService.getTransactionById(1L, 42L);
+        assertThat(found.amount()).isEqualByComparingTo("12.50");
+        assertThat(found.referenceCode()).isEqualTo("OLD-42");
+        assertThat(found.createdAt()).isEqualTo(LocalDateTime.of(2024, 1, 15, 10, 30));
+        assertThatThrownBy(() -> transactionService.getTransactionById(3L, 42L)).hasMessage("Access denied");
+        assertThatThrownBy(() -> transactionService.getTransactionById(1L, 43L)).hasMessage("Transaction not found");
+        assertThat(archivedPartitionRepository.findCovering(42L))
+                .extracting(ArchivedPartition::getFileName)
+                .containsExactly(file.getFileName().toString());
+    }
+
+    @Test
+    void fileArchivedByAnotherNodeIsFoundThroughTheIndex() throws IOException {
+        // Node khác ghi file vào thư mục dùng chung và bảng chỉ mục; node này chưa nạp file
+        Path file = writeArchive("transactions-2024-02", archived(77L));
+        archivedPartitionRepository.save(new ArchivedPartition(file.getFileName().toString(), 77L, 77L, 1L,
+                LocalDateTime.now()));
+
+        assertThat(transactionService.getTransactionById(1L, 77L).referenceCode()).isEqualTo("OLD-77");
+        assertThat(transactionArchive.findById(77L)).isPresent();
+
+        archivedPartitionRepository.save(new ArchivedPartition("transactions-2024-03" + TransactionArchiveFile.EXTENSION,
+                90L, 99L, 5L, LocalDateTime.now()));
+        assertThatThrownBy(() -> transactionArchive.findById(95L)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void referenceCodesStayUniqueWithoutAUniqueIndexOnTransactions() {
+        TransactionDTO created = transactionService.createTransaction(1L, transfer("REF-1"));
+        transactionService.createTransaction(1L, transfer(null));
+        transactionService.createTransaction(1L, transfer(null));
+
+        assertThat(transactionService.createTransaction(1L, transfer("REF-1")).id()).isEqualTo(created.id());
+        assertThatThrownBy(() -> jdbcTemplate.update(
+                "INSERT INTO transaction_references (reference_code, transaction_id) VALUES ('REF-1', ?)", created.id() + 100))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    void referenceWrittenBehindTheFiltersBackReturnsTheExistingTransaction() {
+        referenceCodeFilter.rebuild();
+        TransactionDTO existing = transactionService.createTransaction(1L, transfer(null));
+        // Request khác (node khác) vừa ghi mã này: filter của node này vẫn cho là mã mới và đi thẳng tới INSERT
+        jdbcTemplate.update("INSERT INTO transaction_references (reference_code, transaction_id) VALUES ('REF-RACE', ?)",
+                existing.id());
+        assertThat(referenceCodeFilter.mightContain("REF-RACE")).isFalse();
+
+        assertThat(transactionService.createTransaction(1L, transfer("REF-RACE")).id()).isEqualTo(existing.id());
+        TransactionDTO other = new TransactionDTO(null, 10L, 20L, new BigDecimal("6.00"), "USD", "TRANSFER", null,
+                "REF-RACE", null, null, null);
+        assertThatThrownBy(() -> transactionService.createTransaction(1L, other)).hasMessage("Reference code already used");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void partitionDdlCoversMonthsAndPremakesFromPmax() {
+        assertThat(TransactionPartitionManager.partitionTableSql(YearMonth.of(2026, 11), YearMonth.of(2027, 1)))
+                .isEqualTo("ALTER TABLE transactions PARTITION BY RANGE COLUMNS(created_at) ("
+                        + "PARTITION p202611 VALUES LESS THAN ('2026-12-01 00:00:00'), "
+                        + "PARTITION p202612 VALUES LESS THAN ('2027-01-01 00:00:00'), "
+                        + "PARTITION p202701 VALUES LESS THAN ('2027-02-01 00:00:00'), "
+                        + "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+
+        List<String> existing = List.of("p202610", "p202611", "pmax");
+        assertThat(TransactionPartitionManager.addPartitionsSql(existing, YearMonth.of(2027, 1)))
+                .contains("ALTER TABLE transactions REORGANIZE PARTITION pmax INTO ("
+                        + "PARTITION p202612 VALUES LESS THAN ('2027-01-01 00:00:00'), "
+                        + "PARTITION p202701 VALUES LESS THAN ('2027-02-01 00:00:00'), "
+                        + "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+        assertThat(TransactionPartitionManager.addPartitionsSql(existing, YearMonth.of(2026, 11))).isEmpty();
+
+        assertThat(TransactionPartitionManager.partitionsBefore(List.of("p202512", "p202510", "p202611", "pmax"),
+                YearMonth.of(2026, 1))).containsExactly("p202510", "p202512");
+    }
+
+    private Path writeArchive(String name, Transaction row) throws IOException {
+        Path file = directory.resolve(name + TransactionArchiveFile.EXTENSION);
+        try (TransactionArchiveFile.Writer writer = TransactionArchiveFile.create(file)) {
+            writer.append(row);
+        }
+        return file;
+    }
+
+    private static Transaction archived(Long id) {
+        Transaction archived = new Transaction();
+        archived.setId(id);
+        archived.setFromAccountId(10L);
+        archived.setToAccountId(20L);
+        archived.setCurrency("USD");
+        archived.setAmount(Money.ofMinor(1_250, "USD"));
+        archived.setTransactionType("TRANSFER");
+        archived.setStatus("COMPLETED");
+        archived.setReferenceCode("OLD-" + id);
+        archived.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30));
+        archived.setCompletedAt(LocalDateTime.of(2024, 1, 15, 10, 31));
+        return archived;
+    }
+
+    private static TransactionDTO transfer(String referenceCode) {
+        return new TransactionDTO(null, 10L, 20L, new BigDecimal("5.00"), "USD", "TRANSFER", null,
+                referenceCode, null, null, null);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.event.TransactionBatchCreated;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "transactions.bulk.chunk-size=3",
+        "transactions.bulk.batch-size=2",
+        "transactions.bulk.validation-threads=2",
+        "transactions.velocity.enabled=true",
+        "transactions.velocity.limits.DEFAULT.day.amount=1000.00"
+})
+@Import({TransactionBulkIngestService.class, TransactionService.class, TransactionArchive.class,
+        ReferenceCodeFilter.class, TransactionStatusCounts.class, VelocityLimiter.class,
+        JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionBulkIngestServiceTest {
+
+    @Autowired
+    private TransactionBulkIngestService bulkIngestService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ReferenceCodeFilter referenceCodeFilter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AccountOwnerBackfill accountOwnerBackfill;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM transaction_references");
+        jdbcTemplate.update("DELETE FROM account_owners");
+        jdbcTemplate.update("INSERT INTO account_owners (account_id, user_id) VALUES (10, 1)");
+        referenceCodeFilter.rebuild();
+    }
+
+    @Test
+    void insertsValidRowsPerChunkAndReportsEveryLineInOrder() throws IOException {
+        String file = String.join("\n",
+                row("P-1", "10.00"),
+                row("P-2", "20.00"),
+                "{not json",
+                "",
+                "{\"fromAccountId\":10,\"toAccountId\":20,\"amount\":1.00,\"transactionType\":\"TRANSFER\"}",
+                row("P-1", "10.00"),
+                row("P-2", "99.00"),
+                row("P-3", "0.001"),
+                row("P-4", "40.00"));
+
+        List<JsonNode> results = ingest(file);
+
+        assertThat(results).extracting(r -> r.get("line").asLong()).containsExactly(1L, 2L, 3L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(results).extracting(r -> r.get("status").asText()).containsExactly(
+                "CREATED", "CREATED", "REJECTED", "REJECTED", "EXISTING", "REJECTED", "REJECTED", "CREATED");
+        assertThat(results.get(2).get("error").asText()).isEqualTo("Invalid JSON");
+        assertThat(results.get(3).get("error").asText()).isEqualTo("Reference code is required");
+        assertThat(results.get(4).get("id").asLong()).isEqualTo(results.get(0).get("id").asLong());
+        assertThat(results.get(5).get("error").asText()).isEqualTo("Reference code already used");
+        assertThat(results.get(6).get("error").asText()).isEqualTo("Invalid amount: 0.001");
+
+        assertThat(count("transactions")).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT transaction_id FROM transaction_references WHERE reference_code = 'P-4'",
+                Long.class)).isEqualTo(results.get(7).get("id").asLong());
+        // Một event cho mỗi chunk có dòng mới (chunk 1: P-1, P-2; chunk 3: P-4), không phải một event mỗi dòng
+        List<String> payloads = jdbcTemplate.queryForList("SELECT payload FROM outbox_events WHERE message_key = ? " +
+                "ORDER BY id", String.class, TransactionBatchCreated.KEY);
+        assertThat(payloads).hasSize(2);
+        TransactionBatchCreated first = objectMapper.readValue(payloads.get(0), TransactionBatchCreated.class);
+        assertThat(first.transactions()).extracting(TransactionBatchCreated.Item::referenceCode).containsExactly("P-1", "P-2");
+        assertThat(payloads.get(0)).doesNotContain("description");
+        assertThat(count("outbox_events")).isEqualTo(2);
+    }
+
+    @Test
+    void resentFileReturnsExistingTransactionsWithoutNewEvents() throws IOException {
+        TransactionDTO single = transactionService.createTransaction(1L, new TransactionDTO(null, 10L, 20L,
+                new BigDecimal("5.00"), "USD", "TRANSFER", null, "P-9", null, null, null));
+        referenceCodeFilter.rebuild();
+        String file = String.join("\n", row("P-1", "10.00"), row("P-2", "20.00"), row("P-9", "5.00"), row("P-9", "6.00"));
+        List<JsonNode> first = ingest(file);
+        int events = count("outbox_events");
+
+        List<JsonNode> resent = ingest(file);
+
+        assertThat(first).extracting(r -> r.get("status").asText())
+                .containsExactly("CREATED", "CREATED", "EXISTING", "REJECTED");
+        assertThat(first.get(2).get("id").asLong()).isEqualTo(single.id());
+        assertThat(resent).extracting(r -> r.get("status").asText())
+                .containsExactly("EXISTING", "EXISTING", "EXISTING", "REJECTED");
+        assertThat(resent).extracting(r -> r.get("id").asText()).isEqualTo(first.stream().map(r -> r.get("id").asText()).toList());
+        assertThat(count("transactions")).isEqualTo(3);
+        assertThat(count("outbox_events")).isEqualTo(events);
+    }
+
+    @Test
+    void rowsMustComeFromTheUploadersAccountsAndStayWithinVelocityLimits() throws IOException {
+        // User 1 có tài khoản 10, 11; tài khoản 30 của user 2; tài khoản 99 chưa biết chủ
+        jdbcTemplate.update("INSERT INTO account_owners (account_id, user_id) VALUES (11, 1), (30, 2)");
+        String file = String.join("\n",
+                row("V-1", 11L, "600.00"),
+                row("V-2", 30L, "5.00"),
+                row("V-3", 99L, "5.00"),
+                row("V-4", null, "5.00"),
+                row("V-5", 11L, "600.00"),
+                row("V-1", 11L, "600.00"));
+
+        List<JsonNode> results = ingest(file);
+
+        assertThat(results).extracting(r -> r.get("status").asText()).containsExactly(
+                "CREATED", "REJECTED", "REJECTED", "REJECTED", "REJECTED", "EXISTING");
+        assertThat(results.get(1).get("error").asText()).isEqualTo("Access denied");
+        assertThat(results.get(2).get("error").asText()).isEqualTo("Access denied");
+        assertThat(results.get(3).get("error").asText()).isEqualTo("Transaction must have both accounts");
+        assertThat(results.get(4).get("error").asText()).startsWith("Velocity limit exceeded");
+        // Lặp lại ở chunk sau được tìm thấy qua DB
+        assertThat(results.get(5).get("id").asLong()).isEqualTo(results.get(0).get("id").asLong());
+        assertThat(jdbcTemplate.queryForList("SELECT created_by FROM transactions", Long.class)).containsExactly(1L);
+    }
+
+    private List<JsonNode> ingest(String file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkIngestService.ingest(1L, new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)), out);
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+
+    private Integer count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private static String row(String referenceCode, String amount) {
+        return row(referenceCode, 10L, amount);
+    }
+
+    private static String row(String referenceCode, Long from, String amount) {
+        return "{\"fromAccountId\":" + from + ",\"toAccountId\":20,\"amount\":" + amount + ",\"currency\":\"USD\","
+                + "\"transactionType\":\"TRANSFER\",\"referenceCode\":\"" + referenceCode + "\"}";
+    }
+}
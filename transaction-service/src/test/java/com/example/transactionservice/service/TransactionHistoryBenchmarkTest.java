@@ -0,0 +1,131 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.dto.TransactionPageDTO;
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lịch sử giao dịch trên bảng lớn (H2 in-memory, mặc định 500k dòng):
+ * trang 1 và trang 500 của một tài khoản bận bằng keyset so với LIMIT/OFFSET trên cùng index.
+ * Số dòng chỉnh bằng -Dhistory.bench.rows (ví dụ 3000000 cho bảng vài triệu dòng).
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({TransactionService.class, TransactionArchive.class, ReferenceCodeFilter.class, TransactionStatusCounts.class,
+        VelocityLimiter.class, JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionHistoryBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("history.bench.rows", 500_000);
+    private static final int HOT_ROWS = ROWS / 10;
+    private static final int ACCOUNTS = 20_000;
+    private static final long HOT_ACCOUNT = 1L;
+    private static final int PAGE_SIZE = 50;
+    private static final int PAGE = 500;
+    private static final int REPEATS = 50;
+
+    private static final String OFFSET_SQL = "SELECT * FROM transactions WHERE from_account_id = ? " +
+            "ORDER BY from_account_id, created_at DESC, id DESC LIMIT ? OFFSET ?";
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AccountOwnerBackfill accountOwnerBackfill;
+
+    @Test
+    void keysetPageCostDoesNotGrowWithDepth() {
+        seed();
+
+        // Đi qua 499 trang để lấy cursor của trang 500
+        TransactionPageDTO first = transactionService.getSentTransactions(1L, null, PAGE_SIZE);
+        String cursor = first.nextCursor();
+        for (int page = 2; page < PAGE; page++) {
+            cursor = transactionService.getSentTransactions(1L, cursor, PAGE_SIZE).nextCursor();
+        }
+        String deepCursor = cursor;
+        TransactionPageDTO deep = transactionService.getSentTransactions(1L, deepCursor, PAGE_SIZE);
+        List<Map<String, Object>> offsetDeep = jdbcTemplate.queryForList(OFFSET_SQL, HOT_ACCOUNT, PAGE_SIZE,
+                (PAGE - 1) * PAGE_SIZE);
+        assertThat(deep.items().get(0).id()).isEqualTo(((Number) offsetDeep.get(0).get("ID")).longValue());
+
+        double keysetFirst = measure(() -> transactionService.getSentTransactions(1L, null, PAGE_SIZE));
+        double keysetDeep = measure(() -> transactionService.getSentTransactions(1L, deepCursor, PAGE_SIZE));
+        double offsetFirst = measure(() -> jdbcTemplate.queryForList(OFFSET_SQL, HOT_ACCOUNT, PAGE_SIZE, 0));
+        double offsetPage = measure(() -> jdbcTemplate.queryForList(OFFSET_SQL, HOT_ACCOUNT, PAGE_SIZE,
+                (PAGE - 1) * PAGE_SIZE));
+
+        log.info("{} rows, hot account {} rows: keyset page 1 {} ms, page {} {} ms; OFFSET page 1 {} ms, page {} {} ms",
+                ROWS, HOT_ROWS, format(keysetFirst), PAGE, format(keysetDeep), format(offsetFirst), PAGE, format(offsetPage));
+        assertThat(keysetDeep).isLessThan(offsetPage);
+    }
+
+    private static String format(double millis) {
+        return String.format("%.2f", millis);
+    }
+
+    private double measure(Supplier<?> query) {
+        for (int i = 0; i < REPEATS; i++) {
+            query.get();
+        }
+        long began = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - began) / 1e6 / REPEATS;
+    }
+
+    private void seed() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        accountOwnerRepository.deleteAll();
+        accountOwnerRepository.save(new AccountOwner(HOT_ACCOUNT, 1L));
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < ROWS; i++) {
+            long from = i % 10 == 0 ? HOT_ACCOUNT : 2 + random.nextInt(ACCOUNTS);
+            long to = 2 + random.nextInt(ACCOUNTS);
+            batch.add(new Object[]{from, to, Timestamp.valueOf(start.plusSeconds(i * 5L))});
+            if (batch.size() == 10_000) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, from_account_id, to_account_id, amount, currency, " +
+                "transaction_type, status, created_at) VALUES ((SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), ?, ?, 10.00, 'USD', 'TRANSFER', 'COMPLETED', ?)", batch);
+        batch.clear();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.dto.TransactionPageDTO;
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({TransactionService.class, TransactionArchive.class, ReferenceCodeFilter.class, TransactionStatusCounts.class,
+        VelocityLimiter.class, JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionHistoryTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AccountOwnerBackfill accountOwnerBackfill;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        accountOwnerRepository.deleteAll();
+        // User 1 có tài khoản 10, 11; user 2 có tài khoản 20
+        accountOwnerRepository.saveAll(List.of(new AccountOwner(10L, 1L), new AccountOwner(11L, 1L),
+                new AccountOwner(20L, 2L)));
+        for (int i = 0; i < 30; i++) {
+            // Nhiều giao dịch trùng created_at để kiểm tra thứ tự phụ theo id
+            LocalDateTime createdAt = BASE.plusMinutes(i / 3);
+            insert(10L, 20L, createdAt);
+            insert(20L, 11L, createdAt);
+            insert(10L, 11L, createdAt);
+        }
+    }
+
+    @Test
+    void keysetPagesCoverHistoryWithoutGapsOrDuplicates() {
+        List<TransactionDTO> all = readAll(cursor -> transactionService.getUserTransactions(1L, cursor, 7));
+
+        assertThat(all).hasSize(90);
+        assertThat(all).extracting(TransactionDTO::id).doesNotHaveDuplicates();
+        for (int i = 1; i < all.size(); i++) {
+            TransactionDTO previous = all.get(i - 1);
+            TransactionDTO current = all.get(i);
+            assertThat(previous.createdAt().isAfter(current.createdAt())
+                    || previous.createdAt().equals(current.createdAt()) && previous.id() > current.id()).isTrue();
+        }
+    }
+
+    @Test
+    void sentAndReceivedOnlyFollowTheirDirection() {
+        List<TransactionDTO> sent = readAll(cursor -> transactionService.getSentTransactions(1L, cursor, 50));
+        List<TransactionDTO> received = readAll(cursor -> transactionService.getReceivedTransactions(1L, cursor, 50));
+        List<TransactionDTO> otherUser = readAll(cursor -> transactionService.getUserTransactions(2L, cursor, 50));
+
+        assertThat(sent).hasSize(60).allMatch(t -> t.fromAccountId() == 10L);
+        assertThat(received).hasSize(60).allMatch(t -> t.toAccountId() == 11L);
+        assertThat(otherUser).hasSize(60);
+        assertThat(transactionService.getUserTransactions(3L, null, 50).items()).isEmpty();
+    }
+
+    @Test
+    void statusPagesOnlyReturnThatStatusNewestFirst() {
+        jdbcTemplate.update("UPDATE transactions SET status = 'FAILED' WHERE from_account_id = 20");
+
+        List<TransactionDTO> completed = readAll(cursor -> transactionService.getTransactionsByStatus("COMPLETED", cursor, 7));
+        List<TransactionDTO> failed = readAll(cursor -> transactionService.getTransactionsByStatus("FAILED", cursor, 500));
+
+        assertThat(completed).hasSize(60).allMatch(t -> t.status().equals("COMPLETED"));
+        assertThat(completed).extracting(TransactionDTO::id).doesNotHaveDuplicates();
+        for (int i = 1; i < completed.size(); i++) {
+            TransactionDTO previous = completed.get(i - 1);
+            TransactionDTO current = completed.get(i);
+            assertThat(previous.createdAt().isAfter(current.createdAt())
+                    || previous.createdAt().equals(current.createdAt()) && previous.id() > current.id()).isTrue();
+        }
+        assertThat(failed).hasSize(30).allMatch(t -> t.fromAccountId() == 20L);
+        assertThat(transactionService.getTransactionsByStatus("PENDING", null, 10).items()).isEmpty();
+    }
+
+    @Test
+    void singleTransactionRequiresParticipant() {
+        Long id = transactionService.getSentTransactions(1L, null, 1).items().get(0).id();
+
+        assertThat(transactionService.getTransactionById(1L, id).id()).isEqualTo(id);
+        assertThatThrownBy(() -> transactionService.getTransactionById(3L, id)).hasMessage("Access denied");
+        assertThatThrownBy(() -> transactionService.getUserTransactions(1L, "not-a-cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void accountWithUnknownOwnerIsDeniedUntilItsOwnerIsKnown() {
+        // Tài khoản 40 chưa được backfill vào account_owners và account-service không trả lời: từ chối
+        insert(40L, 20L, BASE);
+        Long id = readAll(cursor -> transactionService.getUserTransactions(2L, cursor, 500)).stream()
+                .filter(t -> t.fromAccountId() == 40L)
+                .findFirst().orElseThrow().id();
+
+        assertThatThrownBy(() -> transactionService.getTransactionById(4L, id)).hasMessage("Access denied");
+
+        accountOwnerRepository.save(new AccountOwner(40L, 4L));
+        assertThat(transactionService.getTransactionById(4L, id).id()).isEqualTo(id);
+        assertThatThrownBy(() -> transactionService.getTransactionById(3L, id)).hasMessage("Access denied");
+    }
+
+    private List<TransactionDTO> readAll(Function<String, TransactionPageDTO> pages) {
+        List<TransactionDTO> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            TransactionPageDTO page = pages.apply(cursor);
+            all.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    private void insert(Long from, Long to, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, currency, " +
+                        "transaction_type, status, created_at) VALUES ((SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), ?, ?, 10.00, 'USD', 'TRANSFER', 'COMPLETED', ?)",
+                from, to, Timestamp.valueOf(createdAt));
+    }
+}
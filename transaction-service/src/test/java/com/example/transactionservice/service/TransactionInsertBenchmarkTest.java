@@ -0,0 +1,220 @@
+package com.example.transactionservice.service;
+
+import com.example.common.money.Money;
+import com.example.common.sequence.IdSequenceInitializer;
+import com.example.transactionservice.model.Transaction;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ghi giao dịch qua Hibernate (H2 in-memory): id AUTO_INCREMENT (IDENTITY, mỗi persist một câu INSERT)
+ * so với id theo khối từ number_sequences (INSERT gom batch). Round trip đếm ở tầng JDBC:
+ * mỗi lần execute/executeBatch/commit là một lượt gửi tới DB.
+ * Lợi ích là số round trip x độ trễ mạng: H2 in-memory không có độ trễ nên chạy với latency-us=0 hai cách
+ * mất thời gian như nhau (thời gian khi đó là CPU của Hibernate/H2). Vì vậy mặc định giả lập 250us mỗi round trip
+ * (MySQL cùng datacenter); chỉnh bằng -Did.bench.latency-us và số dòng bằng -Did.bench.rows.
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionInsertBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("id.bench.rows", 20_000);
+    private static final long LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("id.bench.latency-us", 250));
+    private static final int CHUNK = 1000;
+    private static final AtomicLong ROUND_TRIPS = new AtomicLong();
+    private static final Set<String> ROUND_TRIP_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch", "commit");
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pooledIdsBatchInsertsIntoFarFewerRoundTrips() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        // Bảng đã có dữ liệu cũ cấp bằng AUTO_INCREMENT: id mới phải bắt đầu sau id lớn nhất
+        jdbcTemplate.update("INSERT INTO transactions (id, amount, currency, transaction_type, status, created_at) " +
+                "VALUES (5000, 1.00, 'USD', 'DEPOSIT', 'COMPLETED', CURRENT_TIMESTAMP)");
+        new IdSequenceInitializer(jdbcTemplate, List.of("transactions")).afterSingletonsInstantiated();
+
+        long[] identity = run(i -> entityManager.persist(new IdentityTransaction(i)));
+        long[] pooled = run(i -> entityManager.persist(transaction(i)));
+
+        log.info("{} inserts, {} us per round trip: IDENTITY {} round trips in {} ms; pooled ids + batching {} round trips in {} ms",
+                ROWS, TimeUnit.NANOSECONDS.toMicros(LATENCY_NANOS), identity[0], identity[1], pooled[0], pooled[1]);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT id) FROM transactions", Long.class))
+                .isEqualTo(ROWS + 1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT MIN(id) FROM transactions WHERE id <> 5000", Long.class))
+                .isGreaterThan(5000L);
+        assertThat(pooled[0]).isLessThan(identity[0] / 10);
+        if (LATENCY_NANOS > 0) {
+            assertThat(pooled[1]).isLessThan(identity[1]);
+        }
+    }
+
+    /**
+     * Ghi ROWS dòng theo từng chunk một transaction, trả về {round trip, ms}
+     */
+    private long[] run(IntConsumer persist) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long roundTripsBefore = ROUND_TRIPS.get();
+        long began = System.nanoTime();
+        for (int start = 0; start < ROWS; start += CHUNK) {
+            int from = start;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = from; i < Math.min(from + CHUNK, ROWS); i++) {
+                    persist.accept(i);
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+        return new long[]{ROUND_TRIPS.get() - roundTripsBefore,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began)};
+    }
+
+    private static Transaction transaction(int i) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccountId((long) (i % 1000) + 1);
+        transaction.setToAccountId((long) (i % 997) + 1);
+        transaction.setAmount(Money.of(new BigDecimal("10.00"), "USD"));
+        transaction.setCurrency("USD");
+        transaction.setTransactionType("TRANSFER");
+        transaction.setStatus("PENDING");
+        return transaction;
+    }
+
+    /**
+     * Bản sao tối giản của Transaction với id AUTO_INCREMENT như trước
+     */
+    @Entity
+    @Table(name = "bench_identity_transactions", indexes = {
+            @Index(name = "idx_bench_identity_from_created", columnList = "from_account_id, created_at DESC, id DESC"),
+            @Index(name = "idx_bench_identity_to_created", columnList = "to_account_id, created_at DESC, id DESC"),
+            @Index(name = "idx_bench_identity_status", columnList = "status, created_at, id")
+    })
+    @Getter
+    @NoArgsConstructor
+    static class IdentityTransaction {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        @Column(name = "from_account_id")
+        private Long fromAccountId;
+
+        @Column(name = "to_account_id")
+        private Long toAccountId;
+
+        @Column(name = "amount", nullable = false)
+        private BigDecimal amount;
+
+        @Column(name = "currency", nullable = false)
+        private String currency;
+
+        @Column(name = "transaction_type", nullable = false)
+        private String transactionType;
+
+        @Column(name = "status", nullable = false)
+        private String status;
+
+        @Column(name = "created_at", nullable = false)
+        private LocalDateTime createdAt;
+
+        IdentityTransaction(int i) {
+            this.fromAccountId = (long) (i % 1000) + 1;
+            this.toAccountId = (long) (i % 997) + 1;
+            this.amount = new BigDecimal("10.00");
+            this.currency = "USD";
+            this.transactionType = "TRANSFER";
+            this.status = "PENDING";
+            this.createdAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Bọc DataSource để đếm round trip của Connection/Statement
+     */
+    @TestConfiguration
+    static class RoundTripCounting {
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return counting(DataSource.class, dataSource);
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T counting(Class<T> type, T target) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (ROUND_TRIP_METHODS.contains(method.getName())) {
+                    ROUND_TRIPS.incrementAndGet();
+                    if (LATENCY_NANOS > 0) {
+                        LockSupport.parkNanos(LATENCY_NANOS);
+                    }
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Connection || result instanceof Statement) {
+                    return counting((Class<Object>) method.getReturnType(), result);
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({TransactionService.class, AccountOwnerBackfill.class, TransactionArchive.class, ReferenceCodeFilter.class,
+        TransactionStatusCounts.class, VelocityLimiter.class, JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionOwnershipTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AccountServiceClient accountServiceClient;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM transactions");
+        accountOwnerRepository.deleteAll();
+        // Chỉ tài khoản nhận 20 đã có trong account_owners; tài khoản gửi 10 chưa được backfill
+        accountOwnerRepository.save(new AccountOwner(20L, 2L));
+    }
+
+    @Test
+    void missingOwnerIsLookedUpBeforeCancelling() {
+        Long id = insert(10L, 20L);
+        when(accountServiceClient.owner(10L)).thenReturn(Optional.of(
+                new AccountServiceClient.AccountOwnerRecord(10L, 1L, "SAVINGS")));
+
+        assertThatThrownBy(() -> transactionService.cancelTransaction(3L, id)).hasMessage("Access denied");
+        // Người nhận sở hữu tài khoản nhận nhưng không được hủy
+        assertThatThrownBy(() -> transactionService.cancelTransaction(2L, id)).hasMessage("Access denied");
+
+        transactionService.cancelTransaction(1L, id);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM transactions WHERE id = ?", String.class, id))
+                .isEqualTo("CANCELLED");
+    }
+
+    @Test
+    void unknownOwnerIsDeniedWhenAccountServiceCannotAnswer() {
+        Long id = insert(10L, 20L);
+        when(accountServiceClient.owner(anyLong())).thenThrow(new IllegalStateException("account-service unavailable"));
+
+        assertThatThrownBy(() -> transactionService.cancelTransaction(1L, id)).hasMessage("Access denied");
+        assertThatThrownBy(() -> transactionService.getTransactionById(1L, id)).hasMessage("Access denied");
+        // Chủ đã biết của tài khoản còn lại vẫn xem được
+        assertThat(transactionService.getTransactionById(2L, id).id()).isEqualTo(id);
+
+        // Tài khoản không có ở account-service: cũng từ chối
+        doReturn(Optional.empty()).when(accountServiceClient).owner(anyLong());
+        assertThatThrownBy(() -> transactionService.cancelTransaction(1L, id)).hasMessage("Access denied");
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM transactions WHERE id = ?", String.class, id))
+                .isEqualTo("PENDING");
+    }
+
+    @Test
+    void onlyTheSourceOwnerCreatesTransfersWithBothAccounts() {
+        when(accountServiceClient.owner(10L)).thenReturn(Optional.of(
+                new AccountServiceClient.AccountOwnerRecord(10L, 1L, "SAVINGS")));
+
+        // Chủ tài khoản nhận không chuyển được tiền ra khỏi tài khoản gửi của người khác
+        assertThatThrownBy(() -> transactionService.createTransaction(2L, transfer(10L, 20L)))
+                .hasMessage("Access denied");
+        assertThatThrownBy(() -> transactionService.createTransaction(2L, transfer(null, 20L)))
+                .hasMessage("Transaction must have both accounts");
+        assertThatThrownBy(() -> transactionService.createTransaction(1L, transfer(10L, null)))
+                .hasMessage("Transaction must have both accounts");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class)).isZero();
+
+        TransactionDTO created = transactionService.createTransaction(1L, transfer(10L, 20L));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT created_by FROM transactions WHERE id = ?", Long.class,
+                created.id())).isEqualTo(1L);
+    }
+
+    private static TransactionDTO transfer(Long from, Long to) {
+        return new TransactionDTO(null, from, to, new BigDecimal("5.00"), "USD", "TRANSFER", null, null, null, null, null);
+    }
+
+    private Long insert(Long from, Long to) {
+        jdbcTemplate.update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, currency, " +
+                "transaction_type, status, created_at) VALUES (42, ?, ?, 5.00, 'USD', 'TRANSFER', 'PENDING', ?)",
+                from, to, Timestamp.valueOf(LocalDateTime.now()));
+        return 42L;
+    }
+}
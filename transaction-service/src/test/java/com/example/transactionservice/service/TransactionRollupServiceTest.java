@@ -0,0 +1,196 @@
+package com.example.transactionservice.service;
+
+import com.example.common.money.Money;
+import com.example.transactionservice.dto.TransactionVolumeDTO;
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.model.Transaction;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({TransactionRollupService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionRollupServiceTest {
+
+    private static final LocalDate FIRST = LocalDate.of(2026, 10, 1);
+
+    @Autowired
+    private TransactionRollupService rollupService;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long offset;
+
+    @BeforeEach
+    void setUp() {
+        // Mỗi test bắt đầu với topic một partition và buffer rỗng (release flush phần còn lại trước khi xóa bảng)
+        rollupService.idle(0, 0, 1, FIRST.atStartOfDay());
+        rollupService.release(List.of(0, 1));
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM transaction_daily_rollups");
+        jdbcTemplate.update("DELETE FROM transaction_rollup_state");
+        accountOwnerRepository.deleteAll();
+        accountOwnerRepository.save(new AccountOwner(10L, 1L));
+        accountOwnerRepository.save(new AccountOwner(20L, 2L));
+        offset = 0;
+    }
+
+    @Test
+    void combinesSealedDayRollupsWithATailScanExactly() {
+        created(10L, 20L, "TRANSFER", "10.00", FIRST.atTime(8, 0));
+        created(10L, 20L, "TRANSFER", "5.00", FIRST.plusDays(1).atTime(9, 0));
+        created(10L, 20L, "TRANSFER", "7.50", FIRST.plusDays(1).atTime(10, 0));
+        created(10L, null, "WITHDRAW", "20.00", FIRST.plusDays(2).atTime(11, 0));
+        rollupService.record(0, offset++, null);
+        created(10L, 20L, "TRANSFER", "1.00", FIRST.plusDays(3).atTime(12, 0));
+        rollupService.flush();
+        // Đã ghi vào bảng nhưng event chưa tới: nằm trong ngày chưa chốt nên vẫn được đếm nhờ quét bảng
+        insertRow(10L, 20L, "TRANSFER", "2.00", FIRST.plusDays(3).atTime(13, 0));
+
+        List<TransactionVolumeDTO> sent = rollupService.volume(1L, 10L, TransactionRollupService.SENT, FIRST, FIRST.plusDays(3));
+        assertVolume(sent.get(0), "TRANSFER", 5, "25.50", "1.00", "10.00");
+        assertVolume(sent.get(1), "WITHDRAW", 1, "20.00", "20.00", "20.00");
+
+        // Ngày đã chốt được đọc từ rollup, không quét lại bảng
+        jdbcTemplate.update("DELETE FROM transactions WHERE created_at >= ? AND created_at < ?",
+                Timestamp.valueOf(FIRST.plusDays(1).atStartOfDay()), Timestamp.valueOf(FIRST.plusDays(2).atStartOfDay()));
+        assertThat(rollupService.volume(1L, 10L, TransactionRollupService.SENT, FIRST, FIRST.plusDays(3))).isEqualTo(sent);
+
+        List<TransactionVolumeDTO> received = rollupService.volume(2L, 20L, TransactionRollupService.RECEIVED,
+                FIRST.plusDays(3), FIRST.plusDays(3));
+        assertVolume(received.get(0), "TRANSFER", 2, "3.00", "1.00", "2.00");
+    }
+
+    @Test
+    void redeliveredEventsAreNotCountedTwice() {
+        created(10L, 20L, "TRANSFER", "10.00", FIRST.atTime(8, 0));
+        created(10L, 20L, "TRANSFER", "5.00", FIRST.atTime(9, 0));
+        rollupService.flush();
+
+        rollupService.release(List.of(0));
+        assertThat(rollupService.loadOffsets(List.of(0, 1))).containsEntry(0, 2L).doesNotContainKey(1);
+        rollupService.record(0, 1, transaction(10L, 20L, "TRANSFER", "5.00", FIRST.atTime(9, 0)));
+        rollupService.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT tx_count FROM transaction_daily_rollups " +
+                "WHERE account_id = 10 AND direction = 'SENT'", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT next_offset FROM transaction_rollup_state", Long.class)).isEqualTo(2);
+    }
+
+    @Test
+    void batchEventCountsEveryTransactionOnce() {
+        List<Transaction> batch = List.of(
+                transaction(10L, 20L, "TRANSFER", "10.00", FIRST.atTime(8, 0)),
+                transaction(10L, 20L, "TRANSFER", "5.00", FIRST.atTime(9, 0)));
+        rollupService.recordAll(0, 0, batch);
+        rollupService.recordAll(0, 0, batch);
+        rollupService.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT tx_count FROM transaction_daily_rollups " +
+                "WHERE account_id = 20 AND direction = 'RECEIVED'", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT next_offset FROM transaction_rollup_state", Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    void idlePartitionDoesNotHoldBackSealing() {
+        created(10L, 20L, "TRANSFER", "10.00", FIRST.atTime(8, 0));
+        created(10L, 20L, "TRANSFER", "5.00", FIRST.plusDays(1).atTime(9, 0));
+        created(10L, 20L, "TRANSFER", "1.00", FIRST.plusDays(3).atTime(12, 0));
+        // Partition 1 chỉ có một giao dịch ngày đầu rồi không còn event nào
+        insertRow(10L, 20L, "TRANSFER", "2.00", FIRST.atTime(9, 0));
+        rollupService.record(1, 0, transaction(10L, 20L, "TRANSFER", "2.00", FIRST.atTime(9, 0)));
+        rollupService.flush();
+        jdbcTemplate.update("DELETE FROM transactions WHERE created_at >= ? AND created_at < ?",
+                Timestamp.valueOf(FIRST.plusDays(1).atStartOfDay()), Timestamp.valueOf(FIRST.plusDays(2).atStartOfDay()));
+
+        // Watermark của partition 1 còn ở ngày đầu: chưa ngày nào chốt, mọi ngày đều quét bảng
+        assertThat(rollupService.volume(1L, 10L, TransactionRollupService.SENT, FIRST, FIRST.plusDays(3)).get(0).count())
+                .isEqualTo(3);
+
+        rollupService.idle(1, 1, 2, FIRST.plusDays(3).atTime(12, 0));
+        rollupService.flush();
+        // Ngày thứ hai đã chốt nên đọc từ rollup (dòng trong bảng đã bị xóa)
+        assertThat(rollupService.volume(1L, 10L, TransactionRollupService.SENT, FIRST, FIRST.plusDays(3)).get(0).count())
+                .isEqualTo(4);
+        assertThat(jdbcTemplate.queryForObject("SELECT next_offset FROM transaction_rollup_state WHERE partition_id = 1",
+                Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    void partitionWithoutStateRowKeepsDaysUnsealed() {
+        created(10L, 20L, "TRANSFER", "10.00", FIRST.atTime(8, 0));
+        created(10L, 20L, "TRANSFER", "5.00", FIRST.plusDays(1).atTime(9, 0));
+        created(10L, 20L, "TRANSFER", "1.00", FIRST.plusDays(3).atTime(12, 0));
+        // Topic có hai partition, partition 1 chưa từng có event hay heartbeat
+        rollupService.idle(0, offset, 2, FIRST.plusDays(3).atTime(12, 0));
+        rollupService.flush();
+        jdbcTemplate.update("DELETE FROM transactions WHERE created_at >= ? AND created_at < ?",
+                Timestamp.valueOf(FIRST.plusDays(1).atStartOfDay()), Timestamp.valueOf(FIRST.plusDays(2).atStartOfDay()));
+
+        assertThat(rollupService.volume(1L, 10L, TransactionRollupService.SENT, FIRST, FIRST.plusDays(3)).get(0).count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void rejectsForeignAccountsAndBadRanges() {
+        assertThatThrownBy(() -> rollupService.volume(2L, 10L, TransactionRollupService.SENT, FIRST, FIRST))
+                .hasMessage("Access denied");
+        assertThatThrownBy(() -> rollupService.volume(1L, 10L, "BOTH", FIRST, FIRST))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rollupService.volume(1L, 10L, TransactionRollupService.SENT, FIRST.plusDays(1), FIRST))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(rollupService.volume(1L, 10L, TransactionRollupService.SENT, FIRST, FIRST)).isEmpty();
+    }
+
+    private void created(Long from, Long to, String type, String amount, LocalDateTime createdAt) {
+        insertRow(from, to, type, amount, createdAt);
+        rollupService.record(0, offset++, transaction(from, to, type, amount, createdAt));
+    }
+
+    private void insertRow(Long from, Long to, String type, String amount, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, currency, transaction_type, " +
+                        "status, created_at) VALUES ((SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), ?, ?, ?, 'USD', ?, 'PENDING', ?)",
+                from, to, new BigDecimal(amount), type, Timestamp.valueOf(createdAt));
+    }
+
+    private static Transaction transaction(Long from, Long to, String type, String amount, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccountId(from);
+        transaction.setToAccountId(to);
+        transaction.setAmount(Money.of(new BigDecimal(amount), "USD"));
+        transaction.setCurrency("USD");
+        transaction.setTransactionType(type);
+        transaction.setStatus("PENDING");
+        transaction.setCreatedAt(createdAt);
+        return transaction;
+    }
+
+    private static void assertVolume(TransactionVolumeDTO volume, String type, long count, String total, String min, String max) {
+        assertThat(volume.transactionType()).isEqualTo(type);
+        assertThat(volume.count()).isEqualTo(count);
+        assertThat(volume.total()).isEqualByComparingTo(total);
+        assertThat(volume.min()).isEqualByComparingTo(min);
+        assertThat(volume.max()).isEqualByComparingTo(max);
+    }
+}
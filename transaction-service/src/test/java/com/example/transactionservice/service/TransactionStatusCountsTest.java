@@ -0,0 +1,132 @@
+package com.example.transactionservice.service;
+
+import com.example.transactionservice.dto.TransactionDTO;
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({TransactionService.class, TransactionArchive.class, ReferenceCodeFilter.class, TransactionStatusCounts.class,
+        VelocityLimiter.class, JacksonAutoConfiguration.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionStatusCountsTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionStatusCounts statusCounts;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private AccountOwnerBackfill accountOwnerBackfill;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM transaction_references");
+        jdbcTemplate.update("DELETE FROM transactions");
+        accountOwnerRepository.deleteAll();
+        accountOwnerRepository.save(new AccountOwner(10L, 1L));
+        statusCounts.reconcile();
+    }
+
+    @Test
+    void countsFollowCommittedTransitionsAndSurviveFlush() {
+        TransactionDTO first = create();
+        TransactionDTO second = create();
+        create();
+        transactionService.cancelTransaction(1L, first.id());
+        transactionService.updateTransactionStatus(1L, second.id(), "FAILED");
+
+        assertThat(statusCounts.getCount("PENDING")).isEqualTo(1);
+        assertThat(statusCounts.getCount("CANCELLED")).isEqualTo(1);
+        assertThat(statusCounts.getCount("FAILED")).isEqualTo(1);
+
+        statusCounts.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT tx_count FROM transaction_status_counts WHERE status = 'PENDING'",
+                Long.class)).isEqualTo(1);
+        assertThat(statusCounts.getCounts()).containsEntry("PENDING", 1L).containsEntry("CANCELLED", 1L)
+                .containsEntry("FAILED", 1L);
+        assertThat(meterRegistry.get("transactions.status.count").tag("status", "CANCELLED").gauge().value())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void participantsCannotSetProcessorStatusesOrChangeFinishedTransactions() {
+        TransactionDTO pending = create();
+
+        assertThatThrownBy(() -> transactionService.updateTransactionStatus(1L, pending.id(), "COMPLETED"))
+                .hasMessage("Status COMPLETED is set by the transaction processor");
+        assertThatThrownBy(() -> transactionService.updateTransactionStatus(1L, pending.id(), "PROCESSING"))
+                .hasMessage("Status PROCESSING is set by the transaction processor");
+
+        // Processor đã nhận giao dịch: người tham gia không đè được trạng thái
+        jdbcTemplate.update("UPDATE transactions SET status = 'PROCESSING' WHERE id = ?", pending.id());
+        assertThatThrownBy(() -> transactionService.updateTransactionStatus(1L, pending.id(), "FAILED"))
+                .hasMessage("Only PENDING transactions can change status");
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM transactions WHERE id = ?", String.class, pending.id()))
+                .isEqualTo("PROCESSING");
+    }
+
+    @Test
+    void rolledBackTransitionIsNotCounted() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            create();
+            status.setRollbackOnly();
+        });
+
+        assertThat(statusCounts.getCount("PENDING")).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class)).isZero();
+    }
+
+    @Test
+    void reconcileCorrectsDrift() {
+        create();
+        create();
+        // Chuyển trạng thái ngoài service (hoặc delta mất khi node chết): số đếm lệch đến lần reconcile
+        jdbcTemplate.update("UPDATE transactions SET status = 'FAILED'");
+        statusCounts.flush();
+        assertThat(statusCounts.getCount("PENDING")).isEqualTo(2);
+
+        statusCounts.reconcile();
+
+        assertThat(statusCounts.getCounts()).containsEntry("PENDING", 0L).containsEntry("FAILED", 2L);
+    }
+
+    private TransactionDTO create() {
+        return transactionService.createTransaction(1L, new TransactionDTO(null, 10L, 20L, new BigDecimal("5.00"), "USD",
+                "TRANSFER", null, null, null, null, null));
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.transactionservice.service;
+
+import com.example.common.money.Money;
+import com.example.transactionservice.model.AccountOwner;
+import com.example.transactionservice.repository.AccountOwnerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "transactions.velocity.enabled=true",
+        "transactions.velocity.limits.DEFAULT.minute.count=3",
+        "transactions.velocity.limits.DEFAULT.day.amount=1000.00",
+        "transactions.velocity.limits.CHECKING.day.amount=5000.00",
+        "transactions.velocity.user.minute.count=5"
+})
+@Import({VelocityLimiter.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VelocityLimiterTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    @Autowired
+    private VelocityLimiter velocityLimiter;
+
+    @Autowired
+    private AccountOwnerRepository accountOwnerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        accountOwnerRepository.deleteAll();
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    void countLimitSlidesWithTheWindow() {
+        for (int i = 0; i < 3; i++) {
+            velocityLimiter.acquire(100L, 1_00, now + i);
+        }
+
+        assertThatThrownBy(() -> velocityLimiter.acquire(100L, 1_00, now + 10))
+                .hasMessage("Velocity limit exceeded: account transactions per minute");
+        // Lần bị từ chối không được tính: vẫn đủ chỗ ngay khi lần đầu trượt khỏi cửa sổ
+        velocityLimiter.acquire(100L, 1_00, now + MINUTE + 1000);
+        assertThat(meterRegistry.counter("transactions.velocity.rejected", "scope", "account").count()).isPositive();
+    }
+
+    @Test
+    void amountLimitFollowsAccountType() {
+        accountOwnerRepository.save(new AccountOwner(201L, 20L, "CHECKING"));
+
+        velocityLimiter.acquire(200L, 600_00, now);
+        assertThatThrownBy(() -> velocityLimiter.acquire(200L, 500_00, now))
+                .hasMessage("Velocity limit exceeded: account amount per day");
+        velocityLimiter.acquire(201L, 3000_00, now);
+        velocityLimiter.acquire(201L, 1500_00, now);
+        assertThatThrownBy(() -> velocityLimiter.acquire(201L, 600_00, now))
+                .hasMessage("Velocity limit exceeded: account amount per day");
+    }
+
+    @Test
+    void userLimitSpansAllAccountsOfTheUser() {
+        accountOwnerRepository.save(new AccountOwner(300L, 30L));
+        accountOwnerRepository.save(new AccountOwner(301L, 30L));
+
+        for (int i = 0; i < 3; i++) {
+            velocityLimiter.acquire(300L, 1_00, now);
+        }
+        velocityLimiter.acquire(301L, 1_00, now);
+        velocityLimiter.acquire(301L, 1_00, now);
+
+        assertThatThrownBy(() -> velocityLimiter.acquire(301L, 1_00, now))
+                .hasMessage("Velocity limit exceeded: user transactions per minute");
+    }
+
+    @Test
+    void rolledBackTransactionReleasesItsSlot() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < 3; i++) {
+            transactionTemplate.executeWithoutResult(status -> {
+                velocityLimiter.acquire(400L, Money.of(new BigDecimal("1.00"), "USD"));
+                status.setRollbackOnly();
+            });
+        }
+
+        for (int i = 0; i < 3; i++) {
+            velocityLimiter.acquire(400L, Money.of(new BigDecimal("1.00"), "USD"));
+        }
+        assertThatThrownBy(() -> velocityLimiter.acquire(400L, Money.of(new BigDecimal("1.00"), "USD")))
+                .hasMessageStartingWith("Velocity limit exceeded");
+    }
+
+    @Test
+    void rebuildRestoresRecentTransactions() {
+        accountOwnerRepository.save(new AccountOwner(500L, 50L));
+        LocalDateTime recent = LocalDateTime.now().minusSeconds(5);
+        insert(500L, "400.00", LocalDateTime.now().minusDays(2));
+        insert(500L, "400.00", recent);
+        insert(500L, "400.00", recent);
+
+        velocityLimiter.rebuild();
+
+        assertThatThrownBy(() -> velocityLimiter.acquire(500L, 300_00, System.currentTimeMillis()))
+                .hasMessage("Velocity limit exceeded: account amount per day");
+        velocityLimiter.acquire(500L, 100_00, System.currentTimeMillis());
+    }
+
+    @Test
+    void idleAccountsAreEvicted() {
+        long dayAgo = now - Duration.ofDays(1).toMillis() - MINUTE;
+        velocityLimiter.acquire(600L, 1_00, dayAgo);
+        double tracked = meterRegistry.get("transactions.velocity.tracked").tag("scope", "account").gauge().value();
+
+        velocityLimiter.evictIdle();
+
+        assertThat(meterRegistry.get("transactions.velocity.tracked").tag("scope", "account").gauge().value())
+                .isLessThan(tracked);
+        for (int i = 0; i < 3; i++) {
+            velocityLimiter.acquire(600L, 1_00, now);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void checksOfKnownAccountsTakeMicroseconds() {
+        int accounts = 2_000;
+        int rounds = 50;
+        // Lần đầu gặp tài khoản thì tra account_owners một lần, các lần sau chỉ chạm bộ nhớ
+        LongStream.range(0, accounts).parallel().forEach(id -> velocityLimiter.acquire(1_000_000 + id, 1, now));
+
+        // Mỗi vòng cách nhau một phút để không chạm giới hạn theo phút
+        long started = System.nanoTime();
+        for (int round = 1; round <= rounds; round++) {
+            long at = now + round * MINUTE;
+            LongStream.range(0, accounts).parallel().forEach(id -> velocityLimiter.acquire(1_000_000 + id, 1, at));
+        }
+        long elapsed = System.nanoTime() - started;
+        long checks = (long) accounts * rounds;
+
+        log.info("{} velocity checks in {} ms ({} us per check across threads)",
+                checks, elapsed / 1_000_000, String.format("%.2f", elapsed / 1000.0 / checks));
+        assertThat(elapsed / checks).isLessThan(Duration.ofMillis(1).toNanos() / 20);
+    }
+
+    private void insert(Long from, String amount, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, currency, transaction_type, " +
+                        "status, created_at) VALUES ((SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), ?, 1, ?, 'USD', " +
+                        "'TRANSFER', 'COMPLETED', ?)",
+                from, new BigDecimal(amount), Timestamp.valueOf(createdAt));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.transactionservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    @Test
+    void neverReportsAnInsertedValueAsNew() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).parallel().forEach(i -> filter.put("REF-" + i));
+
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("REF-" + i))).isTrue();
+        assertThat(filter.getInsertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredTarget() {
+        BloomFilter filter = BloomFilter.create(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("PARTNER-" + i);
+        }
+
+        long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("OTHER-" + i)).count();
+
+        assertThat(falsePositives / 100_000.0).isBetween(0.005, 0.015);
+        assertThat(filter.expectedFpp()).isBetween(0.009, 0.011);
+        assertThat(filter.getHashCount()).isEqualTo(7);
+    }
+
+    @Test
+    void rejectsInvalidSizing() {
+        assertThatThrownBy(() -> BloomFilter.create(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BloomFilter.create(1000, 1.0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.transactionservice.util;
+
+import com.example.common.money.Money;
+import com.example.transactionservice.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class TransactionArchiveFileTest {
+
+    private static final int ROWS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsEveryColumnAcrossGroups() throws IOException {
+        List<Transaction> rows = sample(ROWS);
+        Path file = write(rows);
+
+        try (TransactionArchiveFile.Reader reader = TransactionArchiveFile.open(file)) {
+            assertThat(reader.getRowCount()).isEqualTo(ROWS);
+            assertThat(reader.getGroupCount()).isEqualTo((ROWS + TransactionArchiveFile.GROUP_ROWS - 1) / TransactionArchiveFile.GROUP_ROWS);
+            assertThat(reader.getMinId()).isEqualTo(rows.get(0).getId());
+            assertThat(reader.getMaxId()).isEqualTo(rows.get(ROWS - 1).getId());
+
+            List<Transaction> decoded = new ArrayList<>();
+            for (int group = 0; group < reader.getGroupCount(); group++) {
+                decoded.addAll(reader.readGroup(group));
+            }
+            assertThat(decoded).isEqualTo(rows);
+        }
+    }
+
+    @Test
+    void findsByIdWithoutScanningOtherGroups() throws IOException {
+        List<Transaction> rows = sample(ROWS);
+        Path file = write(rows);
+
+        try (TransactionArchiveFile.Reader reader = TransactionArchiveFile.open(file)) {
+            Transaction last = rows.get(ROWS - 1);
+            assertThat(reader.findById(last.getId())).contains(last);
+            assertThat(reader.findById(rows.get(5_000).getId())).contains(rows.get(5_000));
+            // Khoảng trống giữa các id và ngoài khoảng
+            assertThat(reader.findById(rows.get(0).getId() + 1)).isEmpty();
+            assertThat(reader.findById(last.getId() + 100)).isEmpty();
+        }
+    }
+
+    @Test
+    void isMuchSmallerThanGzippedCsv() throws IOException {
+        List<Transaction> rows = sample(ROWS);
+        long archived = Files.size(write(rows));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(csv)) {
+            for (Transaction t : rows) {
+                gzip.write((t.getId() + "," + t.getFromAccountId() + "," + t.getToAccountId() + "," + t.getAmount()
+                        + "," + t.getCurrency() + "," + t.getTransactionType() + "," + t.getStatus() + ","
+                        + t.getReferenceCode() + "," + t.getDescription() + "," + t.getCreatedAt() + ","
+                        + t.getCompletedAt() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        log.info("{} transactions: archive {} bytes, gzip CSV {} bytes", ROWS, archived, csv.size());
+        assertThat(archived).isLessThan(csv.size());
+    }
+
+    @Test
+    void rejectsOutOfOrderIdsAndTruncatedFiles() throws IOException {
+        Path file = directory.resolve("bad" + TransactionArchiveFile.EXTENSION);
+        try (TransactionArchiveFile.Writer writer = TransactionArchiveFile.create(file)) {
+            List<Transaction> rows = sample(2);
+            writer.append(rows.get(1));
+            assertThatThrownBy(() -> writer.append(rows.get(0))).isInstanceOf(IllegalArgumentException.class);
+        }
+
+        Path truncated = write(sample(100));
+        try (RandomAccessFile raf = new RandomAccessFile(truncated.toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        assertThatThrownBy(() -> TransactionArchiveFile.open(truncated)).isInstanceOf(IOException.class);
+    }
+
+    private Path write(List<Transaction> rows) throws IOException {
+        Path file = Files.createTempFile(directory, "transactions-", TransactionArchiveFile.EXTENSION);
+        try (TransactionArchiveFile.Writer writer = TransactionArchiveFile.create(file)) {
+            for (Transaction row : rows) {
+                writer.append(row);
+            }
+        }
+        return file;
+    }
+
+    private static List<Transaction> sample(int count) {
+        Random random = new Random(7);
+        List<Transaction> rows = new ArrayList<>(count);
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 1, 0, 0, 0, 123_456_000);
+        long id = 1_000_000;
+        String[] types = {"TRANSFER", "DEPOSIT", "WITHDRAWAL"};
+        for (int i = 0; i < count; i++) {
+            id += 1 + random.nextInt(3);
+            createdAt = createdAt.plusNanos(random.nextInt(60_000_000) * 1_000L);
+            Transaction t = new Transaction();
+            t.setId(id);
+            t.setFromAccountId(i % 7 == 0 ? null : 1L + random.nextInt(5_000));
+            t.setToAccountId(i % 11 == 0 ? null : 1L + random.nextInt(5_000));
+            t.setCurrency(i % 5 == 0 ? "EUR" : "USD");
+            t.setAmount(Money.ofMinor(i % 13 == 0 ? -random.nextInt(10_000) : random.nextInt(1_000_000), t.getCurrency()));
+            t.setTransactionType(types[i % types.length]);
+            t.setStatus(i % 9 == 0 ? "FAILED" : "COMPLETED");
+            t.setReferenceCode(i % 3 == 0 ? null : "REF-" + id);
+            t.setDescription(i % 4 == 0 ? null : "Thanh toán hóa đơn #" + (i % 100));
+            t.setCreatedAt(createdAt);
+            t.setCompletedAt("FAILED".equals(t.getStatus()) ? null : createdAt.plusNanos(random.nextInt(5_000_000) * 1_000L));
+            rows.add(t);
+        }
+        return rows;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.userservice.service.impl;
 
+import com.example.common.outbox.OutboxPublisher;
 import com.example.userservice.dto.CreateUserRequest;
 import com.example.userservice.dto.UpdateUserRequest;
 import com.example.userservice.dto.PageResponse;
@@ -18,7 +19,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -40,7 +40,7 @@ public class UserServiceImpl implements IUserService {
     private final UserQueryBuilder queryBuilder;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxPublisher outboxPublisher;
 
     @Override
     @Transactional(readOnly = true)
@@ -97,21 +97,17 @@ public class UserServiceImpl implements IUserService {
 
     // 📤 Phát event khi user profile được cập nhật
     private void publishUserProfileUpdatedEvent(User user, String oldEmail) {
-        try {
-            // Chỉ phát event nếu email hoặc fullName thay đổi
-            if (!oldEmail.equals(user.getEmail()) || true) {
-                Map<String, Object> event = new HashMap<>();
-                event.put("eventType", "USER_PROFILE_UPDATED");
-                event.put("userId", user.getId());
-                event.put("email", user.getEmail());
-                event.put("fullName", user.getFullName());
-                event.put("timestamp", System.currentTimeMillis());
+        // Chỉ phát event nếu email hoặc fullName thay đổi
+        if (!oldEmail.equals(user.getEmail()) || true) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("eventType", "USER_PROFILE_UPDATED");
+            event.put("userId", user.getId());
+            event.put("email", user.getEmail());
+            event.put("fullName", user.getFullName());
+            event.put("timestamp", System.currentTimeMillis());
 
-                kafkaTemplate.send("user-events", "user_profile_updated", event);
-                log.info("Published USER_PROFILE_UPDATED event for user: {}", user.getId());
-            }
-        } catch (Exception e) {
-            log.error("Failed to publish user profile updated event", e);
+            outboxPublisher.publish("user-events", user.getId(), "user_profile_updated", event);
+            log.info("Published USER_PROFILE_UPDATED event for user: {}", user.getId());
         }
     }
 
@@ -223,56 +219,44 @@ public class UserServiceImpl implements IUserService {
     // ========== Kafka Events ==========
     
     private void publishUserCreatedEvent(User user) {
-        try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("eventType", "USER_CREATED");
-            event.put("userId", user.getId());
-            event.put("email", user.getEmail());
-            event.put("firstName", user.getFirstName());
-            event.put("lastName", user.getLastName());
-            event.put("phoneNumber", user.getPhoneNumber());
-            event.put("roleId", user.getRoleId());
-            event.put("timestamp", System.currentTimeMillis());
-            
-            kafkaTemplate.send("user-events", "user_created", event);
-            log.info("Published USER_CREATED event for user: {}", user.getId());
-        } catch (Exception e) {
-            log.error("Failed to publish USER_CREATED event", e);
-        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", "USER_CREATED");
+        event.put("userId", user.getId());
+        event.put("email", user.getEmail());
+        event.put("firstName", user.getFirstName());
+        event.put("lastName", user.getLastName());
+        event.put("phoneNumber", user.getPhoneNumber());
+        event.put("roleId", user.getRoleId());
+        event.put("timestamp", System.currentTimeMillis());
+        
+        outboxPublisher.publish("user-events", user.getId(), "user_created", event);
+        log.info("Published USER_CREATED event for user: {}", user.getId());
     }
 
     private void publishUserRoleUpdatedEvent(User user) {
-        try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("eventType", "USER_ROLE_UPDATED");
-            event.put("userId", user.getId());
-            event.put("email", user.getEmail());
-            event.put("roleId", user.getRoleId());
-            event.put("timestamp", System.currentTimeMillis());
-            
-            kafkaTemplate.send("user-events", "user_role_updated", event);
-            log.info("Published USER_ROLE_UPDATED event for user: {}", user.getId());
-        } catch (Exception e) {
-            log.error("Failed to publish USER_ROLE_UPDATED event", e);
-        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", "USER_ROLE_UPDATED");
+        event.put("userId", user.getId());
+        event.put("email", user.getEmail());
+        event.put("roleId", user.getRoleId());
+        event.put("timestamp", System.currentTimeMillis());
+        
+        outboxPublisher.publish("user-events", user.getId(), "user_role_updated", event);
+        log.info("Published USER_ROLE_UPDATED event for user: {}", user.getId());
     }
 
     private void publishUserProfileUpdatedEvent(User user) {
-        try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("eventType", "USER_PROFILE_UPDATED");
-            event.put("userId", user.getId());
-            event.put("email", user.getEmail());
-            event.put("firstName", user.getFirstName());
-            event.put("lastName", user.getLastName());
-            event.put("kycStatus", user.getKycStatus());
-            event.put("isVerified", user.getIsVerified());
-            event.put("timestamp", System.currentTimeMillis());
-            
-            kafkaTemplate.send("user-events", "user_profile_updated", event);
-            log.info("Published USER_PROFILE_UPDATED event for user: {}", user.getId());
-        } catch (Exception e) {
-            log.error("Failed to publish USER_PROFILE_UPDATED event", e);
-        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", "USER_PROFILE_UPDATED");
+        event.put("userId", user.getId());
+        event.put("email", user.getEmail());
+        event.put("firstName", user.getFirstName());
+        event.put("lastName", user.getLastName());
+        event.put("kycStatus", user.getKycStatus());
+        event.put("isVerified", user.getIsVerified());
+        event.put("timestamp", System.currentTimeMillis());
+        
+        outboxPublisher.publish("user-events", user.getId(), "user_profile_updated", event);
+        log.info("Published USER_PROFILE_UPDATED event for user: {}", user.getId());
     }
 }
\ No newline at end of file